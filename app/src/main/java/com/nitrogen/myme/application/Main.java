@@ -2,7 +2,11 @@ package com.nitrogen.myme.application;
 
 public class Main {
 
+    public static final int LARGE_CATALOG_SIZE = 10000;
+
     private static String dbName = "Mymedb";
+    private static boolean largeCatalog = false;
+    private static int largeCatalogSize = LARGE_CATALOG_SIZE;
 
     public static void setDBPathName(final String name) {
         try {
@@ -20,6 +24,34 @@ public class Main {
     public static String getDBPathName() {
     return dbName;
     }
+
+    /* setLargeCatalog
+     *
+     * purpose: Keep the memes on disk, in CACHED tables read a page at a time, instead of
+     *          holding the whole catalog in memory, whatever its size. Takes effect the
+     *          next time the database is opened.
+     */
+    public static void setLargeCatalog(final boolean large) {
+        largeCatalog = large;
+    }
+
+    public static boolean isLargeCatalog() {
+        return largeCatalog;
+    }
+
+    /* setLargeCatalogSize
+     *
+     * purpose: How many memes a catalog has to have to be kept on disk on its own.
+     *          A catalog that reaches it when the database is opened stays on disk from
+     *          then on. Takes effect the next time the database is opened.
+     */
+    public static void setLargeCatalogSize(final int memes) {
+        largeCatalogSize = memes;
+    }
+
+    public static int getLargeCatalogSize() {
+        return largeCatalogSize;
+    }
 }
 
 
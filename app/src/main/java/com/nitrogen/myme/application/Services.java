@@ -1,44 +1,149 @@
 package com.nitrogen.myme.application;
 
+import com.nitrogen.myme.persistence.ImageStore;
 import com.nitrogen.myme.persistence.MemeTemplatesPersistence;
 import com.nitrogen.myme.persistence.MemesPersistence;
 import com.nitrogen.myme.persistence.TagsPersistence;
+import com.nitrogen.myme.persistence.hsqldb.CatalogSnapshot;
+import com.nitrogen.myme.persistence.hsqldb.ConnectionProvider;
 import com.nitrogen.myme.persistence.hsqldb.MemeTemplatesPersistenceHSQLDB;
 import com.nitrogen.myme.persistence.hsqldb.MemesPersistenceHSQLDB;
+import com.nitrogen.myme.persistence.hsqldb.PagedMemesPersistenceHSQLDB;
 import com.nitrogen.myme.persistence.hsqldb.TagsPersistenceHSQLDB;
 
+import java.io.File;
+
 public class Services {
     private static MemesPersistence memesPersistence = null;
     private static MemeTemplatesPersistence memeTemplatesPersistence = null;
     private static TagsPersistence tagsPersistence = null;
+    private static ConnectionProvider connectionProvider = null;
+    private static WarmUp warmUp = null;
+    private static ImageStore imageStore = null;
+
+    // each persistence has its own lock so loading one doesn't hold up the others;
+    // they are always taken in this order, before the lock on Services itself
+    private static final Object memesLock = new Object();
+    private static final Object memeTemplatesLock = new Object();
+    private static final Object tagsLock = new Object();
+
+    public static MemesPersistence getMemesPersistence() {
+        synchronized (memesLock) {
+            if (memesPersistence == null) {
+                if (getConnectionProvider().usesCachedTables()) {
+                    memesPersistence = new PagedMemesPersistenceHSQLDB(getConnectionProvider());
+                } else {
+                    memesPersistence = new MemesPersistenceHSQLDB(getConnectionProvider());
+                }
+            }
+
+            return memesPersistence;
+        }
+    }
+
+    public static MemeTemplatesPersistence getMemeTemplatePersistence() {
+        synchronized (memeTemplatesLock) {
+            if (memeTemplatesPersistence == null) {
+                memeTemplatesPersistence = new MemeTemplatesPersistenceHSQLDB(getConnectionProvider());
+            }
+
+            return memeTemplatesPersistence;
+        }
+    }
 
-    public static synchronized MemesPersistence getMemesPersistence() {
-        if (memesPersistence == null) {
-            memesPersistence = new MemesPersistenceHSQLDB(Main.getDBPathName());
+    public static TagsPersistence getTagsPersistence() {
+        synchronized (tagsLock) {
+            if (tagsPersistence == null) {
+                tagsPersistence = new TagsPersistenceHSQLDB(getConnectionProvider());
+            }
+
+            return tagsPersistence;
         }
+    }
+
+    /* getConnectionProvider
+     *
+     * purpose: The database connection shared by all of the persistence classes.
+     *          It stays open until clean() is called.
+     */
+    public static synchronized ConnectionProvider getConnectionProvider() {
+        if (connectionProvider == null) {
+            if (Main.isLargeCatalog()) {
+                connectionProvider = new ConnectionProvider(Main.getDBPathName(), ConnectionProvider.Storage.CACHED);
+            } else {
+                connectionProvider = new ConnectionProvider(Main.getDBPathName(), Main.getLargeCatalogSize());
+            }
+        }
+
+        return connectionProvider;
+    }
 
-        return memesPersistence;
+    /* isLargeCatalog
+     *
+     * purpose: Whether the memes are read from the database a page at a time, because
+     *          there are too many to hold in memory (see Main.setLargeCatalogSize).
+     */
+    public static boolean isLargeCatalog() {
+        return getMemesPersistence() instanceof PagedMemesPersistenceHSQLDB;
     }
 
-    public static synchronized MemeTemplatesPersistence getMemeTemplatePersistence() {
-        if (memeTemplatesPersistence == null) {
-            memeTemplatesPersistence = new MemeTemplatesPersistenceHSQLDB(Main.getDBPathName());
+    /* getImageStore
+     *
+     * purpose: The pictures of the memes made in the app, kept in a directory next to
+     *          the database.
+     */
+    public static synchronized ImageStore getImageStore() {
+        if (imageStore == null) {
+            File database = new File(Main.getDBPathName()).getAbsoluteFile();
+            imageStore = new ImageStore(new File(database.getParentFile(), ImageStore.DIRECTORY));
         }
 
-        return memeTemplatesPersistence;
+        return imageStore;
     }
 
-    public static synchronized TagsPersistence getTagsPersistence() {
-        if (tagsPersistence == null) {
-            tagsPersistence = new TagsPersistenceHSQLDB(Main.getDBPathName());
+    /* warmUp
+     *
+     * purpose: Start loading the tags, memes and templates in the background, if that
+     *          hasn't been started already, and return the warm-up to wait on.
+     *          Call once the database is in place, before the first screen needs it.
+     */
+    public static synchronized WarmUp warmUp() {
+        if (warmUp == null) {
+            warmUp = new WarmUp();
+            warmUp.start();
         }
 
-        return tagsPersistence;
+        return warmUp;
     }
 
-    public static synchronized void clean() {
-        memesPersistence = null;
-        memeTemplatesPersistence = null;
-        tagsPersistence = null;
+    public static void clean() {
+        WarmUp running;
+        synchronized (Services.class) {
+            running = warmUp;
+            warmUp = null;
+        }
+        if (running != null) {
+            // let it finish before the connection it uses is closed
+            running.await();
+        }
+        // and any snapshot of the memes still being written
+        CatalogSnapshot.flush();
+
+        synchronized (memesLock) {
+            synchronized (memeTemplatesLock) {
+                synchronized (tagsLock) {
+                    synchronized (Services.class) {
+                        if (connectionProvider != null) {
+                            connectionProvider.close();
+                            connectionProvider = null;
+                        }
+                        memesPersistence = null;
+                        memeTemplatesPersistence = null;
+                        tagsPersistence = null;
+                        imageStore = null;
+                    }
+                }
+            }
+        }
     }
 }
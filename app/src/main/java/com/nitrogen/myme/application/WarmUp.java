@@ -0,0 +1,248 @@
+package com.nitrogen.myme.application;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.persistence.MemeTemplatesPersistence;
+import com.nitrogen.myme.persistence.MemesPersistence;
+import com.nitrogen.myme.persistence.TagsPersistence;
+import com.nitrogen.myme.persistence.hsqldb.PagedMemesPersistenceHSQLDB;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* WarmUp
+ *
+ * purpose: Loads the app's data in the background when it starts, so the UI thread
+ *          doesn't wait for it. First a snapshot, the first SNAPSHOT_SIZE memes read
+ *          straight from the database, which is enough to draw the first screen. Then
+ *          the tags, memes and templates are loaded in parallel, through Services, so
+ *          anything that asks Services for them afterwards gets them straight away.
+ *
+ *          The loaders share the database connection, so their queries still take
+ *          turns; what runs in parallel is everything else, and none of it is on the
+ *          UI thread. Start one with Services.warmUp().
+ */
+public class WarmUp {
+    public static final int SNAPSHOT_SIZE = 30;
+    private static final int WORKERS = 3;
+
+    /* OnSnapshot
+     *
+     * purpose: Receives the snapshot once it has been read.
+     */
+    public interface OnSnapshot {
+        void onSnapshot(List<Meme> memes);
+    }
+
+    private final ExecutorService workers;
+    private final Task<List<Meme>> snapshot;
+    private final Task<TagsPersistence> tags;
+    private final Task<MemesPersistence> memes;
+    private final Task<MemeTemplatesPersistence> templates;
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    WarmUp() {
+        workers = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "warm-up-" + count.incrementAndGet());
+                // don't keep the process alive just to finish loading
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        snapshot = new Task<>(new Callable<List<Meme>>() {
+            @Override
+            public List<Meme> call() {
+                return new PagedMemesPersistenceHSQLDB(Services.getConnectionProvider()).getMemes(0, SNAPSHOT_SIZE);
+            }
+        });
+        tags = new Task<>(new Callable<TagsPersistence>() {
+            @Override
+            public TagsPersistence call() {
+                awaitQuietly(snapshot);
+                return Services.getTagsPersistence();
+            }
+        });
+        memes = new Task<>(new Callable<MemesPersistence>() {
+            @Override
+            public MemesPersistence call() {
+                awaitQuietly(snapshot);
+                return Services.getMemesPersistence();
+            }
+        });
+        templates = new Task<>(new Callable<MemeTemplatesPersistence>() {
+            @Override
+            public MemeTemplatesPersistence call() {
+                awaitQuietly(snapshot);
+                return Services.getMemeTemplatePersistence();
+            }
+        });
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* start
+     *
+     * purpose: Hand the work to the background workers. They stop once it is done.
+     */
+    void start() {
+        // the snapshot is queued first so it is read before the loaders take the connection
+        workers.execute(snapshot);
+        workers.execute(memes);
+        workers.execute(tags);
+        workers.execute(templates);
+        workers.shutdown();
+    }
+
+    /* await
+     *
+     * purpose: Wait for everything that has started to finish.
+     */
+    void await() {
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Future<List<Meme>> getSnapshot() {
+        return snapshot;
+    }
+
+    public Future<TagsPersistence> getTags() {
+        return tags;
+    }
+
+    public Future<MemesPersistence> getMemes() {
+        return memes;
+    }
+
+    public Future<MemeTemplatesPersistence> getTemplates() {
+        return templates;
+    }
+
+    /* isReady
+     *
+     * purpose: Whether the tags, memes and templates have all been loaded.
+     */
+    public boolean isReady() {
+        return tags.isDone() && memes.isDone() && templates.isDone();
+    }
+
+    /* whenSnapshotReady
+     *
+     * purpose: Hand the snapshot to the callback, on the executor, once it has been read.
+     *          If reading it failed, the callback is given an empty list.
+     */
+    public void whenSnapshotReady(final Executor executor, final OnSnapshot callback) {
+        snapshot.whenDone(new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<Meme> memes = awaitQuietly(snapshot);
+                        callback.onSnapshot(memes != null ? memes : new ArrayList<Meme>());
+                    }
+                });
+            }
+        });
+    }
+
+    /* whenReady
+     *
+     * purpose: Run the callback, on the executor, once the tags, memes and templates
+     *          have all been loaded. Runs straight away if they already have been.
+     */
+    public void whenReady(final Executor executor, final Runnable callback) {
+        final AtomicInteger remaining = new AtomicInteger(3);
+        Runnable countDown = new Runnable() {
+            @Override
+            public void run() {
+                if (remaining.decrementAndGet() == 0) {
+                    executor.execute(callback);
+                }
+            }
+        };
+
+        tags.whenDone(countDown);
+        memes.whenDone(countDown);
+        templates.whenDone(countDown);
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* awaitQuietly
+     *
+     * purpose: Wait for a task and return its result, or null if it failed.
+     */
+    private static <T> T awaitQuietly(Future<T> task) {
+        try {
+            return task.get();
+        }
+        catch (final ExecutionException e) {
+            return null;
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /* Task
+     *
+     * purpose: A FutureTask that runs callbacks once it is done, whether it finished,
+     *          failed or was cancelled. Callbacks added after that run straight away.
+     */
+    private static class Task<T> extends FutureTask<T> {
+        private final List<Runnable> callbacks = new ArrayList<>();
+
+        private Task(Callable<T> callable) {
+            super(callable);
+        }
+
+        private void whenDone(Runnable callback) {
+            synchronized (callbacks) {
+                if (!isDone()) {
+                    callbacks.add(callback);
+                    return;
+                }
+            }
+            callback.run();
+        }
+
+        @Override
+        protected void done() {
+            List<Runnable> toRun;
+            synchronized (callbacks) {
+                toRun = new ArrayList<>(callbacks);
+                callbacks.clear();
+            }
+            for (Runnable callback : toRun) {
+                callback.run();
+            }
+        }
+    }
+}
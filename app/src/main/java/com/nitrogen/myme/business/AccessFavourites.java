@@ -34,7 +34,7 @@ public class AccessFavourites {
     public List<Meme> getMemes() {
         List<Meme> memes = new ArrayList<Meme>();
 
-        for (Meme meme : memePersistence.getMemes()) {
+        for (Meme meme : memePersistence.scanMemes()) {
             if (meme.isFavourite()) {
                 memes.add(meme);
 
@@ -44,5 +44,14 @@ public class AccessFavourites {
         return Collections.unmodifiableList(memes);
     }
 
+    /* getMemes
+     *
+     * purpose: Return up to limit favourites, skipping the first offset of them, so the
+     *          favourites can be shown a page at a time.
+     */
+    public List<Meme> getMemes(int offset, int limit) {
+        return memePersistence.getFavouriteMemes(offset, limit);
+    }
+
 }
 
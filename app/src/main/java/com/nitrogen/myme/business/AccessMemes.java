@@ -39,22 +39,56 @@ public class AccessMemes {
         return Collections.unmodifiableList(memes);
     }
 
+    /* getMemes
+     *
+     * purpose: Return up to limit memes, starting at offset, so the memes can be shown
+     *          a page at a time.
+     */
+    public List<Meme> getMemes(int offset, int limit) {
+        return memePersistence.getMemes(offset, limit);
+    }
+
+    /* getMemesByRelevance
+     *
+     * purpose: Return up to limit memes, starting at offset, ranked by relevance based
+     *          on favourites, so the feed can be shown a page at a time without sorting
+     *          the whole catalog first.
+     */
+    public List<Meme> getMemesByRelevance(int offset, int limit) {
+        return memePersistence.getMemesByRelevance(offset, limit);
+    }
+
     /* getMemeByName
      *
      * purpose: Return a Meme matching the given meme name
      *          or null if non is found.
      */
     public Meme getMemeByName(String memeName) throws MemeNotFoundException{
-        for (Meme meme : memes) {
-            if (meme.getName().equals(memeName)) {
-                return meme;
-            }
+        int index = memes.indexOf(new Meme(memeName));
+
+        if (index < 0) {
+            throw new MemeNotFoundException();
         }
-        throw new MemeNotFoundException();
+        return memes.get(index);
     }
 
     public void updatefav(Meme meme){
+        RelevanceModel relevanceModel = RelevanceModel.getExisting(memePersistence);
+        CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getExisting(memePersistence);
+        MemeIndex index = MemeIndex.getExisting(memePersistence);
+        int changes = memePersistence.getChanges();
+
         memePersistence.updateFav( meme);
+        // favourites aren't indexed, the index is as current as it was
+        if (index != null) {
+            index.caughtUp(changes, memePersistence.getChanges());
+        }
+        if (relevanceModel != null) {
+            relevanceModel.favouriteChanged(meme);
+        }
+        if (recommender != null) {
+            recommender.favouriteChanged(meme);
+        }
     }
 
     public void setCurrView(List<Meme> meme){ memePersistence.setCurrView(meme); }
@@ -0,0 +1,177 @@
+package com.nitrogen.myme.business;
+
+import com.nitrogen.myme.objects.Meme;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* AsyncSearch
+ *
+ * purpose: Runs meme searches off the UI thread. Queries typed in quick succession are
+ *          debounced so only the last one runs, a running search is interrupted as soon
+ *          as a newer query arrives and results for anything but the newest query are
+ *          dropped instead of being delivered.
+ */
+public class AsyncSearch {
+    public static final long DEBOUNCE_MILLIS = 150;
+
+    /* Scheduler
+     *
+     * purpose: Runs a task on a worker after a delay. Tests provide one backed by a fake clock.
+     */
+    public interface Scheduler {
+        Future<?> schedule(Runnable task, long delayMillis);
+
+        void shutdown();
+    }
+
+    /* OnResults
+     *
+     * purpose: Receives the results of the newest query on the result executor.
+     */
+    public interface OnResults {
+        void onResults(String query, List<Meme> memes);
+    }
+
+    private final SearchMemes searchMemes;
+    private final Scheduler scheduler;
+    private final Executor resultExecutor;
+    private final OnResults onResults;
+    private final long debounceMillis;
+
+    private long generation = 0;
+    private Future<?> pending = null;
+
+    //**************************************************
+    // Constructors
+    //**************************************************
+
+    public AsyncSearch(SearchMemes searchMemes, Executor resultExecutor, OnResults onResults) {
+        this(searchMemes, new WorkerScheduler(), resultExecutor, onResults, DEBOUNCE_MILLIS);
+    }
+
+    // this is needed to swap in a fake clock for testing
+    public AsyncSearch(SearchMemes searchMemes, Scheduler scheduler, Executor resultExecutor,
+                       OnResults onResults, long debounceMillis) {
+        this.searchMemes = searchMemes;
+        this.scheduler = scheduler;
+        this.resultExecutor = resultExecutor;
+        this.onResults = onResults;
+        this.debounceMillis = debounceMillis;
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* searchAsYouType
+     *
+     * purpose: Search for a partially typed query once the user pauses typing.
+     */
+    public void searchAsYouType(final String query) {
+        schedule(query, debounceMillis, new Search() {
+            @Override
+            public List<Meme> run() {
+                return searchMemes.getMemesMatching(query, SearchMemes.MatchMode.FUZZY,
+                        SearchMemes.SEARCH_AS_YOU_TYPE_LIMIT);
+            }
+        });
+    }
+
+    /* search
+     *
+     * purpose: Search for a submitted query straight away, best results first.
+     */
+    public void search(final String query) {
+        schedule(query, 0, new Search() {
+            @Override
+            public List<Meme> run() {
+                return searchMemes.getTopMemesRelatedTo(query, SearchMemes.TOP_RESULTS_LIMIT);
+            }
+        });
+    }
+
+    /* cancel
+     *
+     * purpose: Forget any pending or running search. Nothing is delivered until the next query.
+     */
+    public synchronized void cancel() {
+        generation++;
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    /* shutdown
+     *
+     * purpose: Cancel any search and stop the worker. Call when the screen goes away.
+     */
+    public void shutdown() {
+        cancel();
+        scheduler.shutdown();
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private interface Search {
+        List<Meme> run();
+    }
+
+    /* schedule
+     *
+     * purpose: Replace whatever search is pending or running with a new one. Each search
+     *          remembers the generation it was started in and only delivers its results
+     *          if no newer search has been scheduled since.
+     */
+    private synchronized void schedule(final String query, long delayMillis, final Search search) {
+        cancel();
+        final long searchGeneration = generation;
+
+        pending = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                final List<Meme> memes = search.run();
+
+                if (!Thread.currentThread().isInterrupted() && isCurrent(searchGeneration)) {
+                    resultExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (isCurrent(searchGeneration)) {
+                                onResults.onResults(query, memes);
+                            }
+                        }
+                    });
+                }
+            }
+        }, delayMillis);
+    }
+
+    private synchronized boolean isCurrent(long searchGeneration) {
+        return searchGeneration == generation;
+    }
+
+    /* WorkerScheduler
+     *
+     * purpose: The real scheduler, a single background thread.
+     */
+    private static class WorkerScheduler implements Scheduler {
+        private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+
+        @Override
+        public Future<?> schedule(Runnable task, long delayMillis) {
+            return worker.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void shutdown() {
+            worker.shutdownNow();
+        }
+    }
+}
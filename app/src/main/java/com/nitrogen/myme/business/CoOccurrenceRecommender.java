@@ -0,0 +1,309 @@
+package com.nitrogen.myme.business;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/* CoOccurrenceRecommender
+ *
+ * purpose: Recommends memes using which tags appear together across the whole catalog.
+ *          A tag that often shows up next to the user's favourite tags counts towards
+ *          a meme's score even if no favourite has that exact tag. There is one
+ *          recommender per MemesPersistence and it is kept up to date by UpdateMemes
+ *          and AccessMemes.
+ *
+ *          Everything is kept in primitive arrays indexed by a dense tag id:
+ *            - coOccurrences[a * capacity + b]: how many memes have both tag a and tag b
+ *              (the diagonal is how many memes have the tag at all)
+ *            - favouriteCounts[a]: how many favourites have tag a
+ *            - profile[a]: how much the user likes tag a, worked out from the two above
+ *          A meme's score is the sum of the profile over its tags. At most MAX_TAGS tags
+ *          are tracked so memory stays bounded; tags past that are ignored. Nothing is
+ *          kept per meme but the favourites' tag ids: a meme's tag ids are looked up
+ *          from its tags when they're needed.
+ */
+public class CoOccurrenceRecommender implements Recommender {
+    public static final int MAX_TAGS = 512;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int[] NO_TAGS = new int[0];
+
+    private static final Map<MemesPersistence, CoOccurrenceRecommender> recommenders = new WeakHashMap<>();
+
+    private final Map<String, Integer> tagIds = new HashMap<>();
+    // ids given out so far; the id of a deleted tag isn't given out again
+    private int tagCount = 0;
+    private final Map<Meme, int[]> favourites = new HashMap<>();
+
+    private int capacity = INITIAL_CAPACITY;
+    private float[] coOccurrences = new float[capacity * capacity];
+    private float[] favouriteCounts = new float[capacity];
+    private float[] profile = new float[capacity];
+    private boolean profileStale = true;
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    private CoOccurrenceRecommender(MemesPersistence memesPersistence) {
+        for (Meme meme : memesPersistence.scanMemes()) {
+            memeAdded(meme);
+        }
+    }
+
+    //**************************************************
+    // Factory Methods
+    //**************************************************
+
+    /* getInstance
+     *
+     * purpose: Return the recommender for the given persistence, building it if needed.
+     */
+    public static synchronized CoOccurrenceRecommender getInstance(MemesPersistence memesPersistence) {
+        CoOccurrenceRecommender recommender = recommenders.get(memesPersistence);
+
+        if (recommender == null) {
+            recommender = new CoOccurrenceRecommender(memesPersistence);
+            recommenders.put(memesPersistence, recommender);
+        }
+
+        return recommender;
+    }
+
+    /* getExisting
+     *
+     * purpose: Return the recommender for the given persistence, or null if nothing has
+     *          been recommended yet. Used to keep a recommender current without building one.
+     */
+    static synchronized CoOccurrenceRecommender getExisting(MemesPersistence memesPersistence) {
+        return recommenders.get(memesPersistence);
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    @Override
+    public synchronized float score(Meme meme) {
+        refreshProfile();
+        return sumProfile(meme.getTags());
+    }
+
+    @Override
+    public synchronized void score(Meme[] candidates, float[] scores) {
+        refreshProfile();
+        for (int i = 0; i < candidates.length; i++) {
+            scores[i] = sumProfile(candidates[i].getTags());
+        }
+    }
+
+    /* memeAdded
+     *
+     * purpose: Count the tags of a meme that was added to the catalog. Call it once
+     *          for each meme inserted.
+     */
+    public synchronized void memeAdded(Meme meme) {
+        countPairs(assignTagIds(meme.getTags()), 1);
+        favouriteChanged(meme);
+    }
+
+    /* memeRemoved
+     *
+     * purpose: Forget a meme that was deleted. Call it once for each meme deleted,
+     *          with the meme as it was stored, so it has the tags it was counted with.
+     */
+    public synchronized void memeRemoved(Meme meme) {
+        countPairs(getTagIds(meme), -1);
+        if (favourites.containsKey(meme)) {
+            countFavourite(favourites.remove(meme), -1);
+        }
+    }
+
+    /* favouriteChanged
+     *
+     * purpose: Update the favourite counts after a meme was favourited or unfavourited.
+     *          Calling this when nothing changed does nothing.
+     */
+    public synchronized void favouriteChanged(Meme meme) {
+        if (meme.isFavourite() && !favourites.containsKey(meme)) {
+            int[] ids = getTagIds(meme);
+
+            favourites.put(meme, ids);
+            countFavourite(ids, 1);
+        } else if (!meme.isFavourite() && favourites.containsKey(meme)) {
+            countFavourite(favourites.remove(meme), -1);
+        }
+    }
+
+    /* tagDeleted
+     *
+     * purpose: Forget a tag that was deleted. Its row and column of the counts are
+     *          cleared, which takes it out of every score, and its id is retired.
+     */
+    public synchronized void tagDeleted(Tag tag) {
+        Integer id = tagIds.remove(tag.getName());
+
+        if (id != null) {
+            for (int other = 0; other < tagCount; other++) {
+                coOccurrences[id * capacity + other] = 0;
+                coOccurrences[other * capacity + id] = 0;
+            }
+            favouriteCounts[id] = 0;
+            profileStale = true;
+        }
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* refreshProfile
+     *
+     * purpose: Recompute the tag profile if the counts changed since it was last used.
+     *          Tags are compared by cosine similarity, co(a, b) / sqrt(count(a) * count(b)),
+     *          and each tag's profile is the similarity-weighted sum of the favourite
+     *          counts. Done as one dot product per tag over contiguous rows of the matrix.
+     */
+    private void refreshProfile() {
+        if (profileStale) {
+            int tags = tagCount;
+            float[] inverseRoots = new float[tags];
+            float[] weightedFavourites = new float[tags];
+
+            for (int a = 0; a < tags; a++) {
+                float count = coOccurrences[a * capacity + a];
+                inverseRoots[a] = count > 0 ? (float) (1 / Math.sqrt(count)) : 0;
+                weightedFavourites[a] = favouriteCounts[a] * inverseRoots[a];
+            }
+
+            for (int a = 0; a < tags; a++) {
+                int row = a * capacity;
+                float sum = 0;
+
+                for (int b = 0; b < tags; b++) {
+                    sum += weightedFavourites[b] * coOccurrences[row + b];
+                }
+                profile[a] = sum * inverseRoots[a];
+            }
+
+            profileStale = false;
+        }
+    }
+
+    /* sumProfile
+     *
+     * purpose: Add up the profile over a meme's tags. The tags are looked up by name in
+     *          the small tag id map rather than going through the per-meme map, which
+     *          keeps scoring a big feed from missing the cache on every meme.
+     */
+    private float sumProfile(List<Tag> tags) {
+        float sum = 0;
+
+        for (Tag tag : tags) {
+            Integer id = tagIds.get(tag.getName());
+            if (id != null) {
+                sum += profile[id];
+            }
+        }
+
+        return sum;
+    }
+
+    private void countPairs(int[] ids, int delta) {
+        for (int a : ids) {
+            for (int b : ids) {
+                coOccurrences[a * capacity + b] += delta;
+            }
+        }
+        profileStale = true;
+    }
+
+    private void countFavourite(int[] ids, int delta) {
+        for (int id : ids) {
+            favouriteCounts[id] += delta;
+        }
+        profileStale = true;
+    }
+
+    /* getTagIds
+     *
+     * purpose: Return the tag ids of a meme. Tags that are not tracked are left out.
+     */
+    private int[] getTagIds(Meme meme) {
+        return lookupTagIds(meme.getTags(), false);
+    }
+
+    private int[] assignTagIds(List<Tag> tags) {
+        return lookupTagIds(tags, true);
+    }
+
+    /* lookupTagIds
+     *
+     * purpose: Turn tags into distinct tag ids, giving new tags the next id if assign is
+     *          set and there is still room for them.
+     */
+    private int[] lookupTagIds(List<Tag> tags, boolean assign) {
+        int[] ids = new int[tags.size()];
+        int found = 0;
+
+        for (Tag tag : tags) {
+            Integer id = tagIds.get(tag.getName());
+
+            if (id == null && assign && tagCount < MAX_TAGS) {
+                id = tagCount++;
+                tagIds.put(tag.getName(), id);
+                ensureCapacity(id + 1);
+            }
+            if (id != null && !contains(ids, found, id)) {
+                ids[found++] = id;
+            }
+        }
+
+        if (found == 0) {
+            return NO_TAGS;
+        }
+        if (found < ids.length) {
+            int[] trimmed = new int[found];
+            System.arraycopy(ids, 0, trimmed, 0, found);
+            ids = trimmed;
+        }
+
+        return ids;
+    }
+
+    private static boolean contains(int[] ids, int length, int id) {
+        for (int i = 0; i < length; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /* ensureCapacity
+     *
+     * purpose: Grow the arrays, doubling up to MAX_TAGS, so they can hold the given number of tags.
+     */
+    private void ensureCapacity(int tags) {
+        if (tags > capacity) {
+            int newCapacity = Math.min(Math.max(capacity * 2, tags), MAX_TAGS);
+            float[] newCoOccurrences = new float[newCapacity * newCapacity];
+
+            for (int a = 0; a < capacity; a++) {
+                System.arraycopy(coOccurrences, a * capacity, newCoOccurrences, a * newCapacity, capacity);
+            }
+
+            coOccurrences = newCoOccurrences;
+            favouriteCounts = Arrays.copyOf(favouriteCounts, newCapacity);
+            profile = Arrays.copyOf(profile, newCapacity);
+            capacity = newCapacity;
+            profileStale = true;
+        }
+    }
+}
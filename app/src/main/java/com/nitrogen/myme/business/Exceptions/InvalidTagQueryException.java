@@ -0,0 +1,4 @@
+package com.nitrogen.myme.business.Exceptions;
+
+public class InvalidTagQueryException extends RuntimeException {
+}
@@ -0,0 +1,540 @@
+package com.nitrogen.myme.business;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.ImageStore;
+import com.nitrogen.myme.persistence.MemesPersistence;
+import com.nitrogen.myme.persistence.TagsPersistence;
+import com.nitrogen.myme.persistence.ThumbnailGenerator;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/* ImportMemes
+ *
+ * purpose: Imports a whole library of memes from a directory or a zip file holding the
+ *          images and a manifest. Every line of the manifest describes one meme, with
+ *          tab separated columns:
+ *
+ *              image file    name    tags (comma separated)    favourite (true/false)
+ *
+ *          The import runs as a pipeline of three stages joined by bounded queues, so
+ *          reading, image processing and database writes overlap while only a few
+ *          images are held in memory at a time:
+ *            - a reader thread parses the manifest and reads each image
+ *            - a worker thread hands each image to the ImageProcessor, and to the
+ *              ThumbnailGenerator if there is one
+ *            - the calling thread validates each meme with MemeValidator and saves
+ *              them in batches through UpdateMemes.insertMemes
+ */
+public class ImportMemes {
+    public static final String MANIFEST = "manifest.tsv";
+    public static final int BATCH_SIZE = 500;
+    public static final int QUEUE_CAPACITY = 32;
+
+    /* Source
+     *
+     * purpose: Where the manifest and the images are read from.
+     */
+    public interface Source extends Closeable {
+        InputStream openManifest() throws IOException;
+
+        InputStream openImage(String fileName) throws IOException;
+    }
+
+    /* ImageProcessor
+     *
+     * purpose: Stores an imported image and returns the path the meme should refer to.
+     *          Images of memes that end up being rejected are discarded again.
+     */
+    public interface ImageProcessor {
+        String process(String fileName, byte[] image) throws IOException;
+
+        void discard(String imagePath);
+    }
+
+    /* Report
+     *
+     * purpose: What happened during an import.
+     */
+    public static class Report {
+        private int imported = 0;
+        private int rejected = 0;
+        private int failed = 0;
+        private long elapsedMillis = 0;
+        private long peakMemoryBytes = 0;
+        private final List<String> problems = new ArrayList<>();
+
+        public int getImported() { return imported; }
+
+        // memes that were not valid, e.g. a duplicate name or an unknown tag
+        public int getRejected() { return rejected; }
+
+        // memes that could not be read, processed or saved
+        public int getFailed() { return failed; }
+
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public long getPeakMemoryBytes() { return peakMemoryBytes; }
+
+        public List<String> getProblems() { return problems; }
+
+        public double getMemesPerSecond() {
+            return elapsedMillis > 0 ? imported * 1000.0 / elapsedMillis : imported;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("imported %d memes (%d rejected, %d failed) in %d ms, "
+                            + "%.0f memes/s, peak memory %.1f MB",
+                    imported, rejected, failed, elapsedMillis, getMemesPerSecond(),
+                    peakMemoryBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    private final UpdateMemes updateMemes;
+    private final MemeValidator memeValidator;
+
+    //**************************************************
+    // Constructors
+    //**************************************************
+
+    public ImportMemes() {
+        this.updateMemes = new UpdateMemes();
+        this.memeValidator = new MemeValidator();
+    }
+
+    // this is needed to swap out real database for stub
+    public ImportMemes(MemesPersistence memesPersistenceGiven, TagsPersistence tagsPersistenceGiven) {
+        this.updateMemes = new UpdateMemes(memesPersistenceGiven);
+        this.memeValidator = new MemeValidator(memesPersistenceGiven, tagsPersistenceGiven);
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* importMemes
+     *
+     * purpose: Import every meme listed in the source's manifest. The source is closed
+     *          when the import is done. Problems with single memes are counted in the
+     *          report rather than stopping the import.
+     */
+    public Report importMemes(Source source, ImageProcessor processor)
+            throws IOException, InterruptedException {
+        return importMemes(source, processor, null);
+    }
+
+    /* importMemes
+     *
+     * purpose: Import every meme listed in the source's manifest, giving each a thumbnail
+     *          made from its image. A meme whose thumbnail can't be made is still
+     *          imported, and shown from its image.
+     */
+    public Report importMemes(final Source source, final ImageProcessor processor, final ThumbnailGenerator thumbnails)
+            throws IOException, InterruptedException {
+        final BlockingQueue<Row> read = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final BlockingQueue<Row> processed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final ExecutorService stages = Executors.newFixedThreadPool(2);
+        final Report report = new Report();
+        final long start = System.currentTimeMillis();
+
+        try {
+            final InputStream manifest = source.openManifest();
+
+            stages.execute(new Runnable() {
+                @Override
+                public void run() {
+                    readRows(source, manifest, read);
+                }
+            });
+            stages.execute(new Runnable() {
+                @Override
+                public void run() {
+                    processRows(processor, thumbnails, read, processed);
+                }
+            });
+
+            writeRows(processor, processed, report);
+        }
+        finally {
+            // stops the other stages if the writer gave up early
+            stages.shutdownNow();
+            source.close();
+        }
+
+        report.elapsedMillis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /* fromDirectory
+     *
+     * purpose: A source reading the manifest and images from a directory.
+     */
+    public static Source fromDirectory(final File directory) {
+        return new Source() {
+            @Override
+            public InputStream openManifest() throws IOException {
+                return new FileInputStream(new File(directory, MANIFEST));
+            }
+
+            @Override
+            public InputStream openImage(String fileName) throws IOException {
+                return new FileInputStream(new File(directory, fileName));
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    /* fromZip
+     *
+     * purpose: A source reading the manifest and images from a zip file. Entries are
+     *          streamed out of the archive one at a time, it is never unpacked to disk.
+     */
+    public static Source fromZip(File zip) throws IOException {
+        final ZipFile zipFile = new ZipFile(zip);
+
+        return new Source() {
+            @Override
+            public InputStream openManifest() throws IOException {
+                return openImage(MANIFEST);
+            }
+
+            @Override
+            public InputStream openImage(String fileName) throws IOException {
+                ZipEntry entry = zipFile.getEntry(fileName);
+
+                if (entry == null) {
+                    throw new IOException("no entry " + fileName);
+                }
+
+                return zipFile.getInputStream(entry);
+            }
+
+            @Override
+            public void close() throws IOException {
+                zipFile.close();
+            }
+        };
+    }
+
+    /* toDirectory
+     *
+     * purpose: An image processor that stores the images in a directory as they are.
+     *          An image never replaces a file already there, from an earlier import or
+     *          from another folder of the library, it is given a name of its own
+     *          instead. Only images written by this processor are ever discarded.
+     */
+    public static ImageProcessor toDirectory(final File directory) {
+        final Set<String> written = Collections.synchronizedSet(new HashSet<String>());
+
+        return new ImageProcessor() {
+            @Override
+            public String process(String fileName, byte[] image) throws IOException {
+                File target = newFile(directory, new File(fileName).getName());
+
+                written.add(target.getAbsolutePath());
+                try (OutputStream out = new FileOutputStream(target)) {
+                    out.write(image);
+                }
+
+                return target.getAbsolutePath();
+            }
+
+            @Override
+            public void discard(String imagePath) {
+                if (written.remove(imagePath)) {
+                    new File(imagePath).delete();
+                }
+            }
+        };
+    }
+
+    /* toImageStore
+     *
+     * purpose: An image processor that files the images in the ImageStore, under the
+     *          checksum of their bytes, next to the pictures of the memes made in the
+     *          app. Importing the same image twice keeps one file, and a discarded image
+     *          is only released, it stays as long as some meme uses it.
+     */
+    public static ImageProcessor toImageStore(final ImageStore store, final MemesPersistence memes) {
+        return new ImageProcessor() {
+            @Override
+            public String process(String fileName, byte[] image) throws IOException {
+                return store.put(image, extensionOf(fileName)).getPath();
+            }
+
+            @Override
+            public void discard(String imagePath) {
+                store.release(imagePath, memes);
+            }
+        };
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* Row
+     *
+     * purpose: One manifest line on its way through the pipeline. A row that went
+     *          wrong keeps going with a problem set, so the writer can count it.
+     */
+    private static class Row {
+        private static final Row END = new Row(null, null);
+
+        private final String fileName;
+        private final Meme meme;
+        private byte[] image = null;
+        private String problem = null;
+
+        private Row(String fileName, Meme meme) {
+            this.fileName = fileName;
+            this.meme = meme;
+        }
+    }
+
+    /* readRows
+     *
+     * purpose: The first stage. Parse the manifest and read each image into memory.
+     */
+    private static void readRows(Source source, InputStream manifest, BlockingQueue<Row> read) {
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(manifest, "UTF-8"))) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().length() > 0) {
+                    read.put(readRow(source, line, lineNumber));
+                }
+            }
+        }
+        catch (IOException e) {
+            Row row = new Row(MANIFEST, null);
+            row.problem = "could not read the manifest: " + e.getMessage();
+            putQuietly(read, row);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            putQuietly(read, Row.END);
+        }
+    }
+
+    private static Row readRow(Source source, String line, int lineNumber) {
+        String[] columns = line.split("\t", -1);
+        Row row;
+
+        if (columns.length < 3) {
+            row = new Row(null, null);
+            row.problem = "line " + lineNumber + " has too few columns";
+        } else {
+            Meme meme = new Meme(columns[1].trim());
+            List<Tag> tags = new ArrayList<>();
+
+            for (String tag : columns[2].split(",")) {
+                if (tag.trim().length() > 0) {
+                    tags.add(new Tag(tag.trim()));
+                }
+            }
+            meme.setTags(tags);
+            meme.setFavourite(columns.length > 3 && Boolean.parseBoolean(columns[3].trim()));
+
+            row = new Row(columns[0].trim(), meme);
+            try (InputStream image = source.openImage(row.fileName)) {
+                row.image = readFully(image);
+            }
+            catch (IOException e) {
+                row.problem = "could not read " + row.fileName + ": " + e.getMessage();
+            }
+        }
+
+        return row;
+    }
+
+    /* processRows
+     *
+     * purpose: The second stage. Hand each image to the processor and make its thumbnail.
+     */
+    private static void processRows(ImageProcessor processor, ThumbnailGenerator thumbnails,
+                                    BlockingQueue<Row> read, BlockingQueue<Row> processed) {
+        try {
+            Row row = read.take();
+
+            while (row != Row.END) {
+                if (row.problem == null) {
+                    try {
+                        row.meme.setImagePath(processor.process(row.fileName, row.image));
+                    }
+                    catch (IOException | RuntimeException e) {
+                        row.problem = "could not process " + row.fileName + ": " + e.getMessage();
+                    }
+                }
+                if (row.problem == null && thumbnails != null) {
+                    try {
+                        row.meme.setThumbnailPath(thumbnails.thumbnailFor(row.image));
+                    }
+                    catch (IOException | RuntimeException e) {
+                        // not worth rejecting the meme over
+                        row.meme.setThumbnailPath(null);
+                    }
+                }
+                // the image isn't needed any more, don't hold on to it while queued
+                row.image = null;
+                processed.put(row);
+                row = read.take();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            putQuietly(processed, Row.END);
+        }
+    }
+
+    /* writeRows
+     *
+     * purpose: The last stage. Validate each meme and save them in batches.
+     */
+    private void writeRows(ImageProcessor processor, BlockingQueue<Row> processed, Report report)
+            throws InterruptedException {
+        List<Meme> batch = new ArrayList<>();
+        Set<String> batchNames = new HashSet<>();
+        Row row = processed.take();
+
+        while (row != Row.END) {
+            if (row.problem != null) {
+                report.failed++;
+                report.problems.add(row.problem);
+            } else if (!isValid(row.meme, batchNames, report)) {
+                processor.discard(row.meme.getImagePath());
+            } else {
+                batch.add(row.meme);
+                batchNames.add(row.meme.getName());
+                if (batch.size() >= BATCH_SIZE) {
+                    saveBatch(processor, batch, report);
+                    batchNames.clear();
+                }
+            }
+
+            report.peakMemoryBytes = Math.max(report.peakMemoryBytes, usedMemory());
+            row = processed.take();
+        }
+
+        saveBatch(processor, batch, report);
+    }
+
+    private boolean isValid(Meme meme, Set<String> batchNames, Report report) {
+        boolean valid = false;
+
+        try {
+            memeValidator.validateName(meme);
+            memeValidator.validateTags(meme);
+            valid = !batchNames.contains(meme.getName());
+            if (!valid) {
+                report.problems.add(meme.getName() + ": listed more than once");
+            }
+        }
+        catch (RuntimeException e) {
+            report.problems.add(meme.getName() + ": " + e.getClass().getSimpleName());
+        }
+
+        if (!valid) {
+            report.rejected++;
+        }
+
+        return valid;
+    }
+
+    private void saveBatch(ImageProcessor processor, List<Meme> batch, Report report) {
+        if (!batch.isEmpty()) {
+            List<Meme> inserted = updateMemes.insertMemes(batch);
+
+            report.imported += inserted.size();
+            if (inserted.size() < batch.size()) {
+                for (Meme meme : batch) {
+                    if (!inserted.contains(meme)) {
+                        report.failed++;
+                        report.problems.add(meme.getName() + ": could not be saved");
+                        processor.discard(meme.getImagePath());
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /* newFile
+     *
+     * purpose: Claim a file in the directory that doesn't exist yet, named after the
+     *          given name, with a number added if that is taken.
+     */
+    private static File newFile(File directory, String name) throws IOException {
+        String extension = extensionOf(name);
+        String base = name.substring(0, name.length() - extension.length());
+        File file = new File(directory, name);
+
+        for (int i = 1; !file.createNewFile(); i++) {
+            file = new File(directory, base + "-" + i + extension);
+        }
+
+        return file;
+    }
+
+    private static String extensionOf(String fileName) {
+        String name = new File(fileName).getName();
+        int dot = name.lastIndexOf('.');
+
+        return dot > 0 ? name.substring(dot) : "";
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+
+        while ((length = in.read(buffer)) > 0) {
+            out.write(buffer, 0, length);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void putQuietly(BlockingQueue<Row> queue, Row row) {
+        try {
+            queue.put(row);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
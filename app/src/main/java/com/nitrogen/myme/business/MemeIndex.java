@@ -0,0 +1,621 @@
+package com.nitrogen.myme.business;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/* MemeIndex
+ *
+ * purpose: An inverted index from lower case name tokens and tag names to the memes
+ *          that contain them. There is one index per MemesPersistence; it is built the
+ *          first time it is needed and kept up to date by UpdateMemes afterwards.
+ *          Changes made any other way are noticed through MemesPersistence.getChanges,
+ *          and the index is rebuilt.
+ *
+ *          The index doesn't hold on to the memes, which may be far too many to keep on
+ *          the heap (see PagedMemesPersistenceHSQLDB). Every meme is a document number,
+ *          its position in MemesPersistence.getMemes(): memes are indexed in the order
+ *          scanMemes goes through them, and new ones are added at the end. The postings
+ *          and tag bitmaps hold document numbers, and a hit is only looked up in
+ *          getMemes() once it is returned. A removed meme leaves a hole in the numbers,
+ *          which is squeezed out the next time a meme is looked up by number.
+ *
+ *          To find the document of a given meme, each document keeps the hash of its
+ *          name; a meme's document is the one with its name's hash among the postings of
+ *          its first name token.
+ */
+public class MemeIndex {
+    private static final Map<MemesPersistence, MemeIndex> indexes = new WeakHashMap<>();
+    // what find returns for a removed meme whose name can't be told apart from another
+    private static final int AMBIGUOUS = -2;
+
+    private final MemesPersistence memesPersistence;
+    private final Map<String, Postings> nameTokens = new HashMap<>();
+    private TokenTrie keys = new TokenTrie();
+    // MemesPersistence.getChanges as of the last time the index was up to date
+    private int changes;
+
+    // the documents numbered so far, which of them are still there, and their names' hashes
+    private int documents = 0;
+    private final BitSet liveDocuments = new BitSet();
+    private int[] nameHashes = new int[16];
+
+    // every tag gets a dense tag id, so that the memes having a tag can be stored as a
+    // bitmap indexed by document number
+    private final Map<String, Integer> tagIds = new HashMap<>();
+    private final List<String> tagNames = new ArrayList<>();
+    private final List<BitSet> tagBitmaps = new ArrayList<>();
+
+    /* Postings
+     *
+     * purpose: The documents with a name token, in increasing order. Documents are
+     *          numbered as they are added, so a new one always goes at the end.
+     */
+    private static class Postings {
+        private int[] documents = new int[2];
+        private int size = 0;
+
+        private void add(int document) {
+            if (size == 0 || documents[size - 1] != document) {
+                if (size == documents.length) {
+                    documents = Arrays.copyOf(documents, size * 2);
+                }
+                documents[size++] = document;
+            }
+        }
+
+        private void remove(int document) {
+            int at = Arrays.binarySearch(documents, 0, size, document);
+
+            if (at >= 0) {
+                System.arraycopy(documents, at + 1, documents, at, size - at - 1);
+                size--;
+            }
+        }
+
+        private boolean contains(int document) {
+            return Arrays.binarySearch(documents, 0, size, document) >= 0;
+        }
+
+        // number the documents again after a compaction, dropping the removed ones
+        private void renumber(int[] renumbered) {
+            int kept = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (renumbered[documents[i]] >= 0) {
+                    documents[kept++] = renumbered[documents[i]];
+                }
+            }
+            size = kept;
+        }
+    }
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    private MemeIndex(MemesPersistence memesPersistence) {
+        this.memesPersistence = memesPersistence;
+        rebuild();
+    }
+
+    //**************************************************
+    // Factory Methods
+    //**************************************************
+
+    /* getInstance
+     *
+     * purpose: Return the index for the given persistence, building it if needed.
+     *          The index is rebuilt if the persistence was changed behind its back.
+     */
+    public static synchronized MemeIndex getInstance(MemesPersistence memesPersistence) {
+        MemeIndex index = indexes.get(memesPersistence);
+
+        if (index == null) {
+            index = new MemeIndex(memesPersistence);
+            indexes.put(memesPersistence, index);
+        } else if (index.changes != memesPersistence.getChanges()) {
+            index.rebuild();
+        }
+
+        return index;
+    }
+
+    /* getExisting
+     *
+     * purpose: Return the index for the given persistence, or null if nobody has
+     *          searched it yet. Used to keep an index current without building one.
+     */
+    static synchronized MemeIndex getExisting(MemesPersistence memesPersistence) {
+        return indexes.get(memesPersistence);
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* add
+     *
+     * purpose: Index a meme under its name tokens and tags. Memes that were just
+     *          inserted are added in the order they were inserted, as they come after
+     *          every other meme in the persistence.
+     *          Adding a meme that is already indexed does nothing.
+     */
+    public synchronized void add(Meme meme) {
+        if (find(meme, true) < 0) {
+            index(meme);
+        }
+    }
+
+    /* remove
+     *
+     * purpose: Remove a meme from the index. Its document is found by name, so it
+     *          doesn't matter if the given copy has different tags. If it can't be told
+     *          apart from another document, the index is rebuilt the next time it is
+     *          asked for.
+     */
+    public synchronized void remove(Meme meme) {
+        int document = find(meme, false);
+
+        if (document == AMBIGUOUS) {
+            changes = -1;
+        } else if (document >= 0) {
+            for (String token : tokenize(meme.getName())) {
+                unpost(token, document);
+            }
+            for (int tagId = 0; tagId < tagBitmaps.size(); tagId++) {
+                BitSet bitmap = tagBitmaps.get(tagId);
+                if (bitmap.get(document)) {
+                    bitmap.clear(document);
+                    if (bitmap.isEmpty()) {
+                        keys.remove(tagNames.get(tagId).toLowerCase());
+                    }
+                }
+            }
+            liveDocuments.clear(document);
+        }
+    }
+
+    /* tagDeleted
+     *
+     * purpose: Forget a tag that was deleted. The memes are looked up in the persistence,
+     *          which has taken it off them already.
+     */
+    public synchronized void tagDeleted(Tag tag) {
+        String key = tag.getName().toLowerCase();
+        Integer tagId = tagIds.get(key);
+
+        if (tagId != null && !tagBitmaps.get(tagId).isEmpty()) {
+            keys.remove(key);
+            tagBitmaps.set(tagId, new BitSet());
+        }
+    }
+
+    /* caughtUp
+     *
+     * purpose: The caller has passed on every change made to the memes between the
+     *          persistence's change counts before and after. If the index was up to
+     *          date before them it still is; if not, it is rebuilt the next time it
+     *          is asked for.
+     */
+    synchronized void caughtUp(int before, int after) {
+        if (changes == before) {
+            changes = after;
+        }
+    }
+
+    /* getMemesByNameTokens
+     *
+     * purpose: Return the memes that have at least one of the keys as a word in their name.
+     */
+    public synchronized List<Meme> getMemesByNameTokens(String[] keys) {
+        List<Meme> memes = memesPersistence.getMemes();
+        List<Meme> result = new ArrayList<>();
+        BitSet seen = new BitSet();
+
+        compact();
+        for (String key : keys) {
+            Postings postings = nameTokens.get(key.toLowerCase());
+            if (postings != null) {
+                for (int i = 0; i < postings.size; i++) {
+                    addOnce(memes, postings.documents[i], seen, result);
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /* getMemesByTags
+     *
+     * purpose: Return the memes that have at least one of the given tags.
+     */
+    public synchronized List<Meme> getMemesByTags(String[] tags) {
+        List<Meme> memes = memesPersistence.getMemes();
+        List<Meme> result = new ArrayList<>();
+        BitSet seen = new BitSet();
+
+        compact();
+        for (String tag : tags) {
+            BitSet bitmap = existingTagBitmap(tag);
+            for (int document = bitmap.nextSetBit(0); document >= 0; document = bitmap.nextSetBit(document + 1)) {
+                addOnce(memes, document, seen, result);
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /* getMemesByTagQuery
+     *
+     * purpose: Return the memes matching a boolean tag query. The query is evaluated
+     *          with word-parallel operations on the tag bitmaps, then the set bits
+     *          are turned back into memes.
+     */
+    public synchronized List<Meme> getMemesByTagQuery(TagQuery query) {
+        List<Meme> memes = memesPersistence.getMemes();
+        List<Meme> result = new ArrayList<>();
+
+        compact();
+        BitSet matches = query.evaluate(new TagQuery.TagBitmaps() {
+            @Override
+            public BitSet memesWithTag(String tag) {
+                return (BitSet) existingTagBitmap(tag).clone();
+            }
+
+            @Override
+            public BitSet allMemes() {
+                return (BitSet) liveDocuments.clone();
+            }
+        });
+
+        for (int document = matches.nextSetBit(0); document >= 0; document = matches.nextSetBit(document + 1)) {
+            addOnce(memes, document, null, result);
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /* collectMemesByKey
+     *
+     * purpose: Add the memes with the given key as a word in their name or as a tag
+     *          to the result, stopping once the result holds limit memes. The memes are
+     *          looked up in memes, as returned by the persistence's getMemes().
+     */
+    public synchronized void collectMemesByKey(String key, List<Meme> memes, Set<Meme> result, int limit) {
+        compact();
+        Postings postings = nameTokens.get(key.toLowerCase());
+        BitSet bitmap = existingTagBitmap(key);
+
+        for (int i = 0; postings != null && i < postings.size && result.size() < limit; i++) {
+            addMeme(memes, postings.documents[i], result);
+        }
+        for (int document = bitmap.nextSetBit(0); document >= 0 && result.size() < limit;
+             document = bitmap.nextSetBit(document + 1)) {
+            addMeme(memes, document, result);
+        }
+    }
+
+    /* countHits
+     *
+     * purpose: For every document with the key as a word in its name or as a tag, add
+     *          the matching weight to its running score. Only matching documents are
+     *          visited. The documents stay the same until the index is changed, so
+     *          callers that go on to look them up (getAffinity, getMeme) hold the
+     *          index's lock throughout.
+     */
+    public synchronized void countHits(String key, Map<Integer, int[]> scores, int nameWeight, int tagWeight) {
+        compact();
+        Postings postings = nameTokens.get(key.toLowerCase());
+        BitSet bitmap = existingTagBitmap(key);
+
+        for (int i = 0; postings != null && i < postings.size; i++) {
+            countHit(postings.documents[i], scores, nameWeight);
+        }
+        for (int document = bitmap.nextSetBit(0); document >= 0; document = bitmap.nextSetBit(document + 1)) {
+            countHit(document, scores, tagWeight);
+        }
+    }
+
+    /* getAffinity
+     *
+     * purpose: The sum of the weights of a document's tags, looked up in the tag bitmaps
+     *          so the meme doesn't have to be read.
+     */
+    public synchronized int getAffinity(int document, Map<String, Integer> tagWeights) {
+        int sum = 0;
+
+        for (int tagId = 0; tagId < tagBitmaps.size(); tagId++) {
+            Integer weight = tagWeights.get(tagNames.get(tagId));
+            if (weight != null && tagBitmaps.get(tagId).get(document)) {
+                sum += weight;
+            }
+        }
+
+        return sum;
+    }
+
+    /* getMeme
+     *
+     * purpose: Look a document up in the persistence's memes, as returned by getMemes().
+     *          Returns null if the memes have changed and the index hasn't caught up yet.
+     */
+    public synchronized Meme getMeme(List<Meme> memes, int document) {
+        compact();
+        return memeAt(memes, document);
+    }
+
+    /* getKeysWithPrefix
+     *
+     * purpose: Return up to maxKeys indexed keys starting with the prefix, shortest first.
+     */
+    public synchronized List<String> getKeysWithPrefix(String prefix, int maxKeys) {
+        return keys.keysWithPrefix(prefix.toLowerCase(), maxKeys);
+    }
+
+    /* getKeysWithin
+     *
+     * purpose: Return up to maxKeys indexed keys within maxEdits typos of the word, closest first.
+     */
+    public synchronized List<String> getKeysWithin(String word, int maxEdits, int maxKeys) {
+        return keys.keysWithin(word.toLowerCase(), maxEdits, maxKeys);
+    }
+
+    public synchronized boolean contains(Meme meme) { return find(meme, true) >= 0; }
+
+    public synchronized int size() { return liveDocuments.cardinality(); }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* rebuild
+     *
+     * purpose: Throw away the index and build it again from the persistence.
+     */
+    private synchronized void rebuild() {
+        changes = memesPersistence.getChanges();
+        keys = new TokenTrie();
+        nameTokens.clear();
+        liveDocuments.clear();
+        documents = 0;
+        for (int tagId = 0; tagId < tagBitmaps.size(); tagId++) {
+            tagBitmaps.set(tagId, new BitSet());
+        }
+
+        for (Meme meme : memesPersistence.scanMemes()) {
+            index(meme);
+        }
+    }
+
+    /* index
+     *
+     * purpose: Give a meme the next document number and post it under its name tokens
+     *          and tags.
+     */
+    private void index(Meme meme) {
+        int document = documents++;
+
+        if (document == nameHashes.length) {
+            nameHashes = Arrays.copyOf(nameHashes, document * 2);
+        }
+        nameHashes[document] = meme.getName().hashCode();
+        liveDocuments.set(document);
+
+        for (String token : tokenize(meme.getName())) {
+            post(token, document);
+        }
+        for (Tag tag : meme.getTags()) {
+            BitSet bitmap = tagBitmap(tag.getName());
+            if (bitmap.isEmpty()) {
+                keys.add(tag.getName().toLowerCase());
+            }
+            bitmap.set(document);
+        }
+    }
+
+    /* find
+     *
+     * purpose: Return the document of a meme: the one holding its name's hash, among
+     *          the postings of its first name token. If the meme is still in the
+     *          persistence (verify), a candidate is only taken once the meme at its
+     *          position turns out to be the same meme. Otherwise a name that can't be
+     *          told apart from another one is AMBIGUOUS.
+     *          Returns -1 if the meme isn't indexed.
+     */
+    private int find(Meme meme, boolean verify) {
+        List<String> tokens = tokenize(meme.getName());
+        int hash = meme.getName().hashCode();
+        int found = -1;
+        List<Meme> memes = null;
+
+        if (verify) {
+            compact();
+            memes = memesPersistence.getMemes();
+        }
+
+        Postings postings = tokens.isEmpty() ? null : nameTokens.get(tokens.get(0));
+        int candidates = postings == null ? 0 : postings.size;
+        for (int i = 0; i < candidates && found != AMBIGUOUS; i++) {
+            int document = postings.documents[i];
+            if (nameHashes[document] == hash && hasTokens(document, tokens)) {
+                if (verify) {
+                    if (meme.equals(memeAt(memes, document))) {
+                        found = document;
+                    }
+                } else {
+                    found = found < 0 ? document : AMBIGUOUS;
+                }
+            }
+        }
+
+        return found;
+    }
+
+    private boolean hasTokens(int document, List<String> tokens) {
+        boolean hasAll = true;
+
+        for (int i = 1; i < tokens.size() && hasAll; i++) {
+            Postings postings = nameTokens.get(tokens.get(i));
+            hasAll = postings != null && postings.contains(document);
+        }
+
+        return hasAll;
+    }
+
+    /* memeAt
+     *
+     * purpose: The meme at a document's position in the memes, or null if it isn't the
+     *          meme that was indexed there because the memes changed in the meantime.
+     */
+    private Meme memeAt(List<Meme> memes, int document) {
+        Meme meme = document < memes.size() ? memes.get(document) : null;
+
+        return meme != null && meme.getName().hashCode() == nameHashes[document] ? meme : null;
+    }
+
+    private void addOnce(List<Meme> memes, int document, BitSet seen, List<Meme> result) {
+        if (seen == null || !seen.get(document)) {
+            Meme meme = memeAt(memes, document);
+            if (meme != null) {
+                result.add(meme);
+            }
+            if (seen != null) {
+                seen.set(document);
+            }
+        }
+    }
+
+    private void addMeme(List<Meme> memes, int document, Set<Meme> result) {
+        Meme meme = memeAt(memes, document);
+
+        if (meme != null) {
+            result.add(meme);
+        }
+    }
+
+    /* compact
+     *
+     * purpose: Number the indexed memes from 0 again, in the same order, so the numbers
+     *          are the memes' positions again after some were removed. Done before a
+     *          document is looked up by its number.
+     */
+    private void compact() {
+        int live = liveDocuments.cardinality();
+
+        if (live < documents) {
+            int[] renumbered = new int[documents];
+            int next = 0;
+
+            for (int document = 0; document < documents; document++) {
+                if (liveDocuments.get(document)) {
+                    nameHashes[next] = nameHashes[document];
+                    renumbered[document] = next++;
+                } else {
+                    renumbered[document] = -1;
+                }
+            }
+
+            for (Postings postings : nameTokens.values()) {
+                postings.renumber(renumbered);
+            }
+            for (int tagId = 0; tagId < tagBitmaps.size(); tagId++) {
+                BitSet bitmap = tagBitmaps.get(tagId);
+                BitSet packed = new BitSet(live);
+                for (int document = bitmap.nextSetBit(0); document >= 0; document = bitmap.nextSetBit(document + 1)) {
+                    packed.set(renumbered[document]);
+                }
+                tagBitmaps.set(tagId, packed);
+            }
+
+            liveDocuments.clear();
+            liveDocuments.set(0, live);
+            documents = live;
+        }
+    }
+
+    private static void countHit(int document, Map<Integer, int[]> scores, int weight) {
+        int[] score = scores.get(document);
+
+        if (score == null) {
+            score = new int[1];
+            scores.put(document, score);
+        }
+        score[0] += weight;
+    }
+
+    /* tokenize
+     *
+     * purpose: Split a meme name into the lower case words it is indexed under.
+     */
+    static List<String> tokenize(String name) {
+        List<String> tokens = new ArrayList<>();
+
+        for (String token : name.trim().toLowerCase().split(" ")) {
+            if (token.length() > 0) {
+                tokens.add(token);
+            }
+        }
+
+        return tokens;
+    }
+
+    private void post(String key, int document) {
+        Postings postings = nameTokens.get(key);
+
+        if (postings == null) {
+            postings = new Postings();
+            nameTokens.put(key, postings);
+            keys.add(key);
+        }
+        postings.add(document);
+    }
+
+    private void unpost(String key, int document) {
+        Postings postings = nameTokens.get(key);
+
+        if (postings != null) {
+            postings.remove(document);
+            if (postings.size == 0) {
+                nameTokens.remove(key);
+                keys.remove(key);
+            }
+        }
+    }
+
+    /* tagBitmap
+     *
+     * purpose: Return the bitmap of documents with a tag, giving the tag the next id if
+     *          it is new.
+     */
+    private BitSet tagBitmap(String tag) {
+        String key = tag.toLowerCase();
+        Integer tagId = tagIds.get(key);
+
+        if (tagId == null) {
+            tagId = tagBitmaps.size();
+            tagIds.put(key, tagId);
+            tagNames.add(tag);
+            tagBitmaps.add(new BitSet());
+        }
+
+        return tagBitmaps.get(tagId);
+    }
+
+    // the bitmap of a tag, or an empty one for a tag no meme has had, without giving it an id
+    private BitSet existingTagBitmap(String tag) {
+        Integer tagId = tagIds.get(tag.toLowerCase());
+
+        return tagId == null ? new BitSet() : tagBitmaps.get(tagId);
+    }
+}
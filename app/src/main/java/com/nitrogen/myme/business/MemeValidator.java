@@ -13,7 +13,8 @@ import com.nitrogen.myme.objects.Tag;
 import com.nitrogen.myme.persistence.MemesPersistence;
 import com.nitrogen.myme.persistence.TagsPersistence;
 
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 public class MemeValidator {
     public final int MAX_NAME_LEN = 32;
@@ -24,6 +25,7 @@ public class MemeValidator {
         tagsPersistence = Services.getTagsPersistence();
         memesPersistence = Services.getMemesPersistence();
     }
+    // this is needed to swap out real database for stub
     public MemeValidator (MemesPersistence memesPersistenceGiven,
                           TagsPersistence tagsPersistenceGiven) {
         tagsPersistence = tagsPersistenceGiven;
@@ -50,15 +52,9 @@ public class MemeValidator {
     }
 
     private boolean originalMemeName (final String name) {
-        boolean isOriginal = true;
-        List<Meme> memeList = memesPersistence.getMemes();
-
-        for(int i = 0 ; i < memeList.size() && isOriginal ; i++) {
-            if(memeList.get(i).getName().equals( name ))
-                isOriginal = false;
-        }
-
-        return isOriginal;
+        // memes are equal when their names are, and the persistence's list
+        // looks memes up by name, so this doesn't depend on how many there are
+        return !memesPersistence.getMemes().contains(new Meme(name));
     }
 
     /* hasValidTags
@@ -81,49 +77,25 @@ public class MemeValidator {
     }
 
     private boolean containsDuplicateTags (Meme memeGiven) {
-        boolean hasDuplicate = false;
-        List<Tag> tagList = memeGiven.getTags();
-
-        // loops through memeGiven.getTags()
-        for(int indSlow = 0 ; indSlow < tagList.size() ; indSlow++) {
-            // for each tag, check if it exists later
-            for(int indFast = indSlow +1 ; indFast < tagList.size() ; indFast++) {
-                if(tagList.get(indSlow).equals(tagList.get(indFast))) {
-                    hasDuplicate = true;
-                    break;
-                }
-            }
+        Set<String> seen = new HashSet<>();
 
-            if(hasDuplicate)
-                break;
+        // a tag whose name was already seen is a duplicate
+        for(Tag tag : memeGiven.getTags()) {
+            if(!seen.add(tag.getName()))
+                return true;
         }
 
-        return hasDuplicate;
+        return false;
     }
 
     private boolean containsNonExistentTag(Meme memeGiven) {
-        boolean result = false;
-
-        // check if ANY tags within memeGiven is not in tagsPersistence
+        // tags are equal when their names are, and the persistence's list
+        // looks tags up by name
         for(Tag currMemeTag : memeGiven.getTags()) {
-            boolean contains = false;
-
-            // check if currMemeTag is not in tagsPersistence
-            for(Tag currPersTag : tagsPersistence.getTags()) {
-
-                // contains = true, if both tags have the same name
-                if(currMemeTag.toString().equals(currPersTag.toString())) {
-                    contains = true;
-                    break;
-                }
-            }
-
-            if(!contains) {
-                result = true;
-                break;
-            }
+            if(!tagsPersistence.getTags().contains(currMemeTag))
+                return true;
         }
 
-        return result;
+        return false;
     }
 }
@@ -0,0 +1,24 @@
+package com.nitrogen.myme.business;
+
+import com.nitrogen.myme.objects.Meme;
+
+/* Recommender
+ *
+ * purpose: Scores how likely the user is to like a meme, based on their favourites.
+ *          SortMemes ranks by these scores, higher first, so the way memes are
+ *          recommended can be swapped without touching the sorting.
+ */
+public interface Recommender {
+    /* score
+     *
+     * purpose: Return the score of one meme.
+     */
+    float score(Meme meme);
+
+    /* score
+     *
+     * purpose: Fill scores[i] with the score of candidates[i]. Used to rank a whole
+     *          feed at once without scoring memes one call at a time.
+     */
+    void score(Meme[] candidates, float[] scores);
+}
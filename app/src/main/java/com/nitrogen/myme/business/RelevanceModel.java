@@ -0,0 +1,227 @@
+package com.nitrogen.myme.business;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/* RelevanceModel
+ *
+ * purpose: Keeps the tag weights SortMemes ranks by (how many favourites have each tag)
+ *          and a cache of every meme's summed tag weight. There is one model per
+ *          MemesPersistence. It scans the catalog once; after that a favourite being
+ *          flipped only touches the weights of that meme's tags and the cached scores
+ *          of memes sharing them.
+ */
+public class RelevanceModel implements Recommender {
+    public static final int FAVOURITE_SCORE = -1;
+
+    private static final Map<MemesPersistence, RelevanceModel> models = new WeakHashMap<>();
+
+    private final MemesPersistence memesPersistence;
+    private final Map<String, int[]> tagWeights = new HashMap<>();
+    private final Map<Meme, List<Tag>> favourites = new HashMap<>();
+    private final Map<Meme, int[]> affinities = new HashMap<>();
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    private RelevanceModel(MemesPersistence memesPersistence) {
+        this.memesPersistence = memesPersistence;
+
+        for (Meme meme : memesPersistence.scanMemes()) {
+            if (meme.isFavourite()) {
+                addFavourite(meme);
+            }
+        }
+    }
+
+    //**************************************************
+    // Factory Methods
+    //**************************************************
+
+    /* getInstance
+     *
+     * purpose: Return the model for the given persistence, building it if needed.
+     */
+    public static synchronized RelevanceModel getInstance(MemesPersistence memesPersistence) {
+        RelevanceModel model = models.get(memesPersistence);
+
+        if (model == null) {
+            model = new RelevanceModel(memesPersistence);
+            models.put(memesPersistence, model);
+        }
+
+        return model;
+    }
+
+    /* getExisting
+     *
+     * purpose: Return the model for the given persistence, or null if nothing has been
+     *          ranked yet. Used to keep a model current without building one.
+     */
+    static synchronized RelevanceModel getExisting(MemesPersistence memesPersistence) {
+        return models.get(memesPersistence);
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* getScore
+     *
+     * purpose: The value SortMemes ranks a meme by: its tag affinity, or FAVOURITE_SCORE
+     *          for memes that are already favourites so they sink to the bottom.
+     */
+    public synchronized int getScore(Meme meme) {
+        return meme.isFavourite() ? FAVOURITE_SCORE : getAffinity(meme);
+    }
+
+    /* getAffinity
+     *
+     * purpose: The sum of a meme's tag weights. For memes in the catalog this is computed
+     *          once and then kept up to date; memes outside it are summed every time.
+     */
+    public synchronized int getAffinity(Meme meme) {
+        int[] affinity = affinities.get(meme);
+
+        if (affinity == null) {
+            affinity = new int[] { sumWeights(meme.getTags()) };
+            if (MemeIndex.getInstance(memesPersistence).contains(meme)) {
+                affinities.put(meme, affinity);
+            }
+        }
+
+        return affinity[0];
+    }
+
+    /* getTagWeights
+     *
+     * purpose: A copy of the weight of each tag, by tag name, for scoring memes that
+     *          aren't read (see MemeIndex.getAffinity).
+     */
+    public synchronized Map<String, Integer> getTagWeights() {
+        Map<String, Integer> weights = new HashMap<>();
+
+        for (Map.Entry<String, int[]> weight : tagWeights.entrySet()) {
+            weights.put(weight.getKey(), weight.getValue()[0]);
+        }
+
+        return weights;
+    }
+
+    /* score
+     *
+     * purpose: As a Recommender, a meme is scored by its tag affinity.
+     */
+    @Override
+    public synchronized float score(Meme meme) {
+        return getAffinity(meme);
+    }
+
+    @Override
+    public synchronized void score(Meme[] candidates, float[] scores) {
+        for (int i = 0; i < candidates.length; i++) {
+            scores[i] = getAffinity(candidates[i]);
+        }
+    }
+
+    /* favouriteChanged
+     *
+     * purpose: Update the weights after a meme was favourited or unfavourited.
+     *          Calling this when nothing changed does nothing.
+     */
+    public synchronized void favouriteChanged(Meme meme) {
+        if (meme.isFavourite() && !favourites.containsKey(meme)) {
+            addFavourite(meme);
+        } else if (!meme.isFavourite() && favourites.containsKey(meme)) {
+            removeFavourite(meme);
+        }
+    }
+
+    /* memeRemoved
+     *
+     * purpose: Forget a meme that was deleted, including its weight if it was a favourite.
+     */
+    public synchronized void memeRemoved(Meme meme) {
+        if (favourites.containsKey(meme)) {
+            removeFavourite(meme);
+        }
+        affinities.remove(meme);
+    }
+
+    /* tagDeleted
+     *
+     * purpose: Forget the weight of a tag that was deleted. The cached affinities are
+     *          summed again as they're needed.
+     */
+    public synchronized void tagDeleted(Tag tag) {
+        if (tagWeights.remove(tag.getName()) != null) {
+            affinities.clear();
+        }
+        for (List<Tag> tags : favourites.values()) {
+            tags.remove(tag);
+        }
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private void addFavourite(Meme meme) {
+        List<Tag> tags = new ArrayList<>(meme.getTags());
+
+        favourites.put(meme, tags);
+        adjustWeights(tags, 1);
+    }
+
+    private void removeFavourite(Meme meme) {
+        adjustWeights(favourites.remove(meme), -1);
+    }
+
+    /* adjustWeights
+     *
+     * purpose: Change the weight of each tag and patch the cached affinity of every
+     *          meme carrying that tag, instead of throwing the whole cache away.
+     */
+    private void adjustWeights(List<Tag> tags, int delta) {
+        MemeIndex index = MemeIndex.getInstance(memesPersistence);
+
+        for (Tag tag : tags) {
+            int[] weight = tagWeights.get(tag.getName());
+            if (weight == null) {
+                weight = new int[1];
+                tagWeights.put(tag.getName(), weight);
+            }
+            weight[0] += delta;
+
+            if (!affinities.isEmpty()) {
+                for (Meme meme : index.getMemesByTags(new String[] { tag.getName() })) {
+                    int[] affinity = affinities.get(meme);
+                    if (affinity != null) {
+                        affinity[0] += delta;
+                    }
+                }
+            }
+        }
+    }
+
+    private int sumWeights(List<Tag> tags) {
+        int sum = 0;
+
+        for (Tag tag : tags) {
+            int[] weight = tagWeights.get(tag.getName());
+            if (weight != null) {
+                sum += weight[0];
+            }
+        }
+
+        return sum;
+    }
+}
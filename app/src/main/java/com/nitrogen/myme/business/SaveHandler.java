@@ -1,7 +1,15 @@
 package com.nitrogen.myme.business;
 
+import android.content.Context;
+
 import com.nitrogen.myme.objects.BitmapContext;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.persistence.BitmapThumbnailGenerator;
 import com.nitrogen.myme.persistence.ImageSaver;
+import com.nitrogen.myme.persistence.SaveWorker;
+
+import java.io.File;
+import java.util.concurrent.Executor;
 
 
 public class SaveHandler {
@@ -15,12 +23,46 @@ public class SaveHandler {
         imageSaver = new ImageSaver(bitmapContext);
     }
 
+    /* writeToFile
+     *
+     * purpose: Save the picture in the background and return a file name to wait on
+     *          straight away. whenSaved gives the file the picture was saved to.
+     */
     public String writeToFile(BitmapContext bitmapContext){
         return imageSaver.saveInternally(bitmapContext);
     }
 
+    /* whenSaved
+     *
+     * purpose: Run a callback on the executor once a picture written by writeToFile is
+     *          on disk, with the file it is in, or couldn't be written.
+     */
+    public static void whenSaved(Context context, String picturePath, Executor executor, SaveWorker.OnSaved callback){
+        ImageSaver.whenSaved(context, new File(picturePath), executor, callback);
+    }
+
     public static String getMemePicturePath(String name){
         return ImageSaver.getCreatedMemePath()+name;
     }
 
+    /* makeThumbnail
+     *
+     * purpose: Make the thumbnail shown for a saved picture in the meme grids, in the
+     *          background, and run a callback on the executor with its path, or null if
+     *          it couldn't be made and the picture itself has to be shown.
+     */
+    public static void makeThumbnail(Context context, String picturePath, Executor executor,
+                                     BitmapThumbnailGenerator.OnThumbnail callback){
+        BitmapThumbnailGenerator.get(context).thumbnailLater(new File(picturePath), executor, callback);
+    }
+
+    /* remakeThumbnail
+     *
+     * purpose: Make the thumbnail of a meme again, in the background, after it was
+     *          evicted from the cache. It comes back at the same path.
+     */
+    public static void remakeThumbnail(Context context, Meme meme){
+        BitmapThumbnailGenerator.get(context).remakeLater(new File(meme.getImagePath()));
+    }
+
 }
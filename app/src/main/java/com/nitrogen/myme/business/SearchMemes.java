@@ -2,16 +2,80 @@ package com.nitrogen.myme.business;
 
 import com.nitrogen.myme.application.Services;
 import com.nitrogen.myme.objects.Meme;
-import com.nitrogen.myme.objects.Tag;
 import com.nitrogen.myme.persistence.MemesPersistence;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 public class SearchMemes {
+    public static final int SEARCH_AS_YOU_TYPE_LIMIT = 100;
+    public static final int TOP_RESULTS_LIMIT = 100;
+    public static final int NAME_HIT_WEIGHT = 3;
+    public static final int TAG_HIT_WEIGHT = 2;
+
+    /* MatchMode
+     *
+     * purpose: How loosely the words of a query are matched against meme names and tags.
+     *          EXACT only matches whole words, PREFIX also matches words that start with
+     *          the query word and FUZZY also matches words within a couple of typos.
+     */
+    public enum MatchMode { EXACT, PREFIX, FUZZY }
+
+    /* ScoredMeme
+     *
+     * purpose: A document of the index with its relevance to a query. Memes compare by
+     *          how well they match, then by their favourite tag affinity, then
+     *          alphabetically. The meme itself is only looked up when it is needed to
+     *          break a tie, or once it makes the top k.
+     */
+    private static class ScoredMeme implements Comparable<ScoredMeme> {
+        private final MemeIndex index;
+        private final List<Meme> memes;
+        private final int document;
+        private final int matchScore;
+        private final int affinity;
+        private Meme meme = null;
+
+        private ScoredMeme(MemeIndex index, List<Meme> memes, int document, int matchScore, int affinity) {
+            this.index = index;
+            this.memes = memes;
+            this.document = document;
+            this.matchScore = matchScore;
+            this.affinity = affinity;
+        }
+
+        private Meme getMeme() {
+            if (meme == null) {
+                meme = index.getMeme(memes, document);
+            }
+            return meme;
+        }
+
+        private String getName() {
+            return getMeme() != null ? getMeme().getName() : "";
+        }
+
+        @Override
+        public int compareTo(ScoredMeme other) {
+            int result = Integer.compare(matchScore, other.matchScore);
+
+            if (result == 0) {
+                result = Integer.compare(affinity, other.affinity);
+            }
+            if (result == 0) {
+                result = other.getName().compareTo(getName());
+            }
+
+            return result;
+        }
+    }
+
     private MemesPersistence memesPersistence;
 
     //**************************************************
@@ -48,7 +112,7 @@ public class SearchMemes {
      *          related to the keys given.
      */
     public List<Meme> getMemesRelatedTo(String[] keys) {
-        Set<Meme> combinedMemes = new HashSet<>();
+        Set<Meme> combinedMemes = new LinkedHashSet<>();
 
         combinedMemes.addAll(getMemesByTags(keys));
         combinedMemes.addAll(getMemesByNames(keys));
@@ -56,57 +120,152 @@ public class SearchMemes {
         return new ArrayList<>(combinedMemes);
     }
 
-    /* getMemesByName
+    /* getTopMemesRelatedTo
      *
-     * purpose: Filters through the meme database to return a list of Memes where each
-     *          Meme has a similar name to the keys provided.
+     * purpose: Return the k memes most related to the query, best first. A word of the
+     *          query found in a meme's name counts for more than one found in its tags,
+     *          and memes that match equally well are ordered by how much their tags look
+     *          like the tags of the user's favourites. Only the best k are kept, in a
+     *          bounded heap, so the whole set of matches is never sorted.
      */
-    private List<Meme> getMemesByNames(String[] keys) {
+    public List<Meme> getTopMemesRelatedTo(String query, int k) {
+        MemeIndex index = MemeIndex.getInstance(memesPersistence);
+        Map<String, Integer> tagWeights = RelevanceModel.getInstance(memesPersistence).getTagWeights();
+        List<Meme> memes = memesPersistence.getMemes();
+        Map<Integer, int[]> hits = new HashMap<>();
+        PriorityQueue<ScoredMeme> best = new PriorityQueue<>(Math.max(1, k));
         List<Meme> result = new ArrayList<>();
 
-        // search through all memes
-        for (int i = 0; i < memesPersistence.getMemes().size(); i++) {
-            // examine a meme
-            Meme currMeme = memesPersistence.getMemes().get(i);
-            String[] potentials = currMeme.getName().trim().toLowerCase().split(" ");
-            boolean match = false;
-
-            for (String key : keys) {
-                for (String potential : potentials) {
-                    if (key.equals(potential)) {
-                        match = true;
-                    }
+        // the documents counted are looked up afterwards, so the index can't change in between
+        synchronized (index) {
+            for (String word : MemeIndex.tokenize(query)) {
+                index.countHits(word, hits, NAME_HIT_WEIGHT, TAG_HIT_WEIGHT);
+            }
+
+            // keep the k best in a min-heap, the worst of them on top
+            for (Map.Entry<Integer, int[]> hit : hits.entrySet()) {
+                if (isCancelled()) {
+                    break;
+                }
+
+                ScoredMeme candidate = new ScoredMeme(index, memes, hit.getKey(), hit.getValue()[0],
+                        index.getAffinity(hit.getKey(), tagWeights));
+
+                if (best.size() < k) {
+                    best.add(candidate);
+                } else if (k > 0 && candidate.compareTo(best.peek()) > 0) {
+                    best.poll();
+                    best.add(candidate);
                 }
             }
 
-            if (match) {
-                result.add(currMeme);
+            while (!best.isEmpty()) {
+                Meme meme = best.poll().getMeme();
+                if (meme != null) {
+                    result.add(meme);
+                }
             }
         }
 
+        Collections.reverse(result);
         return result;
     }
 
-    /* getMemesByTags
+    /* getMemesByTagQuery
      *
-     * purpose: Filters through the meme database to return a list of Memes where each
-     *          Meme has one or more of the tags in the list of tags provided.
+     * purpose: Return the memes matching a boolean tag query such as
+     *          "(funny AND cat) NOT school". Throws InvalidTagQueryException if
+     *          the query is malformed.
      */
-    public List<Meme> getMemesByTags(String[] tags) {
-        List<Meme> result = new ArrayList<>();
+    public List<Meme> getMemesByTagQuery(String query) {
+        return MemeIndex.getInstance(memesPersistence).getMemesByTagQuery(TagQuery.parse(query));
+    }
 
-        // search through all memes
-        for(Meme meme : memesPersistence.getMemes()) {
-            // check if the current meme has any of the tags we're looking for
-            for(Tag tag : meme.getTags()) {
-                for(String inputTag : tags) {
-                    if (tag.getName().equalsIgnoreCase(inputTag) && !result.contains(meme))
-                        result.add(meme);
+    /* getMemesMatching
+     *
+     * purpose: Search while the user is typing. Each word of the query is matched
+     *          exactly first, then as the start of a longer word, then allowing for
+     *          typos. Memes come back in that order and the search stops as soon as
+     *          limit memes are found, without looking for looser matches, so a
+     *          keystroke costs about the same no matter how large the catalog is.
+     */
+    public List<Meme> getMemesMatching(String query, MatchMode mode, int limit) {
+        MemeIndex index = MemeIndex.getInstance(memesPersistence);
+        List<Meme> memes = memesPersistence.getMemes();
+        List<String> words = MemeIndex.tokenize(query);
+        Set<Meme> result = new LinkedHashSet<>();
+
+        for (String word : words) {
+            index.collectMemesByKey(word, memes, result, limit);
+        }
+
+        if (mode != MatchMode.EXACT) {
+            for (int i = 0; i < words.size() && result.size() < limit; i++) {
+                for (String key : index.getKeysWithPrefix(words.get(i), limit)) {
+                    if (isCancelled() || result.size() >= limit) {
+                        break;
+                    }
+                    index.collectMemesByKey(key, memes, result, limit);
                 }
             }
         }
-        return Collections.unmodifiableList(result);
+
+        if (mode == MatchMode.FUZZY) {
+            for (int i = 0; i < words.size() && result.size() < limit; i++) {
+                String word = words.get(i);
+                for (String key : index.getKeysWithin(word, maxTypos(word), limit)) {
+                    if (isCancelled() || result.size() >= limit) {
+                        break;
+                    }
+                    index.collectMemesByKey(key, memes, result, limit);
+                }
+            }
+        }
+
+        return new ArrayList<>(result);
     }
 
+    /* maxTypos
+     *
+     * purpose: The number of typos tolerated in a word. Short words get none,
+     *          otherwise almost every word would match.
+     */
+    private int maxTypos(String word) {
+        int typos = 0;
 
+        if (word.length() >= 7) {
+            typos = 2;
+        } else if (word.length() >= 3) {
+            typos = 1;
+        }
+
+        return typos;
+    }
+
+    /* isCancelled
+     *
+     * purpose: Searches run by AsyncSearch are cancelled by interrupting the worker.
+     *          Long loops check this and stop early; the partial result is thrown away.
+     */
+    private boolean isCancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    /* getMemesByName
+     *
+     * purpose: Filters through the meme database to return a list of Memes where each
+     *          Meme has a similar name to the keys provided.
+     */
+    private List<Meme> getMemesByNames(String[] keys) {
+        return MemeIndex.getInstance(memesPersistence).getMemesByNameTokens(keys);
+    }
+
+    /* getMemesByTags
+     *
+     * purpose: Filters through the meme database to return a list of Memes where each
+     *          Meme has one or more of the tags in the list of tags provided.
+     */
+    public List<Meme> getMemesByTags(String[] tags) {
+        return MemeIndex.getInstance(memesPersistence).getMemesByTags(tags);
+    }
 }
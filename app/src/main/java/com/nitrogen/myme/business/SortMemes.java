@@ -1,17 +1,18 @@
 package com.nitrogen.myme.business;
 
+import com.nitrogen.myme.application.Services;
 import com.nitrogen.myme.objects.Meme;
-import com.nitrogen.myme.objects.Tag;
 import com.nitrogen.myme.persistence.MemesPersistence;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
+import java.util.ListIterator;
 
 public class SortMemes implements Comparator<Meme> {
     private MemesPersistence memesPersistence = null;
-    private HashMap<String, Integer> weights; //tag(naems) appearances in already favorite memes
+    private RelevanceModel relevanceModel; //tag(names) appearances in already favorite memes
+    private Recommender recommender = null; //scores memes, the relevance model unless one is given
     private List<Meme> memes;
 
     //**************************************************
@@ -28,6 +29,11 @@ public class SortMemes implements Comparator<Meme> {
         this.memesPersistence = memesPersistenceGiven;
     }
 
+    public SortMemes(List<Meme> memes, Recommender recommender) {
+        this.memes = memes;
+        this.recommender = recommender;
+    }
+
     //**************************************************
     // General Methods
     //**************************************************
@@ -38,39 +44,88 @@ public class SortMemes implements Comparator<Meme> {
      *          This also sorts already favorite memes to the bottom.
      */
     public List<Meme> sortByRelevance() {
-        weights = new HashMap<>();
-        calculateTagWeights();
-        Collections.sort(memes, this);
+        Meme[] unsorted = memes.toArray(new Meme[memes.size()]);
+        float[] scores = new float[unsorted.length];
+        long[] keys = new long[unsorted.length];
+
+        getRecommender().score(unsorted, scores);
+
+        // decorate: pack each meme's score and position into one long so that sorting
+        // the longs orders by score, best first, and keeps memes with equal scores in
+        // their original order
+        for (int i = 0; i < unsorted.length; i++) {
+            keys[i] = ((long) ~getSortKey(unsorted[i], scores[i]) << 32) | i;
+        }
+
+        // sort the primitives
+        Arrays.sort(keys);
+
+        // undecorate: put the memes back in the sorted order
+        ListIterator<Meme> iterator = memes.listIterator();
+        for (long key : keys) {
+            iterator.next();
+            iterator.set(unsorted[(int) key]);
+        }
+
         return memes;
     }
 
+    /* getTagAffinity
+     *
+     * purpose: To get the sum of a meme's combined tag weights, whether or not it is
+     *          already a favourite.
+     */
+    public int getTagAffinity(Meme meme) {
+        return getRelevanceModel().getAffinity(meme);
+    }
+
     //**************************************************
     // Helper Methods
     //**************************************************
 
-    /* calculateTagWeights
+    /* getRelevanceModel
      *
-     * purpose: To populate the weights map with counts of tag appearances in already favorite memes.
+     * purpose: To get the tag weights of the persistence being sorted against.
+     *          The model is shared and kept up to date as favourites change, so
+     *          it is not rebuilt for every sort.
      */
-    private void calculateTagWeights() {
-        AccessFavourites accessFavourites;
-        if (memesPersistence != null) {
-            accessFavourites = new AccessFavourites(memesPersistence);
-        } else {
-            accessFavourites = new AccessFavourites();
+    private RelevanceModel getRelevanceModel() {
+        if (relevanceModel == null) {
+            if (memesPersistence == null) {
+                memesPersistence = Services.getMemesPersistence();
+            }
+            relevanceModel = RelevanceModel.getInstance(memesPersistence);
         }
 
-        List<Meme> favorites = accessFavourites.getMemes();
-        for (Meme meme : favorites) {
-            List<Tag> tags = meme.getTags();
-            for (Tag tag : tags) {
-                if (weights.containsKey(tag.getName())) {
-                    weights.put(tag.getName(), weights.get(tag.getName()) + 1);
-                } else {
-                    weights.put(tag.getName(), 1);
-                }
-            }
+        return relevanceModel;
+    }
+
+    /* getRecommender
+     *
+     * purpose: To get the recommender memes are scored by.
+     */
+    private Recommender getRecommender() {
+        if (recommender == null) {
+            recommender = getRelevanceModel();
         }
+
+        return recommender;
+    }
+
+    /* getSortKey
+     *
+     * purpose: To turn a score into an int that orders the same way as the score.
+     *          Already favorite memes get the lowest key so they sort to the bottom.
+     */
+    private static int getSortKey(Meme meme, float score) {
+        int bits = Float.floatToIntBits(score + 0.0f);
+
+        if (meme.isFavourite()) {
+            return Integer.MIN_VALUE;
+        }
+
+        // negative floats order backwards as ints, flip everything but the sign bit
+        return bits ^ ((bits >> 31) & Integer.MAX_VALUE);
     }
 
     /* compare
@@ -80,29 +135,16 @@ public class SortMemes implements Comparator<Meme> {
      */
     @Override
     public int compare(Meme meme1, Meme meme2) {
-        return getMemeValue(meme2) - getMemeValue(meme1);
+        return Integer.compare(getMemeValue(meme2), getMemeValue(meme1));
     }
 
     /* getMemeValue
      *
-     * purpose: To get the sum of a meme's combined tag weights.
-     *          This also gives already favorite memes a value of -1.
+     * purpose: To get a meme's score as a sort key.
+     *          This also gives already favorite memes the lowest value.
      */
     private int getMemeValue(Meme meme) {
-        int value = 0;
-
-        if (meme.isFavourite()) {
-            value = -1;
-        } else {
-            List<Tag> tags = meme.getTags();
-            for (Tag tag : tags) {
-                if (weights.containsKey(tag.getName())) {
-                    value += weights.get(tag.getName());
-                }
-            }
-        }
-
-        return value;
+        return getSortKey(meme, getRecommender().score(meme));
     }
 
 }
@@ -0,0 +1,205 @@
+package com.nitrogen.myme.business;
+
+import com.nitrogen.myme.business.Exceptions.InvalidTagQueryException;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/* TagQuery
+ *
+ * purpose: A boolean query over tags such as "(funny AND cat) NOT school".
+ *          AND, OR and NOT are case insensitive, words next to each other are ANDed,
+ *          "a NOT b" means a and not b, and a leading NOT means every meme without
+ *          the tag. The query is evaluated on the tag bitmaps of a MemeIndex so each
+ *          operator costs a few instructions per 64 memes.
+ */
+public class TagQuery {
+    private static final String AND = "and";
+    private static final String OR = "or";
+    private static final String NOT = "not";
+    private static final String OPEN = "(";
+    private static final String CLOSE = ")";
+
+    /* TagBitmaps
+     *
+     * purpose: Where a query gets its bitmaps from. Each call returns a fresh copy
+     *          that the query is free to modify.
+     */
+    interface TagBitmaps {
+        BitSet memesWithTag(String tag);
+
+        BitSet allMemes();
+    }
+
+    private interface Node {
+        BitSet evaluate(TagBitmaps bitmaps);
+    }
+
+    private final Node root;
+    private final List<String> tokens;
+    private int position;
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    private TagQuery(String query) {
+        tokens = tokenize(query);
+        position = 0;
+
+        if (tokens.isEmpty()) {
+            throw new InvalidTagQueryException();
+        }
+
+        root = parseOr();
+        if (position != tokens.size()) {
+            throw new InvalidTagQueryException();
+        }
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* parse
+     *
+     * purpose: Parse a tag query, throwing InvalidTagQueryException if it is malformed.
+     */
+    public static TagQuery parse(String query) {
+        return new TagQuery(query);
+    }
+
+    /* evaluate
+     *
+     * purpose: Return the bitmap of memes matching this query.
+     */
+    BitSet evaluate(TagBitmaps bitmaps) {
+        return root.evaluate(bitmaps);
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static List<String> tokenize(String query) {
+        List<String> result = new ArrayList<>();
+        String spaced = query.replace(OPEN, " " + OPEN + " ").replace(CLOSE, " " + CLOSE + " ");
+
+        for (String token : spaced.trim().split("\\s+")) {
+            if (token.length() > 0) {
+                result.add(token);
+            }
+        }
+
+        return result;
+    }
+
+    private String peek() {
+        return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private boolean isKeyword(String token, String keyword) {
+        return token != null && token.equalsIgnoreCase(keyword);
+    }
+
+    /* parseOr
+     *
+     * purpose: or := and (OR and)*
+     */
+    private Node parseOr() {
+        Node node = parseAnd();
+
+        while (isKeyword(peek(), OR)) {
+            position++;
+            final Node left = node;
+            final Node right = parseAnd();
+            node = new Node() {
+                @Override
+                public BitSet evaluate(TagBitmaps bitmaps) {
+                    BitSet result = left.evaluate(bitmaps);
+                    result.or(right.evaluate(bitmaps));
+                    return result;
+                }
+            };
+        }
+
+        return node;
+    }
+
+    /* parseAnd
+     *
+     * purpose: and := unary ((AND | NOT)? unary)*
+     */
+    private Node parseAnd() {
+        Node node = parseUnary();
+        String next = peek();
+
+        while (next != null && !isKeyword(next, OR) && !next.equals(CLOSE)) {
+            final boolean isNegated = isKeyword(next, NOT);
+            if (isNegated || isKeyword(next, AND)) {
+                position++;
+            }
+
+            final Node left = node;
+            final Node right = parseUnary();
+            node = new Node() {
+                @Override
+                public BitSet evaluate(TagBitmaps bitmaps) {
+                    BitSet result = left.evaluate(bitmaps);
+                    if (isNegated) {
+                        result.andNot(right.evaluate(bitmaps));
+                    } else {
+                        result.and(right.evaluate(bitmaps));
+                    }
+                    return result;
+                }
+            };
+            next = peek();
+        }
+
+        return node;
+    }
+
+    /* parseUnary
+     *
+     * purpose: unary := NOT unary | ( or ) | tag
+     */
+    private Node parseUnary() {
+        String token = peek();
+        Node node;
+
+        if (token == null || token.equals(CLOSE) || isKeyword(token, AND) || isKeyword(token, OR)) {
+            throw new InvalidTagQueryException();
+        }
+        position++;
+
+        if (isKeyword(token, NOT)) {
+            final Node negated = parseUnary();
+            node = new Node() {
+                @Override
+                public BitSet evaluate(TagBitmaps bitmaps) {
+                    BitSet result = bitmaps.allMemes();
+                    result.andNot(negated.evaluate(bitmaps));
+                    return result;
+                }
+            };
+        } else if (token.equals(OPEN)) {
+            node = parseOr();
+            if (!CLOSE.equals(peek())) {
+                throw new InvalidTagQueryException();
+            }
+            position++;
+        } else {
+            final String tag = token;
+            node = new Node() {
+                @Override
+                public BitSet evaluate(TagBitmaps bitmaps) {
+                    return bitmaps.memesWithTag(tag);
+                }
+            };
+        }
+
+        return node;
+    }
+}
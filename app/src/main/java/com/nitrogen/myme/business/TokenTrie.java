@@ -0,0 +1,229 @@
+package com.nitrogen.myme.business;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/* TokenTrie
+ *
+ * purpose: A character trie over the keys held in a MemeIndex. It answers the
+ *          "starts with" and "is within n typos of" questions needed to search
+ *          while the user is still typing.
+ */
+class TokenTrie {
+    private final Node root = new Node();
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private String key = null;
+        private int references = 0;
+        // the length of the longest key at or below this node; it isn't lowered when
+        // keys are removed, so it can be too long but never too short
+        private int height = 0;
+    }
+
+    /* Matches
+     *
+     * purpose: The keys found by keysWithin, by distance. Once maxKeys keys are closer
+     *          than the farthest distance allowed, nothing that far away can make the
+     *          cut, so those keys are dropped and the search is narrowed.
+     */
+    private static class Matches {
+        private final List<List<String>> byDistance = new ArrayList<>();
+        private final int maxKeys;
+        private int maxEdits;
+        private int found = 0;
+
+        private Matches(int maxEdits, int maxKeys) {
+            this.maxEdits = maxEdits;
+            this.maxKeys = maxKeys;
+            for (int i = 0; i <= maxEdits; i++) {
+                byDistance.add(new ArrayList<String>());
+            }
+        }
+
+        private void add(String key, int distance) {
+            byDistance.get(distance).add(key);
+            found++;
+
+            while (maxEdits > 0 && found - byDistance.get(maxEdits).size() >= maxKeys) {
+                found -= byDistance.get(maxEdits).size();
+                byDistance.get(maxEdits).clear();
+                maxEdits--;
+            }
+        }
+
+        // nothing closer than the closest distance can turn up
+        private boolean isFull() {
+            return maxEdits == 0 && found >= maxKeys;
+        }
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* add
+     *
+     * purpose: Add a reference to a key. A key stays in the trie until every
+     *          reference to it has been removed.
+     */
+    void add(String key) {
+        Node node = root;
+
+        node.height = Math.max(node.height, key.length());
+        for (int i = 0; i < key.length(); i++) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                child = new Node();
+                node.children.put(key.charAt(i), child);
+            }
+            node = child;
+            node.height = Math.max(node.height, key.length());
+        }
+
+        node.key = key;
+        node.references++;
+    }
+
+    /* remove
+     *
+     * purpose: Remove a reference to a key, pruning nodes that no longer lead anywhere.
+     */
+    void remove(String key) {
+        remove(root, key, 0);
+    }
+
+    /* keysWithPrefix
+     *
+     * purpose: Return up to maxKeys keys starting with the prefix, shortest first.
+     *          The search is breadth first so it stops as soon as enough keys are found.
+     */
+    List<String> keysWithPrefix(String prefix, int maxKeys) {
+        List<String> result = new ArrayList<>();
+        Node node = find(prefix);
+
+        if (node != null) {
+            Queue<Node> queue = new ArrayDeque<>();
+            queue.add(node);
+
+            while (!queue.isEmpty() && result.size() < maxKeys) {
+                Node current = queue.remove();
+                if (current.key != null) {
+                    result.add(current.key);
+                }
+                queue.addAll(current.children.values());
+            }
+        }
+
+        return result;
+    }
+
+    /* keysWithin
+     *
+     * purpose: Return up to maxKeys keys within maxEdits insertions, deletions or
+     *          substitutions of the given word, closest first. Branches of the trie
+     *          that are already too far away, or only hold keys too short to be close,
+     *          are never visited, and the search narrows as close keys are found.
+     */
+    List<String> keysWithin(String word, int maxEdits, int maxKeys) {
+        Matches matches = new Matches(maxEdits, maxKeys);
+        int[] firstRow = new int[word.length() + 1];
+
+        for (int i = 0; i < firstRow.length; i++) {
+            firstRow[i] = i;
+        }
+        if (maxKeys > 0) {
+            collectChildrenWithin(root, word, firstRow, matches);
+        }
+
+        List<String> result = new ArrayList<>();
+        for (int d = 0; d <= matches.maxEdits && result.size() < maxKeys; d++) {
+            for (String key : matches.byDistance.get(d)) {
+                if (result.size() < maxKeys) {
+                    result.add(key);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private Node find(String prefix) {
+        Node node = root;
+
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+
+        return node;
+    }
+
+    private boolean remove(Node node, String key, int depth) {
+        if (depth == key.length()) {
+            if (node.key != null && --node.references == 0) {
+                node.key = null;
+            }
+        } else {
+            Node child = node.children.get(key.charAt(depth));
+            if (child != null && remove(child, key, depth + 1)) {
+                node.children.remove(key.charAt(depth));
+            }
+        }
+
+        return node.key == null && node.children.isEmpty();
+    }
+
+    /* collectWithin
+     *
+     * purpose: Compute the next row of the edit distance table for this node and
+     *          recurse into the children while the row can still lead to a match.
+     */
+    private void collectWithin(Node node, char letter, String word, int[] previousRow, Matches matches) {
+        int[] row = new int[previousRow.length];
+        int rowMin;
+
+        row[0] = previousRow[0] + 1;
+        rowMin = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int substitute = previousRow[i - 1] + (word.charAt(i - 1) == letter ? 0 : 1);
+            int insert = row[i - 1] + 1;
+            int delete = previousRow[i] + 1;
+
+            row[i] = Math.min(substitute, Math.min(insert, delete));
+            rowMin = Math.min(rowMin, row[i]);
+        }
+
+        int distance = row[row.length - 1];
+        if (node.key != null && distance <= matches.maxEdits) {
+            matches.add(node.key, distance);
+        }
+
+        if (rowMin <= matches.maxEdits) {
+            collectChildrenWithin(node, word, row, matches);
+        }
+    }
+
+    /* collectChildrenWithin
+     *
+     * purpose: Recurse into the children of a node that hold keys long enough to be
+     *          within reach of the word, until no closer key can be found.
+     */
+    private void collectChildrenWithin(Node node, String word, int[] row, Matches matches) {
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            if (matches.isFull()) {
+                break;
+            }
+            if (child.getValue().height >= word.length() - matches.maxEdits) {
+                collectWithin(child.getValue(), child.getKey(), word, row, matches);
+            }
+        }
+    }
+}
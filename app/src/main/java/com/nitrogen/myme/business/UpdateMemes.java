@@ -2,10 +2,16 @@ package com.nitrogen.myme.business;
 
 import com.nitrogen.myme.application.Services;
 import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.persistence.ImageStore;
 import com.nitrogen.myme.persistence.MemesPersistence;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 public class UpdateMemes {
     private MemesPersistence memesPersistence;
+    private ImageStore imageStore;
 
     //**************************************************
     // Constructors
@@ -13,20 +19,145 @@ public class UpdateMemes {
 
     public UpdateMemes() {
         this.memesPersistence = Services.getMemesPersistence();
+        this.imageStore = Services.getImageStore();
     }
 
     public UpdateMemes(MemesPersistence memesPersistenceGiven) {
+        this(memesPersistenceGiven, null);
+    }
+
+    // imageStoreGiven holds the memes' pictures, deleted along with the last meme using them, or is null
+    public UpdateMemes(MemesPersistence memesPersistenceGiven, ImageStore imageStoreGiven) {
         this.memesPersistence = memesPersistenceGiven;
+        this.imageStore = imageStoreGiven;
     }
     //**************************************************
     // Methods
     //**************************************************
 
     public boolean insertMeme(Meme meme) {
-        return memesPersistence.insertMeme(meme);
+        collectImages();
+        int changes = memesPersistence.getChanges();
+        boolean memeInserted = memesPersistence.insertMeme(meme);
+
+        if (memeInserted) {
+            memesInserted(Collections.singletonList(meme), changes);
+        }
+
+        return memeInserted;
+    }
+
+    /* insertMemes
+     *
+     * purpose: Insert several memes at once, e.g. when importing. Much cheaper than
+     *          inserting them one at a time since the database saves them together.
+     *          Returns the memes that were added.
+     */
+    public List<Meme> insertMemes(Collection<Meme> memes) {
+        collectImages();
+        int changes = memesPersistence.getChanges();
+        List<Meme> inserted = memesPersistence.insertMemes(memes);
+
+        memesInserted(inserted, changes);
+
+        return inserted;
     }
 
     public Meme deleteMeme(Meme meme) {
-        return memesPersistence.deleteMeme(meme);
+        // the memes that were there are passed on as they were stored, so a copy with
+        // different tags, or of a meme that isn't there, changes nothing
+        deleteMemes(Collections.singletonList(meme));
+
+        return meme;
+    }
+
+    /* deleteMemes
+     *
+     * purpose: Delete several memes at once, e.g. when cleaning up a large collection.
+     *          Returns the memes that were deleted.
+     */
+    public List<Meme> deleteMemes(Collection<Meme> memes) {
+        collectImages();
+        int changes = memesPersistence.getChanges();
+        List<Meme> deleted = memesPersistence.deleteMemes(memes);
+
+        memesDeleted(deleted, changes);
+        if (imageStore != null) {
+            for (Meme meme : deleted) {
+                imageStore.release(meme.getImagePath(), memesPersistence);
+            }
+        }
+
+        return deleted;
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* collectImages
+     *
+     * purpose: Before the first change, clear out the pictures in the ImageStore that
+     *          no meme ended up using.
+     */
+    private void collectImages() {
+        if (imageStore != null && !imageStore.isCollected()) {
+            imageStore.collect(memesPersistence);
+        }
+    }
+
+    /* memesInserted
+     *
+     * purpose: Keep the search index and recommenders up to date with
+     *          new memes. changes is the persistence's change count from before they
+     *          were inserted.
+     */
+    private void memesInserted(List<Meme> memes, int changes) {
+        MemeIndex index = MemeIndex.getExisting(memesPersistence);
+
+        RelevanceModel relevanceModel = RelevanceModel.getExisting(memesPersistence);
+        CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getExisting(memesPersistence);
+
+        for (Meme meme : memes) {
+            if (index != null) {
+                index.add(meme);
+            }
+            if (relevanceModel != null) {
+                relevanceModel.favouriteChanged(meme);
+            }
+            if (recommender != null) {
+                recommender.memeAdded(meme);
+            }
+        }
+        if (index != null) {
+            index.caughtUp(changes, memesPersistence.getChanges());
+        }
+    }
+
+    /* memesDeleted
+     *
+     * purpose: Remove deleted memes from the search index and recommenders.
+     *          changes is the persistence's change count from before they were deleted.
+     */
+    private void memesDeleted(List<Meme> memes, int changes) {
+        MemeIndex index = MemeIndex.getExisting(memesPersistence);
+
+        RelevanceModel relevanceModel = RelevanceModel.getExisting(memesPersistence);
+        CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getExisting(memesPersistence);
+
+        for (Meme meme : memes) {
+            if (relevanceModel != null) {
+                relevanceModel.memeRemoved(meme);
+            }
+            if (recommender != null) {
+                recommender.memeRemoved(meme);
+            }
+            if (index != null) {
+                index.remove(meme);
+            }
+        }
+        if (index != null) {
+            index.caughtUp(changes, memesPersistence.getChanges());
+        }
     }
 }
@@ -2,10 +2,12 @@ package com.nitrogen.myme.business;
 
 import com.nitrogen.myme.application.Services;
 import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
 import com.nitrogen.myme.persistence.TagsPersistence;
 
 public class UpdateTags {
     private TagsPersistence tagsPersistence;
+    private MemesPersistence memesPersistence;
 
     //**************************************************
     // Constructors
@@ -13,10 +15,17 @@ public class UpdateTags {
 
     public UpdateTags() {
         this.tagsPersistence = Services.getTagsPersistence();
+        this.memesPersistence = Services.getMemesPersistence();
     }
 
     public UpdateTags(TagsPersistence tagsPersistenceGiven) {
+        this(tagsPersistenceGiven, null);
+    }
+
+    // memesPersistenceGiven holds the memes that lose a deleted tag, or is null
+    public UpdateTags(TagsPersistence tagsPersistenceGiven, MemesPersistence memesPersistenceGiven) {
         this.tagsPersistence = tagsPersistenceGiven;
+        this.memesPersistence = memesPersistenceGiven;
     }
     //**************************************************
     // Methods
@@ -26,7 +35,45 @@ public class UpdateTags {
         return tagsPersistence.insertTag(tag);
     }
 
+    /* deleteTag
+     *
+     * purpose: Delete a tag. It is taken off the memes first, including the ones already
+     *          loaded, and the search index and recommenders forget it.
+     */
     public Tag deleteTag(Tag tag) {
+        if (memesPersistence != null && tagsPersistence.getTags().contains(tag)) {
+            int changes = memesPersistence.getChanges();
+
+            memesPersistence.removeTag(tag);
+            tagDeleted(tag, changes);
+        }
+
         return tagsPersistence.deleteTag(tag);
     }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* tagDeleted
+     *
+     * purpose: Keep the search index and recommenders up to date with a tag taken off
+     *          the memes. changes is the persistence's change count from before.
+     */
+    private void tagDeleted(Tag tag, int changes) {
+        MemeIndex index = MemeIndex.getExisting(memesPersistence);
+        RelevanceModel relevanceModel = RelevanceModel.getExisting(memesPersistence);
+        CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getExisting(memesPersistence);
+
+        if (relevanceModel != null) {
+            relevanceModel.tagDeleted(tag);
+        }
+        if (recommender != null) {
+            recommender.tagDeleted(tag);
+        }
+        if (index != null) {
+            index.tagDeleted(tag);
+            index.caughtUp(changes, memesPersistence.getChanges());
+        }
+    }
 }
@@ -21,6 +21,7 @@ public class Meme {
 
     //ImageMeme
     private String imagePath;
+    private String thumbnailPath = null;
 
     //**************************************************
     // Constructors
@@ -107,6 +108,11 @@ public class Meme {
         return otherMeme instanceof Meme && name.equals(((Meme) otherMeme).getName());
     }
 
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
     @Override
     public String toString() {
         return "Meme{" +
@@ -133,6 +139,8 @@ public class Meme {
 
     public void setImagePath(String imagePath) { this.imagePath = imagePath; }
 
+    public void setThumbnailPath(String thumbnailPath) { this.thumbnailPath = thumbnailPath; }
+
     //**************************************************
     // Accessor Methods
     //**************************************************
@@ -149,10 +157,17 @@ public class Meme {
 
     public List<Tag> getTags() { return this.tags; }
 
+    /* getThumbnailPath
+     *
+     * purpose: A small copy of the image for showing the meme in a grid, or the image
+     *          itself for memes that don't have one (e.g. the ones built into the app).
+     */
     public String getThumbnailPath() {
-        return imagePath;
+        return thumbnailPath != null ? thumbnailPath : imagePath;
     }
 
+    public boolean hasThumbnail() { return thumbnailPath != null; }
+
     public String getImagePath() {
         return imagePath;
     }
@@ -26,6 +26,11 @@ public class Tag {
         return otherTag instanceof Tag && name.equals(((Tag) otherTag).getName());
     }
 
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
     @Override
     public String toString() {
         return name;
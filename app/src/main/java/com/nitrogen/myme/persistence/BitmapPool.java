@@ -0,0 +1,52 @@
+package com.nitrogen.myme.persistence;
+
+import android.graphics.Bitmap;
+
+/* BitmapPool
+ *
+ * purpose: The bitmaps that have been shown and let go of, kept to decode the next
+ *          images into (BitmapFactory.Options.inBitmap). A bitmap can be decoded into
+ *          when it is mutable and holds at least as many bytes as the new image needs.
+ */
+public class BitmapPool extends SizeBucketedPool<Bitmap> {
+    private static BitmapPool instance = null;
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    public BitmapPool(long maxBytes) {
+        super(maxBytes);
+    }
+
+    /* get
+     *
+     * purpose: The pool shared by the app, holding at most an eighth of the heap.
+     */
+    public static synchronized BitmapPool get() {
+        if (instance == null) {
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+
+        return instance;
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    @Override
+    protected int sizeOf(Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    @Override
+    protected boolean isReusable(Bitmap bitmap) {
+        return bitmap.isMutable() && !bitmap.isRecycled();
+    }
+
+    @Override
+    protected void discard(Bitmap bitmap) {
+        bitmap.recycle();
+    }
+}
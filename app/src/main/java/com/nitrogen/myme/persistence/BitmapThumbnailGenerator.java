@@ -0,0 +1,210 @@
+package com.nitrogen.myme.persistence;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/* BitmapThumbnailGenerator
+ *
+ * purpose: Makes the thumbnails shown in the meme grids, at most THUMBNAIL_SIZE pixels
+ *          on their longest side, and keeps them in a ThumbnailCache. The image is
+ *          decoded already sampled down (see ImageSaver.decode), so a large picture is
+ *          never held in memory at full resolution, then scaled the rest of the way and
+ *          saved as a JPEG of a few kilobytes.
+ *
+ *          Thumbnails asked for from the UI are made later, on one background thread,
+ *          so only one image is decoded for them at once. A thumbnail is filed under
+ *          its image's checksum, so one the cache evicted is made again at the same
+ *          path, and the memes pointing at it don't have to change.
+ */
+public class BitmapThumbnailGenerator implements ThumbnailGenerator {
+    /* OnThumbnail
+     *
+     * purpose: Receives the path of a thumbnail made in the background, or null if it
+     *          couldn't be made.
+     */
+    public interface OnThumbnail {
+        void onThumbnail(String thumbnailPath);
+    }
+
+    public static final int THUMBNAIL_SIZE = 256;
+    private static final int QUALITY = 85;
+    private static final String DIRECTORY = "thumbnails";
+    private static final long MAX_BYTES = 32 * 1024 * 1024;
+
+    private static BitmapThumbnailGenerator instance = null;
+
+    private final ThumbnailCache cache;
+    // one background maker, which goes away when there is nothing to make
+    private final ThreadPoolExecutor maker = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = Executors.defaultThreadFactory().newThread(task);
+            thread.setName("thumbnails");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // the images whose thumbnails are being made again, so none is queued twice
+    private final Set<String> remaking = new HashSet<>();
+
+    //**************************************************
+    // Constructors
+    //**************************************************
+
+    public BitmapThumbnailGenerator(ThumbnailCache cache) {
+        this.cache = cache;
+    }
+
+    /* get
+     *
+     * purpose: The generator keeping its thumbnails in the app's cache directory.
+     */
+    public static synchronized BitmapThumbnailGenerator get(Context context) {
+        if (instance == null) {
+            instance = new BitmapThumbnailGenerator(new ThumbnailCache(
+                    new File(context.getApplicationContext().getCacheDir(), DIRECTORY), MAX_BYTES));
+        }
+
+        return instance;
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    @Override
+    public String thumbnailFor(byte[] image) throws IOException {
+        final String key = ThumbnailCache.keyOf(image);
+        File thumbnail = cache.get(key);
+
+        if (thumbnail == null) {
+            thumbnail = cache.put(key, scale(image));
+        }
+
+        return thumbnail.getPath();
+    }
+
+    public String thumbnailFor(File image) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) image.length());
+
+        try (InputStream in = new FileInputStream(image)) {
+            final byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, length);
+            }
+        }
+
+        return thumbnailFor(bytes.toByteArray());
+    }
+
+    /* thumbnailLater
+     *
+     * purpose: Make the thumbnail of an image in the background, and hand its path to
+     *          the callback on the executor.
+     */
+    public void thumbnailLater(final File image, final Executor executor, final OnThumbnail callback) {
+        maker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final String thumbnail = makeQuietly(image);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onThumbnail(thumbnail);
+                    }
+                });
+            }
+        });
+    }
+
+    /* remakeLater
+     *
+     * purpose: Make a thumbnail that has gone missing again, in the background. Does
+     *          nothing if it is already being made.
+     */
+    public void remakeLater(final File image) {
+        synchronized (remaking) {
+            if (!remaking.add(image.getPath())) {
+                return;
+            }
+        }
+
+        maker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    makeQuietly(image);
+                }
+                finally {
+                    synchronized (remaking) {
+                        remaking.remove(image.getPath());
+                    }
+                }
+            }
+        });
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private String makeQuietly(File image) {
+        try {
+            return thumbnailFor(image);
+        }
+        catch (final IOException e) {
+            Log.e("Thumbnails", "Unable to make a thumbnail of " + image + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /* scale
+     *
+     * purpose: Encode a thumbnail of the image.
+     */
+    private static byte[] scale(final byte[] image) throws IOException {
+        final Bitmap sampled = ImageSaver.decode(new ImageSaver.StreamOpener() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(image);
+            }
+        }, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+        if (sampled == null) {
+            throw new IOException("Unable to decode the image");
+        }
+
+        final int longest = Math.max(sampled.getWidth(), sampled.getHeight());
+        Bitmap thumbnail = sampled;
+        if (longest > THUMBNAIL_SIZE) {
+            final float scale = (float) THUMBNAIL_SIZE / longest;
+            thumbnail = Bitmap.createScaledBitmap(sampled, Math.max(1, Math.round(sampled.getWidth() * scale)),
+                    Math.max(1, Math.round(sampled.getHeight() * scale)), true);
+            // the next image can be decoded into it
+            ImageSaver.release(sampled);
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, QUALITY, out);
+        ImageSaver.release(thumbnail);
+
+        return out.toByteArray();
+    }
+}
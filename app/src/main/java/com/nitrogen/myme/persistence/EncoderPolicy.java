@@ -0,0 +1,210 @@
+package com.nitrogen.myme.persistence;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/* EncoderPolicy
+ *
+ * purpose: Decides how a picture is written. Pictures that are mostly flat colour
+ *          (text, cartoons, screenshots) are kept lossless as PNG, where they are small
+ *          anyway and lossy formats smear the edges of the text. Photographic pictures
+ *          are written lossy, as WebP where it can be used and JPEG otherwise, at the
+ *          highest quality that fits the byte budget. A picture with see-through parts
+ *          is never written as JPEG, which has no alpha.
+ *
+ *          The picture is judged from a small sample of its pixels (see ImageEncoder):
+ *          a photograph has a different colour in most pixels, a flat picture repeats a
+ *          few colours over and over.
+ */
+public class EncoderPolicy {
+    public static final int DEFAULT_BUDGET = 512 * 1024;
+    public static final int MAX_QUALITY = 90;
+    public static final int MIN_QUALITY = 40;
+    // share of the sampled pixels that have a colour of their own in a photograph
+    private static final double PHOTOGRAPHIC_COLOURS = 0.25;
+    private static final int OPAQUE = 0xFF;
+
+    /* Format
+     *
+     * purpose: The formats a picture can be written in, with the file extension each
+     *          one is saved under.
+     */
+    public enum Format {
+        PNG(".png", false),
+        JPEG(".jpg", true),
+        WEBP(".webp", true);
+
+        private final String extension;
+        private final boolean lossy;
+
+        Format(String extension, boolean lossy) {
+            this.extension = extension;
+            this.lossy = lossy;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public boolean isLossy() {
+            return lossy;
+        }
+    }
+
+    /* QualityEncoder
+     *
+     * purpose: Encodes the picture in a format at a quality (0 to 100, ignored by
+     *          lossless formats).
+     */
+    public interface QualityEncoder {
+        byte[] encode(Format format, int quality) throws IOException;
+    }
+
+    /* Encoded
+     *
+     * purpose: A picture as it will be written, and how it was encoded.
+     */
+    public static class Encoded {
+        private final Format format;
+        private final int quality;
+        private final byte[] bytes;
+
+        public Encoded(Format format, int quality, byte[] bytes) {
+            this.format = format;
+            this.quality = quality;
+            this.bytes = bytes;
+        }
+
+        public Format getFormat() {
+            return format;
+        }
+
+        public int getQuality() {
+            return quality;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    private final int byteBudget;
+    private final boolean webp;
+
+    public EncoderPolicy(int byteBudget, boolean webp) {
+        this.byteBudget = byteBudget;
+        this.webp = webp;
+    }
+
+    public int getByteBudget() {
+        return byteBudget;
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* choose
+     *
+     * purpose: Pick the format for a picture from a sample of its pixels (ARGB).
+     */
+    public Format choose(int[] pixels) {
+        if (!isPhotographic(pixels)) {
+            return Format.PNG;
+        }
+        else if (webp) {
+            return Format.WEBP;
+        }
+        else {
+            return hasAlpha(pixels) ? Format.PNG : Format.JPEG;
+        }
+    }
+
+    /* encode
+     *
+     * purpose: Encode the picture in the format. A lossy format is encoded at the highest
+     *          quality, from MIN_QUALITY to MAX_QUALITY, that fits the byte budget, found by
+     *          a binary search over the quality; if not even MIN_QUALITY fits, that is what
+     *          is used. A budget of 0 or less means MAX_QUALITY.
+     */
+    public Encoded encode(Format format, QualityEncoder encoder) throws IOException {
+        if (!format.isLossy()) {
+            return new Encoded(format, 100, encoder.encode(format, 100));
+        }
+
+        Encoded best = new Encoded(format, MAX_QUALITY, encoder.encode(format, MAX_QUALITY));
+        if (byteBudget <= 0 || best.getBytes().length <= byteBudget) {
+            return best;
+        }
+
+        // best is the smallest encoding tried, until one fits
+        int low = MIN_QUALITY;
+        int high = MAX_QUALITY - 1;
+        boolean fits = false;
+        while (low <= high) {
+            final int quality = (low + high) >>> 1;
+            final byte[] bytes = encoder.encode(format, quality);
+            if (bytes.length <= byteBudget) {
+                best = new Encoded(format, quality, bytes);
+                fits = true;
+                low = quality + 1;
+            }
+            else {
+                if (!fits) {
+                    best = new Encoded(format, quality, bytes);
+                }
+                high = quality - 1;
+            }
+        }
+
+        return best;
+    }
+
+    /* withExtension
+     *
+     * purpose: The file name with its extension swapped for the format's.
+     */
+    public static String withExtension(String fileName, Format format) {
+        final int dot = fileName.lastIndexOf('.');
+        final String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return base + format.getExtension();
+    }
+
+    /* formatOf
+     *
+     * purpose: The format a file was saved in, from its extension, or null if it isn't
+     *          one of them.
+     */
+    public static Format formatOf(String fileName) {
+        final String name = fileName.toLowerCase();
+        for (Format format : Format.values()) {
+            if (name.endsWith(format.getExtension())) {
+                return format;
+            }
+        }
+        return name.endsWith(".jpeg") ? Format.JPEG : null;
+    }
+
+    public static boolean hasAlpha(int[] pixels) {
+        for (int pixel : pixels) {
+            if (pixel >>> 24 != OPAQUE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isPhotographic(int[] pixels) {
+        final Set<Integer> colours = new HashSet<>();
+        final int enough = (int) Math.ceil(pixels.length * PHOTOGRAPHIC_COLOURS);
+
+        for (int pixel : pixels) {
+            colours.add(pixel);
+            if (colours.size() >= enough) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
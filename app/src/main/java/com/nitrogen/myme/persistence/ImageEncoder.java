@@ -0,0 +1,61 @@
+package com.nitrogen.myme.persistence;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/* ImageEncoder
+ *
+ * purpose: Encodes a bitmap for the EncoderPolicy, and samples its pixels so the policy
+ *          can tell what kind of picture it is.
+ */
+public class ImageEncoder implements EncoderPolicy.QualityEncoder {
+    private static final int SAMPLE_SIZE = 64;
+
+    private final Bitmap bitmap;
+
+    public ImageEncoder(Bitmap bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    @Override
+    public byte[] encode(EncoderPolicy.Format format, int quality) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(
+                bitmap.getWidth() * bitmap.getHeight() / (format.isLossy() ? 8 : 2));
+
+        if (!bitmap.compress(compressFormat(format), quality, out)) {
+            throw new IOException("Unable to encode the image as " + format);
+        }
+        return out.toByteArray();
+    }
+
+    /* sample
+     *
+     * purpose: Up to SAMPLE_SIZE x SAMPLE_SIZE of the bitmap's pixels, picked out evenly
+     *          without blending them, so a flat picture keeps its few colours.
+     */
+    public static int[] sample(Bitmap bitmap) {
+        final int width = Math.min(bitmap.getWidth(), SAMPLE_SIZE);
+        final int height = Math.min(bitmap.getHeight(), SAMPLE_SIZE);
+        final Bitmap small = Bitmap.createScaledBitmap(bitmap, width, height, false);
+        final int[] pixels = new int[width * height];
+
+        small.getPixels(pixels, 0, width, 0, 0, width, height);
+        if (small != bitmap) {
+            small.recycle();
+        }
+        return pixels;
+    }
+
+    private static Bitmap.CompressFormat compressFormat(EncoderPolicy.Format format) {
+        switch (format) {
+            case JPEG:
+                return Bitmap.CompressFormat.JPEG;
+            case WEBP:
+                return Bitmap.CompressFormat.WEBP;
+            default:
+                return Bitmap.CompressFormat.PNG;
+        }
+    }
+}
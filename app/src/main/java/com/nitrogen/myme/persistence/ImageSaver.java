@@ -12,22 +12,37 @@ import android.os.Environment;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
+import com.nitrogen.myme.application.Services;
 import com.nitrogen.myme.objects.BitmapContext;
 import com.nitrogen.myme.presentation.CreateActivity;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Date;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 
 public class ImageSaver {
+    private static final String OPAQUE_TYPE = "image/jpeg";
+    private static SaveWorker saveWorker = null;
+
+    /* StreamOpener
+     *
+     * purpose: Opens the image to decode. An image is read twice, once for its size.
+     */
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
 
     private String directoryName;
     private String fileName="img1.png";
     private Context context;
     private boolean external;
+    private EncoderPolicy policy = new EncoderPolicy(EncoderPolicy.DEFAULT_BUDGET, true);
 
     public ImageSaver(Context context) {
         this.context = context;
@@ -52,47 +67,96 @@ public class ImageSaver {
         return this;
     }
 
+    public ImageSaver setEncoderPolicy(EncoderPolicy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /* saveInternally
+     *
+     * purpose: Save the picture in the app's ImageStore, in the background. The file
+     *          it goes to is named after its bytes, which aren't known until it has
+     *          been encoded, so a name to wait on is returned straight away instead,
+     *          relative to the database directory; whenSaved gives the real file.
+     */
     public String saveInternally(BitmapContext bitmapContext){
-        String name = "meme" + (new Date()).toString() + ".png";
-        this.setFileName(name);
-        this.setDirectoryName("db");
-        this.save(bitmapContext.getBitmap());
-        this.setExternal(false);
+        final Bitmap bitmap = bitmapContext.getBitmap();
+        final EncoderPolicy.Format format = policy.choose(ImageEncoder.sample(bitmap));
+        final EncoderPolicy encoderPolicy = policy;
+        final ImageStore store = Services.getImageStore();
+        final File pending = store.pendingFile(format.getExtension());
+
+        getSaveWorker(context).submit(pending, new Callable<File>() {
+            @Override
+            public File call() throws IOException {
+                EncoderPolicy.Encoded encoded = encoderPolicy.encode(format, new ImageEncoder(bitmap));
+                File image = store.put(encoded.getBytes(), format.getExtension());
+                logEncoded(image, encoded);
+                return image;
+            }
+        });
 
-        return name;
+        return ImageStore.DIRECTORY + "/" + pending.getName();
     }
 
-    public void save(Bitmap bitmapImage) {
-        FileOutputStream fileOutputStream = null;
+    /* save
+     *
+     * purpose: Encode and write the image in the background (see SaveWorker). Images
+     *          saved to external storage are scanned so they show up in the gallery.
+     *          The bitmap must not be changed or recycled until the save is over.
+     *
+     *          The format is picked here, from a sample of the pixels (see EncoderPolicy),
+     *          and the file name's extension is changed to match it; the quality is
+     *          searched for in the background.
+     */
+    public Future<File> save(final Bitmap bitmapImage) {
+        final EncoderPolicy.Format format = policy.choose(ImageEncoder.sample(bitmapImage));
+        final EncoderPolicy encoderPolicy = policy;
 
-        try {
-            File fp = createFile();
-            fileOutputStream = new FileOutputStream(fp);
-            bitmapImage.compress(Bitmap.CompressFormat.PNG, 100, fileOutputStream);
-            //add media scanner
-
-            MediaScannerConnection.scanFile(this.context,
-                    new String[] { fp.toString() }, null,
-                    new MediaScannerConnection.OnScanCompletedListener() {
-                        public void onScanCompleted(String path, Uri uri) {
-                            Log.i("ExternalStorage", "Scanned " + path + ":");
-                            Log.i("ExternalStorage", "-> uri=" + uri);
-                        }
-                    });
-
-        } catch (Exception e) {
-            Log.e("fileOutputStream",e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (fileOutputStream != null) {
-                    fileOutputStream.close();
-                }
-            } catch (IOException e) {
-                Log.e("fileOutputStream",e.getMessage());
-                e.printStackTrace();
+        setFileName(EncoderPolicy.withExtension(fileName, format));
+        final File file = createFile();
+
+        return getSaveWorker(context).save(file, new SaveWorker.Encoder() {
+            @Override
+            public void encode(OutputStream out) throws IOException {
+                EncoderPolicy.Encoded encoded = encoderPolicy.encode(format, new ImageEncoder(bitmapImage));
+                out.write(encoded.getBytes());
+                logEncoded(file, encoded);
             }
+        }, external);
+    }
+
+    /* whenSaved
+     *
+     * purpose: Run a callback on the executor once the file's save is over.
+     */
+    public static void whenSaved(Context context, File file, Executor executor, SaveWorker.OnSaved callback) {
+        getSaveWorker(context).whenSaved(file, executor, callback);
+    }
+
+    private static synchronized SaveWorker getSaveWorker(Context context) {
+        if (saveWorker == null) {
+            final Context appContext = context.getApplicationContext();
+            saveWorker = new SaveWorker(new SaveWorker.MediaScanner() {
+                @Override
+                public void scan(String[] paths) {
+                    MediaScannerConnection.scanFile(appContext, paths, null,
+                            new MediaScannerConnection.OnScanCompletedListener() {
+                                public void onScanCompleted(String path, Uri uri) {
+                                    Log.i("ExternalStorage", "Scanned " + path + ":");
+                                    Log.i("ExternalStorage", "-> uri=" + uri);
+                                }
+                            });
+                }
+            });
         }
+
+        return saveWorker;
+    }
+
+    private static void logEncoded(File file, EncoderPolicy.Encoded encoded) {
+        Log.i("ImageSaver", "Encoded " + file.getName() + " as " + encoded.getFormat()
+                + " at quality " + encoded.getQuality() + ", " + encoded.getBytes().length + " bytes");
     }
 
     @NonNull
@@ -132,22 +196,107 @@ public class ImageSaver {
     }
 
     public Bitmap load() {
-        FileInputStream inputStream = null;
+        return load(0, 0);
+    }
+
+    /* load
+     *
+     * purpose: Load the saved image, decoded no larger than it takes to fill
+     *          targetWidth x targetHeight. Returns null if it couldn't be read.
+     */
+    public Bitmap load(int targetWidth, int targetHeight) {
+        final File file = createFile();
+
+        return decode(new StreamOpener() {
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+        }, targetWidth, targetHeight);
+    }
+
+    /* load
+     *
+     * purpose: Load an image from a content uri (e.g. one picked from the gallery),
+     *          decoded no larger than it takes to fill targetWidth x targetHeight.
+     *          Returns null if it couldn't be read.
+     */
+    public Bitmap load(final Uri uri, int targetWidth, int targetHeight) {
+        return decode(new StreamOpener() {
+            @Override
+            public InputStream open() throws IOException {
+                InputStream in = context.getContentResolver().openInputStream(uri);
+                if (in == null) {
+                    throw new IOException("Unable to open " + uri);
+                }
+                return in;
+            }
+        }, targetWidth, targetHeight);
+    }
+
+    /* release
+     *
+     * purpose: Hand a loaded bitmap back once it isn't shown anymore, so the next image
+     *          can be decoded into its memory.
+     */
+    public static void release(Bitmap bitmap) {
+        if (bitmap != null) {
+            BitmapPool.get().put(bitmap);
+        }
+    }
+
+    /* decode
+     *
+     * purpose: Decode an image at the smallest power of two down (inSampleSize) that still
+     *          fills the target size, reading only its size the first time through.
+     *          JPEGs have no alpha, so they are decoded at 2 bytes a pixel (RGB_565)
+     *          instead of 4. The image is decoded into a bitmap from the BitmapPool when
+     *          there is one big enough. Returns null if it couldn't be decoded.
+     */
+    public static Bitmap decode(StreamOpener opener, int targetWidth, int targetHeight) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        Bitmap bitmap = null;
+
         try {
-            inputStream = new FileInputStream(createFile());
-            return BitmapFactory.decodeStream(inputStream);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (inputStream != null) {
-                    inputStream.close();
+            options.inJustDecodeBounds = true;
+            try (InputStream in = opener.open()) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            final boolean opaque = OPAQUE_TYPE.equals(options.outMimeType);
+            final int sampleSize = SampleSize.of(options.outWidth, options.outHeight, targetWidth, targetHeight);
+            final int bytes = SampleSize.scaled(options.outWidth, sampleSize)
+                    * SampleSize.scaled(options.outHeight, sampleSize) * (opaque ? 2 : 4);
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize;
+            options.inPreferredConfig = opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+            options.inMutable = true;
+            options.inBitmap = BitmapPool.get().take(bytes);
+
+            try (InputStream in = opener.open()) {
+                bitmap = BitmapFactory.decodeStream(in, null, options);
+            }
+            catch (IllegalArgumentException e) {
+                // the pooled bitmap couldn't be decoded into after all, use a new one
+                BitmapPool.get().put(options.inBitmap);
+                options.inBitmap = null;
+                try (InputStream in = opener.open()) {
+                    bitmap = BitmapFactory.decodeStream(in, null, options);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+        } catch (IOException e) {
+            Log.e("ImageSaver", "Unable to decode image: " + e.getMessage());
+        }
+
+        if (bitmap == null && options.inBitmap != null) {
+            BitmapPool.get().put(options.inBitmap);
         }
-        return null;
+
+        return bitmap;
     }
 
     /* Convert drawable to bitmap
@@ -178,10 +327,10 @@ public class ImageSaver {
 
     /* Get directory path of where newly created memes are stored
      *
-     *
+     * The ImageStore's directory is in it, next to the database.
      */
     public static String getCreatedMemePath(){
-        return "/data/user/0/com.nitrogen.myme/app_db/";
+        return Services.getImageStore().getDirectory().getParent() + "/";
     }
 
 }
@@ -0,0 +1,168 @@
+package com.nitrogen.myme.persistence;
+
+import com.nitrogen.myme.persistence.Utils.SeedFiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+/* ImageStore
+ *
+ * purpose: The pictures of the memes made in the app, kept in a directory next to the
+ *          database. A picture is filed under the checksum of its bytes (keyOf), so
+ *          saving the same picture twice keeps one file, and two saves can't end up
+ *          with the same name unless they are the same picture.
+ *
+ *          A meme refers to its picture by the path it was put at, so whether a picture
+ *          is still used is asked of the memes by that path (MemesPersistence.usesImage),
+ *          one picture at a time, instead of counting the pictures of every meme. When
+ *          UpdateMemes deletes a meme its picture is deleted too, if no other meme uses
+ *          it and it wasn't put in the store in the last graceMillis: a picture is saved
+ *          before its meme is inserted, and may still be waiting for it. collect clears
+ *          out the pictures that were never used.
+ */
+public class ImageStore {
+    public static final String DIRECTORY = "images";
+    public static final long GRACE_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final String PENDING_PREFIX = "pending-";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long graceMillis;
+    private boolean collected = false;
+
+    //**************************************************
+    // Constructors
+    //**************************************************
+
+    public ImageStore(File directory) {
+        this(directory, GRACE_MILLIS);
+    }
+
+    public ImageStore(File directory, long graceMillis) {
+        this.directory = directory;
+        this.graceMillis = graceMillis;
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* keyOf
+     *
+     * purpose: The name a picture is filed under, without its extension.
+     */
+    public static String keyOf(byte[] image) throws IOException {
+        return SeedFiles.checksum(new ByteArrayInputStream(image));
+    }
+
+    /* put
+     *
+     * purpose: File a picture and return where it is. A picture that is already there
+     *          isn't written again, it is only marked as just put. A new one is written
+     *          to a temporary file, synced and renamed into place, so a picture in the
+     *          store is always whole.
+     */
+    public File put(byte[] image, String extension) throws IOException {
+        final File target = new File(directory, keyOf(image) + extension);
+
+        if (target.length() == image.length && target.setLastModified(System.currentTimeMillis())) {
+            return target;
+        }
+
+        directory.mkdirs();
+        final File temp = new File(directory, PENDING_PREFIX + UUID.randomUUID() + TEMP_SUFFIX);
+        final FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(image);
+            out.getFD().sync();
+        }
+        catch (final IOException e) {
+            temp.delete();
+            throw e;
+        }
+        finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Unable to move " + temp + " to " + target);
+        }
+
+        return target;
+    }
+
+    /* pendingFile
+     *
+     * purpose: A name, unique to one save, to wait on a picture under until it has been
+     *          put and its real name is known. Nothing is ever written there.
+     */
+    public File pendingFile(String extension) {
+        return new File(directory, PENDING_PREFIX + UUID.randomUUID() + extension);
+    }
+
+    /* holds
+     *
+     * purpose: Whether the path is a picture in this store.
+     */
+    public boolean holds(String path) {
+        return path != null && directory.getAbsoluteFile().equals(new File(path).getAbsoluteFile().getParentFile());
+    }
+
+    /* release
+     *
+     * purpose: A meme using the picture at the path was deleted. The picture is deleted
+     *          too if none of the memes left uses it.
+     */
+    public synchronized void release(String path, MemesPersistence memes) {
+        if (holds(path) && !memes.usesImage(path)) {
+            deleteUnused(new File(path), System.currentTimeMillis());
+        }
+    }
+
+    public synchronized boolean isCollected() {
+        return collected;
+    }
+
+    /* collect
+     *
+     * purpose: Delete the pictures none of the memes uses, and anything left by a put
+     *          that didn't finish, that are older than graceMillis.
+     *          Returns how many files were deleted.
+     */
+    public synchronized int collect(MemesPersistence memes) {
+        final File[] files = directory.listFiles();
+        final long now = System.currentTimeMillis();
+        int deleted = 0;
+
+        collected = true;
+        if (files != null) {
+            for (File file : files) {
+                // a picture is used at the path it was put at
+                final String path = new File(directory, file.getName()).getPath();
+                if (now - file.lastModified() >= graceMillis
+                        && (file.getName().startsWith(PENDING_PREFIX) || !memes.usesImage(path))
+                        && file.delete()) {
+                    deleted++;
+                }
+            }
+        }
+
+        return deleted;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private boolean deleteUnused(File file, long now) {
+        return now - file.lastModified() >= graceMillis && file.delete();
+    }
+}
@@ -1,17 +1,46 @@
 package com.nitrogen.myme.persistence;
 
+import java.util.Collection;
 import java.util.List;
 import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
 
 public interface MemesPersistence {
+    // contains() on the list looks a meme up by name, without going through the list
     List<Meme> getMemes();
 
+    List<Meme> getMemes(int offset, int limit);
+
+    List<Meme> getFavouriteMemes(int offset, int limit);
+
+    // memes ranked by how many favourites share each of their tags, favourites last,
+    // a window at a time, so a feed can be ranked without sorting the whole catalog
+    List<Meme> getMemesByRelevance(int offset, int limit);
+
+    // every meme, in one pass from first to last; unlike getMemes() nothing read is
+    // kept once the pass has moved on, so it is how a large catalog is gone through
+    Iterable<Meme> scanMemes();
+
+    // whether any meme's image is at this path, looked up without going through every meme
+    boolean usesImage(String imagePath);
+
     boolean insertMeme(Meme currentMeme);
 
+    List<Meme> insertMemes(Collection<Meme> newMemes);
+
     Meme deleteMeme(Meme currentMeme);
 
+    List<Meme> deleteMemes(Collection<Meme> oldMemes);
+
     void updateFav(Meme meme);
 
+    // take a tag that is being deleted off every meme that has it
+    void removeTag(Tag tag);
+
+    // how many times the memes have been inserted, deleted or changed, so whoever keeps
+    // something built from them can tell when it is out of date
+    int getChanges();
+
     void setCurrView(List<Meme> memes);
 
     List<Meme> getCurrView();
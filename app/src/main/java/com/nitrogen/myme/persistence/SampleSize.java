@@ -0,0 +1,36 @@
+package com.nitrogen.myme.persistence;
+
+/* SampleSize
+ *
+ * purpose: Works out how far an image can be sampled down while it is decoded
+ *          (BitmapFactory.Options.inSampleSize), so it isn't decoded bigger than it is
+ *          going to be shown.
+ */
+public class SampleSize {
+
+    /* of
+     *
+     * purpose: The largest power of two the image can be divided by and still cover
+     *          targetWidth x targetHeight. A target of 0 or less means full size.
+     */
+    public static int of(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+
+        if (targetWidth > 0 && targetHeight > 0) {
+            while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+                sampleSize *= 2;
+            }
+        }
+
+        return sampleSize;
+    }
+
+    /* scaled
+     *
+     * purpose: A width or height once sampled down, rounded up, so an estimate of the
+     *          memory a decode needs is never too small.
+     */
+    public static int scaled(int size, int sampleSize) {
+        return (size + sampleSize - 1) / sampleSize;
+    }
+}
@@ -0,0 +1,321 @@
+package com.nitrogen.myme.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/* SaveWorker
+ *
+ * purpose: Encodes and writes images in the background, so the UI thread doesn't wait
+ *          for a large picture to be compressed. Each image is written to a temporary
+ *          file, synced, and renamed over the target, so the target is either the old
+ *          file or the whole new one, never half an image.
+ *
+ *          Saves run one at a time, in the order they were asked for, so only one
+ *          image is being encoded at once. Images that should show up in the gallery
+ *          are handed to the MediaScanner together: one scan covers every save that
+ *          finished before it ran.
+ */
+public class SaveWorker {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+    // how many saves that went somewhere other than their key are remembered
+    private static final int REMEMBERED = 32;
+
+    /* Encoder
+     *
+     * purpose: Writes the image's bytes.
+     */
+    public interface Encoder {
+        void encode(OutputStream out) throws IOException;
+    }
+
+    /* MediaScanner
+     *
+     * purpose: Tells the system about new images, so they show up in the gallery.
+     */
+    public interface MediaScanner {
+        void scan(String[] paths);
+    }
+
+    /* OnSaved
+     *
+     * purpose: Receives the outcome of a save.
+     */
+    public interface OnSaved {
+        void onSaved(File file, boolean saved);
+    }
+
+    private final MediaScanner scanner;
+    // one background writer, which goes away when there is nothing to write
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = Executors.defaultThreadFactory().newThread(task);
+            thread.setName("save-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // the saves not finished yet, by path
+    private final Map<String, Save> pending = new HashMap<>();
+    // where the last few saves went, by key, when that wasn't the key itself
+    private final Map<String, File> savedTo = new LinkedHashMap<String, File>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+            return size() > REMEMBERED;
+        }
+    };
+    private final Set<String> toScan = new LinkedHashSet<>();
+    private boolean scanQueued = false;
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    public SaveWorker(MediaScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* save
+     *
+     * purpose: Write an image to the target in the background, and scan it afterwards
+     *          if asked to. The future gives the target once it is in place, or the
+     *          IOException that stopped it.
+     */
+    public Future<File> save(final File target, final Encoder encoder, final boolean scan) {
+        return submit(target, new Callable<File>() {
+            @Override
+            public File call() throws IOException {
+                write(target, encoder);
+                if (scan) {
+                    scanLater(target);
+                }
+                return target;
+            }
+        });
+    }
+
+    /* submit
+     *
+     * purpose: Run a save that works out for itself where the image goes, e.g. from its
+     *          bytes (see ImageStore). It is waited on under the key, and whenSaved
+     *          hands callbacks the file it went to.
+     */
+    public Future<File> submit(File key, Callable<File> write) {
+        final Save save = new Save(key, write);
+
+        synchronized (pending) {
+            pending.put(key.getPath(), save);
+        }
+        writer.execute(save);
+
+        return save;
+    }
+
+    /* whenSaved
+     *
+     * purpose: Run a callback on the executor once the target's save is over, with the
+     *          file it was saved to. If the target isn't being saved, it runs straight
+     *          away, saved if the file is there or a recent save under it went elsewhere.
+     */
+    public void whenSaved(final File target, final Executor executor, final OnSaved callback) {
+        Save save;
+        File moved;
+        synchronized (pending) {
+            save = pending.get(target.getPath());
+            moved = savedTo.get(target.getPath());
+        }
+
+        if (save == null) {
+            final File file = moved != null ? moved : target;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onSaved(file, file.exists());
+                }
+            });
+        } else {
+            final Save done = save;
+            save.whenDone(new Runnable() {
+                @Override
+                public void run() {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            File file = savedFile(done);
+                            callback.onSaved(file != null ? file : target, file != null);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /* isSaving
+     *
+     * purpose: Whether the target is still waiting to be written.
+     */
+    public boolean isSaving(File target) {
+        synchronized (pending) {
+            return pending.containsKey(target.getPath());
+        }
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static void write(File target, Encoder encoder) throws IOException {
+        final File temp = new File(target.getPath() + TEMP_SUFFIX);
+        final FileOutputStream stream = new FileOutputStream(temp);
+
+        try (OutputStream out = new BufferedOutputStream(stream, BUFFER_SIZE)) {
+            encoder.encode(out);
+            out.flush();
+            // make sure the image is on disk before it takes the old one's place
+            stream.getFD().sync();
+        }
+        catch (final IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Unable to move " + temp + " to " + target);
+        }
+    }
+
+    /* scanLater
+     *
+     * purpose: Add a file to the next scan, queueing one behind the saves already
+     *          waiting if there isn't one queued.
+     */
+    private void scanLater(File file) {
+        synchronized (toScan) {
+            toScan.add(file.getPath());
+            if (scanQueued) {
+                return;
+            }
+            scanQueued = true;
+        }
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                String[] paths;
+                synchronized (toScan) {
+                    paths = toScan.toArray(new String[toScan.size()]);
+                    toScan.clear();
+                    scanQueued = false;
+                }
+                scanner.scan(paths);
+            }
+        });
+    }
+
+    // the file a save went to, or null if it failed
+    private static File savedFile(Future<File> save) {
+        try {
+            return save.get();
+        }
+        catch (final ExecutionException e) {
+            return null;
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /* Save
+     *
+     * purpose: One save, which lets callbacks wait for it and takes itself off the
+     *          pending saves when it is over, before anyone waiting on it is woken.
+     */
+    private class Save extends FutureTask<File> {
+        private final File target;
+        private final List<Runnable> callbacks = new ArrayList<>();
+
+        private Save(File target, Callable<File> write) {
+            super(write);
+            this.target = target;
+        }
+
+        private void whenDone(Runnable callback) {
+            synchronized (callbacks) {
+                if (!isDone()) {
+                    callbacks.add(callback);
+                    return;
+                }
+            }
+            callback.run();
+        }
+
+        @Override
+        protected void set(File file) {
+            finish(file);
+            super.set(file);
+        }
+
+        @Override
+        protected void setException(Throwable e) {
+            finish(null);
+            super.setException(e);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                finish(null);
+            }
+
+            List<Runnable> toRun;
+            synchronized (callbacks) {
+                toRun = new ArrayList<>(callbacks);
+                callbacks.clear();
+            }
+            for (Runnable callback : toRun) {
+                callback.run();
+            }
+        }
+
+        // file is where the save went, or null if it failed
+        private void finish(File file) {
+            synchronized (pending) {
+                // a later save of the same file may have taken its place
+                if (pending.get(target.getPath()) == this) {
+                    pending.remove(target.getPath());
+                }
+                if (file != null && !file.equals(target)) {
+                    savedTo.put(target.getPath(), file);
+                }
+            }
+        }
+    }
+}
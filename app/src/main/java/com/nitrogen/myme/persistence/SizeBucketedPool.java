@@ -0,0 +1,147 @@
+package com.nitrogen.myme.persistence;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* SizeBucketedPool
+ *
+ * purpose: Keeps objects that are done with, e.g. bitmaps, so their memory can be reused
+ *          instead of allocating new objects and leaving the old ones to the garbage
+ *          collector. Objects are grouped in buckets by size, each bucket twice the size
+ *          of the one before it, so one that is big enough is found by looking in one or
+ *          two buckets instead of at every object.
+ *
+ *          At most maxBytes are kept. When there is more, objects are thrown away starting
+ *          with the largest bucket, since one large object frees the most memory.
+ */
+public abstract class SizeBucketedPool<T> {
+    // how many buckets above the one asked for are looked in, so a small request
+    // doesn't use up a much larger object
+    private static final int BUCKETS_UP = 1;
+
+    private final long maxBytes;
+    // the objects in each bucket, most recently put first
+    private final TreeMap<Integer, Deque<T>> buckets = new TreeMap<>();
+    private long totalBytes = 0;
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    public SizeBucketedPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    //**************************************************
+    // Abstract Methods
+    //**************************************************
+
+    // the number of bytes the object holds
+    protected abstract int sizeOf(T item);
+
+    // whether the object can still be reused
+    protected abstract boolean isReusable(T item);
+
+    // let go of an object the pool won't keep
+    protected abstract void discard(T item);
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* take
+     *
+     * purpose: Remove and return an object holding at least the given number of bytes,
+     *          or null if the pool doesn't have one.
+     */
+    public synchronized T take(int bytes) {
+        final int bucket = bucketOf(bytes);
+
+        for (Map.Entry<Integer, Deque<T>> entry : buckets.subMap(bucket, true, bucket + BUCKETS_UP, true).entrySet()) {
+            final Iterator<T> items = entry.getValue().iterator();
+            while (items.hasNext()) {
+                final T item = items.next();
+                if (sizeOf(item) >= bytes) {
+                    items.remove();
+                    totalBytes -= sizeOf(item);
+                    return item;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /* put
+     *
+     * purpose: Give an object back to the pool once nothing uses it anymore. It must not
+     *          be used again after that, unless it is taken out again.
+     */
+    public synchronized void put(T item) {
+        final int size = sizeOf(item);
+
+        if (!isReusable(item) || size > maxBytes) {
+            discard(item);
+            return;
+        }
+
+        Deque<T> bucket = buckets.get(bucketOf(size));
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(bucketOf(size), bucket);
+        }
+        bucket.addFirst(item);
+        totalBytes += size;
+
+        trim();
+    }
+
+    /* clear
+     *
+     * purpose: Throw away everything in the pool, e.g. when the system is low on memory.
+     */
+    public synchronized void clear() {
+        for (Deque<T> bucket : buckets.values()) {
+            for (T item : bucket) {
+                discard(item);
+            }
+        }
+        buckets.clear();
+        totalBytes = 0;
+    }
+
+    /* getSize
+     *
+     * purpose: How many bytes the pool is holding on to.
+     */
+    public synchronized long getSize() {
+        return totalBytes;
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* bucketOf
+     *
+     * purpose: The bucket objects of this size go in: the power of two at or above it.
+     */
+    static int bucketOf(int bytes) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(bytes, 1) - 1);
+    }
+
+    private void trim() {
+        while (totalBytes > maxBytes) {
+            final Map.Entry<Integer, Deque<T>> largest = buckets.lastEntry();
+            final T item = largest.getValue().pollLast();
+            totalBytes -= sizeOf(item);
+            discard(item);
+            if (largest.getValue().isEmpty()) {
+                buckets.remove(largest.getKey());
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.util.List;
 import com.nitrogen.myme.objects.Tag;
 
 public interface TagsPersistence {
+    // contains() on the list looks a tag up by name, without going through the list
     List<Tag> getTags();
 
     boolean insertTag(Tag tag);
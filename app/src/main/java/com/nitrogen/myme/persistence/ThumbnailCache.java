@@ -0,0 +1,177 @@
+package com.nitrogen.myme.persistence;
+
+import com.nitrogen.myme.persistence.Utils.SeedFiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* ThumbnailCache
+ *
+ * purpose: The thumbnails of the memes' images, kept in a directory on disk. A thumbnail
+ *          is filed under the checksum of the image it was made from (keyOf), so an image
+ *          that is saved or imported more than once only gets one thumbnail.
+ *
+ *          The directory is kept under maxBytes by deleting the thumbnails used least
+ *          recently, where a thumbnail is used when it is made or looked up. The order
+ *          is kept in the files' modification times, so it survives a restart. A meme
+ *          whose thumbnail was deleted is shown from its image until it is made again.
+ */
+public class ThumbnailCache {
+    private static final String EXTENSION = ".jpg";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    // the size of each thumbnail, least recently used first
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    public ThumbnailCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        directory.mkdirs();
+        loadEntries();
+        evict();
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* keyOf
+     *
+     * purpose: The key a thumbnail of this image is filed under.
+     */
+    public static String keyOf(byte[] image) throws IOException {
+        return SeedFiles.checksum(new ByteArrayInputStream(image));
+    }
+
+    /* get
+     *
+     * purpose: The thumbnail filed under the key, or null if there isn't one.
+     */
+    public synchronized File get(String key) {
+        final Long size = entries.get(key);
+        final File thumbnail = fileFor(key);
+
+        if (size == null) {
+            return null;
+        }
+        if (!thumbnail.setLastModified(System.currentTimeMillis()) && !thumbnail.exists()) {
+            // deleted behind our back, e.g. the system clearing its caches
+            entries.remove(key);
+            totalBytes -= size;
+            return null;
+        }
+
+        return thumbnail;
+    }
+
+    /* put
+     *
+     * purpose: File a thumbnail under the key, making room for it if the directory is
+     *          full, and return where it was saved. It is written to a temporary file
+     *          and renamed into place, so a thumbnail is never seen half written.
+     */
+    public synchronized File put(String key, byte[] thumbnail) throws IOException {
+        final File target = fileFor(key);
+        final File temp = new File(target.getPath() + TEMP_SUFFIX);
+
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(thumbnail);
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Unable to move " + temp + " to " + target);
+        }
+
+        final Long replaced = entries.put(key, (long) thumbnail.length);
+        if (replaced != null) {
+            totalBytes -= replaced;
+        }
+        totalBytes += thumbnail.length;
+        evict();
+
+        return target;
+    }
+
+    /* getSize
+     *
+     * purpose: How many bytes of thumbnails are kept.
+     */
+    public synchronized long getSize() {
+        return totalBytes;
+    }
+
+    public File fileFor(String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* loadEntries
+     *
+     * purpose: Find the thumbnails already in the directory, in the order they were
+     *          last used. Temporary files left by a write that didn't finish are deleted.
+     */
+    private void loadEntries() {
+        final File[] files = directory.listFiles();
+
+        if (files != null) {
+            final long[] used = new long[files.length];
+            final Integer[] order = new Integer[files.length];
+            for (int i = 0; i < files.length; i++) {
+                // read the times once, they could change while sorting
+                used[i] = files[i].lastModified();
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return used[a] < used[b] ? -1 : (used[a] == used[b] ? 0 : 1);
+                }
+            });
+
+            for (Integer i : order) {
+                final String name = files[i].getName();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    files[i].delete();
+                } else if (name.endsWith(EXTENSION)) {
+                    entries.put(name.substring(0, name.length() - EXTENSION.length()), files[i].length());
+                    totalBytes += files[i].length();
+                }
+            }
+        }
+    }
+
+    /* evict
+     *
+     * purpose: Delete the least recently used thumbnails until the rest fit in maxBytes.
+     *          The most recent one is kept, even if it doesn't fit on its own.
+     */
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> oldest = entries.entrySet().iterator();
+
+        while (totalBytes > maxBytes && entries.size() > 1) {
+            final Map.Entry<String, Long> entry = oldest.next();
+            fileFor(entry.getKey()).delete();
+            totalBytes -= entry.getValue();
+            oldest.remove();
+        }
+    }
+}
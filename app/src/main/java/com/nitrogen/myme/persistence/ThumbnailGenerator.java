@@ -0,0 +1,8 @@
+package com.nitrogen.myme.persistence;
+
+import java.io.IOException;
+
+public interface ThumbnailGenerator {
+    // returns the path of a small copy of the image, made the first time it is asked for
+    String thumbnailFor(byte[] image) throws IOException;
+}
@@ -2,65 +2,133 @@ package com.nitrogen.myme.persistence.Utils;
 
 import android.content.Context;
 import android.content.res.AssetManager;
+import android.util.Log;
 
 import com.nitrogen.myme.application.Main;
+import com.nitrogen.myme.persistence.hsqldb.ConnectionProvider;
+import com.nitrogen.myme.persistence.hsqldb.SeedMerger;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-
+import java.sql.SQLException;
+import java.util.Properties;
+
+/* DatabaseHelper
+ *
+ * purpose: Puts the seed databases shipped in the app's assets on the device.
+ *          On first launch each seed is copied into place. After that the seeds are
+ *          only looked at again when the app ships a different seed manifest (see
+ *          SeedFiles): a seed whose checksum changed is merged into the database
+ *          already on the device (see SeedMerger) instead of replacing it.
+ *
+ *          The last seed applied is kept in the seed directory, so an update can be
+ *          compared with it to find out what the update added.
+ */
 public class DatabaseHelper {
+    private static final String DB_PATH = "db";
+    private static final String SEED_DIRECTORY = "seed";
+    private static final String UPDATE_DIRECTORY = "seed-update";
+    private static final String SCRIPT = ".script";
+    private static final String[] DATABASE_FILES = {".script", ".properties", ".data", ".log", ".backup", ".snapshot"};
 
     public static void copyDatabaseToDevice(Context context) {
-        final String DB_PATH = "db";
-
-        String[] assetNames;
         File dataDirectory = context.getDir(DB_PATH, Context.MODE_PRIVATE);
         AssetManager assetManager = context.getAssets();
 
         try {
+            long start = System.nanoTime();
 
-            assetNames = assetManager.list(DB_PATH);
-            for (int i = 0; i < assetNames.length; i++) {
-                assetNames[i] = DB_PATH + "/" + assetNames[i];
-            }
+            Properties shipped = SeedFiles.readManifest(assetManager.open(DB_PATH + "/" + SeedFiles.MANIFEST));
+            File manifestFile = new File(dataDirectory, SeedFiles.MANIFEST);
+            Properties applied = SeedFiles.readManifest(manifestFile);
 
-            copyAssetsToDirectory(context, assetNames, dataDirectory);
+            if (!shipped.equals(applied) || !allCopied(shipped, dataDirectory)) {
+                applySeeds(assetManager, shipped, applied, dataDirectory);
+                SeedFiles.writeManifest(shipped, manifestFile);
+                Log.i("DatabaseHelper", "Applied seed version " + shipped.getProperty(SeedFiles.VERSION)
+                        + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
 
             Main.setDBPathName(dataDirectory.toString()  +"/"+ Main.getDBPathName());
 
-        } catch (final IOException ioe) {
-            System.out.print( "Unable to access application data: " + ioe.getMessage());
+        } catch (final IOException | SQLException e) {
+            System.out.print( "Unable to access application data: " + e.getMessage());
         }
     }
 
-
-    private static void copyAssetsToDirectory(Context context, String[] assets, File directory) throws IOException {
-        AssetManager assetManager = context.getAssets();
-
-        for (String asset : assets) {
-            String[] components = asset.split("/");
-            String copyPath = directory.toString() + "/" + components[components.length - 1];
-
-            char[] buffer = new char[1024];
-            int count;
-
-            File outFile = new File(copyPath);
-            if(!outFile.exists()){
-                InputStreamReader in = new InputStreamReader(assetManager.open(asset));
-                FileWriter out = new FileWriter(outFile);
-
-                count = in.read(buffer);
-                while (count != -1) {
-                    out.write(buffer, 0, count);
-                    count = in.read(buffer);
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* applySeeds
+     *
+     * purpose: Bring each seed in the manifest onto the device. A database that isn't
+     *          there yet is copied from its seed. A database that is there is given what
+     *          a changed seed added, compared with the seed it was last given.
+     */
+    private static void applySeeds(AssetManager assetManager, Properties shipped, Properties applied, File directory)
+            throws IOException, SQLException {
+        File seedDirectory = new File(directory, SEED_DIRECTORY);
+        seedDirectory.mkdirs();
+
+        for (String name : SeedFiles.seedNames(shipped)) {
+            String checksum = shipped.getProperty(name);
+            String asset = DB_PATH + "/" + name;
+            File target = new File(directory, name);
+            File baseline = new File(seedDirectory, name);
+
+            if (!target.exists()) {
+                // first launch: one copy out of the APK, then a channel copy on the device,
+                // clearing out anything left behind by a database that isn't there anymore
+                deleteDatabase(target);
+                SeedFiles.copy(assetManager.open(asset), baseline, checksum);
+                SeedFiles.copy(baseline, target);
+            }
+            else if (!baseline.exists()) {
+                // installed before seeds were tracked, the database came from this seed
+                SeedFiles.copy(assetManager.open(asset), baseline, checksum);
+            }
+            else if (!checksum.equals(applied.getProperty(name))) {
+                File updateDirectory = new File(directory, UPDATE_DIRECTORY);
+                updateDirectory.mkdirs();
+                File update = new File(updateDirectory, name);
+                SeedFiles.copy(assetManager.open(asset), update, checksum);
+
+                ConnectionProvider connections = new ConnectionProvider(databasePath(target));
+                try {
+                    int added = SeedMerger.merge(databasePath(update), databasePath(baseline), connections);
+                    Log.i("DatabaseHelper", "Seed " + name + " added " + added + " memes");
+                }
+                finally {
+                    connections.close();
                 }
 
-                out.close();
-                in.close();
+                // the update is the seed to compare the next one with
+                deleteDatabase(baseline);
+                SeedFiles.copy(assetManager.open(asset), baseline, checksum);
+                deleteDatabase(update);
+            }
+        }
+    }
+
+    private static boolean allCopied(Properties manifest, File directory) {
+        for (String name : SeedFiles.seedNames(manifest)) {
+            if (!new File(directory, name).exists()) {
+                return false;
             }
+        }
+        return true;
+    }
+
+    private static String databasePath(File script) {
+        String path = script.getPath();
+        return path.endsWith(SCRIPT) ? path.substring(0, path.length() - SCRIPT.length()) : path;
+    }
 
+    private static void deleteDatabase(File script) {
+        String path = databasePath(script);
+        for (String extension : DATABASE_FILES) {
+            new File(path + extension).delete();
         }
     }
 }
@@ -0,0 +1,187 @@
+package com.nitrogen.myme.persistence.Utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/* SeedFiles
+ *
+ * purpose: Copies the seed databases shipped with the app and keeps track of which
+ *          ones have been applied. Files are copied as bytes, through a large buffer,
+ *          into a temporary file that is only renamed into place once it is complete,
+ *          so a copy that is interrupted never leaves half a database behind.
+ *
+ *          The seed manifest (seed.properties) has a version and the SHA-256 checksum of
+ *          each seed file. A copy of the manifest is saved next to the databases once
+ *          the seeds are applied; when the shipped manifest is the same as the saved one
+ *          there is nothing to do and no seed file is read at all.
+ */
+public class SeedFiles {
+    public static final String MANIFEST = "seed.properties";
+    public static final String VERSION = "version";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* readManifest
+     *
+     * purpose: Read a seed manifest. The stream is closed afterwards.
+     */
+    public static Properties readManifest(InputStream in) throws IOException {
+        Properties manifest = new Properties();
+
+        try (InputStream input = in) {
+            manifest.load(input);
+        }
+
+        return manifest;
+    }
+
+    /* readManifest
+     *
+     * purpose: Read the manifest saved on the device, or an empty one if no seeds have
+     *          been applied yet.
+     */
+    public static Properties readManifest(File file) throws IOException {
+        return file.exists() ? readManifest(new FileInputStream(file)) : new Properties();
+    }
+
+    /* writeManifest
+     *
+     * purpose: Save the manifest of the seeds that have been applied.
+     */
+    public static void writeManifest(Properties manifest, File file) throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+
+        try (OutputStream out = new FileOutputStream(temp)) {
+            manifest.store(out, null);
+        }
+        moveIntoPlace(temp, file);
+    }
+
+    /* seedNames
+     *
+     * purpose: The names of the seed files listed in a manifest.
+     */
+    public static Set<String> seedNames(Properties manifest) {
+        Set<String> names = new TreeSet<>(manifest.stringPropertyNames());
+        names.remove(VERSION);
+        return names;
+    }
+
+    /* copy
+     *
+     * purpose: Copy a stream into a file, closing the stream afterwards.
+     *          Returns the SHA-256 checksum of the bytes copied, computed along the way.
+     *          If expected isn't null and the checksum doesn't match it, the copy is
+     *          thrown away and the target is left as it was.
+     */
+    public static String copy(InputStream in, File target, String expected) throws IOException {
+        File temp = new File(target.getPath() + TEMP_SUFFIX);
+        MessageDigest digest = sha256();
+
+        try (InputStream input = in;
+             OutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+                out.write(buffer, 0, count);
+            }
+        }
+
+        String checksum = toHex(digest.digest());
+        if (expected != null && !expected.equalsIgnoreCase(checksum)) {
+            temp.delete();
+            throw new IOException("Checksum mismatch copying " + target.getName()
+                    + ": expected " + expected + ", was " + checksum);
+        }
+        moveIntoPlace(temp, target);
+
+        return checksum;
+    }
+
+    /* copy
+     *
+     * purpose: Copy one file into another, letting the channels move the bytes
+     *          without passing them through a buffer of ours.
+     */
+    public static void copy(File source, File target) throws IOException {
+        File temp = new File(target.getPath() + TEMP_SUFFIX);
+
+        try (FileChannel in = new FileInputStream(source).getChannel();
+             FileChannel out = new FileOutputStream(temp).getChannel()) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        moveIntoPlace(temp, target);
+    }
+
+    /* checksum
+     *
+     * purpose: The SHA-256 checksum of a stream's bytes, as hex. The stream is closed
+     *          afterwards.
+     */
+    public static String checksum(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+
+        try (InputStream input = in) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static void moveIntoPlace(File temp, File target) throws IOException {
+        if (!temp.renameTo(target)) {
+            // some platforms won't rename over an existing file
+            target.delete();
+            if (!temp.renameTo(target)) {
+                temp.delete();
+                throw new IOException("Unable to move " + temp + " to " + target);
+            }
+        }
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,394 @@
+package com.nitrogen.myme.persistence.hsqldb;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/* CatalogSnapshot
+ *
+ * purpose: A compact binary copy of the memes, kept next to the database, that can be
+ *          read back instead of building every meme and tag from the database row by
+ *          row; reading the snapshot is one memory-mapped file.
+ *
+ *          The file has tables of meme names, sources and thumbnails and a table of the
+ *          distinct tag names, then the tags of each meme as int offsets into a list of
+ *          tag numbers, and the favourites as a bit set of ints:
+ *
+ *              MAGIC, FORMAT_VERSION, stamp, meme count
+ *              names, sources, thumbnails,   (count, then length + UTF-8 bytes each)
+ *              tag names
+ *              tag offsets                   (meme count + 1 ints)
+ *              tag numbers                   (count, then ints)
+ *              favourites                    (count, then ints, one bit per meme)
+ *              MAGIC
+ *
+ *          A snapshot is only there while it matches the database: anything that
+ *          changes the memes or their tags deletes it first (invalidate), and it is
+ *          written again, in the background, once the change is saved, by whoever
+ *          holds all of the memes and has seen every change (see changes). Writes go to a
+ *          temporary file that is renamed over the old one, so a reader never sees half
+ *          a snapshot.
+ *
+ *          The file being there isn't taken on trust, though: the database may have
+ *          been changed without it, say copied back from a backup, or changed by a run
+ *          that stopped before it could delete the snapshot. The database counts its
+ *          changes in CATALOG_STAMP, in the same transaction as each change (stamp),
+ *          and the snapshot's header holds the count it was written at. A snapshot
+ *          whose stamp isn't the database's is out of date.
+ */
+public class CatalogSnapshot {
+    private static final int MAGIC = 0x4D594D53;
+    private static final int FORMAT_VERSION = 3;
+    private static final String EXTENSION = ".snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Map<ConnectionProvider, Integer> CHANGES = new WeakHashMap<>();
+
+    // one background writer, which goes away when there is nothing to write
+    private static final ThreadPoolExecutor WRITER = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = Executors.defaultThreadFactory().newThread(task);
+            thread.setName("catalog-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* fileFor
+     *
+     * purpose: Where the snapshot of a database is kept.
+     */
+    public static File fileFor(ConnectionProvider connections) {
+        return new File(connections.getDbPath() + EXTENSION);
+    }
+
+    /* invalidate
+     *
+     * purpose: Delete a database's snapshot because its memes are about to change, and
+     *          count the change. Callers hold the provider's lock.
+     */
+    static void invalidate(ConnectionProvider connections) {
+        fileFor(connections).delete();
+        synchronized (CHANGES) {
+            CHANGES.put(connections, changes(connections) + 1);
+        }
+    }
+
+    /* stamp
+     *
+     * purpose: Count a change to the memes or their tags in the database itself. Run in
+     *          the transaction making the change, so the two are saved together.
+     */
+    static void stamp(ConnectionProvider connections) throws SQLException {
+        connections.prepare("UPDATE catalog_stamp SET stamp = stamp + 1").executeUpdate();
+    }
+
+    /* stampOf
+     *
+     * purpose: How many changes the database has counted (see stamp).
+     */
+    static long stampOf(ConnectionProvider connections) throws SQLException {
+        final ResultSet rs = connections.prepare("SELECT stamp FROM catalog_stamp").executeQuery();
+        final long stamp = rs.next() ? rs.getLong(1) : -1;
+        rs.close();
+        return stamp;
+    }
+
+    /* changes
+     *
+     * purpose: How many times the memes in a database have been changed through this
+     *          provider. Whoever writes a snapshot compares it with the count they last
+     *          saw, so a change they didn't make isn't covered up by their snapshot.
+     */
+    static int changes(ConnectionProvider connections) {
+        synchronized (CHANGES) {
+            Integer count = CHANGES.get(connections);
+            return count != null ? count : 0;
+        }
+    }
+
+    /* writeLater
+     *
+     * purpose: Run a write on the background writer, after any writes already queued.
+     */
+    static void writeLater(Runnable write) {
+        WRITER.execute(write);
+    }
+
+    /* flush
+     *
+     * purpose: Wait for the writes queued so far to finish.
+     */
+    public static void flush() {
+        try {
+            WRITER.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // nothing, the writes before it are done once it runs
+                }
+            }).get();
+        }
+        catch (final ExecutionException e) {
+            // can't happen, the task does nothing
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* write
+     *
+     * purpose: Save a snapshot of the memes, as of the database's stamp, replacing the
+     *          old one in one rename.
+     */
+    public static void write(File file, long stamp, List<Meme> memes) throws IOException {
+        replace(writeTemp(file, stamp, memes), file);
+    }
+
+    /* writeTemp
+     *
+     * purpose: Write a snapshot of the memes to a temporary file next to the snapshot,
+     *          synced to disk, and return it. It takes the snapshot's place in replace,
+     *          or is deleted if it is out of date by then.
+     */
+    static File writeTemp(File file, long stamp, List<Meme> memes) throws IOException {
+        final int count = memes.size();
+        final List<String> tagNames = new ArrayList<>();
+        final Map<String, Integer> tagNumbers = new HashMap<>();
+        final int[] offsets = new int[count + 1];
+        final List<Integer> members = new ArrayList<>();
+        final int[] favourites = new int[(count + 31) / 32];
+
+        for (int i = 0; i < count; i++) {
+            Meme meme = memes.get(i);
+            offsets[i] = members.size();
+            for (Tag tag : meme.getTags()) {
+                Integer number = tagNumbers.get(tag.getName());
+                if (number == null) {
+                    number = tagNames.size();
+                    tagNumbers.put(tag.getName(), number);
+                    tagNames.add(tag.getName());
+                }
+                members.add(number);
+            }
+            if (meme.isFavourite()) {
+                favourites[i / 32] |= 1 << (i % 32);
+            }
+        }
+        offsets[count] = members.size();
+
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        FileOutputStream stream = new FileOutputStream(temp);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(stamp);
+            out.writeInt(count);
+
+            out.writeInt(count);
+            for (Meme meme : memes) {
+                writeString(out, meme.getName());
+            }
+            out.writeInt(count);
+            for (Meme meme : memes) {
+                writeString(out, meme.getImagePath());
+            }
+            out.writeInt(count);
+            for (Meme meme : memes) {
+                writeString(out, meme.hasThumbnail() ? meme.getThumbnailPath() : null);
+            }
+            out.writeInt(tagNames.size());
+            for (String tag : tagNames) {
+                writeString(out, tag);
+            }
+
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.writeInt(members.size());
+            for (int member : members) {
+                out.writeInt(member);
+            }
+            out.writeInt(favourites.length);
+            for (int bits : favourites) {
+                out.writeInt(bits);
+            }
+            out.writeInt(MAGIC);
+
+            out.flush();
+            // make sure the snapshot is on disk before it takes the old one's place
+            stream.getFD().sync();
+        }
+        catch (final IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+
+        return temp;
+    }
+
+    /* replace
+     *
+     * purpose: Put a snapshot written by writeTemp in place of the old one, in one rename.
+     */
+    static void replace(File temp, File file) throws IOException {
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to move " + temp + " to " + file);
+        }
+    }
+
+    /* stampOf
+     *
+     * purpose: The database stamp a snapshot was written at, or -1 if there is no
+     *          snapshot. A snapshot that isn't one this version can read throws an
+     *          IOException.
+     */
+    public static long stampOf(File file) throws IOException {
+        if (!file.exists()) {
+            return -1;
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a catalog snapshot: " + file);
+            }
+            return in.readLong();
+        }
+    }
+
+    /* read
+     *
+     * purpose: Read the memes back from a snapshot, in the order they were written,
+     *          or return null if there is no snapshot. A snapshot that isn't one this
+     *          version can read, or is damaged, throws an IOException.
+     */
+    public static List<Meme> read(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        final ByteBuffer in;
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a catalog snapshot: " + file);
+            }
+            in.getLong();
+            final int count = in.getInt();
+            final byte[] buffer = new byte[256];
+
+            final String[] names = readStrings(in, buffer);
+            final String[] sources = readStrings(in, buffer);
+            final String[] thumbnails = readStrings(in, buffer);
+            final String[] tagNames = readStrings(in, buffer);
+            if (names.length != count || sources.length != count || thumbnails.length != count) {
+                throw new IOException("Damaged catalog snapshot: " + file);
+            }
+            final Tag[] tags = new Tag[tagNames.length];
+            for (int t = 0; t < tags.length; t++) {
+                // tags can't change, so memes with the same tag share it
+                tags[t] = new Tag(tagNames[t]);
+            }
+
+            final int[] offsets = readInts(in, count + 1);
+            final int[] members = readInts(in, in.getInt());
+            final int[] favourites = readInts(in, in.getInt());
+            if (in.getInt() != MAGIC || favourites.length != (count + 31) / 32
+                    || offsets[count] != members.length) {
+                throw new IOException("Damaged catalog snapshot: " + file);
+            }
+
+            final List<Meme> memes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final Meme meme = new Meme(names[i], sources[i]);
+                meme.setThumbnailPath(thumbnails[i]);
+                final List<Tag> memeTags = new ArrayList<>(offsets[i + 1] - offsets[i]);
+                for (int m = offsets[i]; m < offsets[i + 1]; m++) {
+                    memeTags.add(tags[members[m]]);
+                }
+                meme.setTags(memeTags);
+                meme.setFavourite((favourites[i / 32] & (1 << (i % 32))) != 0);
+                memes.add(meme);
+            }
+            return memes;
+        }
+        catch (final BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new IOException("Damaged catalog snapshot: " + file, e);
+        }
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer in, byte[] buffer) {
+        final String[] strings = new String[in.getInt()];
+
+        for (int i = 0; i < strings.length; i++) {
+            final int length = in.getInt();
+            if (length >= 0) {
+                if (length > buffer.length) {
+                    buffer = new byte[length];
+                }
+                in.get(buffer, 0, length);
+                strings[i] = new String(buffer, 0, length, UTF_8);
+            }
+        }
+
+        return strings;
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        final int[] ints = new int[count];
+        in.asIntBuffer().get(ints);
+        in.position(in.position() + count * 4);
+        return ints;
+    }
+}
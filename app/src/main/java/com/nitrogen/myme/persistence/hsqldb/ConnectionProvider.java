@@ -0,0 +1,262 @@
+package com.nitrogen.myme.persistence.hsqldb;
+
+import android.util.Log;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* ConnectionProvider
+ *
+ * purpose: Keeps one connection to the database open for as long as the app uses it,
+ *          along with the prepared statements run on it. The database is opened once
+ *          instead of being opened, replayed and shut down again for every operation;
+ *          it is shut down when the provider is closed.
+ *
+ *          The statements are shared, so callers hold the provider's lock
+ *          (synchronized (connections) { ... }) while setting parameters and reading results.
+ *
+ *          Since the database stays open until the app goes away, which may be without
+ *          a shutdown, its log is synced to disk on every commit rather than after a
+ *          write delay, so a committed change is never lost.
+ */
+public class ConnectionProvider {
+    /* Storage
+     *
+     * purpose: How the database keeps its tables. MEMORY tables are read whole into the
+     *          heap when the database opens. CACHED tables stay on disk, in the .data file,
+     *          with only a bounded number of rows cached in memory, for catalogs too big
+     *          to hold in the heap. Opening a database with CACHED storage converts its
+     *          MEMORY tables. A provider can also be given the catalog size at which its
+     *          database moves to CACHED storage, for a catalog that grows large on the
+     *          device; once moved it stays CACHED.
+     */
+    public enum Storage { MEMORY, CACHED }
+
+    /* Transaction
+     *
+     * purpose: Database work that has to happen all together or not at all.
+     */
+    public interface Transaction {
+        void run() throws SQLException;
+    }
+
+    private static final int CACHE_ROWS = 10000;
+    private static final int CACHE_SIZE_KB = 4096;
+
+    private final String dbPath;
+    private final Storage storage;
+    // a MEMORY database is moved to CACHED tables when opened with this many memes
+    private final int largeCatalog;
+    private boolean cached = false;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private Connection connection = null;
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    public ConnectionProvider(String dbPath) {
+        this(dbPath, Storage.MEMORY);
+    }
+
+    public ConnectionProvider(String dbPath, Storage storage) {
+        this(dbPath, storage, Integer.MAX_VALUE);
+    }
+
+    public ConnectionProvider(String dbPath, int largeCatalog) {
+        this(dbPath, Storage.MEMORY, largeCatalog);
+    }
+
+    private ConnectionProvider(String dbPath, Storage storage, int largeCatalog) {
+        this.dbPath = dbPath;
+        this.storage = storage;
+        this.largeCatalog = largeCatalog;
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* getConnection
+     *
+     * purpose: Return the open connection, opening the database if it isn't open yet.
+     *          Opening the database also brings its schema up to date and sets up its storage.
+     */
+    public synchronized Connection getConnection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection("jdbc:hsqldb:file:" + dbPath + ";shutdown=true", "SA", "");
+            statements.clear();
+            try {
+                SchemaMigrator.migrate(connection);
+                syncEveryCommit(connection);
+                if (storage == Storage.CACHED || countMemes(connection) >= largeCatalog) {
+                    useCachedTables(connection);
+                }
+                cached = isCached(connection);
+            }
+            catch (final SQLException e) {
+                // don't hand out a connection to a database that is only partly upgraded
+                connection.close();
+                connection = null;
+                throw e;
+            }
+        }
+
+        return connection;
+    }
+
+    public String getDbPath() {
+        return dbPath;
+    }
+
+    /* usesCachedTables
+     *
+     * purpose: Whether the memes are kept in CACHED tables, so they shouldn't all be
+     *          read into the heap. The database isn't opened to find out, the memes may
+     *          be read without it (see CatalogSnapshot): HSQLDB only makes a .data file
+     *          for CACHED tables. A database moved to CACHED tables as it is opened is
+     *          counted as such from then on.
+     */
+    public synchronized boolean usesCachedTables() {
+        if (connection != null) {
+            return cached;
+        }
+
+        return storage == Storage.CACHED || new File(dbPath + ".data").exists();
+    }
+
+    /* prepare
+     *
+     * purpose: Return the prepared statement for the given SQL, preparing it the first
+     *          time it is asked for. Parameters left over from the last use are cleared.
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        Connection c = getConnection();
+        PreparedStatement statement = statements.get(sql);
+
+        if (statement == null) {
+            statement = c.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+
+        return statement;
+    }
+
+    /* inTransaction
+     *
+     * purpose: Run the work in one transaction, committing if it succeeds and rolling
+     *          everything back if it throws.
+     */
+    public synchronized void inTransaction(Transaction transaction) throws SQLException {
+        Connection c = getConnection();
+
+        c.setAutoCommit(false);
+        try {
+            transaction.run();
+            c.commit();
+        }
+        catch (final SQLException | RuntimeException e) {
+            c.rollback();
+            throw e;
+        }
+        finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    /* syncEveryCommit
+     *
+     * purpose: Have the database write and sync its log as each transaction commits.
+     */
+    private static void syncEveryCommit(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("SET FILES WRITE DELAY FALSE");
+        }
+    }
+
+    /* countMemes
+     *
+     * purpose: How many memes there are, or none if nothing asked for it to be counted.
+     */
+    private int countMemes(Connection c) throws SQLException {
+        int count = 0;
+
+        if (largeCatalog < Integer.MAX_VALUE) {
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM MEME")) {
+                rs.next();
+                count = rs.getInt(1);
+            }
+        }
+
+        return count;
+    }
+
+    private static boolean isCached(Connection c) throws SQLException {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT HSQLDB_TYPE FROM INFORMATION_SCHEMA.SYSTEM_TABLES"
+                     + " WHERE TABLE_SCHEM = 'PUBLIC' AND TABLE_NAME = 'MEME'")) {
+            return rs.next() && "CACHED".equals(rs.getString(1));
+        }
+    }
+
+    /* useCachedTables
+     *
+     * purpose: Bound the rows HSQLDB caches in memory and move any MEMORY tables to disk.
+     */
+    private static void useCachedTables(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("SET FILES CACHE ROWS " + CACHE_ROWS);
+            st.execute("SET FILES CACHE SIZE " + CACHE_SIZE_KB);
+
+            final List<String> memoryTables = new ArrayList<>();
+            final ResultSet rs = st.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.SYSTEM_TABLES"
+                    + " WHERE TABLE_SCHEM = 'PUBLIC' AND HSQLDB_TYPE = 'MEMORY'");
+            while (rs.next()) {
+                memoryTables.add(rs.getString(1));
+            }
+            rs.close();
+
+            for (String table : memoryTables) {
+                st.execute("SET TABLE " + table + " TYPE CACHED");
+            }
+            if (!memoryTables.isEmpty()) {
+                // write the converted tables out now instead of replaying the conversion on the next open
+                st.execute("CHECKPOINT");
+            }
+        }
+    }
+
+    /* close
+     *
+     * purpose: Close the statements and the connection, which shuts the database down.
+     *          The next call to getConnection opens it again.
+     */
+    public synchronized void close() {
+        try {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        catch (final SQLException e) {
+            Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+        }
+        finally {
+            statements.clear();
+            connection = null;
+        }
+    }
+}
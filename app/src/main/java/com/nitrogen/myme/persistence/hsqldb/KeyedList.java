@@ -0,0 +1,129 @@
+package com.nitrogen.myme.persistence.hsqldb;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* KeyedList
+ *
+ * purpose: The in-memory copy of a table, kept in insertion order and keyed by the
+ *          table's primary key. Looking up, adding and removing by key take constant
+ *          time: a removal only leaves a hole behind, and the holes are squeezed out
+ *          in one pass the next time the list is read by position. Deleting many
+ *          rows therefore costs one pass instead of one shift per row.
+ */
+abstract class KeyedList<T> extends AbstractList<T> {
+    private final List<T> slots = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int holes = 0;
+
+    /* keyOf
+     *
+     * purpose: The primary key of an element.
+     */
+    abstract String keyOf(T element);
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    @Override
+    public synchronized boolean add(T element) {
+        boolean added = false;
+
+        if (!positions.containsKey(keyOf(element))) {
+            positions.put(keyOf(element), slots.size());
+            slots.add(element);
+            modCount++;
+            added = true;
+        }
+
+        return added;
+    }
+
+    @Override
+    public synchronized T get(int index) {
+        compact();
+        return slots.get(index);
+    }
+
+    @Override
+    public synchronized int size() {
+        return slots.size() - holes;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized boolean contains(Object element) {
+        return element != null && positions.containsKey(keyOf((T) element));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized int indexOf(Object element) {
+        int index = -1;
+
+        if (element != null) {
+            compact();
+            Integer position = positions.get(keyOf((T) element));
+            if (position != null) {
+                index = position;
+            }
+        }
+
+        return index;
+    }
+
+    /* getByKey
+     *
+     * purpose: Return the element with the given key, or null if there is none.
+     */
+    synchronized T getByKey(String key) {
+        Integer position = positions.get(key);
+        return position == null ? null : slots.get(position);
+    }
+
+    /* removeByKey
+     *
+     * purpose: Remove the element with the given key, returning it, or null if there is none.
+     */
+    synchronized T removeByKey(String key) {
+        Integer position = positions.remove(key);
+        T removed = null;
+
+        if (position != null) {
+            removed = slots.set(position, null);
+            holes++;
+            modCount++;
+        }
+
+        return removed;
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* compact
+     *
+     * purpose: Squeeze out the holes left by removals so elements can be read by position.
+     */
+    private void compact() {
+        if (holes > 0) {
+            int next = 0;
+
+            for (int i = 0; i < slots.size(); i++) {
+                T element = slots.get(i);
+                if (element != null) {
+                    slots.set(next, element);
+                    positions.put(keyOf(element), next);
+                    next++;
+                }
+            }
+            slots.subList(next, slots.size()).clear();
+            holes = 0;
+        }
+    }
+}
@@ -3,79 +3,219 @@ package com.nitrogen.myme.persistence.hsqldb;
 import android.util.Log;
 
 
-import com.nitrogen.myme.application.Main;
-import com.nitrogen.myme.application.Services;
 import com.nitrogen.myme.objects.Meme;
 import com.nitrogen.myme.objects.Tag;
 import com.nitrogen.myme.persistence.MemesPersistence;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
+import java.io.File;
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 
 public class MemesPersistenceHSQLDB  implements MemesPersistence{
 
-    private List<Meme> memes = new ArrayList<Meme>();
-    private List<Tag> tags;
-    private final String dbPath;
+    private KeyedList<Meme> memes = new KeyedList<Meme>() {
+        @Override
+        String keyOf(Meme meme) {
+            return meme.getName();
+        }
+    };
+    private final ConnectionProvider connections;
+    private final File snapshot;
+    // a snapshot write is queued and hasn't started yet, guarded by the provider's lock
+    private boolean snapshotPending = false;
+    // CatalogSnapshot.changes as of the last change made here, or -1 once the memes were
+    // changed by something else and these are out of date
+    private int catalogChanges;
     private List<Meme> currView = new ArrayList<Meme>();
 
-    public MemesPersistenceHSQLDB(String dbPath) {
-        this.dbPath = dbPath;
-        tags = Services.getTagsPersistence().getTags();
-        createMemeMap();
+    public MemesPersistenceHSQLDB(ConnectionProvider connections) {
+        this.connections = connections;
+        this.snapshot = CatalogSnapshot.fileFor(connections);
+        this.catalogChanges = CatalogSnapshot.changes(connections);
+        if (!readSnapshot() && createMemeMap()) {
+            writeSnapshot();
+        }
+    }
+
+    /* readSnapshot
+     *
+     * purpose: Load the memes from the catalog snapshot, instead of building them from
+     *          the database, if it was written at the database's stamp. A snapshot that
+     *          wasn't is out of date and is deleted.
+     *          Returns False if there is no usable snapshot, and the memes have to be
+     *          read from the database.
+     */
+    private boolean readSnapshot() {
+        synchronized (connections) {
+            try {
+                final long stamp = CatalogSnapshot.stampOf(snapshot);
+                if (stamp >= 0 && stamp == CatalogSnapshot.stampOf(connections)) {
+                    memes.addAll(CatalogSnapshot.read(snapshot));
+                    return true;
+                }
+            }
+            catch (final IOException e) {
+                Log.e("Catalog snapshot", e.getMessage());
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+            }
+            snapshot.delete();
+            return false;
+        }
+    }
+
+    private boolean isUpToDate() {
+        return CatalogSnapshot.changes(connections) == catalogChanges;
+    }
+
+    /* changed
+     *
+     * purpose: Note a change made here. If the memes were up to date before it, they
+     *          still are, and a new snapshot is written.
+     */
+    private void changed(boolean wasUpToDate) {
+        if (wasUpToDate) {
+            catalogChanges = CatalogSnapshot.changes(connections);
+            writeSnapshot();
+        } else {
+            catalogChanges = -1;
+        }
     }
-    private Connection connect() throws SQLException{
-        return DriverManager.getConnection("jdbc:hsqldb:file:" + dbPath +";shutdown=true", "SA","");
+
+    /* writeSnapshot
+     *
+     * purpose: Save the memes to the catalog snapshot in the background, once they are
+     *          the same as the database's. Changes made before the write starts are
+     *          saved together in one write.
+     */
+    private void writeSnapshot() {
+        synchronized (connections) {
+            if (snapshotPending) {
+                return;
+            }
+            snapshotPending = true;
+        }
+
+        CatalogSnapshot.writeLater(new Runnable() {
+            @Override
+            public void run() {
+                final int changes;
+                final long stamp;
+                final List<Meme> copy;
+                File temp = null;
+
+                // only the copy is made under the lock, so the app doesn't wait on the
+                // disk while the snapshot is written
+                synchronized (connections) {
+                    snapshotPending = false;
+                    changes = catalogChanges;
+                    if (CatalogSnapshot.changes(connections) != changes) {
+                        return;
+                    }
+                    try {
+                        stamp = CatalogSnapshot.stampOf(connections);
+                    }
+                    catch (final SQLException e) {
+                        Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                        return;
+                    }
+                    copy = new ArrayList<>(memes);
+                }
+
+                try {
+                    temp = CatalogSnapshot.writeTemp(snapshot, stamp, copy);
+
+                    // a change made while it was being written, or an invalidate, means
+                    // it is out of date; the change writes a snapshot of its own
+                    synchronized (connections) {
+                        if (CatalogSnapshot.changes(connections) == changes) {
+                            CatalogSnapshot.replace(temp, snapshot);
+                            temp = null;
+                        }
+                    }
+                }
+                catch (final IOException e) {
+                    Log.e("Catalog snapshot", e.getMessage());
+                }
+                catch (final ConcurrentModificationException e) {
+                    // a meme was changed while it was being written, which made it out of date
+                }
+                finally {
+                    if (temp != null) {
+                        temp.delete();
+                    }
+                }
+            }
+        });
     }
 
     private Meme fromResultSet(final ResultSet rs) throws SQLException{
         final String name = rs.getString("name");
         final String sourceRef = rs.getString("source");
-        return new Meme(name, sourceRef);
+        final Meme meme = new Meme(name, sourceRef);
+        meme.setThumbnailPath(rs.getString("thumbnail"));
+        return meme;
     }
 
-    private void createMemeMap () {
-        try(Connection c = connect() ) {
-            final Statement st = c.createStatement();
-            final ResultSet rs = st.executeQuery("SELECT * FROM MEME");
-            while (rs.next()) {
-                final Meme newMeme = fromResultSet(rs);
-                newMeme.setTags(tagAssignment(rs.getString("name")));
-                newMeme.setFavourite(rs.getInt("fav") == 1);
-                memes.add(newMeme);
+    /* createMemeMap
+     *
+     * purpose: Load every meme and its tags in two queries. The tag assignments
+     *          are read in a single scan of MEMETAGS and grouped by meme name, then the
+     *          memes are streamed in and given their tags, instead of running one
+     *          query per meme.
+     *          Returns False if the memes couldn't be read.
+     */
+    private boolean createMemeMap () {
+        synchronized (connections) {
+            try {
+                final Map<String, List<Tag>> tagAssignments = tagAssignments();
+                final ResultSet rs = connections.prepare("SELECT * FROM MEME").executeQuery();
+                while (rs.next()) {
+                    final Meme newMeme = fromResultSet(rs);
+                    List<Tag> memeTags = tagAssignments.remove(newMeme.getName());
+                    newMeme.setTags(memeTags != null ? memeTags : new ArrayList<Tag>());
+                    newMeme.setFavourite(rs.getInt("fav") == 1);
+                    memes.add(newMeme);
+                }
+                rs.close();
+                return true;
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL3",e.getMessage()+ e.getSQLState());
+                return false;
             }
-            rs.close();
-            st.close();
-        }
-        catch (final SQLException e) {
-            Log.e("Connect SQL3",e.getMessage()+ e.getSQLState());
         }
     }
 
-    private List<Tag> tagAssignment(String name){
-        ArrayList<Tag> result = new ArrayList<>();
-        try(Connection c = connect()) {
-            final PreparedStatement st = c.prepareStatement("SELECT * FROM MEMETAGS WHERE name=?");
-            st.setString(1, name);
-            final ResultSet rs = st.executeQuery();
-            while (rs.next()){
-                result.add(new Tag(rs.getString("tagname")));
+    /* tagAssignments
+     *
+     * purpose: Read all of MEMETAGS and group the tags by meme name.
+     */
+    private Map<String, List<Tag>> tagAssignments() throws SQLException {
+        final Map<String, List<Tag>> result = new HashMap<>();
+        final ResultSet rs = connections.prepare("SELECT m.name, t.tagname FROM memetags mt"
+                + " JOIN meme m ON m.id = mt.memeid JOIN tag t ON t.id = mt.tagid").executeQuery();
+        while (rs.next()) {
+            final String name = rs.getString("name");
+            List<Tag> memeTags = result.get(name);
+            if (memeTags == null) {
+                memeTags = new ArrayList<>();
+                result.put(name, memeTags);
             }
-            rs.close();
-            st.close();
-        }
-        catch (final SQLException e) {
-            Log.e("Connect SQL3",e.getMessage()+ e.getSQLState());
+            memeTags.add(new Tag(rs.getString("tagname")));
         }
+        rs.close();
         return result;
     }
 
@@ -83,6 +223,106 @@ public class MemesPersistenceHSQLDB  implements MemesPersistence{
         return Collections.unmodifiableList(memes);
     }
 
+    /* getMemes
+     *
+     * purpose: Return up to limit memes, starting at offset.
+     */
+    @Override
+    public List<Meme> getMemes(int offset, int limit) {
+        List<Meme> page;
+
+        synchronized (memes) {
+            int from = Math.min(Math.max(offset, 0), memes.size());
+            int to = (int) Math.min((long) from + Math.max(limit, 0), memes.size());
+            page = new ArrayList<>(memes.subList(from, to));
+        }
+
+        return Collections.unmodifiableList(page);
+    }
+
+    // every meme is in memory already
+    @Override
+    public Iterable<Meme> scanMemes() {
+        return getMemes();
+    }
+
+    /* usesImage
+     *
+     * purpose: Whether any meme's image is at the path, looked up through MEME's index
+     *          on SOURCE. If the database can't be asked, the image is taken to be used,
+     *          so it isn't deleted.
+     */
+    @Override
+    public boolean usesImage(String imagePath) {
+        synchronized (connections) {
+            try {
+                return MemesTable.usesSource(connections, imagePath);
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                return true;
+            }
+        }
+    }
+
+    /* getFavouriteMemes
+     *
+     * purpose: Return up to limit favourite memes, skipping the first offset of them.
+     */
+    @Override
+    public List<Meme> getFavouriteMemes(int offset, int limit) {
+        List<Meme> page = new ArrayList<>();
+        int skipped = 0;
+
+        synchronized (memes) {
+            for (int i = 0; i < memes.size() && page.size() < limit; i++) {
+                Meme meme = memes.get(i);
+                if (meme.isFavourite()) {
+                    if (skipped < offset) {
+                        skipped++;
+                    } else {
+                        page.add(meme);
+                    }
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(page);
+    }
+
+    /* getMemesByRelevance
+     *
+     * purpose: Return up to limit memes, starting at offset, ranked by relevance the
+     *          same way as the paged memes. The catalog is small enough to be ranked
+     *          again every time. The memes kept here are handed out, not the copies read.
+     */
+    @Override
+    public List<Meme> getMemesByRelevance(int offset, int limit) {
+        final List<Meme> page = new ArrayList<>();
+
+        synchronized (connections) {
+            try {
+                final List<Meme> ranked = new ArrayList<>();
+                final int[] ids = MemesTable.rankByRelevance(connections);
+                final int from = Math.min(Math.max(offset, 0), ids.length);
+                final int to = (int) Math.min((long) from + Math.max(limit, 0), ids.length);
+                MemesTable.readIds(connections, ids, from, to, ranked);
+                for (Meme meme : ranked) {
+                    int index = memes.indexOf(meme);
+                    if (index >= 0) {
+                        page.add(memes.get(index));
+                    }
+                }
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                page.clear();
+            }
+        }
+
+        return Collections.unmodifiableList(page);
+    }
+
     /* insertMeme
      *
      * purpose: Insert a meme into the database.
@@ -90,70 +330,131 @@ public class MemesPersistenceHSQLDB  implements MemesPersistence{
      */
     @Override
     public boolean insertMeme(Meme meme) {
-        boolean memeAdded = false;
-        try(Connection c = connect()){
-            if(!memes.contains(meme)) {
-                memeAdded = true;
-            }
-            if(memeAdded){
-                final PreparedStatement in = c.prepareStatement("INSERT INTO meme VALUES(? , ?, ?)");
+        return !insertMemes(Collections.singletonList(meme)).isEmpty();
+    }
 
-                in.setString(1, meme.getName());
-                in.setString(2, meme.getImagePath());
-                in.setInt(3, meme.isFavourite() ? 1 : 0);
-                memes.add(meme);
-                PreparedStatement inTag = null;
-                for(Tag a : meme.getTags()){
-                    inTag = c.prepareStatement("INSERT INTO memetags VALUES(? , ?)");
-                    inTag.setString(1, meme.getName());
-                    inTag.setString(2, a.getName());
-                    inTag.execute();
+    /* insertMemes
+     *
+     * purpose: Insert several memes into the database in one transaction, so either
+     *          all of them are saved or, if anything fails, none are.
+     *          Memes that are already in the database are skipped.
+     *          Returns the memes that were added.
+     */
+    @Override
+    public List<Meme> insertMemes(Collection<Meme> newMemes) {
+        final List<Meme> inserted = new ArrayList<>();
+        synchronized (connections) {
+            final Set<String> names = new HashSet<>();
+            for (Meme meme : newMemes) {
+                if (!memes.contains(meme) && names.add(meme.getName())) {
+                    inserted.add(meme);
                 }
+            }
 
-                in.executeUpdate();
-                in.close();
-                if(inTag !=null){
-                    inTag.close();
+            if (!inserted.isEmpty()) {
+                try {
+                    final boolean upToDate = isUpToDate();
+                    MemesTable.insert(connections, inserted);
+                    memes.addAll(inserted);
+                    changed(upToDate);
+                }
+                catch (final SQLException e) {
+                    Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                    inserted.clear();
                 }
             }
-
         }
-        catch (final SQLException e){
-            Log.e("Connect SQL",e.getMessage()+ e.getSQLState());
-        }
-        return memeAdded;
+        return inserted;
     }
 
     /* deleteMeme
      *
-     * purpose: Delete a meme from the database.
+     * purpose: Delete a meme and its tag assignments from the database.
      */
     @Override
     public Meme deleteMeme(Meme meme) {
-        int index;
-
-        index = memes.indexOf(meme);
-        if (index >= 0) {
-            memes.remove(index);
-        }
+        deleteMemes(Collections.singletonList(meme));
 
         return meme;
     }
-    public void updateFav(Meme meme){
-        try(Connection c = connect()){
-            int fav =0;
-            final PreparedStatement in = c.prepareStatement("UPDATE meme SET fav = ? WHERE name = ?");
-            if(meme.isFavourite()){
-                fav = 1;
+
+    /* deleteMemes
+     *
+     * purpose: Delete several memes and their tag assignments from the database in one
+     *          transaction.
+     *          Returns the memes that were deleted, as they were stored.
+     */
+    @Override
+    public List<Meme> deleteMemes(Collection<Meme> oldMemes) {
+        final List<Meme> deleted = new ArrayList<>();
+        synchronized (connections) {
+            final Set<String> names = new HashSet<>();
+            for (Meme meme : oldMemes) {
+                Meme stored = memes.getByKey(meme.getName());
+                if (stored != null && names.add(meme.getName())) {
+                    deleted.add(stored);
+                }
             }
-            in.setInt(1, fav);
-            in.setString(2, meme.getName());
 
-            in.executeUpdate();
-            in.close();
+            if (!deleted.isEmpty()) {
+                try {
+                    final boolean upToDate = isUpToDate();
+                    MemesTable.delete(connections, deleted);
+                    for (Meme meme : deleted) {
+                        memes.removeByKey(meme.getName());
+                    }
+                    changed(upToDate);
+                }
+                catch (final SQLException e) {
+                    Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                    deleted.clear();
+                }
+            }
+        }
+        return deleted;
+    }
+
+    public void updateFav(Meme meme){
+        synchronized (connections) {
+            try {
+                final boolean upToDate = isUpToDate();
+                MemesTable.updateFav(connections, meme);
+                // the caller's copy of the meme may not be the one kept here
+                Meme stored = memes.getByKey(meme.getName());
+                if (stored != null) {
+                    stored.setFavourite(meme.isFavourite());
+                }
+                changed(upToDate);
+            }
+            catch (final SQLException e){
+                Log.e("Connect SQL",e.getMessage()+ e.getSQLState());
+            }
         }
-        catch (final SQLException e){
-            Log.e("Connect SQL",e.getMessage()+ e.getSQLState());
+    }
+
+    @Override
+    public int getChanges() {
+        return CatalogSnapshot.changes(connections);
+    }
+
+    /* removeTag
+     *
+     * purpose: Take a tag off every meme that has it, in the database and here.
+     */
+    @Override
+    public void removeTag(Tag tag) {
+        synchronized (connections) {
+            try {
+                final boolean upToDate = isUpToDate();
+                MemesTable.removeTag(connections, tag);
+                for (Meme meme : memes) {
+                    meme.removeTag(tag);
+                }
+                changed(upToDate);
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+            }
         }
     }
 
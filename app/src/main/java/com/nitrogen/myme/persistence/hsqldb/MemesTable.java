@@ -0,0 +1,319 @@
+package com.nitrogen.myme.persistence.hsqldb;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* MemesTable
+ *
+ * purpose: The statements that read and write memes, shared by the persistence
+ *          classes that keep memes in HSQLDB. Callers hold the provider's lock.
+ *          Every write deletes the database's CatalogSnapshot before it changes anything,
+ *          and counts the change in the database's stamp in the same transaction.
+ */
+class MemesTable {
+    // the columns read() expects a query to select
+    static final String COLUMNS = "id, name, source, fav, thumbnail";
+
+    /* idOf
+     *
+     * purpose: The id of the meme with this name, or -1 if the database doesn't have it.
+     */
+    static int idOf(ConnectionProvider connections, String name) throws SQLException {
+        final PreparedStatement query = connections.prepare("SELECT id FROM meme WHERE name = ?");
+        query.setString(1, name);
+        final ResultSet rs = query.executeQuery();
+        final int id = rs.next() ? rs.getInt(1) : -1;
+        rs.close();
+        return id;
+    }
+
+    /* usesSource
+     *
+     * purpose: Whether any meme's image is at the source path.
+     */
+    static boolean usesSource(ConnectionProvider connections, String source) throws SQLException {
+        final PreparedStatement query = connections.prepare("SELECT 1 FROM meme WHERE source = ? LIMIT 1");
+        query.setString(1, source);
+        final ResultSet rs = query.executeQuery();
+        final boolean used = rs.next();
+        rs.close();
+        return used;
+    }
+
+    /* insert
+     *
+     * purpose: Insert memes that aren't in the database yet, in one transaction. The
+     *          memes and their tags are sent as JDBC batches and committed together, so
+     *          either all of them are saved or, if anything fails, none are. Tags the
+     *          database doesn't have yet are added to it.
+     */
+    static void insert(final ConnectionProvider connections, final List<Meme> memes) throws SQLException {
+        CatalogSnapshot.invalidate(connections);
+        connections.inTransaction(new ConnectionProvider.Transaction() {
+            @Override
+            public void run() throws SQLException {
+                final PreparedStatement in = connections.prepare("INSERT INTO meme(name, source, fav, thumbnail) VALUES(?, ?, ?, ?)");
+                final PreparedStatement newTag = connections.prepare("MERGE INTO tag USING (VALUES(CAST(? AS VARCHAR(20))))"
+                        + " AS v(tagname) ON tag.tagname = v.tagname WHEN NOT MATCHED THEN INSERT (tagname) VALUES(v.tagname)");
+                final PreparedStatement inTag = connections.prepare("INSERT INTO memetags(memeid, tagid)"
+                        + " SELECT m.id, t.id FROM meme m, tag t WHERE m.name = ? AND t.tagname = ?");
+                final Set<String> tagNames = new HashSet<>();
+                for (Meme meme : memes) {
+                    in.setString(1, meme.getName());
+                    // Source can't be null in the database
+                    in.setString(2, meme.getImagePath() != null ? meme.getImagePath() : "");
+                    in.setInt(3, meme.isFavourite() ? 1 : 0);
+                    in.setString(4, meme.hasThumbnail() ? meme.getThumbnailPath() : null);
+                    in.addBatch();
+                    for (Tag a : meme.getTags()) {
+                        if (tagNames.add(a.getName())) {
+                            newTag.setString(1, a.getName());
+                            newTag.addBatch();
+                        }
+                        inTag.setString(1, meme.getName());
+                        inTag.setString(2, a.getName());
+                        inTag.addBatch();
+                    }
+                }
+                in.executeBatch();
+                if (!tagNames.isEmpty()) {
+                    newTag.executeBatch();
+                    inTag.executeBatch();
+                }
+                CatalogSnapshot.stamp(connections);
+            }
+        });
+    }
+
+    /* delete
+     *
+     * purpose: Delete memes from the database in one transaction, sent as one JDBC batch.
+     *          Their tag assignments go with them through MEMETAGS' foreign key.
+     */
+    static void delete(final ConnectionProvider connections, final List<Meme> memes) throws SQLException {
+        CatalogSnapshot.invalidate(connections);
+        connections.inTransaction(new ConnectionProvider.Transaction() {
+            @Override
+            public void run() throws SQLException {
+                final PreparedStatement out = connections.prepare("DELETE FROM meme WHERE name = ?");
+                for (Meme meme : memes) {
+                    out.setString(1, meme.getName());
+                    out.addBatch();
+                }
+                out.executeBatch();
+                CatalogSnapshot.stamp(connections);
+            }
+        });
+    }
+
+    /* updateFav
+     *
+     * purpose: Save whether the meme is a favourite.
+     */
+    static void updateFav(final ConnectionProvider connections, final Meme meme) throws SQLException {
+        CatalogSnapshot.invalidate(connections);
+        connections.inTransaction(new ConnectionProvider.Transaction() {
+            @Override
+            public void run() throws SQLException {
+                final PreparedStatement in = connections.prepare("UPDATE meme SET fav = ? WHERE name = ?");
+                in.setInt(1, meme.isFavourite() ? 1 : 0);
+                in.setString(2, meme.getName());
+                in.executeUpdate();
+                CatalogSnapshot.stamp(connections);
+            }
+        });
+    }
+
+    /* removeTag
+     *
+     * purpose: Take a tag off every meme that has it, leaving the tag itself.
+     */
+    static void removeTag(final ConnectionProvider connections, final Tag tag) throws SQLException {
+        CatalogSnapshot.invalidate(connections);
+        connections.inTransaction(new ConnectionProvider.Transaction() {
+            @Override
+            public void run() throws SQLException {
+                final PreparedStatement out = connections.prepare("DELETE FROM memetags"
+                        + " WHERE tagid IN (SELECT id FROM tag WHERE tagname = ?)");
+                out.setString(1, tag.getName());
+                out.executeUpdate();
+                CatalogSnapshot.stamp(connections);
+            }
+        });
+    }
+
+    /* read
+     *
+     * purpose: Run a query that selects the COLUMNS of memes, ordered by id, and add
+     *          the memes it finds, with their tags, to the list.
+     *          Returns the ids of the memes read.
+     */
+    static List<Integer> read(ConnectionProvider connections, PreparedStatement query, List<Meme> memes) throws SQLException {
+        final List<Integer> ids = new ArrayList<>();
+        final List<Meme> read = new ArrayList<>();
+        final ResultSet rs = query.executeQuery();
+        while (rs.next()) {
+            final Meme meme = new Meme(rs.getString("name"), rs.getString("source"));
+            meme.setFavourite(rs.getInt("fav") == 1);
+            meme.setThumbnailPath(rs.getString("thumbnail"));
+            read.add(meme);
+            ids.add(rs.getInt("id"));
+        }
+        rs.close();
+
+        if (!ids.isEmpty()) {
+            final int firstId = ids.get(0);
+            final int lastId = ids.get(ids.size() - 1);
+            Map<Integer, List<Tag>> tags;
+            if ((long) lastId - firstId < 2L * ids.size()) {
+                // the ids are close together, read their tags in one range
+                tags = tagsOf(connections, firstId, lastId);
+            } else {
+                tags = new HashMap<>();
+                for (Integer id : ids) {
+                    tags.putAll(tagsOf(connections, id, id));
+                }
+            }
+            for (int i = 0; i < read.size(); i++) {
+                final List<Tag> memeTags = tags.get(ids.get(i));
+                read.get(i).setTags(memeTags != null ? memeTags : new ArrayList<Tag>());
+            }
+        }
+
+        memes.addAll(read);
+        return ids;
+    }
+
+    /* rankByRelevance
+     *
+     * purpose: The ids of every meme, ranked by tag affinity: the number of favourites
+     *          sharing each of the meme's tags, summed. Favourites come last and ties
+     *          stay in id order. The database counts the favourites with each tag, and
+     *          the sums are made in one pass over MEMETAGS, so only the ids and their
+     *          sums are held, never the memes. Neither scan is sorted by the database,
+     *          the ids are sorted here, which is quicker.
+     */
+    static int[] rankByRelevance(ConnectionProvider connections) throws SQLException {
+        final Map<Integer, Integer> weights = new HashMap<>();
+        ResultSet rs = connections.prepare("SELECT mt.tagid, COUNT(*) FROM meme m"
+                + " JOIN memetags mt ON mt.memeid = m.id WHERE m.fav = 1 GROUP BY mt.tagid").executeQuery();
+        while (rs.next()) {
+            weights.put(rs.getInt(1), rs.getInt(2));
+        }
+        rs.close();
+
+        rs = connections.prepare("SELECT COUNT(*) FROM meme").executeQuery();
+        rs.next();
+        // each id with whether it is a favourite in the lowest bit, so they sort together
+        long[] idsAndFavourites = new long[rs.getInt(1)];
+        rs.close();
+
+        int count = 0;
+        rs = connections.prepare("SELECT id, fav FROM meme").executeQuery();
+        while (rs.next() && count < idsAndFavourites.length) {
+            idsAndFavourites[count++] = ((long) rs.getInt(1) << 1) | (rs.getInt(2) == 1 ? 1 : 0);
+        }
+        rs.close();
+        Arrays.sort(idsAndFavourites, 0, count);
+
+        final int[] ids = new int[count];
+        final boolean[] favourites = new boolean[count];
+        final int[] affinities = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (int) (idsAndFavourites[i] >> 1);
+            favourites[i] = (idsAndFavourites[i] & 1) == 1;
+        }
+        idsAndFavourites = null;
+
+        if (!weights.isEmpty()) {
+            rs = connections.prepare("SELECT memeid, tagid FROM memetags").executeQuery();
+            while (rs.next()) {
+                final Integer weight = weights.get(rs.getInt(2));
+                final int i = weight != null ? Arrays.binarySearch(ids, rs.getInt(1)) : -1;
+                if (i >= 0) {
+                    affinities[i] += weight;
+                }
+            }
+            rs.close();
+        }
+
+        // pack each meme's affinity, negated, and position into one long, so sorting the
+        // longs ranks the memes best first and keeps ties in id order
+        final long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            final int affinity = favourites[i] ? Integer.MIN_VALUE : affinities[i];
+            keys[i] = ((long) ~affinity << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        final int[] ranked = new int[count];
+        for (int i = 0; i < count; i++) {
+            ranked[i] = ids[(int) keys[i]];
+        }
+        return ranked;
+    }
+
+    /* readIds
+     *
+     * purpose: Read the memes with the ids from first up to last in the array, with
+     *          their tags, and add them to the list in the array's order.
+     */
+    static void readIds(ConnectionProvider connections, int[] ids, int first, int last, List<Meme> memes) throws SQLException {
+        final Integer[] wanted = new Integer[Math.max(last - first, 0)];
+        for (int i = 0; i < wanted.length; i++) {
+            wanted[i] = ids[first + i];
+        }
+
+        final List<Meme> read = new ArrayList<>();
+        final PreparedStatement query = connections.prepare(
+                "SELECT " + COLUMNS + " FROM meme WHERE id IN (UNNEST(?)) ORDER BY id");
+        query.setArray(1, connections.getConnection().createArrayOf("INTEGER", wanted));
+        final List<Integer> readIds = read(connections, query, read);
+
+        final Map<Integer, Meme> byId = new HashMap<>();
+        for (int i = 0; i < read.size(); i++) {
+            byId.put(readIds.get(i), read.get(i));
+        }
+        for (Integer id : wanted) {
+            final Meme meme = byId.get(id);
+            if (meme != null) {
+                memes.add(meme);
+            }
+        }
+    }
+
+    /* tagsOf
+     *
+     * purpose: Read the tags of the memes whose ids are between firstId and lastId,
+     *          grouped by meme id. The range is a prefix of MEMETAGS' primary key.
+     */
+    static Map<Integer, List<Tag>> tagsOf(ConnectionProvider connections, int firstId, int lastId) throws SQLException {
+        final Map<Integer, List<Tag>> result = new HashMap<>();
+        final PreparedStatement query = connections.prepare("SELECT mt.memeid, t.tagname FROM memetags mt"
+                + " JOIN tag t ON t.id = mt.tagid WHERE mt.memeid BETWEEN ? AND ?");
+        query.setInt(1, firstId);
+        query.setInt(2, lastId);
+        final ResultSet rs = query.executeQuery();
+        while (rs.next()) {
+            List<Tag> memeTags = result.get(rs.getInt(1));
+            if (memeTags == null) {
+                memeTags = new ArrayList<>();
+                result.put(rs.getInt(1), memeTags);
+            }
+            memeTags.add(new Tag(rs.getString(2)));
+        }
+        rs.close();
+        return result;
+    }
+}
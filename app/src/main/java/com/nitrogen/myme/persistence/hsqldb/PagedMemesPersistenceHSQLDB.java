@@ -0,0 +1,515 @@
+package com.nitrogen.myme.persistence.hsqldb;
+
+import android.util.Log;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/* PagedMemesPersistenceHSQLDB
+ *
+ * purpose: Keeps memes in the database without copying the whole catalog onto the heap.
+ *          getMemes() is a read-only view that loads memes a page at a time, in id order,
+ *          and only keeps the most recently used pages. Looking a meme up by name is
+ *          a query on MEME's unique index. Meant for catalogs too big to hold in memory,
+ *          along with CACHED tables (see ConnectionProvider.Storage).
+ *
+ *          A page that can't be read from the database has no memes to return, so the
+ *          view's get throws an IllegalStateException holding the SQLException.
+ */
+public class PagedMemesPersistenceHSQLDB implements MemesPersistence {
+    private static final int PAGE_SIZE = 256;
+    private static final int MAX_PAGES = 16;
+
+    private final ConnectionProvider connections;
+    private final Map<Integer, Page> pages = new LinkedHashMap<Integer, Page>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private int size = -1;
+    // the ids of the memes ranked by relevance, or null until they are needed
+    private int[] ranking = null;
+    private final List<Meme> memes = new AbstractList<Meme>() {
+        @Override
+        public Meme get(int index) {
+            synchronized (connections) {
+                if (index < 0 || index >= size()) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+                }
+                return page(index / PAGE_SIZE).memes.get(index % PAGE_SIZE);
+            }
+        }
+
+        @Override
+        public int size() {
+            return count();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return o instanceof Meme ? positionOf((Meme) o) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            // names are unique
+            return indexOf(o);
+        }
+    };
+    private List<Meme> currView = new ArrayList<Meme>();
+
+    /* Page
+     *
+     * purpose: PAGE_SIZE memes read together, and the id of the last one, where the
+     *          next page starts.
+     */
+    private static class Page {
+        private final List<Meme> memes;
+        private final int lastId;
+
+        private Page(List<Meme> memes, int lastId) {
+            this.memes = memes;
+            this.lastId = lastId;
+        }
+    }
+
+    /* Scan
+     *
+     * purpose: Reads the memes PAGE_SIZE at a time, each batch starting after the last
+     *          id of the one before, and lets each batch go once it has been gone through.
+     */
+    private class Scan implements Iterator<Meme> {
+        private List<Meme> batch = new ArrayList<>();
+        private int next = 0;
+        private int lastId = -1;
+        private boolean finished = false;
+
+        @Override
+        public boolean hasNext() {
+            if (next == batch.size() && !finished) {
+                readBatch();
+            }
+            return next < batch.size();
+        }
+
+        @Override
+        public Meme next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.get(next++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void readBatch() {
+            final List<Meme> loaded = new ArrayList<>(PAGE_SIZE);
+            synchronized (connections) {
+                try {
+                    final PreparedStatement query = connections.prepare(
+                            "SELECT " + MemesTable.COLUMNS + " FROM meme WHERE id > ? ORDER BY id LIMIT ?");
+                    query.setInt(1, lastId);
+                    query.setInt(2, PAGE_SIZE);
+                    final List<Integer> ids = MemesTable.read(connections, query, loaded);
+                    if (!ids.isEmpty()) {
+                        lastId = ids.get(ids.size() - 1);
+                    }
+                }
+                catch (final SQLException e) {
+                    Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                    loaded.clear();
+                }
+            }
+            finished = loaded.size() < PAGE_SIZE;
+            batch = loaded;
+            next = 0;
+        }
+    }
+
+    //**************************************************
+    // Constructor
+    //**************************************************
+
+    public PagedMemesPersistenceHSQLDB(ConnectionProvider connections) {
+        this.connections = connections;
+    }
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    @Override
+    public List<Meme> getMemes() {
+        return memes;
+    }
+
+    /* getMemes
+     *
+     * purpose: Return up to limit memes, starting at offset, read straight from the
+     *          database.
+     */
+    @Override
+    public List<Meme> getMemes(int offset, int limit) {
+        return query("SELECT " + MemesTable.COLUMNS + " FROM meme ORDER BY id LIMIT ? OFFSET ?", offset, limit);
+    }
+
+    /* getFavouriteMemes
+     *
+     * purpose: Return up to limit favourite memes, skipping the first offset of them.
+     *          The database does the filtering, using MEME's (fav, id) index.
+     */
+    @Override
+    public List<Meme> getFavouriteMemes(int offset, int limit) {
+        return query("SELECT " + MemesTable.COLUMNS + " FROM meme WHERE fav = 1 ORDER BY id LIMIT ? OFFSET ?", offset, limit);
+    }
+
+    /* getMemesByRelevance
+     *
+     * purpose: Return up to limit memes, starting at offset, ranked by relevance. The
+     *          ranking is worked out the first time and kept until memes are inserted or
+     *          deleted, so the rest of the pages are read straight from their ids. Like
+     *          a feed sorted in memory, it isn't redone when a favourite changes.
+     */
+    @Override
+    public List<Meme> getMemesByRelevance(int offset, int limit) {
+        final List<Meme> page = new ArrayList<>();
+        synchronized (connections) {
+            try {
+                if (ranking == null) {
+                    ranking = MemesTable.rankByRelevance(connections);
+                }
+                final int from = Math.min(Math.max(offset, 0), ranking.length);
+                final int to = (int) Math.min((long) from + Math.max(limit, 0), ranking.length);
+                MemesTable.readIds(connections, ranking, from, to, page);
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                page.clear();
+            }
+        }
+        return Collections.unmodifiableList(page);
+    }
+
+    /* scanMemes
+     *
+     * purpose: Go through every meme in id order without loading it into the pages.
+     */
+    @Override
+    public Iterable<Meme> scanMemes() {
+        return new Iterable<Meme>() {
+            @Override
+            public Iterator<Meme> iterator() {
+                return new Scan();
+            }
+        };
+    }
+
+    /* usesImage
+     *
+     * purpose: Whether any meme's image is at the path, looked up through MEME's index
+     *          on SOURCE. If the database can't be asked, the image is taken to be used,
+     *          so it isn't deleted.
+     */
+    @Override
+    public boolean usesImage(String imagePath) {
+        synchronized (connections) {
+            try {
+                return MemesTable.usesSource(connections, imagePath);
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                return true;
+            }
+        }
+    }
+
+    /* insertMeme
+     *
+     * purpose: Insert a meme into the database.
+     *          Returns True if the meme was added and False otherwise.
+     */
+    @Override
+    public boolean insertMeme(Meme meme) {
+        return !insertMemes(Collections.singletonList(meme)).isEmpty();
+    }
+
+    /* insertMemes
+     *
+     * purpose: Insert several memes into the database in one transaction.
+     *          Memes that are already in the database are skipped.
+     *          Returns the memes that were added.
+     */
+    @Override
+    public List<Meme> insertMemes(Collection<Meme> newMemes) {
+        final List<Meme> inserted = new ArrayList<>();
+        synchronized (connections) {
+            try {
+                final Set<String> names = new HashSet<>();
+                for (Meme meme : newMemes) {
+                    if (names.add(meme.getName()) && MemesTable.idOf(connections, meme.getName()) < 0) {
+                        inserted.add(meme);
+                    }
+                }
+
+                if (!inserted.isEmpty()) {
+                    MemesTable.insert(connections, inserted);
+                    forget();
+                }
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                inserted.clear();
+            }
+        }
+        return inserted;
+    }
+
+    /* deleteMeme
+     *
+     * purpose: Delete a meme and its tag assignments from the database.
+     */
+    @Override
+    public Meme deleteMeme(Meme meme) {
+        deleteMemes(Collections.singletonList(meme));
+
+        return meme;
+    }
+
+    /* deleteMemes
+     *
+     * purpose: Delete several memes and their tag assignments from the database in one
+     *          transaction.
+     *          Returns the memes that were deleted, as they were stored.
+     */
+    @Override
+    public List<Meme> deleteMemes(Collection<Meme> oldMemes) {
+        final List<Meme> deleted = new ArrayList<>();
+        synchronized (connections) {
+            try {
+                final Set<String> names = new HashSet<>();
+                for (Meme meme : oldMemes) {
+                    if (names.add(meme.getName())) {
+                        final PreparedStatement query = connections.prepare(
+                                "SELECT " + MemesTable.COLUMNS + " FROM meme WHERE name = ?");
+                        query.setString(1, meme.getName());
+                        MemesTable.read(connections, query, deleted);
+                    }
+                }
+
+                if (!deleted.isEmpty()) {
+                    MemesTable.delete(connections, deleted);
+                    forget();
+                }
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                deleted.clear();
+            }
+        }
+        return deleted;
+    }
+
+    /* updateFav
+     *
+     * purpose: Save whether the meme is a favourite, and update the copy of it in any
+     *          page that is loaded.
+     */
+    @Override
+    public void updateFav(Meme meme) {
+        synchronized (connections) {
+            try {
+                MemesTable.updateFav(connections, meme);
+                for (Page page : pages.values()) {
+                    int index = page.memes.indexOf(meme);
+                    if (index >= 0) {
+                        page.memes.get(index).setFavourite(meme.isFavourite());
+                    }
+                }
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+            }
+        }
+    }
+
+    /* removeTag
+     *
+     * purpose: Take a tag off every meme that has it. The loaded pages are dropped.
+     */
+    @Override
+    public void removeTag(Tag tag) {
+        synchronized (connections) {
+            try {
+                MemesTable.removeTag(connections, tag);
+                forget();
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+            }
+        }
+    }
+
+    @Override
+    public int getChanges() {
+        return CatalogSnapshot.changes(connections);
+    }
+
+    @Override
+    public void setCurrView(List<Meme> memes) { currView = memes; }
+
+    @Override
+    public List<Meme> getCurrView() { return currView; }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* query
+     *
+     * purpose: Run a query for a window of memes, taking its limit and offset.
+     */
+    private List<Meme> query(String sql, int offset, int limit) {
+        final List<Meme> result = new ArrayList<>();
+        synchronized (connections) {
+            try {
+                final PreparedStatement query = connections.prepare(sql);
+                query.setInt(1, Math.max(limit, 0));
+                query.setInt(2, Math.max(offset, 0));
+                MemesTable.read(connections, query, result);
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                result.clear();
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /* forget
+     *
+     * purpose: Drop the loaded pages, the meme count and the ranking after the catalog
+     *          changes.
+     */
+    private void forget() {
+        pages.clear();
+        size = -1;
+        ranking = null;
+    }
+
+    /* count
+     *
+     * purpose: The number of memes, counted once and kept until the catalog changes.
+     */
+    private int count() {
+        synchronized (connections) {
+            if (size < 0) {
+                try {
+                    final ResultSet rs = connections.prepare("SELECT COUNT(*) FROM meme").executeQuery();
+                    rs.next();
+                    size = rs.getInt(1);
+                    rs.close();
+                }
+                catch (final SQLException e) {
+                    Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                    return 0;
+                }
+            }
+            return size;
+        }
+    }
+
+    /* positionOf
+     *
+     * purpose: Where the meme is in getMemes(), or -1 if it isn't in the database.
+     *          Memes are in id order, so this is the number of memes with a smaller id.
+     */
+    private int positionOf(Meme meme) {
+        int position = -1;
+        synchronized (connections) {
+            try {
+                final int id = MemesTable.idOf(connections, meme.getName());
+                if (id >= 0) {
+                    final PreparedStatement query = connections.prepare("SELECT COUNT(*) FROM meme WHERE id < ?");
+                    query.setInt(1, id);
+                    final ResultSet rs = query.executeQuery();
+                    rs.next();
+                    position = rs.getInt(1);
+                    rs.close();
+                }
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+            }
+        }
+        return position;
+    }
+
+    /* page
+     *
+     * purpose: Return a page of memes, reading it if it isn't loaded. When the page before
+     *          it is loaded, as it is when the memes are read in order, reading starts
+     *          right after that page's last id instead of counting rows from the start.
+     *          Throws an IllegalStateException if the page can't be read.
+     */
+    private Page page(int number) {
+        Page page = pages.get(number);
+
+        if (page == null) {
+            final List<Meme> loaded = new ArrayList<>(PAGE_SIZE);
+            int lastId = -1;
+            try {
+                final Page previous = number > 0 ? pages.get(number - 1) : null;
+                final PreparedStatement query;
+                if (previous != null) {
+                    query = connections.prepare("SELECT " + MemesTable.COLUMNS + " FROM meme WHERE id > ? ORDER BY id LIMIT ?");
+                    query.setInt(1, previous.lastId);
+                    query.setInt(2, PAGE_SIZE);
+                } else {
+                    query = connections.prepare("SELECT " + MemesTable.COLUMNS + " FROM meme ORDER BY id LIMIT ? OFFSET ?");
+                    query.setInt(1, PAGE_SIZE);
+                    query.setInt(2, number * PAGE_SIZE);
+                }
+
+                final List<Integer> ids = MemesTable.read(connections, query, loaded);
+                if (!ids.isEmpty()) {
+                    lastId = ids.get(ids.size() - 1);
+                }
+            }
+            catch (final SQLException e) {
+                Log.e("Connect SQL", e.getMessage() + e.getSQLState());
+                // an empty page would pass for memes that aren't there
+                throw new IllegalStateException("Unable to read page " + number + " of the memes", e);
+            }
+
+            page = new Page(loaded, lastId);
+            pages.put(number, page);
+        }
+
+        return page;
+    }
+}
@@ -0,0 +1,260 @@
+package com.nitrogen.myme.persistence.hsqldb;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/* SchemaMigrator
+ *
+ * purpose: Brings a database up to the schema the app expects, one version at a time.
+ *          The version a database is at is kept in SCHEMA_VERSION; databases made before
+ *          that table existed are version 1. Databases already on the device are
+ *          upgraded in place the first time they are opened.
+ *
+ *          Every step after that commits on its own too, before the new version is
+ *          recorded, so a step may already have been done when it is run. Each one
+ *          checks for what it makes first (see Step) and is skipped if it is there.
+ *
+ *          Version 2 gives memes and tags integer ids. MEMETAGS refers to them by id,
+ *          with a primary key on (MEMEID, TAGID), which also serves as the meme -> tags
+ *          index, a second index for tag -> memes, and foreign keys that take a meme's
+ *          or tag's rows with it when it is deleted. The new tables are built beside the
+ *          old ones and only swapped in once they are filled, so an upgrade that fails
+ *          while they are built leaves the old tables alone and is tried again on the
+ *          next open. Each DDL statement commits on its own, so an upgrade can also stop
+ *          part way through the swap, with some of the old tables dropped. That is
+ *          spotted by an old table being gone while its new one is there, and the
+ *          upgrade carries on with the swap instead of starting over.
+ *
+ *          Version 3 indexes MEME by (FAV, ID), so a page of favourites can be read
+ *          without scanning every meme.
+ *
+ *          Version 4 gives memes a THUMBNAIL, the path of a small copy of the image
+ *          (see ThumbnailCache). Memes saved before then don't have one.
+ *
+ *          Version 5 adds CATALOG_STAMP, one row counting the changes made to the memes
+ *          and their tags, which a CatalogSnapshot is checked against.
+ *
+ *          Version 6 widens MEME.SOURCE to SOURCE_LENGTH. A picture saved in the app is
+ *          kept at its full path in the ImageStore, which is longer than the 100
+ *          characters it had room for.
+ *
+ *          Version 7 indexes MEME by SOURCE, so the ImageStore can ask whether a picture
+ *          is still used without scanning every meme.
+ */
+public class SchemaMigrator {
+    // the tables version 2 rebuilds, in the order they are swapped
+    private static final String[] SWAPPED_TABLES = {"MEMETAGS", "MEME", "TAG"};
+    private static final String NEW_SUFFIX = "_V2";
+    public static final int SOURCE_LENGTH = 1000;
+
+    private static final Step[][] MIGRATIONS = {
+            // 1 -> 2
+            steps(
+                    "DROP TABLE MEMETAGS_V2 IF EXISTS",
+                    "DROP TABLE MEME_V2 IF EXISTS",
+                    "DROP TABLE TAG_V2 IF EXISTS",
+                    "CREATE MEMORY TABLE MEME_V2(ID INTEGER GENERATED BY DEFAULT AS IDENTITY (START WITH 1) PRIMARY KEY,"
+                            + " NAME VARCHAR(100) NOT NULL UNIQUE, SOURCE VARCHAR(100) NOT NULL, FAV INTEGER NOT NULL)",
+                    "CREATE MEMORY TABLE TAG_V2(ID INTEGER GENERATED BY DEFAULT AS IDENTITY (START WITH 1) PRIMARY KEY,"
+                            + " TAGNAME VARCHAR(20) NOT NULL UNIQUE)",
+                    "INSERT INTO MEME_V2(NAME, SOURCE, FAV) SELECT NAME, SOURCE, FAV FROM MEME",
+                    "INSERT INTO TAG_V2(TAGNAME) SELECT TAGNAME FROM TAG",
+                    // tags that were only ever used on memes become real tags
+                    "INSERT INTO TAG_V2(TAGNAME) SELECT DISTINCT TAGNAME FROM MEMETAGS"
+                            + " WHERE TAGNAME NOT IN (SELECT TAGNAME FROM TAG)",
+                    "CREATE MEMORY TABLE MEMETAGS_V2(MEMEID INTEGER NOT NULL, TAGID INTEGER NOT NULL,"
+                            + " CONSTRAINT MEMETAGS_PK PRIMARY KEY (MEMEID, TAGID),"
+                            + " CONSTRAINT MEMETAGS_MEME FOREIGN KEY (MEMEID) REFERENCES MEME_V2(ID) ON DELETE CASCADE,"
+                            + " CONSTRAINT MEMETAGS_TAG FOREIGN KEY (TAGID) REFERENCES TAG_V2(ID) ON DELETE CASCADE)",
+                    "INSERT INTO MEMETAGS_V2(MEMEID, TAGID) SELECT DISTINCT m.ID, t.ID FROM MEMETAGS mt"
+                            + " JOIN MEME_V2 m ON m.NAME = mt.NAME JOIN TAG_V2 t ON t.TAGNAME = mt.TAGNAME",
+                    "CREATE INDEX MEMETAGS_BY_TAG ON MEMETAGS_V2(TAGID, MEMEID)",
+                    "DROP TABLE MEMETAGS",
+                    "DROP TABLE MEME",
+                    "DROP TABLE TAG",
+                    "ALTER TABLE MEME_V2 RENAME TO MEME",
+                    "ALTER TABLE TAG_V2 RENAME TO TAG",
+                    "ALTER TABLE MEMETAGS_V2 RENAME TO MEMETAGS"
+            ),
+            // 2 -> 3
+            {
+                    unless(index("MEME_BY_FAV"), "CREATE INDEX MEME_BY_FAV ON MEME(FAV, ID)"),
+            },
+            // 3 -> 4
+            {
+                    unless(column("MEME", "THUMBNAIL"), "ALTER TABLE MEME ADD COLUMN THUMBNAIL VARCHAR(200)"),
+            },
+            // 4 -> 5
+            {
+                    unless(table("CATALOG_STAMP"), "CREATE MEMORY TABLE CATALOG_STAMP(STAMP BIGINT NOT NULL)"),
+                    unless("SELECT 1 FROM CATALOG_STAMP", "INSERT INTO CATALOG_STAMP VALUES(0)"),
+            },
+            // 5 -> 6
+            steps(
+                    "ALTER TABLE MEME ALTER COLUMN SOURCE SET DATA TYPE VARCHAR(" + SOURCE_LENGTH + ")"
+            ),
+            // 6 -> 7
+            {
+                    unless(index("MEME_BY_SOURCE"), "CREATE INDEX MEME_BY_SOURCE ON MEME(SOURCE)"),
+            },
+    };
+
+    public static final int CURRENT_VERSION = MIGRATIONS.length + 1;
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* migrate
+     *
+     * purpose: Run every migration the database hasn't had yet, recording the new version
+     *          after each one.
+     */
+    public static void migrate(Connection c) throws SQLException {
+        int version = getVersion(c);
+
+        if (version < CURRENT_VERSION) {
+            try (Statement st = c.createStatement()) {
+                if (version == 1 && !hasTable(c, "SCHEMA_VERSION")) {
+                    st.execute("CREATE MEMORY TABLE SCHEMA_VERSION(VERSION INTEGER NOT NULL)");
+                }
+                if (version == 1 && !isFound(st, "SELECT 1 FROM SCHEMA_VERSION")) {
+                    st.execute("INSERT INTO SCHEMA_VERSION VALUES(1)");
+                }
+                if (version == 1 && isSwapping(c)) {
+                    finishSwap(c, st);
+                    st.execute("UPDATE SCHEMA_VERSION SET VERSION = 2");
+                    version = 2;
+                }
+                for (; version < CURRENT_VERSION; version++) {
+                    for (Step step : MIGRATIONS[version - 1]) {
+                        if (step.unlessFound == null || !isFound(st, step.unlessFound)) {
+                            st.execute(step.sql);
+                        }
+                    }
+                    st.execute("UPDATE SCHEMA_VERSION SET VERSION = " + (version + 1));
+                }
+                // write the new schema out now instead of replaying every step on the next open
+                st.execute("CHECKPOINT");
+            }
+        }
+    }
+
+    /* getVersion
+     *
+     * purpose: The schema version the database is at.
+     */
+    public static int getVersion(Connection c) throws SQLException {
+        int version = 1;
+
+        if (hasTable(c, "SCHEMA_VERSION")) {
+            try (Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT VERSION FROM SCHEMA_VERSION")) {
+                if (rs.next()) {
+                    version = rs.getInt(1);
+                }
+            }
+        }
+
+        return version;
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* isSwapping
+     *
+     * purpose: Whether an upgrade to version 2 stopped after it started dropping the old
+     *          tables. The new tables are only filled before the first drop, so any of
+     *          them left then is whole.
+     */
+    private static boolean isSwapping(Connection c) throws SQLException {
+        boolean oldDropped = false;
+        boolean newLeft = false;
+
+        for (String table : SWAPPED_TABLES) {
+            oldDropped |= !hasTable(c, table);
+            newLeft |= hasTable(c, table + NEW_SUFFIX);
+        }
+
+        return oldDropped && newLeft;
+    }
+
+    /* finishSwap
+     *
+     * purpose: Drop the old tables that are still there and rename the new ones into
+     *          their place. A table whose new one is gone has already been renamed.
+     */
+    private static void finishSwap(Connection c, Statement st) throws SQLException {
+        final boolean[] left = new boolean[SWAPPED_TABLES.length];
+
+        for (int i = 0; i < SWAPPED_TABLES.length; i++) {
+            left[i] = hasTable(c, SWAPPED_TABLES[i] + NEW_SUFFIX);
+            if (left[i]) {
+                st.execute("DROP TABLE " + SWAPPED_TABLES[i] + " IF EXISTS");
+            }
+        }
+        for (int i = 0; i < SWAPPED_TABLES.length; i++) {
+            if (left[i]) {
+                st.execute("ALTER TABLE " + SWAPPED_TABLES[i] + NEW_SUFFIX + " RENAME TO " + SWAPPED_TABLES[i]);
+            }
+        }
+    }
+
+    private static boolean isFound(Statement st, String query) throws SQLException {
+        try (ResultSet rs = st.executeQuery(query)) {
+            return rs.next();
+        }
+    }
+
+    private static boolean hasTable(Connection c, String table) throws SQLException {
+        try (ResultSet tables = c.getMetaData().getTables(null, "PUBLIC", table, null)) {
+            return tables.next();
+        }
+    }
+
+    /* Step
+     *
+     * purpose: One statement of a migration, skipped if the query unlessFound finds a
+     *          row, i.e. what the statement makes is already there.
+     */
+    private static class Step {
+        private final String unlessFound;
+        private final String sql;
+
+        private Step(String unlessFound, String sql) {
+            this.unlessFound = unlessFound;
+            this.sql = sql;
+        }
+    }
+
+    // statements that can always be run again
+    private static Step[] steps(String... sql) {
+        final Step[] steps = new Step[sql.length];
+        for (int i = 0; i < sql.length; i++) {
+            steps[i] = new Step(null, sql[i]);
+        }
+        return steps;
+    }
+
+    private static Step unless(String query, String sql) {
+        return new Step(query, sql);
+    }
+
+    private static String table(String table) {
+        return "SELECT 1 FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = '" + table + "'";
+    }
+
+    private static String column(String table, String column) {
+        return "SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = 'PUBLIC'"
+                + " AND TABLE_NAME = '" + table + "' AND COLUMN_NAME = '" + column + "'";
+    }
+
+    private static String index(String index) {
+        return "SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_INDEXINFO WHERE TABLE_SCHEM = 'PUBLIC'"
+                + " AND INDEX_NAME = '" + index + "'";
+    }
+}
@@ -0,0 +1,141 @@
+package com.nitrogen.myme.persistence.hsqldb;
+
+import com.nitrogen.myme.objects.Meme;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* SeedMerger
+ *
+ * purpose: Brings what's new in an updated seed database into the database on the
+ *          device, without copying over it. The new seed is compared with the seed the
+ *          device was last given: memes, tags and templates that the new seed added are
+ *          inserted, unless the device already has them. Nothing on the device is
+ *          changed or deleted, so memes the user made, deleted or favourited stay the
+ *          way the user left them.
+ */
+public class SeedMerger {
+
+    //**************************************************
+    // Methods
+    //**************************************************
+
+    /* merge
+     *
+     * purpose: Merge the additions in the seed at seedPath, compared with the seed at
+     *          previousSeedPath, into the target database. Both seeds are opened, and so
+     *          brought up to the current schema, and closed again afterwards.
+     *          Returns the number of memes added to the target.
+     */
+    public static int merge(String seedPath, String previousSeedPath, ConnectionProvider target) throws SQLException {
+        final ConnectionProvider seed = new ConnectionProvider(seedPath);
+        final ConnectionProvider previous = new ConnectionProvider(previousSeedPath);
+
+        try {
+            final Map<String, String> templates = readTemplates(seed);
+            templates.keySet().removeAll(readTemplates(previous).keySet());
+            final List<String> tags = readNames(seed, "SELECT tagname FROM tag ORDER BY id");
+            tags.removeAll(new HashSet<>(readNames(previous, "SELECT tagname FROM tag ORDER BY id")));
+            final List<Meme> memes = readMemes(seed);
+            memes.removeAll(new HashSet<>(readMemes(previous)));
+
+            synchronized (target) {
+                final List<Meme> added = new ArrayList<>();
+                for (Meme meme : memes) {
+                    if (MemesTable.idOf(target, meme.getName()) < 0) {
+                        added.add(meme);
+                    }
+                }
+                insert(target, templates, tags, added);
+                return added.size();
+            }
+        }
+        finally {
+            seed.close();
+            previous.close();
+        }
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* insert
+     *
+     * purpose: Add the templates and tags to the target in one transaction, then the
+     *          memes in another. Templates and tags the target already has are left
+     *          alone. If the memes fail, merging again adds whatever is still missing.
+     */
+    private static void insert(final ConnectionProvider target, final Map<String, String> templates,
+                               final List<String> tags, final List<Meme> memes) throws SQLException {
+        target.inTransaction(new ConnectionProvider.Transaction() {
+            @Override
+            public void run() throws SQLException {
+                final PreparedStatement newTemplate = target.prepare("MERGE INTO templates USING"
+                        + " (VALUES(CAST(? AS VARCHAR(100)), CAST(? AS VARCHAR(100)))) AS v(name, source)"
+                        + " ON templates.name = v.name WHEN NOT MATCHED THEN INSERT (name, source) VALUES(v.name, v.source)");
+                for (Map.Entry<String, String> template : templates.entrySet()) {
+                    newTemplate.setString(1, template.getKey());
+                    newTemplate.setString(2, template.getValue());
+                    newTemplate.addBatch();
+                }
+                if (!templates.isEmpty()) {
+                    newTemplate.executeBatch();
+                }
+
+                final PreparedStatement newTag = target.prepare("MERGE INTO tag USING (VALUES(CAST(? AS VARCHAR(20))))"
+                        + " AS v(tagname) ON tag.tagname = v.tagname WHEN NOT MATCHED THEN INSERT (tagname) VALUES(v.tagname)");
+                for (String tag : tags) {
+                    newTag.setString(1, tag);
+                    newTag.addBatch();
+                }
+                if (!tags.isEmpty()) {
+                    newTag.executeBatch();
+                }
+            }
+        });
+
+        if (!memes.isEmpty()) {
+            MemesTable.insert(target, memes);
+        }
+    }
+
+    private static List<Meme> readMemes(ConnectionProvider connections) throws SQLException {
+        final List<Meme> memes = new ArrayList<>();
+        synchronized (connections) {
+            MemesTable.read(connections,
+                    connections.prepare("SELECT " + MemesTable.COLUMNS + " FROM meme ORDER BY id"), memes);
+        }
+        return memes;
+    }
+
+    private static List<String> readNames(ConnectionProvider connections, String sql) throws SQLException {
+        final List<String> names = new ArrayList<>();
+        synchronized (connections) {
+            final ResultSet rs = connections.prepare(sql).executeQuery();
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+            rs.close();
+        }
+        return names;
+    }
+
+    private static Map<String, String> readTemplates(ConnectionProvider connections) throws SQLException {
+        final Map<String, String> templates = new LinkedHashMap<>();
+        synchronized (connections) {
+            final ResultSet rs = connections.prepare("SELECT name, source FROM templates").executeQuery();
+            while (rs.next()) {
+                templates.put(rs.getString(1), rs.getString(2));
+            }
+            rs.close();
+        }
+        return templates;
+    }
+}
@@ -5,49 +5,46 @@ import android.util.Log;
 import com.nitrogen.myme.objects.Tag;
 import com.nitrogen.myme.persistence.TagsPersistence;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.sql.PreparedStatement;
 
 public class TagsPersistenceHSQLDB implements TagsPersistence {
 
-    private List<Tag> tags;
-    private final String dbPath;
+    private KeyedList<Tag> tags;
+    private final ConnectionProvider connections;
 
     //**************************************************
     // Constructor
     //**************************************************
 
-    public TagsPersistenceHSQLDB(String dbPath) {
-        this.dbPath = dbPath;
-        this.tags = new ArrayList<>();
-        defaultTags(dbPath);
+    public TagsPersistenceHSQLDB(ConnectionProvider connections) {
+        this.connections = connections;
+        this.tags = new KeyedList<Tag>() {
+            @Override
+            String keyOf(Tag tag) {
+                return tag.getName();
+            }
+        };
+        defaultTags();
     }
 
-    private Connection connect() throws SQLException{
-        return DriverManager.getConnection("jdbc:hsqldb:file:" + dbPath +";shutdown=true", "SA","");
-    }
+    private void defaultTags(){
+        synchronized (connections) {
+            try {
+                final ResultSet rs = connections.prepare("SELECT * FROM TAG").executeQuery();
+                while (rs.next()) {
+                    tags.add(new Tag(rs.getString("tagname")));
+                }
+                rs.close();
 
-    private void defaultTags(String dbPath){
-        try(Connection c = connect()){
-            final Statement st = c.createStatement();
-            final ResultSet rs = st.executeQuery("SELECT * FROM TAG");
-            while (rs.next()) {
-                tags.add(new Tag(rs.getString("tagname")));
             }
-            rs.close();
-            st.close();
-
-        }
-        catch (final SQLException e){
-            Log.e("Connect SQL",e.getMessage()+ e.getSQLState());
+            catch (final SQLException e){
+                Log.e("Connect SQL",e.getMessage()+ e.getSQLState());
 
+            }
         }
     }
 
@@ -69,21 +66,23 @@ public class TagsPersistenceHSQLDB implements TagsPersistence {
     @Override
     public boolean insertTag(Tag tag) {
         boolean tagAdded = false;
-        try(Connection c = connect()){
+        synchronized (connections) {
+            try {
+
+                if(!tags.contains(tag)) {
+                    tagAdded = true;
+                }
+                if(tagAdded){
+                    final PreparedStatement in = connections.prepare("INSERT INTO tag(tagname) VALUES(?)");
+                    in.setString(1,tag.getName());
+                    in.executeUpdate();
+                    tags.add(tag);
+                }
 
-            if(!tags.contains(tag)) {
-                tagAdded = true;
             }
-            if(tagAdded){
-                final PreparedStatement in = c.prepareStatement("INSERT INTO tag VALUES(?)");
-                in.setString(1,tag.getName());
-                in.executeUpdate();
-                tags.add(tag);
+            catch (final SQLException e){
+                Log.e("Connect SQL",e.getMessage()+ e.getSQLState());
             }
-
-        }
-        catch (final SQLException e){
-            Log.e("Connect SQL",e.getMessage()+ e.getSQLState());
         }
 
         return tagAdded;
@@ -91,17 +90,53 @@ public class TagsPersistenceHSQLDB implements TagsPersistence {
 
     /* deleteTag
      *
-     * purpose: Delete a tag from the database.
+     * purpose: Delete a tag from the database. MEMETAGS' foreign key takes it off every
+     *          meme that has it in the same statement.
      */
     @Override
-    public Tag deleteTag(Tag tag) {
-        int index;
-
-        index = tags.indexOf(tag);
-        if (index >= 0) {
-            tags.remove(index);
+    public Tag deleteTag(final Tag tag) {
+        synchronized (connections) {
+            if (tags.contains(tag)) {
+                try {
+                    // memes lose the tag too, unless it was already taken off them
+                    // (see MemesPersistence.removeTag), so their snapshot is out of date
+                    final boolean assigned = isAssigned(tag);
+                    if (assigned) {
+                        CatalogSnapshot.invalidate(connections);
+                    }
+                    connections.inTransaction(new ConnectionProvider.Transaction() {
+                        @Override
+                        public void run() throws SQLException {
+                            final PreparedStatement out = connections.prepare("DELETE FROM tag WHERE tagname = ?");
+                            out.setString(1, tag.getName());
+                            out.executeUpdate();
+                            if (assigned) {
+                                CatalogSnapshot.stamp(connections);
+                            }
+                        }
+                    });
+                    tags.removeByKey(tag.getName());
+                }
+                catch (final SQLException e){
+                    Log.e("Connect SQL",e.getMessage()+ e.getSQLState());
+                }
+            }
         }
 
         return tag;
     }
+
+    /* isAssigned
+     *
+     * purpose: Whether any meme has the tag.
+     */
+    private boolean isAssigned(Tag tag) throws SQLException {
+        final PreparedStatement query = connections.prepare("SELECT 1 FROM memetags mt"
+                + " JOIN tag t ON t.id = mt.tagid WHERE t.tagname = ? LIMIT 1");
+        query.setString(1, tag.getName());
+        final ResultSet rs = query.executeQuery();
+        final boolean assigned = rs.next();
+        rs.close();
+        return assigned;
+    }
 }
@@ -1,10 +1,15 @@
 package com.nitrogen.myme.persistence.stubs;
 
+import java.util.AbstractList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.Set;
 
 import com.nitrogen.myme.persistence.MemesPersistence;
 import com.nitrogen.myme.application.Services;
@@ -15,9 +20,29 @@ import com.nitrogen.myme.persistence.TagsPersistence;
 
 public class MemesPersistenceStub implements MemesPersistence {
     private List<Meme> memes;
+    private Set<String> names = new HashSet<>();
     private List<Tag> tags;
     private Map<String,Integer> memeMap = new HashMap<String,Integer>();
     private List<Meme> currView = new ArrayList<Meme>();
+    private int changes = 0;
+
+    // the memes as handed out, looked up by name like the real database's
+    private List<Meme> view = new AbstractList<Meme>() {
+        @Override
+        public Meme get(int index) {
+            return memes.get(index);
+        }
+
+        @Override
+        public int size() {
+            return memes.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Meme && names.contains(((Meme) o).getName());
+        }
+    };
 
     //**************************************************
     // Constructors
@@ -32,7 +57,7 @@ public class MemesPersistenceStub implements MemesPersistence {
         for(String name : memeMap.keySet()) {
             Meme newMeme = new Meme(name, ("android.resource://com.nitrogen.myme/" + memeMap.get(name)));
             newMeme.setTags(randomTags(memeMap.get(name)));
-            memes.add(newMeme);
+            insertMeme(newMeme);
         }
     }
 
@@ -81,7 +106,105 @@ public class MemesPersistenceStub implements MemesPersistence {
 
     @Override
     public List<Meme> getMemes() {
-        return Collections.unmodifiableList(memes);
+        return view;
+    }
+
+    /* getMemes
+     *
+     * purpose: Return up to limit memes, starting at offset.
+     */
+    @Override
+    public List<Meme> getMemes(int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), memes.size());
+        int to = (int) Math.min((long) from + Math.max(limit, 0), memes.size());
+
+        return Collections.unmodifiableList(new ArrayList<>(memes.subList(from, to)));
+    }
+
+    // every meme is in memory already
+    @Override
+    public Iterable<Meme> scanMemes() {
+        return getMemes();
+    }
+
+    /* usesImage
+     *
+     * purpose: Whether any meme's image is at the path.
+     */
+    @Override
+    public boolean usesImage(String imagePath) {
+        for (Meme meme : memes) {
+            if (imagePath.equals(meme.getImagePath())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /* getFavouriteMemes
+     *
+     * purpose: Return up to limit favourite memes, skipping the first offset of them.
+     */
+    @Override
+    public List<Meme> getFavouriteMemes(int offset, int limit) {
+        List<Meme> page = new ArrayList<>();
+        int skipped = 0;
+
+        for (int i = 0; i < memes.size() && page.size() < limit; i++) {
+            Meme meme = memes.get(i);
+            if (meme.isFavourite()) {
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    page.add(meme);
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(page);
+    }
+
+    /* getMemesByRelevance
+     *
+     * purpose: Return up to limit memes, starting at offset, ranked by how many
+     *          favourites share each of their tags, favourites last.
+     */
+    @Override
+    public List<Meme> getMemesByRelevance(int offset, int limit) {
+        final Map<Tag, Integer> weights = new HashMap<>();
+        for (Meme meme : memes) {
+            if (meme.isFavourite()) {
+                for (Tag tag : meme.getTags()) {
+                    Integer weight = weights.get(tag);
+                    weights.put(tag, weight != null ? weight + 1 : 1);
+                }
+            }
+        }
+
+        final Map<Meme, Integer> affinities = new HashMap<>();
+        for (Meme meme : memes) {
+            int affinity = 0;
+            for (Tag tag : meme.getTags()) {
+                Integer weight = weights.get(tag);
+                affinity += weight != null ? weight : 0;
+            }
+            affinities.put(meme, meme.isFavourite() ? -1 : affinity);
+        }
+
+        // the sort is stable, so ties stay in the order the memes were inserted
+        List<Meme> ranked = new ArrayList<>(memes);
+        Collections.sort(ranked, new Comparator<Meme>() {
+            @Override
+            public int compare(Meme meme1, Meme meme2) {
+                return Integer.compare(affinities.get(meme2), affinities.get(meme1));
+            }
+        });
+
+        int from = Math.min(Math.max(offset, 0), ranked.size());
+        int to = (int) Math.min((long) from + Math.max(limit, 0), ranked.size());
+
+        return Collections.unmodifiableList(new ArrayList<>(ranked.subList(from, to)));
     }
 
     /* insertMeme
@@ -94,36 +217,90 @@ public class MemesPersistenceStub implements MemesPersistence {
         boolean memeInserted = false;
 
         // don't add duplicates
-        if(!memes.contains(meme)) {
+        if(names.add(meme.getName())) {
             memes.add(meme);
+            changes++;
             memeInserted = true;
         }
 
         return memeInserted;
     }
 
+    /* insertMemes
+     *
+     * purpose: Insert several memes into the database.
+     *          Returns the memes that were added.
+     */
+    @Override
+    public List<Meme> insertMemes(Collection<Meme> newMemes) {
+        List<Meme> inserted = new ArrayList<>();
+
+        for(Meme meme : newMemes) {
+            if(insertMeme(meme)) {
+                inserted.add(meme);
+            }
+        }
+
+        return inserted;
+    }
+
     /* deleteMeme
      *
      * purpose: Delete a meme from the database.
      */
     @Override
     public Meme deleteMeme(Meme meme) {
-        int index;
-
-        index = memes.indexOf(meme);
-        if (index >= 0) {
-            memes.remove(index);
+        if (names.remove(meme.getName())) {
+            memes.remove(meme);
+            changes++;
         }
 
         return meme;
     }
 
+    /* deleteMemes
+     *
+     * purpose: Delete several memes from the database.
+     *          Returns the memes that were deleted.
+     */
+    @Override
+    public List<Meme> deleteMemes(Collection<Meme> oldMemes) {
+        List<Meme> deleted = new ArrayList<>();
+
+        for(Meme meme : oldMemes) {
+            if (names.remove(meme.getName())) {
+                deleted.add(memes.remove(memes.indexOf(meme)));
+                changes++;
+            }
+        }
+
+        return deleted;
+    }
+
     public void updateFav(Meme meme){
         for(Meme mi : memes){
             if(meme.getName().equals(mi.getName())){
                 mi.setFavourite(meme.isFavourite());
             }
         }
+        changes++;
+    }
+
+    /* removeTag
+     *
+     * purpose: Take a tag off every meme that has it.
+     */
+    @Override
+    public void removeTag(Tag tag) {
+        for (Meme meme : memes) {
+            meme.removeTag(tag);
+        }
+        changes++;
+    }
+
+    @Override
+    public int getChanges() {
+        return changes;
     }
 
     public void setCurrView(List<Meme> memes){ currView = memes; }
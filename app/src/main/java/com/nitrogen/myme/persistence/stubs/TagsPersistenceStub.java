@@ -1,14 +1,17 @@
 package com.nitrogen.myme.persistence.stubs;
 
+import java.util.AbstractList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Set;
 
 import com.nitrogen.myme.objects.Tag;
 import com.nitrogen.myme.persistence.TagsPersistence;
 
 public class TagsPersistenceStub implements TagsPersistence {
     private List<Tag> tags;
+    private Set<String> names = new HashSet<>();
     private String[] availableTags = {
             "dank",
             "edgy",
@@ -18,6 +21,24 @@ public class TagsPersistenceStub implements TagsPersistence {
 
     }; //, "funny", "meIRL"};
 
+    // the tags as handed out, looked up by name like the real database's
+    private List<Tag> view = new AbstractList<Tag>() {
+        @Override
+        public Tag get(int index) {
+            return tags.get(index);
+        }
+
+        @Override
+        public int size() {
+            return tags.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Tag && names.contains(((Tag) o).getName());
+        }
+    };
+
     //**************************************************
     // Constructor
     //**************************************************
@@ -26,7 +47,7 @@ public class TagsPersistenceStub implements TagsPersistence {
         this.tags = new ArrayList<>();
 
         for(int i = 0 ; i < availableTags.length ; i++) {
-            tags.add(new Tag(availableTags[i]));
+            insertTag(new Tag(availableTags[i]));
         }
     }
 
@@ -36,7 +57,7 @@ public class TagsPersistenceStub implements TagsPersistence {
 
     @Override
     public List<Tag> getTags() {
-        return Collections.unmodifiableList(tags);
+        return view;
     }
 
     /* insertTag
@@ -48,7 +69,7 @@ public class TagsPersistenceStub implements TagsPersistence {
     public boolean insertTag(Tag tag) {
         boolean tagAdded = false;
 
-        if(!tags.contains(tag)) {
+        if(names.add(tag.getName())) {
             tags.add(tag);
             tagAdded = true;
         }
@@ -62,11 +83,8 @@ public class TagsPersistenceStub implements TagsPersistence {
      */
     @Override
     public Tag deleteTag(Tag tag) {
-        int index;
-
-        index = tags.indexOf(tag);
-        if (index >= 0) {
-            tags.remove(index);
+        if (names.remove(tag.getName())) {
+            tags.remove(tag);
         }
 
         return tag;
@@ -56,6 +56,8 @@ public class CreateActivity extends AppCompatActivity implements TextEditorDialo
     private TextEditorDialogFragment fragment;
 
     private boolean isBlankCanvas;
+    // the gallery image on the canvas, handed back to the pool once it is replaced
+    private Bitmap galleryBitmap = null;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -88,6 +90,14 @@ public class CreateActivity extends AppCompatActivity implements TextEditorDialo
 
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // the canvas isn't drawn anymore
+        releaseGalleryBitmap();
+    }
+
     /* initializeImageButtons
      *
      * purpose: A method to assign actions to buttons that will control the following:
@@ -267,7 +277,15 @@ public class CreateActivity extends AppCompatActivity implements TextEditorDialo
         deleteAllTextEntities();
 
 
-        canvas.setImageURI(imageURI);
+        // decode it no bigger than the canvas, large photos don't fit in memory at full size
+        Bitmap image = new ImageSaver(this).load(imageURI, canvas.getWidth(), canvas.getHeight());
+        if (image != null) {
+            canvas.setImageBitmap(image);
+        } else {
+            canvas.setImageURI(imageURI);
+        }
+        releaseGalleryBitmap();
+        galleryBitmap = image;
 
         canvas.setRotation(0);
 
@@ -278,6 +296,11 @@ public class CreateActivity extends AppCompatActivity implements TextEditorDialo
         isBlankCanvas = false;
     }
 
+    private void releaseGalleryBitmap() {
+        ImageSaver.release(galleryBitmap);
+        galleryBitmap = null;
+    }
+
     /* openTemplates
      *
      * purpose: A method that launches a new activity to prompt the user to select the
@@ -305,6 +328,7 @@ public class CreateActivity extends AppCompatActivity implements TextEditorDialo
         // render template
         canvas.setImageURI(Uri.parse(templatePath));
         canvas.setRotation(0);
+        releaseGalleryBitmap();
 
         // we have an image to edit
         isBlankCanvas = false;
@@ -1,9 +1,10 @@
 package com.nitrogen.myme.presentation;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.design.widget.BottomNavigationView;
@@ -21,7 +22,11 @@ import android.widget.SearchView;
 import android.widget.Toast;
 
 import com.nitrogen.myme.R;
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.application.WarmUp;
 import com.nitrogen.myme.business.AccessMemes;
+import com.nitrogen.myme.business.AsyncSearch;
+import com.nitrogen.myme.business.CoOccurrenceRecommender;
 import com.nitrogen.myme.business.SearchMemes;
 import com.nitrogen.myme.business.SortMemes;
 import com.nitrogen.myme.objects.Meme;
@@ -33,8 +38,17 @@ public class ExploreActivity extends AppCompatActivity {
     private MemesRecyclerAdapter adapter;
     private RecyclerView rvMemes;
     private SearchMemes searchMemes;
-    private SortMemes sortMemes;
+    private AsyncSearch asyncSearch;
+    private String submittedQuery = null;
+    // loads the feed a page at a time when the catalog is too big to sort all of it
+    private MemesRecyclerAdapter.PageLoader feed = null;
     private boolean layoutAsGrid = true;
+    private final Executor uiThread = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            runOnUiThread(task);
+        }
+    };
 
     //**************************************************
     // Activity Lifecycle
@@ -45,7 +59,8 @@ public class ExploreActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_memes);
         DatabaseHelper.copyDatabaseToDevice(this);
-        searchMemes = new SearchMemes();
+        // load everything in the background, this screen draws as soon as it has something to show
+        WarmUp warmUp = Services.warmUp();
         // Setup toolbar
         Toolbar myToolbar = (Toolbar) findViewById(R.id.my_toolbar);
         setSupportActionBar(myToolbar);
@@ -57,18 +72,34 @@ public class ExploreActivity extends AppCompatActivity {
         MenuItem item = bottomNavMenu.getItem(0);
         item.setChecked(true);
 
-        // Initialize memes
-        accessMemes = new AccessMemes();
-        memes.addAll(accessMemes.getMemes());
-        sortMemes = new SortMemes(memes);
-        accessMemes.setCurrView(sortMemes.sortByRelevance());
-
         // Setup recycler view
         setupRV();
 
-        Toast toast = Toast.makeText(this, "Sorted by relevance based on favourites.", Toast.LENGTH_LONG);
-        toast.setGravity(Gravity.CENTER, 0, 0);
-        toast.show();
+        // show the first memes straight away, then swap in the full feed once everything
+        // is loaded and it has been sorted, in the background, since sorting goes through
+        // every meme
+        warmUp.whenReady(AsyncTask.THREAD_POOL_EXECUTOR, new Runnable() {
+            @Override
+            public void run() {
+                final LoadedFeed loaded = loadFeed();
+                uiThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isDestroyed()) {
+                            initMemes(loaded);
+                        }
+                    }
+                });
+            }
+        });
+        warmUp.whenSnapshotReady(uiThread, new WarmUp.OnSnapshot() {
+            @Override
+            public void onSnapshot(List<Meme> firstMemes) {
+                if (accessMemes == null && !isDestroyed()) {
+                    displayMemes(firstMemes);
+                }
+            }
+        });
     }
 
     @Override
@@ -76,7 +107,17 @@ public class ExploreActivity extends AppCompatActivity {
         super.onResume();
 
         //data may have changed (e.g. some meme is now a favorite)
-        rvMemes.getAdapter().notifyDataSetChanged();
+        adapter.refresh();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // stop searching in the background
+        if (asyncSearch != null) {
+            asyncSearch.shutdown();
+        }
     }
 
     //**************************************************
@@ -103,7 +144,8 @@ public class ExploreActivity extends AppCompatActivity {
 
             @Override
             public boolean onQueryTextChange(String userInput) {
-                // do nothing (this method definition is required by the constructor)
+                // show results while the user is still typing
+                handleSearchAsYouType(userInput);
                 return false;
             }
         });
@@ -112,7 +154,16 @@ public class ExploreActivity extends AppCompatActivity {
         searchView.setOnCloseListener(new SearchView.OnCloseListener() {
             @Override
             public boolean onClose() {
-                displayMemes(accessMemes.getMemes());
+                if (asyncSearch == null) {
+                    // still loading
+                    return false;
+                }
+                asyncSearch.cancel();
+                if (feed != null) {
+                    adapter.setPageLoader(feed);
+                } else {
+                    displayMemes(accessMemes.getMemes());
+                }
                 return false;
             }
         });
@@ -165,6 +216,77 @@ public class ExploreActivity extends AppCompatActivity {
     // Helper Methods
     //**************************************************
 
+    /* LoadedFeed
+     *
+     * purpose: What the feed is shown from: every meme sorted by relevance based on
+     *          favourites, or for a large catalog the first page of them, ranked by the
+     *          database, with the rest read as the user scrolls.
+     */
+    private static class LoadedFeed {
+        private final AccessMemes accessMemes;
+        private final List<Meme> memes;
+        private final boolean paged;
+
+        private LoadedFeed(AccessMemes accessMemes, List<Meme> memes, boolean paged) {
+            this.accessMemes = accessMemes;
+            this.memes = memes;
+            this.paged = paged;
+        }
+    }
+
+    /* loadFeed
+     *
+     * purpose: Load and sort the feed. Called in the background.
+     */
+    private static LoadedFeed loadFeed() {
+        AccessMemes accessMemes = new AccessMemes();
+
+        if (Services.isLargeCatalog()) {
+            // the first page has the database rank the memes, so scrolling won't wait for it
+            return new LoadedFeed(accessMemes, accessMemes.getMemesByRelevance(0, MemesRecyclerAdapter.PAGE_SIZE), true);
+        }
+
+        List<Meme> feed = new ArrayList<>(accessMemes.getMemes());
+        List<Meme> sorted = new SortMemes(feed, CoOccurrenceRecommender.getInstance(Services.getMemesPersistence())).sortByRelevance();
+        return new LoadedFeed(accessMemes, sorted, false);
+    }
+
+    /* initMemes
+     *
+     * purpose: Set up searching and swap the loaded feed in for the first memes.
+     *          Called on the UI thread.
+     */
+    private void initMemes(LoadedFeed loaded) {
+        searchMemes = new SearchMemes();
+        asyncSearch = new AsyncSearch(searchMemes, uiThread, new AsyncSearch.OnResults() {
+            @Override
+            public void onResults(String query, List<Meme> results) {
+                handleSearchResults(query, results);
+            }
+        });
+
+        // Initialize memes
+        accessMemes = loaded.accessMemes;
+        if (loaded.paged) {
+            // only load the memes the user scrolls to, already ranked
+            feed = new MemesRecyclerAdapter.PageLoader() {
+                @Override
+                public List<Meme> loadPage(int offset, int limit) {
+                    return accessMemes.getMemesByRelevance(offset, limit);
+                }
+            };
+            adapter.setPageLoader(feed, loaded.memes);
+        } else {
+            memes = loaded.memes;
+            accessMemes.setCurrView(memes);
+            displayMemes(memes);
+        }
+
+        Toast toast = Toast.makeText(this, "Sorted by relevance based on favourites.", Toast.LENGTH_LONG);
+        toast.setGravity(Gravity.CENTER, 0, 0);
+        toast.show();
+    }
+
     /* setupRV
      *
      * purpose: Setup the recycler view to display the list of memes.
@@ -173,7 +295,7 @@ public class ExploreActivity extends AppCompatActivity {
         // Lookup the recycler view in activity layout
         rvMemes = (RecyclerView) findViewById(R.id.rvMemes);
 
-        // Create adapter passing in the sample user data
+        // Create adapter, it is given the memes once they are loaded
         adapter = new MemesRecyclerAdapter(memes);
 
         // Attach the adapter to the recycler view to populate items
@@ -211,13 +333,51 @@ public class ExploreActivity extends AppCompatActivity {
 
     /* handleSearch
      *
-     * purpose: Take the user's input and perform a query to retrieve a
-     *          list of memes related to the query.
+     * purpose: Take the user's input and start a query in the background to retrieve
+     *          a list of the memes most related to the query, best first.
      */
     private void handleSearch(String input) {
-        memes = searchMemes.getMemesRelatedTo(input);
+        if (asyncSearch == null) {
+            // still loading
+            return;
+        }
+        submittedQuery = input;
+        asyncSearch.search(input);
+    }
+
+    /* handleSearchAsYouType
+     *
+     * purpose: Take the partial input in the search box and, once the user pauses,
+     *          look for the best matches so far in the background, including words
+     *          that are only half typed or misspelled.
+     */
+    private void handleSearchAsYouType(String input) {
+        if (asyncSearch == null) {
+            // still loading
+            return;
+        }
+        submittedQuery = null;
+
+        if (input.trim().length() == 0) {
+            asyncSearch.cancel();
+            if (feed != null) {
+                adapter.setPageLoader(feed);
+            } else {
+                displayMemes(accessMemes.getCurrView());
+            }
+        } else {
+            asyncSearch.searchAsYouType(input);
+        }
+    }
+
+    /* handleSearchResults
+     *
+     * purpose: Show the results of the newest query. Called on the UI thread.
+     */
+    private void handleSearchResults(String query, List<Meme> results) {
+        memes = results;
 
-        if(memes.size() == 0) {
+        if(memes.size() == 0 && query.equals(submittedQuery)) {
             Toast toast = Toast.makeText(this, "Whoops! No results found.", Toast.LENGTH_SHORT);
             toast.setGravity(Gravity.CENTER, 0, 0);
             toast.show();
@@ -21,7 +21,6 @@ import com.nitrogen.myme.objects.Meme;
 
 public class FavouritesActivity extends AppCompatActivity {
     private AccessFavourites accessMemes;
-    private List<Meme> memes;
     private MemesRecyclerAdapter adapter;
     private RecyclerView rvMemes;
     private boolean layoutAsGrid = true;
@@ -47,7 +46,6 @@ public class FavouritesActivity extends AppCompatActivity {
 
         // Initialize memes
         accessMemes = new AccessFavourites();
-        memes = accessMemes.getMemes();
 
         // Setup recycler view
         setupRV();
@@ -58,9 +56,7 @@ public class FavouritesActivity extends AppCompatActivity {
         super.onResume();
 
         //data may have changed (e.g. some meme is now a favorite)
-        accessMemes = new AccessFavourites();
-        memes = accessMemes.getMemes();
-        ((MemesRecyclerAdapter) rvMemes.getAdapter()).setMemes(memes);
+        adapter.refresh();
     }
 
     //**************************************************
@@ -132,8 +128,13 @@ public class FavouritesActivity extends AppCompatActivity {
         // Lookup the recycler view in activity layout
         rvMemes = (RecyclerView) findViewById(R.id.rvFavourites);
 
-        // Create adapter passing in the sample user data
-        adapter = new MemesRecyclerAdapter(memes);
+        // Create adapter that loads the favourites a page at a time as the user scrolls
+        adapter = new MemesRecyclerAdapter(new MemesRecyclerAdapter.PageLoader() {
+            @Override
+            public List<Meme> loadPage(int offset, int limit) {
+                return accessMemes.getMemes(offset, limit);
+            }
+        });
 
         // Attach the adapter to the recycler view to populate items
         rvMemes.setAdapter(adapter);
@@ -3,6 +3,9 @@ package com.nitrogen.myme.presentation;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
@@ -12,9 +15,11 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.nitrogen.myme.R;
+import com.nitrogen.myme.business.SaveHandler;
 import com.nitrogen.myme.objects.Meme;
 import com.squareup.picasso.Picasso;
 
@@ -59,8 +64,29 @@ public class MemesRecyclerAdapter extends RecyclerView.Adapter<MemesRecyclerAdap
 
     }
 
+    /* PageLoader
+     *
+     * purpose: Loads the memes to show a page at a time, as the user scrolls. Pages are
+     *          loaded in the background, since they may be read from the database.
+     */
+    public interface PageLoader {
+        List<Meme> loadPage(int offset, int limit);
+    }
+
+    static final int PAGE_SIZE = 30;
+    // how close the user scrolls to the last loaded meme before the next page is loaded
+    private static final int PREFETCH_DISTANCE = 10;
+
     // Store a member variable for the memes
     private List<Meme> memes;
+    // Where more memes come from, or null if all of them were given up front
+    private PageLoader pageLoader = null;
+    private boolean allLoaded = true;
+    private boolean loading = false;
+    // counts the times the memes were replaced, so a page loaded for memes that have
+    // been replaced since is dropped
+    private int generation = 0;
+    private final Handler uiThread = new Handler(Looper.getMainLooper());
 
     //**************************************************
     // Constructor
@@ -71,6 +97,11 @@ public class MemesRecyclerAdapter extends RecyclerView.Adapter<MemesRecyclerAdap
         this.memes = memes;
     }
 
+    // Pass in where to load the memes from, a page at a time
+    public MemesRecyclerAdapter(PageLoader pageLoader) {
+        setPageLoader(pageLoader);
+    }
+
     //**************************************************
     // Required Recycler Methods
     //**************************************************
@@ -92,6 +123,10 @@ public class MemesRecyclerAdapter extends RecyclerView.Adapter<MemesRecyclerAdap
     // Populate data into the item through holder
     @Override
     public void onBindViewHolder(@NonNull MemesRecyclerAdapter.ViewHolder viewHolder, int position) {
+        if (position >= memes.size() - PREFETCH_DISTANCE) {
+            loadNextPageSoon();
+        }
+
         // Get the data model based on position
         Meme meme = memes.get(position);
 
@@ -102,7 +137,13 @@ public class MemesRecyclerAdapter extends RecyclerView.Adapter<MemesRecyclerAdap
         String path = meme.getThumbnailPath();
 
         if (path.substring(0,4).equals("andr")) {
-            Picasso.get().load( path ).into(imageView);
+            // the built-in memes have no thumbnails, decode them no bigger than the cell
+            Picasso.get().load( path ).fit().centerInside().into(imageView);
+        } else if (meme.hasThumbnail() && !new File(path).exists()) {
+            // the thumbnail was evicted, decode the picture no bigger than the cell
+            // until it has been made again
+            Picasso.get().load( new File(meme.getImagePath()) ).fit().centerInside().into(imageView);
+            SaveHandler.remakeThumbnail(imageView.getContext(), meme);
         } else {
             Picasso.get().load( new File(path) ).into(imageView);
         }
@@ -119,7 +160,9 @@ public class MemesRecyclerAdapter extends RecyclerView.Adapter<MemesRecyclerAdap
 
     // mutator to update the memes that will be displayed
     public void updateMemeList(List<Meme> newMemeList) {
+        this.pageLoader = null;
         this.memes = newMemeList;
+        generation++;
         notifyDataSetChanged();
     }
 
@@ -128,7 +171,105 @@ public class MemesRecyclerAdapter extends RecyclerView.Adapter<MemesRecyclerAdap
     //**************************************************
 
     public void setMemes(List<Meme> newMemes) {
+        pageLoader = null;
         memes = newMemes;
+        generation++;
         notifyDataSetChanged();
     }
+
+    /* setPageLoader
+     *
+     * purpose: Show the memes from the page loader, starting with its first page, which
+     *          shows up once it has been loaded.
+     */
+    public void setPageLoader(PageLoader newPageLoader) {
+        pageLoader = newPageLoader;
+        memes = new ArrayList<>();
+        generation++;
+        notifyDataSetChanged();
+        loadPage(PAGE_SIZE, true);
+    }
+
+    /* setPageLoader
+     *
+     * purpose: Show the memes from the page loader, starting with a first page of
+     *          PAGE_SIZE memes that was already loaded.
+     */
+    public void setPageLoader(PageLoader newPageLoader, List<Meme> firstPage) {
+        pageLoader = newPageLoader;
+        memes = new ArrayList<>(firstPage);
+        allLoaded = firstPage.size() < PAGE_SIZE;
+        loading = false;
+        generation++;
+        notifyDataSetChanged();
+    }
+
+    /* refresh
+     *
+     * purpose: Redraw the memes, which may have changed (e.g. some meme is now a favourite).
+     *          Memes from a page loader are loaded again, as many as were showing, and
+     *          take the place of the ones showing once they are loaded.
+     */
+    public void refresh() {
+        if (pageLoader != null) {
+            generation++;
+            loadPage(Math.max(memes.size(), PAGE_SIZE), true);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* loadNextPageSoon
+     *
+     * purpose: Load the next page in the background. It is added once it is back on the
+     *          UI thread, which is never while the recycler view is binding its items.
+     */
+    private void loadNextPageSoon() {
+        if (pageLoader != null && !allLoaded && !loading) {
+            loadPage(PAGE_SIZE, false);
+        }
+    }
+
+    /* loadPage
+     *
+     * purpose: Load up to count memes from the page loader on a background thread, either
+     *          to take the place of the memes showing (replace) or to go after them.
+     *          Nothing more is loaded until they are back. If the memes were replaced in
+     *          the meantime, the page is dropped.
+     */
+    private void loadPage(final int count, final boolean replace) {
+        final PageLoader loader = pageLoader;
+        final int offset = replace ? 0 : memes.size();
+        final int loadGeneration = generation;
+
+        loading = true;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Meme> page = loader.loadPage(offset, count);
+
+                uiThread.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration == generation) {
+                            loading = false;
+                            allLoaded = page.size() < count;
+                            if (replace) {
+                                memes = new ArrayList<>(page);
+                                notifyDataSetChanged();
+                            } else {
+                                int start = memes.size();
+                                memes.addAll(page);
+                                notifyItemRangeInserted(start, page.size());
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
 }
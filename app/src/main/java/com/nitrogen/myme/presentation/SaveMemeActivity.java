@@ -24,11 +24,15 @@ import com.nitrogen.myme.business.SaveHandler;
 import com.nitrogen.myme.business.UpdateMemes;
 import com.nitrogen.myme.objects.Meme;
 import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.BitmapThumbnailGenerator;
+import com.nitrogen.myme.persistence.SaveWorker;
 
 import com.nitrogen.myme.R;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 public class SaveMemeActivity extends AppCompatActivity {
     public static final String EXTRA_MESSAGE_FILE_NAME = "com.nitrogen.myme.MESSAGE_MEME_NAME";
@@ -45,8 +49,20 @@ public class SaveMemeActivity extends AppCompatActivity {
     public static final String INVALID_TAGS_DUPLICATE = "Meme contains duplicates of the same tag";
     public static final String INVALID_TAGS_UNKNOWN = "Unknown error: Meme Tags are Invalid";
 
+    public static final String SAVE_FAILED = "Unable to Save";
+    public static final String SAVE_FAILED_PICTURE = "The meme's picture could not be written";
+    public static final String SAVE_FAILED_MEME = "The meme could not be saved";
+
     List<CheckBox> tagCheckBoxes;
     String fileName;
+    Button acceptButton;
+
+    private final Executor uiThread = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            runOnUiThread(task);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -96,7 +112,7 @@ public class SaveMemeActivity extends AppCompatActivity {
      */
     private void initializeButtons() {
         Button cancelButton = findViewById(R.id.cancel_save_meme_button);
-        Button acceptButton = findViewById(R.id.accept_save_meme_button);
+        acceptButton = findViewById(R.id.accept_save_meme_button);
 
         cancelButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -180,18 +196,58 @@ public class SaveMemeActivity extends AppCompatActivity {
         }
 
         if(isValid) {
-            // insert meme into database
-            UpdateMemes memeUpdater = new UpdateMemes();
-            memeUpdater.insertMeme(newMeme);
-
-            // go to explore activity
-            Intent intent = new Intent(this, FavouritesActivity.class);
-            startActivity(intent);
-            setResult(RESULT_OK);
-            finish();
+            // the picture may still be being written, save the meme once it is there
+            final Meme validMeme = newMeme;
+            acceptButton.setEnabled(false);
+            SaveHandler.whenSaved(this, picturePath, uiThread, new SaveWorker.OnSaved() {
+                @Override
+                public void onSaved(File file, boolean saved) {
+                    if(saved) {
+                        // the picture is filed under its content, not the name it was waited on
+                        validMeme.setImagePath(file.getPath());
+                        saveMeme(validMeme, file.getPath());
+                    } else {
+                        acceptButton.setEnabled(true);
+                        showErrorMsg(SAVE_FAILED, SAVE_FAILED_PICTURE);
+                    }
+                }
+            });
         }
     }
 
+    /* saveMeme
+     *
+     * purpose: Insert the meme, once its picture is saved, and go to the user's favourites.
+     *
+     */
+    private void saveMeme (final Meme newMeme, String picturePath) {
+        // the grids show a small copy of the picture, made in the background
+        SaveHandler.makeThumbnail(this, picturePath, uiThread, new BitmapThumbnailGenerator.OnThumbnail() {
+            @Override
+            public void onThumbnail(String thumbnailPath) {
+                newMeme.setThumbnailPath(thumbnailPath);
+
+                // insert meme into database
+                UpdateMemes memeUpdater = new UpdateMemes();
+                if(!memeUpdater.insertMeme(newMeme)) {
+                    if(!isDestroyed()) {
+                        acceptButton.setEnabled(true);
+                        showErrorMsg(SAVE_FAILED, SAVE_FAILED_MEME);
+                    }
+                    return;
+                }
+
+                // go to explore activity
+                if(!isDestroyed()) {
+                    Intent intent = new Intent(SaveMemeActivity.this, FavouritesActivity.class);
+                    startActivity(intent);
+                    setResult(RESULT_OK);
+                    finish();
+                }
+            }
+        });
+    }
+
     private void showErrorMsg (String title, String message) {
         // open a error message dialog box
         new AlertDialog.Builder(SaveMemeActivity.this)
@@ -0,0 +1,28 @@
+package com.nitrogen.myme.tests;
+
+import com.nitrogen.myme.tests.Benchmarks.EncoderBenchmark;
+import com.nitrogen.myme.tests.Benchmarks.MemeValidatorBenchmark;
+import com.nitrogen.myme.tests.Benchmarks.MemesPersistenceBenchmark;
+import com.nitrogen.myme.tests.Benchmarks.SchemaBenchmark;
+import com.nitrogen.myme.tests.Benchmarks.SearchMemesBenchmark;
+import com.nitrogen.myme.tests.Benchmarks.SeedCopyBenchmark;
+import com.nitrogen.myme.tests.Benchmarks.SortMemesBenchmark;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+        EncoderBenchmark.class,
+        MemeValidatorBenchmark.class,
+        MemesPersistenceBenchmark.class,
+        SchemaBenchmark.class,
+        SearchMemesBenchmark.class,
+        SeedCopyBenchmark.class,
+        SortMemesBenchmark.class
+})
+public class AllBenchmarks
+{
+    /* empty */
+}
@@ -1,14 +1,21 @@
 package com.nitrogen.myme.tests;
 
+import com.nitrogen.myme.tests.Application.WarmUpIT;
 import com.nitrogen.myme.tests.Business.AccessFavouritesIT;
 import com.nitrogen.myme.tests.Business.AccessMemeTemplatesIT;
 import com.nitrogen.myme.tests.Business.AccessMemesIT;
 import com.nitrogen.myme.tests.Business.AccessTagsIT;
+import com.nitrogen.myme.tests.Business.ImportMemesIT;
 import com.nitrogen.myme.tests.Business.MemeValidatorIT;
 import com.nitrogen.myme.tests.Business.SearchMemesIT;
 import com.nitrogen.myme.tests.Business.SearchTagsIT;
 import com.nitrogen.myme.tests.Business.UpdateMemesIT;
 import com.nitrogen.myme.tests.Business.UpdateTagsIT;
+import com.nitrogen.myme.tests.Persistence.CatalogSnapshotIT;
+import com.nitrogen.myme.tests.Persistence.ConnectionProviderIT;
+import com.nitrogen.myme.tests.Persistence.PagedMemesPersistenceIT;
+import com.nitrogen.myme.tests.Persistence.SchemaMigratorIT;
+import com.nitrogen.myme.tests.Persistence.SeedMergerIT;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -20,11 +27,18 @@ import org.junit.runners.Suite;
         AccessMemesIT.class,
         AccessMemeTemplatesIT.class,
         AccessTagsIT.class,
+        ImportMemesIT.class,
         MemeValidatorIT.class,
         SearchMemesIT.class,
         SearchTagsIT.class,
         UpdateMemesIT.class,
-        UpdateTagsIT.class
+        UpdateTagsIT.class,
+        CatalogSnapshotIT.class,
+        ConnectionProviderIT.class,
+        PagedMemesPersistenceIT.class,
+        SchemaMigratorIT.class,
+        SeedMergerIT.class,
+        WarmUpIT.class
 })
 public class AllIntegrationTests
 {
@@ -4,12 +4,23 @@ import com.nitrogen.myme.tests.Business.AccessFavouritesTest;
 import com.nitrogen.myme.tests.Business.AccessMemeTemplatesTest;
 import com.nitrogen.myme.tests.Business.AccessMemesTest;
 import com.nitrogen.myme.tests.Business.AccessTagsTest;
+import com.nitrogen.myme.tests.Business.AsyncSearchTest;
+import com.nitrogen.myme.tests.Business.CoOccurrenceRecommenderTest;
+import com.nitrogen.myme.tests.Business.MemeIndexTest;
 import com.nitrogen.myme.tests.Business.MemeValidatorTest;
 import com.nitrogen.myme.tests.Business.SearchMemesTest;
 import com.nitrogen.myme.tests.Business.SearchTagsTest;
 import com.nitrogen.myme.tests.Business.SortMemesTest;
 import com.nitrogen.myme.tests.Business.UpdateMemesTest;
 import com.nitrogen.myme.tests.Business.UpdateTagsTest;
+import com.nitrogen.myme.tests.Persistence.CatalogSnapshotTest;
+import com.nitrogen.myme.tests.Persistence.EncoderPolicyTest;
+import com.nitrogen.myme.tests.Persistence.ImageStoreTest;
+import com.nitrogen.myme.tests.Persistence.SampleSizeTest;
+import com.nitrogen.myme.tests.Persistence.SaveWorkerTest;
+import com.nitrogen.myme.tests.Persistence.SeedFilesTest;
+import com.nitrogen.myme.tests.Persistence.SizeBucketedPoolTest;
+import com.nitrogen.myme.tests.Persistence.ThumbnailCacheTest;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -21,12 +32,23 @@ import org.junit.runners.Suite;
         AccessMemesTest.class,
         AccessMemeTemplatesTest.class,
         AccessTagsTest.class,
+        AsyncSearchTest.class,
+        CoOccurrenceRecommenderTest.class,
+        MemeIndexTest.class,
         MemeValidatorTest.class,
         SearchMemesTest.class,
         SearchTagsTest.class,
         UpdateMemesTest.class,
         UpdateTagsTest.class,
-        SortMemesTest.class
+        SortMemesTest.class,
+        CatalogSnapshotTest.class,
+        EncoderPolicyTest.class,
+        ImageStoreTest.class,
+        SampleSizeTest.class,
+        SaveWorkerTest.class,
+        SeedFilesTest.class,
+        SizeBucketedPoolTest.class,
+        ThumbnailCacheTest.class
 })
 public class AllUnitTests
 {
@@ -0,0 +1,126 @@
+package com.nitrogen.myme.tests.Application;
+
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.application.WarmUp;
+import com.nitrogen.myme.business.AccessMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WarmUpIT {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    private File tempDB;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for WarmUp.\n");
+
+        // build database
+        tempDB = TestUtils.copyDB();
+    }
+
+    /* Method: Services.warmUp() */
+
+    @Test
+    public void testWarmUp_loadsEverything() throws InterruptedException, ExecutionException {
+        // The snapshot is the first memes, and the loaded persistence is what Services hands out
+        System.out.println("Testing warmUp(), the snapshot and the full model are loaded in the background");
+
+        WarmUp warmUp = Services.warmUp();
+        final List<Meme> snapshot = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        warmUp.whenSnapshotReady(DIRECT, new WarmUp.OnSnapshot() {
+            @Override
+            public void onSnapshot(List<Meme> memes) {
+                snapshot.addAll(memes);
+                done.countDown();
+            }
+        });
+        warmUp.whenReady(DIRECT, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertTrue(warmUp.isReady());
+        assertSame(Services.getMemesPersistence(), warmUp.getMemes().get());
+        assertSame(Services.getTagsPersistence(), warmUp.getTags().get());
+        assertSame(Services.getMemeTemplatePersistence(), warmUp.getTemplates().get());
+
+        List<Meme> memes = new AccessMemes().getMemes();
+        assertEquals(Math.min(WarmUp.SNAPSHOT_SIZE, memes.size()), snapshot.size());
+        assertEquals(memes.subList(0, snapshot.size()), snapshot);
+        assertEquals(memes.get(0).getTags(), snapshot.get(0).getTags());
+    }
+
+    @Test
+    public void testWarmUp_readyCallbackAfterLoading() throws InterruptedException, ExecutionException {
+        // A callback added once everything is loaded runs straight away
+        System.out.println("Testing warmUp(), a late callback runs straight away");
+
+        WarmUp warmUp = Services.warmUp();
+        warmUp.getMemes().get();
+        warmUp.getTags().get();
+        warmUp.getTemplates().get();
+        assertSame(warmUp, Services.warmUp());
+
+        final boolean[] ran = {false};
+        warmUp.whenReady(DIRECT, new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        });
+        assertTrue(ran[0]);
+    }
+
+    /* Method: Services.clean() */
+
+    @Test
+    public void testClean_waitsForWarmUp() {
+        // Cleaning up waits for the warm-up, and the next one starts over
+        System.out.println("Testing clean(), a running warm-up finishes first");
+
+        WarmUp warmUp = Services.warmUp();
+        Services.clean();
+
+        assertTrue(warmUp.getSnapshot().isDone());
+        assertTrue(warmUp.isReady());
+        assertNotSame(warmUp, Services.warmUp());
+    }
+
+    @After
+    public void tearDown() {
+        // forget DB
+        Services.clean();
+        // delete file
+        tempDB.delete();
+
+        System.out.println("\nFinished tests.\n");
+    }
+}
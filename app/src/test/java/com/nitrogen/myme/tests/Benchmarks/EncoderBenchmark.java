@@ -0,0 +1,166 @@
+package com.nitrogen.myme.tests.Benchmarks;
+
+import com.nitrogen.myme.persistence.EncoderPolicy;
+import com.nitrogen.myme.persistence.EncoderPolicy.Format;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import static org.junit.Assert.assertTrue;
+
+public class EncoderBenchmark {
+    private static final String RESOURCES = "src/main/res";
+    private static final int SAMPLE_SIZE = 64;
+    private static final int RUNS = 3;
+
+    /* benchmarkBundledMemes
+     *
+     * purpose: Encode the memes and templates bundled in res/drawable the way pictures
+     *          used to be saved, as PNG, and the way the EncoderPolicy saves them, and
+     *          compare the bytes written and the time taken. The JVM has no WebP encoder,
+     *          so the policy is run with JPEG as its lossy format here.
+     */
+    @Test
+    public void benchmarkBundledMemes() throws IOException {
+        final EncoderPolicy policy = new EncoderPolicy(EncoderPolicy.DEFAULT_BUDGET, false);
+        final List<File> memes = bundledMemes();
+        long pngBytes = 0;
+        long policyBytes = 0;
+        long pngTime = 0;
+        long policyTime = 0;
+
+        System.out.printf("%-40s %10s %10s %8s %6s %9s %9s%n",
+                "picture", "png bytes", "bytes", "format", "q", "png ms", "ms");
+        for (File file : memes) {
+            final BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                continue;
+            }
+            final ImageIOEncoder encoder = new ImageIOEncoder(image);
+
+            long png = Long.MAX_VALUE;
+            long chosen = Long.MAX_VALUE;
+            byte[] pngEncoded = null;
+            EncoderPolicy.Encoded encoded = null;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                pngEncoded = encoder.encode(Format.PNG, 100);
+                png = Math.min(png, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                encoded = policy.encode(policy.choose(sample(image)), encoder);
+                chosen = Math.min(chosen, System.nanoTime() - start);
+            }
+
+            System.out.printf("%-40s %10d %10d %8s %6d %9.1f %9.1f%n", file.getName(), pngEncoded.length,
+                    encoded.getBytes().length, encoded.getFormat(), encoded.getQuality(), png / 1e6, chosen / 1e6);
+            pngBytes += pngEncoded.length;
+            policyBytes += encoded.getBytes().length;
+            pngTime += png;
+            policyTime += chosen;
+        }
+
+        System.out.printf("%d pictures, best of %d: PNG %.2f MB in %.0f ms, policy %.2f MB in %.0f ms%n",
+                memes.size(), RUNS, pngBytes / 1e6, pngTime / 1e6, policyBytes / 1e6, policyTime / 1e6);
+        assertTrue(policyBytes <= pngBytes);
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static List<File> bundledMemes() {
+        final List<File> memes = new ArrayList<>();
+        final File[] directories = new File(RESOURCES).listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory() && file.getName().startsWith("drawable");
+            }
+        });
+
+        if (directories != null) {
+            for (File directory : directories) {
+                for (File file : directory.listFiles()) {
+                    String name = file.getName();
+                    if ((name.startsWith("meme_") || name.startsWith("template_") || name.startsWith("is_this"))
+                            && (name.endsWith(".png") || name.endsWith(".jpg"))) {
+                        memes.add(file);
+                    }
+                }
+            }
+        }
+        return memes;
+    }
+
+    // evenly spaced pixels without blending, like ImageEncoder.sample
+    private static int[] sample(BufferedImage image) {
+        final int width = Math.min(image.getWidth(), SAMPLE_SIZE);
+        final int height = Math.min(image.getHeight(), SAMPLE_SIZE);
+        final int[] pixels = new int[width * height];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = image.getRGB(x * image.getWidth() / width, y * image.getHeight() / height);
+            }
+        }
+        return pixels;
+    }
+
+    /* ImageIOEncoder
+     *
+     * purpose: Bitmap.compress on the JVM, with ImageIO's PNG and JPEG writers.
+     */
+    private static class ImageIOEncoder implements EncoderPolicy.QualityEncoder {
+        private final BufferedImage image;
+        private BufferedImage opaque;
+
+        ImageIOEncoder(BufferedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        public byte[] encode(Format format, int quality) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            if (format == Format.PNG) {
+                ImageIO.write(image, "png", out);
+                return out.toByteArray();
+            }
+
+            final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality / 100f);
+            try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(opaque(), null, null), param);
+            }
+            finally {
+                writer.dispose();
+            }
+            return out.toByteArray();
+        }
+
+        // the JPEG writer takes no alpha
+        private BufferedImage opaque() {
+            if (opaque == null) {
+                opaque = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+                opaque.getGraphics().drawImage(image, 0, 0, null);
+            }
+            return opaque;
+        }
+    }
+}
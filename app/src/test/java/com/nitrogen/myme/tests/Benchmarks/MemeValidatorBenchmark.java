@@ -0,0 +1,81 @@
+package com.nitrogen.myme.tests.Benchmarks;
+
+import com.nitrogen.myme.business.MemeValidator;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+import com.nitrogen.myme.persistence.TagsPersistence;
+import com.nitrogen.myme.persistence.stubs.MemesPersistenceStub;
+import com.nitrogen.myme.persistence.stubs.TagsPersistenceStub;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+public class MemeValidatorBenchmark {
+    private static final int SMALL_CATALOG = 100;
+    private static final int LARGE_CATALOG = 1000000;
+    private static final int VALIDATIONS = 100000;
+
+    /* benchmarkValidationByCatalogSize
+     *
+     * purpose: Validate a new meme's name and tags against a 100 meme catalog and a
+     *          1M meme catalog, and check that the large catalog doesn't cost more
+     *          per save than the small one.
+     */
+    @Test
+    public void benchmarkValidationByCatalogSize() {
+        MemeValidator small = validatorFor(SMALL_CATALOG);
+        MemeValidator large = validatorFor(LARGE_CATALOG);
+
+        Meme meme = new Meme("not in the catalog");
+        List<Tag> tags = new ArrayList<>();
+        tags.add(new Tag("dank"));
+        tags.add(new Tag("wholesome"));
+        tags.add(new Tag("aww"));
+        meme.setTags(tags);
+
+        // warm up the JIT before measuring
+        validate(small, meme);
+        validate(large, meme);
+
+        double smallMicros = validate(small, meme);
+        double largeMicros = validate(large, meme);
+
+        System.out.println(String.format("Validating a save: %d memes %.3f us, %d memes %.3f us",
+                SMALL_CATALOG, smallMicros, LARGE_CATALOG, largeMicros));
+        // generous, only a scan through the catalog would be this far off
+        assertTrue(largeMicros < smallMicros * 10 + 1);
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private MemeValidator validatorFor(int catalogSize) {
+        TagsPersistence tagsPersistence = new TagsPersistenceStub();
+        MemesPersistence memesPersistence = new MemesPersistenceStub(tagsPersistence);
+        List<Meme> memes = new ArrayList<>();
+
+        for (int i = memesPersistence.getMemes().size(); i < catalogSize; i++) {
+            memes.add(new Meme("meme " + i, "source"));
+        }
+        memesPersistence.insertMemes(memes);
+
+        return new MemeValidator(memesPersistence, tagsPersistence);
+    }
+
+    private double validate(MemeValidator validator, Meme meme) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < VALIDATIONS; i++) {
+            validator.validateName(meme);
+            validator.validateTags(meme);
+        }
+
+        return (System.nanoTime() - start) / 1000.0 / VALIDATIONS;
+    }
+}
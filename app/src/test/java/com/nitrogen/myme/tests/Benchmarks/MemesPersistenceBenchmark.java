@@ -0,0 +1,340 @@
+package com.nitrogen.myme.tests.Benchmarks;
+
+import com.nitrogen.myme.application.Main;
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.business.SortMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.hsqldb.CatalogSnapshot;
+import com.nitrogen.myme.persistence.hsqldb.MemesPersistenceHSQLDB;
+import com.nitrogen.myme.persistence.hsqldb.SchemaMigrator;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MemesPersistenceBenchmark {
+    private static final int LARGE_DATABASE = 50000;
+    private static final String[] TAGS = {"dank", "edgy", "normie", "wholesome", "aww", "me_irl", "dev"};
+
+    private File tempDB;
+
+    /* benchmarkStartup
+     *
+     * purpose: Time loading the memes from a freshly opened database, the way the app does
+     *          on a cold start, with the old loader, which ran one MEMETAGS query on a new
+     *          connection per meme, and with the grouped scan. Both load the large catalog.
+     */
+    @Test
+    public void benchmarkStartup() throws IOException, SQLException {
+        createDatabase(LARGE_DATABASE);
+        long legacy = time(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(LARGE_DATABASE, loadOneQueryPerMeme().size());
+            }
+        });
+        long grouped = time(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(LARGE_DATABASE, new MemesPersistenceHSQLDB(Services.getConnectionProvider()).getMemes().size());
+            }
+        });
+        System.out.printf("startup, %d memes: one query per meme %.0f ms, grouped scan %.0f ms%n",
+                LARGE_DATABASE, legacy / 1e6, grouped / 1e6);
+        assertTrue(grouped < legacy);
+    }
+
+    /* benchmarkSnapshotStartup
+     *
+     * purpose: Time a cold start of a large catalog that builds the memes from the
+     *          database, against one that checks the database's stamp and reads them
+     *          from the catalog snapshot written the first time. The database is opened
+     *          before either is timed, as the app has it open by then (see WarmUp).
+     */
+    @Test
+    public void benchmarkSnapshotStartup() throws IOException, SQLException {
+        createDatabase(LARGE_DATABASE);
+        long database = timeOpen(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(LARGE_DATABASE, Services.getMemesPersistence().getMemes().size());
+            }
+        });
+        // timeOpen() cleans up first, which waits for the snapshot to be written
+        long snapshot = timeOpen(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(LARGE_DATABASE, Services.getMemesPersistence().getMemes().size());
+            }
+        });
+
+        System.out.printf("startup, %d memes: from the database %.0f ms, from the snapshot %.0f ms (%.1f MB)%n",
+                LARGE_DATABASE, database / 1e6, snapshot / 1e6,
+                CatalogSnapshot.fileFor(Services.getConnectionProvider()).length() / 1e6);
+        assertTrue(snapshot < database);
+    }
+
+    /* benchmarkHeap
+     *
+     * purpose: Measure the heap a large catalog holds on to once every meme has been read,
+     *          with MEMORY tables mirrored into MemesPersistenceHSQLDB, and with CACHED
+     *          tables read through PagedMemesPersistenceHSQLDB.
+     */
+    @Test
+    public void benchmarkHeap() throws IOException, SQLException {
+        createDatabase(LARGE_DATABASE);
+        long inMemory = retainedHeap();
+
+        tearDown();
+        createDatabase(LARGE_DATABASE);
+        Main.setLargeCatalog(true);
+        long paged = retainedHeap();
+        Main.setLargeCatalog(false);
+
+        System.out.printf("heap, %d memes: in memory %.1f MB, paged %.1f MB%n",
+                LARGE_DATABASE, inMemory / 1e6, paged / 1e6);
+        assertTrue(paged < inMemory);
+    }
+
+    /* benchmarkFirstPage
+     *
+     * purpose: Time opening a large catalog and reading the first screen of memes, the
+     *          way the Explore feed starts up, with and without paging.
+     */
+    @Test
+    public void benchmarkFirstPage() throws IOException, SQLException {
+        final int SCREEN = 30;
+
+        createDatabase(LARGE_DATABASE);
+        Services.getConnectionProvider().getConnection();
+        long inMemory = time(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(SCREEN, Services.getMemesPersistence().getMemes(0, SCREEN).size());
+            }
+        });
+
+        Main.setLargeCatalog(true);
+        // convert to CACHED tables before timing
+        Services.clean();
+        Services.getConnectionProvider().getConnection();
+        long paged = time(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(SCREEN, Services.getMemesPersistence().getMemes(0, SCREEN).size());
+            }
+        });
+
+        System.out.printf("first %d of %d memes: in memory %.0f ms, paged %.0f ms%n",
+                SCREEN, LARGE_DATABASE, inMemory / 1e6, paged / 1e6);
+        assertTrue(paged < inMemory);
+    }
+
+    /* benchmarkRankedFeed
+     *
+     * purpose: Time the first screen of the Explore feed of a large catalog, sorted by
+     *          relevance: by loading every meme and sorting them, and by having the
+     *          database rank a page of them.
+     */
+    @Test
+    public void benchmarkRankedFeed() throws IOException, SQLException {
+        final int SCREEN = 30;
+
+        createDatabase(LARGE_DATABASE);
+        Services.getConnectionProvider().getConnection();
+        long sorted = time(new Runnable() {
+            @Override
+            public void run() {
+                List<Meme> feed = new ArrayList<>(Services.getMemesPersistence().getMemes());
+                new SortMemes(feed, Services.getMemesPersistence()).sortByRelevance();
+                assertTrue(feed.get(0).getTags().size() > 0);
+            }
+        });
+
+        Main.setLargeCatalog(true);
+        // convert to CACHED tables before timing
+        Services.clean();
+        Services.getConnectionProvider().getConnection();
+        long ranked = time(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(SCREEN, Services.getMemesPersistence().getMemesByRelevance(0, SCREEN).size());
+            }
+        });
+
+        System.out.printf("first %d of %d memes by relevance: sorted in memory %.0f ms, ranked by the database %.0f ms%n",
+                SCREEN, LARGE_DATABASE, sorted / 1e6, ranked / 1e6);
+        assertTrue(ranked < sorted);
+    }
+
+    @After
+    public void tearDown() {
+        Main.setLargeCatalog(false);
+        Main.setLargeCatalogSize(Main.LARGE_CATALOG_SIZE);
+        // forget DB
+        Services.clean();
+        // delete files
+        if (tempDB != null) {
+            tempDB.delete();
+            new File(tempDB.getPath().replace(".script", ".data")).delete();
+            new File(tempDB.getPath().replace(".script", ".snapshot")).delete();
+            tempDB = null;
+        }
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection("jdbc:hsqldb:file:" + Main.getDBPathName() + ";shutdown=true", "SA", "");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /* retainedHeap
+     *
+     * purpose: Open the database, read every meme through the persistence Services
+     *          hands out, and return how much more heap is in use than before it was opened.
+     *          The database is opened once beforehand, so any conversion to CACHED tables
+     *          is already done.
+     */
+    private static long retainedHeap() throws SQLException {
+        Services.getConnectionProvider().getConnection();
+        Services.clean();
+        long before = usedHeap();
+
+        List<Meme> memes = Services.getMemesPersistence().getMemes();
+        int tags = 0;
+        for (Meme meme : memes) {
+            tags += meme.getTags().size();
+        }
+        assertEquals(LARGE_DATABASE * 2, tags);
+
+        long retained = usedHeap() - before;
+        // keep the catalog reachable until it has been measured
+        assertEquals(LARGE_DATABASE, memes.size());
+        return retained;
+    }
+
+    private static long time(Runnable startup) {
+        Services.clean();
+        long start = System.nanoTime();
+        startup.run();
+        return System.nanoTime() - start;
+    }
+
+    /* timeOpen
+     *
+     * purpose: Like time, but with the database opened before the clock starts.
+     */
+    private static long timeOpen(Runnable startup) throws SQLException {
+        Services.clean();
+        Services.getConnectionProvider().getConnection();
+        long start = System.nanoTime();
+        startup.run();
+        return System.nanoTime() - start;
+    }
+
+    /* createDatabase
+     *
+     * purpose: Fill a copy of the app's database with generated memes, two tags each,
+     *          then shut it down so the next connection has to open it from disk.
+     *          The database is upgraded to the current schema first, so upgrading it
+     *          isn't part of the time measured.
+     */
+    private void createDatabase(int memes) throws IOException, SQLException {
+        tempDB = TestUtils.copyDB();
+        // a catalog this large would be paged on its own, the comparisons need it in memory
+        Main.setLargeCatalogSize(Integer.MAX_VALUE);
+
+        try (Connection c = connect()) {
+            SchemaMigrator.migrate(c);
+            Statement st = c.createStatement();
+            st.executeUpdate("DELETE FROM MEMETAGS");
+            st.executeUpdate("DELETE FROM MEME");
+
+            PreparedStatement meme = c.prepareStatement("INSERT INTO MEME(ID, NAME, SOURCE, FAV) VALUES(?, ?, ?, ?)");
+            PreparedStatement memeTag = c.prepareStatement("INSERT INTO MEMETAGS(MEMEID, TAGID)"
+                    + " SELECT ?, ID FROM TAG WHERE TAGNAME = ?");
+            for (int i = 0; i < memes; i++) {
+                meme.setInt(1, i);
+                meme.setString(2, "meme " + i);
+                meme.setString(3, "source");
+                meme.setInt(4, i % 100 == 0 ? 1 : 0);
+                meme.addBatch();
+                for (int t = 0; t < 2; t++) {
+                    memeTag.setInt(1, i);
+                    memeTag.setString(2, TAGS[(i + t) % TAGS.length]);
+                    memeTag.addBatch();
+                }
+            }
+            meme.executeBatch();
+            memeTag.executeBatch();
+            meme.close();
+            memeTag.close();
+
+            st.execute("SHUTDOWN");
+        }
+    }
+
+    /* loadOneQueryPerMeme
+     *
+     * purpose: How MemesPersistenceHSQLDB used to load memes: one MEMETAGS query, on a
+     *          connection of its own, for every meme. The query is written against the
+     *          current schema.
+     */
+    private static List<Meme> loadOneQueryPerMeme() {
+        List<Meme> memes = new ArrayList<>();
+
+        try (Connection c = connect()) {
+            Statement st = c.createStatement();
+            ResultSet rs = st.executeQuery("SELECT * FROM MEME");
+            while (rs.next()) {
+                Meme meme = new Meme(rs.getString("name"), rs.getString("source"));
+                List<Tag> tags = new ArrayList<>();
+                try (Connection tagConnection = connect()) {
+                    PreparedStatement tagQuery = tagConnection.prepareStatement("SELECT t.TAGNAME FROM MEMETAGS mt"
+                            + " JOIN TAG t ON t.ID = mt.TAGID WHERE mt.MEMEID = ?");
+                    tagQuery.setInt(1, rs.getInt("id"));
+                    ResultSet tagRows = tagQuery.executeQuery();
+                    while (tagRows.next()) {
+                        tags.add(new Tag(tagRows.getString("tagname")));
+                    }
+                    tagRows.close();
+                    tagQuery.close();
+                }
+                meme.setTags(tags);
+                meme.setFavourite(rs.getInt("fav") == 1);
+                memes.add(meme);
+            }
+            rs.close();
+            st.close();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        return memes;
+    }
+}
@@ -0,0 +1,162 @@
+package com.nitrogen.myme.tests.Benchmarks;
+
+import com.nitrogen.myme.application.Main;
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.persistence.hsqldb.SchemaMigrator;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaBenchmark {
+    private static final int MEMES = 20000;
+    private static final int TAGS = 1000;
+    private static final int TAGS_PER_MEME = 5;
+    private static final int QUERIES = 200;
+
+    private File tempDB;
+
+    /* benchmarkMemeTagsQueries
+     *
+     * purpose: Time looking up a meme's tags and a tag's memes in a 100k row MEMETAGS
+     *          table, on the schema the app shipped with, where both are full table scans,
+     *          and again after the database is upgraded to the indexed schema.
+     */
+    @Test
+    public void benchmarkMemeTagsQueries() throws IOException, SQLException {
+        tempDB = TestUtils.copyDB();
+
+        try (Connection c = connect()) {
+            createDatabase(c);
+            Random random = new Random(42);
+            String[] memes = new String[QUERIES];
+            String[] tags = new String[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                memes[i] = "meme " + random.nextInt(MEMES);
+                tags[i] = "tag " + random.nextInt(TAGS);
+            }
+
+            List<List<String>> tagsBefore = new ArrayList<>();
+            long memeToTagsBefore = time(c, "SELECT TAGNAME FROM MEMETAGS WHERE NAME = ?", memes, tagsBefore);
+            List<List<String>> memesBefore = new ArrayList<>();
+            long tagToMemesBefore = time(c, "SELECT NAME FROM MEMETAGS WHERE TAGNAME = ?", tags, memesBefore);
+
+            long start = System.nanoTime();
+            SchemaMigrator.migrate(c);
+            long migration = System.nanoTime() - start;
+
+            List<List<String>> tagsAfter = new ArrayList<>();
+            long memeToTagsAfter = time(c, "SELECT t.TAGNAME FROM MEME m JOIN MEMETAGS mt ON mt.MEMEID = m.ID"
+                    + " JOIN TAG t ON t.ID = mt.TAGID WHERE m.NAME = ?", memes, tagsAfter);
+            List<List<String>> memesAfter = new ArrayList<>();
+            long tagToMemesAfter = time(c, "SELECT m.NAME FROM TAG t JOIN MEMETAGS mt ON mt.TAGID = t.ID"
+                    + " JOIN MEME m ON m.ID = mt.MEMEID WHERE t.TAGNAME = ?", tags, memesAfter);
+
+            System.out.printf("%d MEMETAGS rows, %d queries each:%n", MEMES * TAGS_PER_MEME, QUERIES);
+            System.out.printf("  meme -> tags: %.0f ms before, %.0f ms after%n", memeToTagsBefore / 1e6, memeToTagsAfter / 1e6);
+            System.out.printf("  tag -> memes: %.0f ms before, %.0f ms after%n", tagToMemesBefore / 1e6, tagToMemesAfter / 1e6);
+            System.out.printf("  upgrade: %.0f ms%n", migration / 1e6);
+
+            assertEquals(tagsBefore, tagsAfter);
+            assertEquals(memesBefore, memesAfter);
+            assertTrue(memeToTagsAfter < memeToTagsBefore);
+            assertTrue(tagToMemesAfter < tagToMemesBefore);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        // delete file
+        if (tempDB != null) {
+            tempDB.delete();
+        }
+        // forget DB
+        Services.clean();
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection("jdbc:hsqldb:file:" + Main.getDBPathName() + ";shutdown=true", "SA", "");
+    }
+
+    /* createDatabase
+     *
+     * purpose: Replace the memes and tags in a database on the old schema with generated
+     *          ones, TAGS_PER_MEME tags each.
+     */
+    private static void createDatabase(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("DELETE FROM MEMETAGS");
+            st.executeUpdate("DELETE FROM MEME");
+            st.executeUpdate("DELETE FROM TAG");
+        }
+
+        try (PreparedStatement tag = c.prepareStatement("INSERT INTO TAG VALUES(?)");
+             PreparedStatement meme = c.prepareStatement("INSERT INTO MEME VALUES(?, ?, ?)");
+             PreparedStatement memeTag = c.prepareStatement("INSERT INTO MEMETAGS VALUES(?, ?)")) {
+            for (int t = 0; t < TAGS; t++) {
+                tag.setString(1, "tag " + t);
+                tag.addBatch();
+            }
+            tag.executeBatch();
+
+            for (int i = 0; i < MEMES; i++) {
+                meme.setString(1, "meme " + i);
+                meme.setString(2, "source");
+                meme.setInt(3, 0);
+                meme.addBatch();
+                for (int t = 0; t < TAGS_PER_MEME; t++) {
+                    memeTag.setString(1, "meme " + i);
+                    memeTag.setString(2, "tag " + (i * 7 + t * 131) % TAGS);
+                    memeTag.addBatch();
+                }
+            }
+            meme.executeBatch();
+            memeTag.executeBatch();
+        }
+    }
+
+    /* time
+     *
+     * purpose: Run the query once for each parameter, collecting the results sorted so
+     *          they can be compared across schemas, and return how long it took.
+     */
+    private static long time(Connection c, String sql, String[] parameters, List<List<String>> results) throws SQLException {
+        long start = System.nanoTime();
+
+        try (PreparedStatement query = c.prepareStatement(sql)) {
+            for (String parameter : parameters) {
+                List<String> result = new ArrayList<>();
+                query.setString(1, parameter);
+                ResultSet rs = query.executeQuery();
+                while (rs.next()) {
+                    result.add(rs.getString(1));
+                }
+                rs.close();
+                Collections.sort(result);
+                results.add(result);
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,128 @@
+package com.nitrogen.myme.tests.Benchmarks;
+
+import com.nitrogen.myme.business.SearchMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SearchMemesBenchmark {
+    private static final int CATALOG_SIZE = 100000;
+    private static final double BUDGET_MILLIS = 5.0;
+    // each keystroke is timed this many times and the best is kept, so a keystroke that
+    // was only slow because the thread was put aside doesn't count against the search
+    private static final int RUNS = 5;
+    private static final String[] WORDS = {
+            "cat", "dog", "spongebob", "squidward", "drake", "exam", "college", "simpsons",
+            "homer", "wizard", "queen", "king", "potato", "recursion", "windows", "unix",
+            "minion", "wedding", "weekend", "anxiety", "historian", "programming", "brain", "effort"
+    };
+    private static final String[] TAGS = {"dank", "edgy", "normie", "wholesome", "aww", "me_irl", "dev"};
+
+    private SearchMemes searchMemes;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(42);
+        List<Meme> memes = new ArrayList<>();
+
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + Integer.toString(i, 36);
+            Meme meme = new Meme(name, "source");
+            meme.addTag(new Tag(TAGS[random.nextInt(TAGS.length)]));
+            memes.add(meme);
+        }
+
+        MemesPersistence memesPersistence = mock(MemesPersistence.class);
+        when(memesPersistence.getMemes()).thenReturn(memes);
+        when(memesPersistence.scanMemes()).thenReturn(memes);
+        searchMemes = new SearchMemes(memesPersistence);
+    }
+
+    /* benchmarkSearchAsYouType
+     *
+     * purpose: Type queries one character at a time against a 100k meme catalog and
+     *          report how long each keystroke takes to produce a page of results.
+     *          Every keystroke has to fit the budget, not just the typical one, so the
+     *          slowest 1% are checked.
+     */
+    @Test
+    public void benchmarkSearchAsYouType() {
+        String[] queries = {"spongebob squidward", "spnogebob", "simpsosn homer", "progr", "zzz"};
+
+        // build the index and warm up the JIT before measuring
+        for (int i = 0; i < 20; i++) {
+            typeAll(queries, null);
+        }
+
+        List<Long> timings = new ArrayList<>();
+        typeAll(queries, timings);
+
+        long[] sorted = new long[timings.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = timings.get(i);
+        }
+        Arrays.sort(sorted);
+
+        double median = sorted[sorted.length / 2] / 1e6;
+        double p99 = sorted[(int) (sorted.length * 0.99)] / 1e6;
+        double max = sorted[sorted.length - 1] / 1e6;
+        System.out.printf("search as you type, %d memes, %d keystrokes, best of %d:"
+                + " median %.3f ms, p99 %.3f ms, max %.3f ms%n", CATALOG_SIZE, sorted.length, RUNS, median, p99, max);
+
+        assertTrue(p99 < BUDGET_MILLIS);
+    }
+
+    /* benchmarkTagQuery
+     *
+     * purpose: Report how long a boolean tag query takes on the tag bitmaps.
+     */
+    @Test
+    public void benchmarkTagQuery() {
+        String query = "(dank OR edgy) NOT (normie AND dev)";
+        int runs = 200;
+
+        for (int i = 0; i < runs; i++) {
+            searchMemes.getMemesByTagQuery(query);
+        }
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < runs; i++) {
+            found = searchMemes.getMemesByTagQuery(query).size();
+        }
+        double average = (System.nanoTime() - start) / 1e6 / runs;
+
+        System.out.printf("tag query, %d memes, %d matches: average %.3f ms%n", CATALOG_SIZE, found, average);
+        assertTrue(found > 0);
+    }
+
+    private void typeAll(String[] queries, List<Long> timings) {
+        for (String query : queries) {
+            for (int end = 1; end <= query.length(); end++) {
+                long best = Long.MAX_VALUE;
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    searchMemes.getMemesMatching(query.substring(0, end), SearchMemes.MatchMode.FUZZY,
+                            SearchMemes.SEARCH_AS_YOU_TYPE_LIMIT);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                if (timings != null) {
+                    timings.add(best);
+                }
+            }
+        }
+    }
+}
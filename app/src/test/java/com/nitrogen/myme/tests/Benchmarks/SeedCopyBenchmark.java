@@ -0,0 +1,150 @@
+package com.nitrogen.myme.tests.Benchmarks;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.Utils.SeedFiles;
+import com.nitrogen.myme.persistence.hsqldb.ConnectionProvider;
+import com.nitrogen.myme.persistence.hsqldb.PagedMemesPersistenceHSQLDB;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SeedCopyBenchmark {
+    private static final int MEMES = 50000;
+    private static final int FIRST_PAGE = 30;
+    private static final int RUNS = 5;
+
+    private File directory;
+
+    /* benchmarkColdFirstLaunch
+     *
+     * purpose: Time a first launch with a large seed database: copying the seed onto the
+     *          device, opening it and reading the first page of the feed. The seed is
+     *          copied the way the app used to, through a char reader and writer with a
+     *          1 KB buffer, and the way it does now, as bytes through SeedFiles.
+     */
+    @Test
+    public void benchmarkColdFirstLaunch() throws IOException {
+        directory = File.createTempFile("seed-bench", "");
+        directory.delete();
+        directory.mkdirs();
+        File seed = createSeed(new File(directory, "seed"));
+        String checksum = SeedFiles.checksum(new FileInputStream(seed));
+
+        long charCopy = Long.MAX_VALUE;
+        long byteCopy = Long.MAX_VALUE;
+        long charLaunch = Long.MAX_VALUE;
+        long byteLaunch = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            File device = new File(directory, "char" + run);
+            device.mkdirs();
+            long start = System.nanoTime();
+            charCopy(seed, new File(device, seed.getName()));
+            charCopy = Math.min(charCopy, System.nanoTime() - start);
+            openFirstPage(device);
+            charLaunch = Math.min(charLaunch, System.nanoTime() - start);
+
+            device = new File(directory, "byte" + run);
+            new File(device, "seed").mkdirs();
+            start = System.nanoTime();
+            File baseline = new File(device, "seed/" + seed.getName());
+            SeedFiles.copy(new FileInputStream(seed), baseline, checksum);
+            SeedFiles.copy(baseline, new File(device, seed.getName()));
+            byteCopy = Math.min(byteCopy, System.nanoTime() - start);
+            openFirstPage(device);
+            byteLaunch = Math.min(byteLaunch, System.nanoTime() - start);
+        }
+
+        System.out.printf("%d meme seed, %.1f MB, best of %d:%n", MEMES, seed.length() / 1e6, RUNS);
+        System.out.printf("  copy: %.0f ms char copy, %.0f ms byte copy (with checksum and seed kept)%n",
+                charCopy / 1e6, byteCopy / 1e6);
+        System.out.printf("  first launch (copy, open, first page): %.0f ms char copy, %.0f ms byte copy%n",
+                charLaunch / 1e6, byteLaunch / 1e6);
+    }
+
+    @After
+    public void tearDown() {
+        // delete files
+        if (directory != null) {
+            deleteAll(directory);
+        }
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    /* createSeed
+     *
+     * purpose: Make a seed database with MEMES generated memes on top of the shipped one.
+     */
+    private static File createSeed(File seedDirectory) throws IOException {
+        seedDirectory.mkdirs();
+        File seed = new File(seedDirectory, "Mymedb.script");
+        File shipped = TestUtils.copyDB();
+        SeedFiles.copy(shipped, seed);
+        shipped.delete();
+
+        ConnectionProvider connections = new ConnectionProvider(new File(seedDirectory, "Mymedb").getPath());
+        List<Meme> memes = new ArrayList<>();
+        for (int i = 0; i < MEMES; i++) {
+            Meme meme = new Meme("seed meme " + i, "seed/source/" + i);
+            List<Tag> tags = new ArrayList<>();
+            tags.add(new Tag("tag" + i % 100));
+            meme.setTags(tags);
+            memes.add(meme);
+        }
+        assertEquals(MEMES, new PagedMemesPersistenceHSQLDB(connections).insertMemes(memes).size());
+        connections.close();
+
+        return seed;
+    }
+
+    private static void openFirstPage(File device) {
+        ConnectionProvider connections = new ConnectionProvider(new File(device, "Mymedb").getPath());
+        assertEquals(FIRST_PAGE, new PagedMemesPersistenceHSQLDB(connections).getMemes(0, FIRST_PAGE).size());
+        connections.close();
+    }
+
+    /* charCopy
+     *
+     * purpose: The copy DatabaseHelper used to make.
+     */
+    private static void charCopy(File source, File target) throws IOException {
+        char[] buffer = new char[1024];
+        int count;
+
+        InputStreamReader in = new InputStreamReader(new FileInputStream(source));
+        FileWriter out = new FileWriter(target);
+
+        count = in.read(buffer);
+        while (count != -1) {
+            out.write(buffer, 0, count);
+            count = in.read(buffer);
+        }
+
+        out.close();
+        in.close();
+    }
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,205 @@
+package com.nitrogen.myme.tests.Benchmarks;
+
+import com.nitrogen.myme.business.CoOccurrenceRecommender;
+import com.nitrogen.myme.business.SortMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class SortMemesBenchmark {
+    private static final int[] CATALOG_SIZES = {10000, 100000, 1000000};
+    private static final int RUNS = 5;
+    private static final int FEED_SIZE = 100000;
+    private static final double FRAME_MILLIS = 16.0;
+
+    /* benchmarkSortByRelevance
+     *
+     * purpose: Compare the old comparator sort, which rebuilt boxed tag weights and
+     *          re-summed them on every comparison, with the decorate-sort-undecorate
+     *          sort on primitive keys. Reports time and bytes allocated per sort.
+     */
+    @Test
+    public void benchmarkSortByRelevance() {
+        for (int size : CATALOG_SIZES) {
+            final List<Meme> catalog = createCatalog(size);
+            // stub only, so the mock doesn't record the millions of getMemes() calls
+            final MemesPersistence memesPersistence = mock(MemesPersistence.class, withSettings().stubOnly());
+            when(memesPersistence.getMemes()).thenReturn(catalog);
+            when(memesPersistence.scanMemes()).thenReturn(catalog);
+
+            List<Meme> byComparator = new ArrayList<>(catalog);
+            List<Meme> byKeys = new ArrayList<>(catalog);
+
+            long[] comparator = measure(byComparator, new Sorter() {
+                @Override
+                public void sort(List<Meme> memes) {
+                    final HashMap<String, Integer> weights = favouriteTagWeights(catalog);
+                    Collections.sort(memes, new Comparator<Meme>() {
+                        @Override
+                        public int compare(Meme meme1, Meme meme2) {
+                            return getMemeValue(meme2, weights) - getMemeValue(meme1, weights);
+                        }
+                    });
+                }
+            });
+            long[] keys = measure(byKeys, new Sorter() {
+                @Override
+                public void sort(List<Meme> memes) {
+                    new SortMemes(memes, memesPersistence).sortByRelevance();
+                }
+            });
+
+            System.out.printf("sort by relevance, %d memes: comparator %.1f ms %.1f MB, primitive keys %.1f ms %.1f MB%n",
+                    size, comparator[0] / 1e6, comparator[1] / 1e6, keys[0] / 1e6, keys[1] / 1e6);
+
+            assertEquals(byComparator, byKeys);
+        }
+    }
+
+    /* benchmarkCoOccurrenceRecommender
+     *
+     * purpose: Score and rank a 100k meme feed with the co-occurrence recommender.
+     *          Scoring has to fit inside a 16 ms frame.
+     */
+    @Test
+    public void benchmarkCoOccurrenceRecommender() {
+        List<Meme> catalog = createCatalog(FEED_SIZE);
+        MemesPersistence memesPersistence = mock(MemesPersistence.class, withSettings().stubOnly());
+        when(memesPersistence.getMemes()).thenReturn(catalog);
+        when(memesPersistence.scanMemes()).thenReturn(catalog);
+
+        final CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getInstance(memesPersistence);
+        final Meme[] candidates = catalog.toArray(new Meme[catalog.size()]);
+        final float[] scores = new float[candidates.length];
+        List<Meme> feed = new ArrayList<>(catalog);
+
+        // warm up the JIT before measuring
+        for (int i = 0; i < 50; i++) {
+            recommender.score(candidates, scores);
+        }
+
+        long[] scoring = measure(feed, new Sorter() {
+            @Override
+            public void sort(List<Meme> memes) {
+                recommender.score(candidates, scores);
+            }
+        });
+        long[] ranking = measure(feed, new Sorter() {
+            @Override
+            public void sort(List<Meme> memes) {
+                new SortMemes(memes, recommender).sortByRelevance();
+            }
+        });
+
+        System.out.printf("co-occurrence recommender, %d memes: scoring %.2f ms, ranking %.2f ms%n",
+                FEED_SIZE, scoring[0] / 1e6, ranking[0] / 1e6);
+
+        assertTrue(scoring[0] / 1e6 < FRAME_MILLIS);
+    }
+
+    private interface Sorter {
+        void sort(List<Meme> memes);
+    }
+
+    /* measure
+     *
+     * purpose: Sort the list RUNS times, each time from the same shuffles, and return the
+     *          average time and allocated bytes of one sort. The first sort only warms up.
+     */
+    private long[] measure(List<Meme> memes, Sorter sorter) {
+        List<Meme> original = new ArrayList<>(memes);
+        long time = 0;
+        long bytes = 0;
+
+        for (int run = 0; run <= RUNS; run++) {
+            memes.clear();
+            memes.addAll(original);
+            Collections.shuffle(memes, new Random(run));
+
+            long startBytes = allocatedBytes();
+            long start = System.nanoTime();
+            sorter.sort(memes);
+            if (run > 0) {
+                time += System.nanoTime() - start;
+                bytes += allocatedBytes() - startBytes;
+            }
+        }
+
+        return new long[] {time / RUNS, bytes / RUNS};
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static List<Meme> createCatalog(int size) {
+        Random random = new Random(7);
+        Tag[] tags = new Tag[50];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = new Tag("tag" + i);
+        }
+
+        List<Meme> catalog = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Meme meme = new Meme("meme" + i);
+            meme.addTag(tags[random.nextInt(tags.length)]);
+            meme.addTag(tags[random.nextInt(tags.length)]);
+            meme.setFavourite(random.nextInt(100) == 0);
+            catalog.add(meme);
+        }
+
+        return catalog;
+    }
+
+    // the weights and score as SortMemes computed them before
+    private static HashMap<String, Integer> favouriteTagWeights(List<Meme> catalog) {
+        HashMap<String, Integer> weights = new HashMap<>();
+
+        for (Meme meme : catalog) {
+            if (meme.isFavourite()) {
+                for (Tag tag : meme.getTags()) {
+                    if (weights.containsKey(tag.getName())) {
+                        weights.put(tag.getName(), weights.get(tag.getName()) + 1);
+                    } else {
+                        weights.put(tag.getName(), 1);
+                    }
+                }
+            }
+        }
+
+        return weights;
+    }
+
+    private static int getMemeValue(Meme meme, HashMap<String, Integer> weights) {
+        int value = 0;
+
+        if (meme.isFavourite()) {
+            value = -1;
+        } else {
+            for (Tag tag : meme.getTags()) {
+                if (weights.containsKey(tag.getName())) {
+                    value += weights.get(tag.getName());
+                }
+            }
+        }
+
+        return value;
+    }
+}
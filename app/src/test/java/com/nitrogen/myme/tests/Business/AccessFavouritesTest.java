@@ -13,8 +13,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 
@@ -40,6 +42,25 @@ public class AccessFavouritesTest {
         assertTrue(accessFavourites.getMemes().size() >= 0);
     }
 
+    /* Method: getMemes(int offset, int limit) */
+
+    @Test
+    public void testGetMemes_paged() {
+        // Reading the favourites a page at a time gives all of them, in order
+        System.out.println("Testing getMemes(offset, limit), getting favourites a page at a time");
+        final int PAGE_SIZE = 2;
+
+        List<Meme> paged = new ArrayList<>();
+        List<Meme> page;
+        do {
+            page = accessFavourites.getMemes(paged.size(), PAGE_SIZE);
+            assertTrue(page.size() <= PAGE_SIZE);
+            paged.addAll(page);
+        } while (page.size() == PAGE_SIZE);
+
+        assertEquals(accessFavourites.getMemes(), paged);
+    }
+
     @Test
     public void testInstanceNotNull() {
         AccessFavourites newInstance = new AccessFavourites();
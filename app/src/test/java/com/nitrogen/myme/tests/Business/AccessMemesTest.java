@@ -2,6 +2,8 @@ package com.nitrogen.myme.tests.Business;
 
 import com.nitrogen.myme.business.AccessMemes;
 import com.nitrogen.myme.business.Exceptions.MemeNotFoundException;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
 import com.nitrogen.myme.persistence.MemesPersistence;
 import com.nitrogen.myme.persistence.TagsPersistence;
 import com.nitrogen.myme.persistence.stubs.MemesPersistenceStub;
@@ -12,6 +14,10 @@ import org.junit.Test;
 import org.junit.After;
 import org.junit.Before;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
@@ -39,6 +45,53 @@ public class AccessMemesTest {
         assertTrue(accessMemes.getMemes().size() >= 0);
     }
 
+    /* Method: getMemes(int offset, int limit) */
+
+    @Test
+    public void testGetMemes_paged() {
+        // Reading the memes a page at a time gives all of them, in order
+        System.out.println("...Testing getMemes(offset, limit)");
+        final int PAGE_SIZE = 4;
+
+        List<Meme> paged = new ArrayList<>();
+        List<Meme> page;
+        do {
+            page = accessMemes.getMemes(paged.size(), PAGE_SIZE);
+            assertTrue(page.size() <= PAGE_SIZE);
+            paged.addAll(page);
+        } while (page.size() == PAGE_SIZE);
+
+        assertEquals(accessMemes.getMemes(), paged);
+        assertTrue(accessMemes.getMemes(paged.size() + 10, PAGE_SIZE).isEmpty());
+    }
+
+    /* Method: getMemesByRelevance(int offset, int limit) */
+
+    @Test
+    public void testGetMemesByRelevance() {
+        // Memes sharing the most tags with favourites come first, and favourites last
+        System.out.println("...Testing getMemesByRelevance(offset, limit)");
+        final int PAGE_SIZE = 4;
+
+        Meme favourite = accessMemes.getMemes().get(0);
+        favourite.setFavourite(true);
+        accessMemes.updatefav(favourite);
+
+        List<Meme> ranked = new ArrayList<>();
+        List<Meme> page;
+        do {
+            page = accessMemes.getMemesByRelevance(ranked.size(), PAGE_SIZE);
+            ranked.addAll(page);
+        } while (page.size() == PAGE_SIZE);
+
+        assertEquals(accessMemes.getMemes().size(), ranked.size());
+        assertEquals(favourite, ranked.get(ranked.size() - 1));
+        for (int i = 1; i < ranked.size() - 1; i++) {
+            assertTrue(sharedTags(ranked.get(i - 1), favourite) >= sharedTags(ranked.get(i), favourite));
+        }
+        assertTrue(sharedTags(ranked.get(0), favourite) > 0);
+    }
+
     @Test
     public void testInstanceNotNull() {
         AccessMemes newInstance = new AccessMemes();
@@ -81,4 +134,19 @@ public class AccessMemesTest {
     public void tearDown() {
         System.out.println("\nFinished tests.\n");
     }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    // with one favourite, a meme's affinity is the number of tags it shares with it
+    private static int sharedTags(Meme meme, Meme favourite) {
+        int shared = 0;
+        for (Tag tag : meme.getTags()) {
+            if (favourite.getTags().contains(tag)) {
+                shared++;
+            }
+        }
+        return shared;
+    }
 }
@@ -0,0 +1,187 @@
+package com.nitrogen.myme.tests.Business;
+
+import com.nitrogen.myme.business.AsyncSearch;
+import com.nitrogen.myme.business.SearchMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AsyncSearchTest {
+    private static final long DEBOUNCE = 100;
+
+    private FakeScheduler scheduler;
+    private List<String> delivered;
+    private List<Meme> memes;
+    private MemesPersistence memesPersistence;
+    private AsyncSearch asyncSearch;
+
+    /* FakeScheduler
+     *
+     * helper scheduler driven by a fake clock, tasks only run when time is advanced
+     */
+    private static class FakeScheduler implements AsyncSearch.Scheduler {
+        private long now = 0;
+        private final List<Long> dueTimes = new ArrayList<>();
+        private final List<FutureTask<?>> tasks = new ArrayList<>();
+
+        @Override
+        public Future<?> schedule(Runnable task, long delayMillis) {
+            FutureTask<Void> future = new FutureTask<>(task, null);
+            dueTimes.add(now + delayMillis);
+            tasks.add(future);
+            return future;
+        }
+
+        @Override
+        public void shutdown() {
+            tasks.clear();
+            dueTimes.clear();
+        }
+
+        void advance(long millis) {
+            now += millis;
+            boolean ranTask = true;
+
+            while (ranTask) {
+                ranTask = false;
+                Iterator<Long> due = dueTimes.iterator();
+                Iterator<FutureTask<?>> task = tasks.iterator();
+                while (due.hasNext() && !ranTask) {
+                    long dueTime = due.next();
+                    FutureTask<?> next = task.next();
+                    if (dueTime <= now) {
+                        due.remove();
+                        task.remove();
+                        next.run();
+                        // like a thread pool, clear any interrupt before the next task
+                        Thread.interrupted();
+                        ranTask = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private Meme createMeme(String name, String tag) {
+        Meme meme = new Meme(name, "source");
+        meme.addTag(new Tag(tag));
+        return meme;
+    }
+
+    @Before
+    public void setUp() {
+        System.out.println("Starting tests for AsyncSearch.\n");
+        memes = new ArrayList<>();
+        memes.add(createMeme("Spongebob test", "dank"));
+        memes.add(createMeme("Spine", "dank"));
+        memes.add(createMeme("Wizard", "normie"));
+
+        memesPersistence = mock(MemesPersistence.class);
+        when(memesPersistence.getMemes()).thenReturn(memes);
+        when(memesPersistence.scanMemes()).thenReturn(memes);
+
+        scheduler = new FakeScheduler();
+        delivered = new ArrayList<>();
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                task.run();
+            }
+        };
+        asyncSearch = new AsyncSearch(new SearchMemes(memesPersistence), scheduler, direct,
+                new AsyncSearch.OnResults() {
+                    @Override
+                    public void onResults(String query, List<Meme> results) {
+                        delivered.add(query + "=" + results.size());
+                    }
+                }, DEBOUNCE);
+    }
+
+    @Test
+    public void testSearchAsYouType_debounced() {
+        System.out.println("Testing searchAsYouType() only runs the last query typed in quick succession");
+        asyncSearch.searchAsYouType("s");
+        scheduler.advance(DEBOUNCE / 2);
+        asyncSearch.searchAsYouType("sp");
+        scheduler.advance(DEBOUNCE / 2);
+        asyncSearch.searchAsYouType("spo");
+        assertTrue(delivered.isEmpty());
+
+        scheduler.advance(DEBOUNCE);
+        assertEquals(1, delivered.size());
+        assertEquals("spo=1", delivered.get(0));
+    }
+
+    @Test
+    public void testSearch_notDebounced() {
+        System.out.println("Testing search() runs a submitted query without waiting");
+        asyncSearch.searchAsYouType("wiz");
+        asyncSearch.search("dank");
+        scheduler.advance(0);
+        assertEquals(1, delivered.size());
+        assertEquals("dank=2", delivered.get(0));
+
+        // the superseded search as you type never arrives
+        scheduler.advance(DEBOUNCE);
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    public void testSearch_supersededMidScan() {
+        System.out.println("Testing results of a query superseded while running are dropped");
+        // the user types again while the first search is reading the catalog
+        when(memesPersistence.scanMemes()).thenAnswer(new Answer<Iterable<Meme>>() {
+            private boolean typedAgain = false;
+
+            @Override
+            public Iterable<Meme> answer(InvocationOnMock invocation) {
+                if (!typedAgain) {
+                    typedAgain = true;
+                    asyncSearch.searchAsYouType("wizard");
+                }
+                return memes;
+            }
+        });
+
+        asyncSearch.search("dank");
+        scheduler.advance(0);
+        assertTrue(delivered.isEmpty());
+
+        scheduler.advance(DEBOUNCE);
+        assertEquals(1, delivered.size());
+        assertEquals("wizard=1", delivered.get(0));
+    }
+
+    @Test
+    public void testCancel() {
+        System.out.println("Testing cancel() drops a pending search");
+        asyncSearch.searchAsYouType("spine");
+        asyncSearch.cancel();
+        scheduler.advance(DEBOUNCE);
+        assertTrue(delivered.isEmpty());
+    }
+
+    @After
+    public void tearDown() {
+        asyncSearch.shutdown();
+        System.out.println("\nFinished tests.\n");
+    }
+}
@@ -0,0 +1,120 @@
+package com.nitrogen.myme.tests.Business;
+
+import com.nitrogen.myme.business.CoOccurrenceRecommender;
+import com.nitrogen.myme.business.SortMemes;
+import com.nitrogen.myme.business.UpdateMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CoOccurrenceRecommenderTest {
+    private MemesPersistence memesPersistenceStub;
+    private Meme favourite;
+    private Meme catAndKitten;
+    private Meme kitten;
+    private Meme dog;
+
+    @Before
+    public void setUp() {
+        System.out.println("Starting tests for CoOccurrenceRecommender.\n");
+        Tag cat = new Tag("cat");
+        Tag kittenTag = new Tag("kitten");
+
+        favourite = new Meme("grumpy cat");
+        favourite.addTag(cat);
+        favourite.setFavourite(true);
+        catAndKitten = new Meme("cat and kitten");
+        catAndKitten.addTag(cat);
+        catAndKitten.addTag(kittenTag);
+        kitten = new Meme("kitten");
+        kitten.addTag(kittenTag);
+        dog = new Meme("dog");
+        dog.addTag(new Tag("dog"));
+
+        List<Meme> memes = new ArrayList<>();
+        memes.add(favourite);
+        memes.add(catAndKitten);
+        memes.add(kitten);
+        memes.add(dog);
+
+        memesPersistenceStub = mock(MemesPersistence.class);
+        when(memesPersistenceStub.getMemes()).thenReturn(memes);
+        when(memesPersistenceStub.scanMemes()).thenReturn(memes);
+    }
+
+    @Test
+    public void testScore_relatedTagCounts() {
+        System.out.println("Testing score() rewards tags that appear next to favourite tags");
+        CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getInstance(memesPersistenceStub);
+
+        assertSame(recommender, CoOccurrenceRecommender.getInstance(memesPersistenceStub));
+        // no favourite has the kitten tag, but it appears next to cat
+        assertTrue(recommender.score(kitten) > 0);
+        assertTrue(recommender.score(catAndKitten) > recommender.score(kitten));
+        assertEquals(0, recommender.score(dog), 0);
+    }
+
+    @Test
+    public void testScore_favouriteChanged() {
+        System.out.println("Testing score() follows favourites being flipped");
+        CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getInstance(memesPersistenceStub);
+
+        dog.setFavourite(true);
+        recommender.favouriteChanged(dog);
+        assertTrue(recommender.score(dog) > 0);
+
+        favourite.setFavourite(false);
+        recommender.favouriteChanged(favourite);
+        assertEquals(0, recommender.score(kitten), 0);
+    }
+
+    @Test
+    public void testScore_afterDelete() {
+        System.out.println("Testing score() forgets co-occurrences of deleted memes");
+        CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getInstance(memesPersistenceStub);
+        assertTrue(recommender.score(kitten) > 0);
+
+        // delete using a copy without tags, the stored copy's tags should still be removed
+        when(memesPersistenceStub.deleteMemes(ArgumentMatchers.<Meme>anyCollection())).thenReturn(Collections.singletonList(catAndKitten));
+        new UpdateMemes(memesPersistenceStub).deleteMeme(new Meme("cat and kitten"));
+
+        assertEquals(0, recommender.score(kitten), 0);
+    }
+
+    @Test
+    public void testSortByRelevance_withRecommender() {
+        System.out.println("Testing sortByRelevance() ranks by the given recommender");
+        List<Meme> memes = new ArrayList<>();
+        memes.add(favourite);
+        memes.add(dog);
+        memes.add(kitten);
+        memes.add(catAndKitten);
+
+        new SortMemes(memes, CoOccurrenceRecommender.getInstance(memesPersistenceStub)).sortByRelevance();
+
+        assertEquals(catAndKitten, memes.get(0));
+        assertEquals(kitten, memes.get(1));
+        assertEquals(dog, memes.get(2));
+        assertEquals(favourite, memes.get(3));
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("\nFinished tests.\n");
+    }
+}
@@ -0,0 +1,327 @@
+package com.nitrogen.myme.tests.Business;
+
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.business.AccessMemes;
+import com.nitrogen.myme.business.ImportMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.persistence.ImageStore;
+import com.nitrogen.myme.persistence.ThumbnailCache;
+import com.nitrogen.myme.persistence.ThumbnailGenerator;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ImportMemesIT {
+    private static final int NUM_MEMES = 1200;
+
+    private File tempDB;
+    private File library;
+    private File images;
+    private ImportMemes importMemes;
+    private AccessMemes accessMemes;
+    private int initialSize;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for ImportMemes.\n");
+
+        // build database
+        tempDB = TestUtils.copyDB();
+
+        library = createTempDirectory("library");
+        images = createTempDirectory("images");
+        importMemes = new ImportMemes();
+        accessMemes = new AccessMemes();
+        assertNotNull(importMemes);
+
+        initialSize = accessMemes.getMemes().size();
+    }
+
+    /* Method: importMemes(Source source, ImageProcessor processor) */
+
+    @Test
+    public void testImportMemes_fromDirectory() throws Exception {
+        System.out.println("Testing importMemes(), importing a directory of memes");
+        writeLibrary(library, NUM_MEMES);
+
+        ImportMemes.Report report = importMemes.importMemes(ImportMemes.fromDirectory(library),
+                ImportMemes.toDirectory(images));
+        System.out.println(report);
+
+        assertEquals(NUM_MEMES, report.getImported());
+        assertEquals(initialSize + NUM_MEMES, accessMemes.getMemes().size());
+        assertEquals(NUM_MEMES, images.listFiles().length);
+        assertTrue(report.getPeakMemoryBytes() > 0);
+
+        Meme imported = accessMemes.getMemes().get(accessMemes.getMemes().indexOf(new Meme("imported 7")));
+        assertEquals(2, imported.getTags().size());
+        assertTrue(new File(imported.getImagePath()).exists());
+    }
+
+    @Test
+    public void testImportMemes_fromZip() throws Exception {
+        System.out.println("Testing importMemes(), importing a zip of memes");
+        writeLibrary(library, 10);
+        File zip = new File(library, "library.zip");
+        zipDirectory(library, zip);
+
+        ImportMemes.Report report = importMemes.importMemes(ImportMemes.fromZip(zip),
+                ImportMemes.toDirectory(images));
+
+        assertEquals(10, report.getImported());
+        assertEquals(initialSize + 10, accessMemes.getMemes().size());
+    }
+
+    @Test
+    public void testImportMemes_invalidMemes() throws Exception {
+        System.out.println("Testing importMemes(), skipping memes that are invalid or can't be read");
+        String existing = accessMemes.getMemes().get(0).getName();
+        writeImage(library, "ok.png");
+        writeImage(library, "taken.png");
+        writeImage(library, "bad_tag.png");
+        writeManifest(library,
+                "ok.png\tnew meme\tdank\ttrue\n"
+                + "taken.png\t" + existing + "\tdank\tfalse\n"
+                + "bad_tag.png\tunknown tag\tnot_a_tag\tfalse\n"
+                + "missing.png\tno image\tdank\tfalse\n"
+                + "only one column\n");
+
+        ImportMemes.Report report = importMemes.importMemes(ImportMemes.fromDirectory(library),
+                ImportMemes.toDirectory(images));
+
+        assertEquals(1, report.getImported());
+        assertEquals(2, report.getRejected());
+        assertEquals(2, report.getFailed());
+        assertEquals(4, report.getProblems().size());
+        assertEquals(initialSize + 1, accessMemes.getMemes().size());
+        // images of rejected memes are not kept
+        assertEquals(1, images.listFiles().length);
+
+        // reopen the database, the imported meme should still be a favourite
+        Services.clean();
+        List<Meme> reloaded = new AccessMemes().getMemes();
+        Meme imported = reloaded.get(reloaded.indexOf(new Meme("new meme")));
+        assertTrue(imported.isFavourite());
+        assertFalse(reloaded.contains(new Meme("unknown tag")));
+    }
+
+    @Test
+    public void testImportMemes_again() throws Exception {
+        System.out.println("Testing importMemes(), importing a library again keeps the images of the first import");
+        writeLibrary(library, 10);
+        importMemes.importMemes(ImportMemes.fromDirectory(library), ImportMemes.toDirectory(images));
+
+        // every meme is already there, so all of them are rejected the second time
+        ImportMemes.Report report = importMemes.importMemes(ImportMemes.fromDirectory(library),
+                ImportMemes.toDirectory(images));
+
+        assertEquals(0, report.getImported());
+        assertEquals(10, report.getRejected());
+        assertEquals(10, images.listFiles().length);
+        for (int i = 0; i < 10; i++) {
+            Meme imported = accessMemes.getMemes().get(accessMemes.getMemes().indexOf(new Meme("imported " + i)));
+            assertTrue(new File(imported.getImagePath()).exists());
+        }
+    }
+
+    @Test
+    public void testImportMemes_sameFileName() throws Exception {
+        System.out.println("Testing importMemes(), images with the same name in different folders are both kept");
+        File first = new File(library, "first");
+        File second = new File(library, "second");
+        first.mkdir();
+        second.mkdir();
+        writeImage(first, "pic.png");
+        try (OutputStream out = new FileOutputStream(new File(second, "pic.png"))) {
+            out.write(new byte[4096]);
+        }
+        writeManifest(library,
+                "first/pic.png\tfirst pic\tdank\tfalse\n"
+                + "second/pic.png\tsecond pic\tdank\tfalse\n");
+
+        try {
+            ImportMemes.Report report = importMemes.importMemes(ImportMemes.fromDirectory(library),
+                    ImportMemes.toDirectory(images));
+
+            assertEquals(2, report.getImported());
+            Meme firstPic = accessMemes.getMemes().get(accessMemes.getMemes().indexOf(new Meme("first pic")));
+            Meme secondPic = accessMemes.getMemes().get(accessMemes.getMemes().indexOf(new Meme("second pic")));
+            assertNotEquals(firstPic.getImagePath(), secondPic.getImagePath());
+            assertEquals(2048, new File(firstPic.getImagePath()).length());
+            assertEquals(4096, new File(secondPic.getImagePath()).length());
+        }
+        finally {
+            deleteDirectory(first);
+            deleteDirectory(second);
+        }
+    }
+
+    @Test
+    public void testImportMemes_toImageStore() throws Exception {
+        System.out.println("Testing importMemes(), importing into the ImageStore again keeps the images in use");
+        writeLibrary(library, 10);
+        // no grace period, so a discarded image that isn't used is deleted right away
+        ImageStore store = new ImageStore(images, 0);
+        ImportMemes.ImageProcessor processor = ImportMemes.toImageStore(store, Services.getMemesPersistence());
+
+        ImportMemes.Report report = importMemes.importMemes(ImportMemes.fromDirectory(library), processor);
+        assertEquals(10, report.getImported());
+        // every image is the same, so they share one file
+        assertEquals(1, images.listFiles().length);
+
+        report = importMemes.importMemes(ImportMemes.fromDirectory(library), processor);
+        assertEquals(10, report.getRejected());
+        Meme imported = accessMemes.getMemes().get(accessMemes.getMemes().indexOf(new Meme("imported 3")));
+        assertTrue(store.holds(imported.getImagePath()));
+        assertTrue(new File(imported.getImagePath()).exists());
+    }
+
+    /* Method: importMemes(Source source, ImageProcessor processor, ThumbnailGenerator thumbnails) */
+
+    @Test
+    public void testImportMemes_thumbnails() throws Exception {
+        System.out.println("Testing importMemes(), imported memes are given thumbnails");
+        writeLibrary(library, 20);
+        File thumbnails = createTempDirectory("thumbnails");
+        final ThumbnailCache cache = new ThumbnailCache(thumbnails, 1024 * 1024);
+
+        try {
+            ImportMemes.Report report = importMemes.importMemes(ImportMemes.fromDirectory(library),
+                    ImportMemes.toDirectory(images), new ThumbnailGenerator() {
+                        @Override
+                        public String thumbnailFor(byte[] image) throws IOException {
+                            // a quarter of the image stands in for a scaled down copy
+                            return cache.put(ThumbnailCache.keyOf(image),
+                                    Arrays.copyOf(image, image.length / 4)).getPath();
+                        }
+                    });
+            assertEquals(20, report.getImported());
+            // every image is the same, so they share one thumbnail
+            assertEquals(1, thumbnails.listFiles().length);
+
+            // reopen the database, the thumbnails are remembered
+            Services.clean();
+            List<Meme> reloaded = new AccessMemes().getMemes();
+            Meme imported = reloaded.get(reloaded.indexOf(new Meme("imported 7")));
+            assertTrue(imported.hasThumbnail());
+            assertEquals(512, new File(imported.getThumbnailPath()).length());
+        }
+        finally {
+            deleteDirectory(thumbnails);
+        }
+    }
+
+    @Test
+    public void testImportMemes_thumbnailFails() throws Exception {
+        System.out.println("Testing importMemes(), a meme whose thumbnail can't be made is still imported");
+        writeLibrary(library, 3);
+
+        ImportMemes.Report report = importMemes.importMemes(ImportMemes.fromDirectory(library),
+                ImportMemes.toDirectory(images), new ThumbnailGenerator() {
+                    @Override
+                    public String thumbnailFor(byte[] image) throws IOException {
+                        throw new IOException("Not an image");
+                    }
+                });
+
+        assertEquals(3, report.getImported());
+        Meme imported = accessMemes.getMemes().get(accessMemes.getMemes().indexOf(new Meme("imported 1")));
+        assertFalse(imported.hasThumbnail());
+        assertEquals(imported.getImagePath(), imported.getThumbnailPath());
+    }
+
+    @After
+    public void tearDown() {
+        // delete files
+        tempDB.delete();
+        deleteDirectory(library);
+        deleteDirectory(images);
+        // forget DB
+        Services.clean();
+
+        System.out.println("\nFinished tests.\n");
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static File createTempDirectory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        directory.delete();
+        directory.mkdir();
+        return directory;
+    }
+
+    private static void deleteDirectory(File directory) {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private static void writeLibrary(File directory, int memes) throws IOException {
+        String[] tags = {"dank", "edgy", "normie", "wholesome", "aww", "me_irl", "dev"};
+        StringBuilder manifest = new StringBuilder();
+
+        for (int i = 0; i < memes; i++) {
+            String image = "image" + i + ".png";
+            writeImage(directory, image);
+            manifest.append(image).append('\t')
+                    .append("imported ").append(i).append('\t')
+                    .append(tags[i % tags.length]).append(',').append(tags[(i + 1) % tags.length]).append('\t')
+                    .append(i % 10 == 0).append('\n');
+        }
+
+        writeManifest(directory, manifest.toString());
+    }
+
+    private static void writeImage(File directory, String name) throws IOException {
+        try (OutputStream out = new FileOutputStream(new File(directory, name))) {
+            out.write(new byte[2048]);
+        }
+    }
+
+    private static void writeManifest(File directory, String manifest) throws IOException {
+        try (OutputStream out = new FileOutputStream(new File(directory, ImportMemes.MANIFEST))) {
+            out.write(manifest.getBytes("UTF-8"));
+        }
+    }
+
+    private static void zipDirectory(File directory, File zip) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (File file : directory.listFiles()) {
+                if (!file.equals(zip)) {
+                    out.putNextEntry(new ZipEntry(file.getName()));
+                    try (InputStream in = new FileInputStream(file)) {
+                        byte[] buffer = new byte[8192];
+                        int length;
+                        while ((length = in.read(buffer)) > 0) {
+                            out.write(buffer, 0, length);
+                        }
+                    }
+                    out.closeEntry();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.nitrogen.myme.tests.Business;
+
+import com.nitrogen.myme.business.MemeIndex;
+import com.nitrogen.myme.business.SearchMemes;
+import com.nitrogen.myme.business.UpdateMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+import com.nitrogen.myme.persistence.TagsPersistence;
+import com.nitrogen.myme.persistence.stubs.MemesPersistenceStub;
+import com.nitrogen.myme.persistence.stubs.TagsPersistenceStub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MemeIndexTest {
+    private MemesPersistence memesPersistenceStub;
+    private SearchMemes searchMemes;
+    private UpdateMemes updateMemes;
+
+    @Before
+    public void setUp() {
+        System.out.println("Starting tests for MemeIndex.\n");
+        // stub database
+        TagsPersistence tagsPersistenceStub = new TagsPersistenceStub();
+        memesPersistenceStub = new MemesPersistenceStub(tagsPersistenceStub);
+
+        searchMemes = new SearchMemes(memesPersistenceStub);
+        updateMemes = new UpdateMemes(memesPersistenceStub);
+        assertNotNull(searchMemes);
+        assertNotNull(updateMemes);
+    }
+
+    @Test
+    public void testGetInstance_builtOnce() {
+        System.out.println("Testing getInstance() returns the same index for the same persistence");
+        MemeIndex index = MemeIndex.getInstance(memesPersistenceStub);
+        assertSame(index, MemeIndex.getInstance(memesPersistenceStub));
+        assertEquals(memesPersistenceStub.getMemes().size(), index.size());
+    }
+
+    @Test
+    public void testGetMemesByNameTokens_caseInsensitive() {
+        System.out.println("Testing getMemesByNameTokens() ignores case");
+        MemeIndex index = MemeIndex.getInstance(memesPersistenceStub);
+        Meme meme = new Meme("Grumpy Old Cat", "source");
+        meme.addTag(new Tag("aww"));
+        updateMemes.insertMeme(meme);
+
+        assertTrue(index.getMemesByNameTokens(new String[]{"GRUMPY"}).contains(meme));
+        assertTrue(index.getMemesByNameTokens(new String[]{"old"}).contains(meme));
+        assertFalse(index.getMemesByNameTokens(new String[]{"grump"}).contains(meme));
+    }
+
+    @Test
+    public void testInsertMeme_updatesIndex() {
+        System.out.println("Testing the index picks up memes inserted through UpdateMemes");
+        searchMemes.getMemesRelatedTo("warm up");
+        Meme meme = new Meme("Brand new meme", "source");
+        meme.addTag(new Tag("uniquetag"));
+        updateMemes.insertMeme(meme);
+
+        assertTrue(searchMemes.getMemesRelatedTo("brand").contains(meme));
+        assertTrue(searchMemes.getMemesByTags(new String[]{"uniquetag"}).contains(meme));
+    }
+
+    @Test
+    public void testDeleteMeme_updatesIndex() {
+        System.out.println("Testing the index forgets memes deleted through UpdateMemes");
+        Meme meme = new Meme("Short lived meme", "source");
+        meme.addTag(new Tag("uniquetag"));
+        updateMemes.insertMeme(meme);
+        assertEquals(1, searchMemes.getMemesByTags(new String[]{"uniquetag"}).size());
+
+        // delete using a copy without tags, the indexed tags should still be removed
+        updateMemes.deleteMeme(new Meme("Short lived meme"));
+
+        assertEquals(0, searchMemes.getMemesByTags(new String[]{"uniquetag"}).size());
+        assertEquals(0, searchMemes.getMemesRelatedTo("lived").size());
+    }
+
+    @Test
+    public void testGetInstance_changedBehindItsBack() {
+        System.out.println("Testing getInstance() rebuilds the index after a change it wasn't told about");
+        MemeIndex index = MemeIndex.getInstance(memesPersistenceStub);
+        Meme meme = new Meme("Sneaky meme", "source");
+        Meme first = memesPersistenceStub.getMemes().get(0);
+
+        // the same number of memes, but not the same memes
+        memesPersistenceStub.deleteMeme(first);
+        memesPersistenceStub.insertMeme(meme);
+
+        assertSame(index, MemeIndex.getInstance(memesPersistenceStub));
+        assertTrue(index.contains(meme));
+        assertFalse(index.contains(first));
+    }
+
+    @Test
+    public void testDeleteMemes_compactsIndex() {
+        System.out.println("Testing tag queries after most of the indexed memes are deleted");
+        List<Meme> memes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Meme meme = new Meme("bulk meme " + i, "source");
+            meme.addTag(new Tag(i % 2 == 0 ? "even" : "odd"));
+            memes.add(meme);
+        }
+        updateMemes.insertMemes(memes);
+        MemeIndex index = MemeIndex.getInstance(memesPersistenceStub);
+
+        // delete most of them one by one, so the document ids are packed again along the way
+        for (int i = 0; i < 280; i++) {
+            updateMemes.deleteMeme(memes.get(i));
+        }
+
+        assertSame(index, MemeIndex.getInstance(memesPersistenceStub));
+        assertEquals(10, searchMemes.getMemesByTagQuery("even").size());
+        assertEquals(10, searchMemes.getMemesByTagQuery("odd AND NOT even").size());
+        assertEquals(memes.get(299), searchMemes.getMemesByTagQuery("odd").get(9));
+    }
+
+    @Test
+    public void testGetMemesRelatedTo_noDuplicates() {
+        System.out.println("Testing getMemesRelatedTo() returns a meme once when both its name and tag match");
+        Meme meme = new Meme("dank cat", "source");
+        meme.addTag(new Tag("dank"));
+        updateMemes.insertMeme(meme);
+
+        int count = 0;
+        for (Meme found : searchMemes.getMemesRelatedTo("dank")) {
+            if (found.equals(meme)) {
+                count++;
+            }
+        }
+        assertEquals(1, count);
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("\nFinished tests.\n");
+    }
+}
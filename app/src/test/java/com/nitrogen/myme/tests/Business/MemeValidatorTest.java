@@ -20,12 +20,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 public class MemeValidatorTest {
 
     private AccessTags accessTags;
     private AccessMemes accessMemes;
     private MemeValidator memeValidator;
+    private MemesPersistence memesPersistence;
+    private TagsPersistence tagsPersistence;
     private Meme goodMeme;// nice
     private Meme badMeme;
     private List<Tag> goodTags;
@@ -39,6 +42,8 @@ public class MemeValidatorTest {
         // stub database
         TagsPersistence tagsPersistenceStub = new TagsPersistenceStub();
         MemesPersistence memesPersistenceStub = new MemesPersistenceStub(tagsPersistenceStub);
+        memesPersistence = memesPersistenceStub;
+        tagsPersistence = tagsPersistenceStub;
 
         accessMemes = new AccessMemes(memesPersistenceStub);
         accessTags = new AccessTags(tagsPersistenceStub);
@@ -111,6 +116,26 @@ public class MemeValidatorTest {
         memeValidator.validateName(badMeme);
     }
 
+    @Test
+    public void testValidateName_followsInsertAndDelete() {
+        System.out.println("Testing validateName() after memes are added and removed");
+
+        Meme meme = new Meme("added later");
+        assert (memeValidator.validateName(meme));
+
+        memesPersistence.insertMeme(meme);
+        try {
+            memeValidator.validateName(new Meme("added later"));
+            fail("Expected an InvalidMemeException");
+        }
+        catch (final InvalidMemeException e) {
+            // expected, the name is taken now
+        }
+
+        memesPersistence.deleteMeme(meme);
+        assert (memeValidator.validateName(new Meme("added later")));
+    }
+
     // helper method
     private String generateStringOfLen (int len) {
         String result = "";
@@ -160,6 +185,27 @@ public class MemeValidatorTest {
         memeValidator.validateTags(badMeme);
     }
 
+    @Test
+    public void testValidateTags_followsInsertAndDelete() {
+        System.out.println("Testing validateTags() after tags are added and removed");
+
+        List<Tag> newTags = new ArrayList<>();
+        newTags.add(new Tag("brand new"));
+        goodMeme.setTags(newTags);
+
+        tagsPersistence.insertTag(new Tag("brand new"));
+        assert (memeValidator.validateTags(goodMeme));
+
+        tagsPersistence.deleteTag(new Tag("brand new"));
+        try {
+            memeValidator.validateTags(goodMeme);
+            fail("Expected an InvalidMemeException");
+        }
+        catch (final InvalidMemeException e) {
+            // expected, the tag is gone
+        }
+    }
+
     @After
     public void tearDown() {
         System.out.println("\nFinished tests.\n");
@@ -2,6 +2,7 @@ package com.nitrogen.myme.tests.Business;
 
 import com.nitrogen.myme.business.AccessMemes;
 import com.nitrogen.myme.business.AccessTags;
+import com.nitrogen.myme.business.Exceptions.InvalidTagQueryException;
 import com.nitrogen.myme.business.SearchMemes;
 import com.nitrogen.myme.business.UpdateMemes;
 import com.nitrogen.myme.objects.Meme;
@@ -16,14 +17,18 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.HashSet;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SearchMemesTest {
     private AccessMemes accessMemes;
     private SearchMemes searchMemes;
+    private MemesPersistence memesPersistenceStub;
     private AccessTags accessTags;
 
     private String[] tagNames;
@@ -48,7 +53,7 @@ public class SearchMemesTest {
         System.out.println("Starting tests for SearchMemes.\n");
         // stub database
         TagsPersistence tagsPersistenceStub = new TagsPersistenceStub();
-        MemesPersistence memesPersistenceStub = new MemesPersistenceStub(tagsPersistenceStub);
+        memesPersistenceStub = new MemesPersistenceStub(tagsPersistenceStub);
 
         accessMemes = new AccessMemes(memesPersistenceStub);
         searchMemes = new SearchMemes(memesPersistenceStub);
@@ -206,6 +211,177 @@ public class SearchMemesTest {
         assertEquals(0, searchMemes.getMemesByTags(empty).size());
     }
 
+    /* Method: getMemesMatching(String query, MatchMode mode, int limit) */
+    @Test
+    public void testGetMemesMatching_prefix() {
+        System.out.println("Testing getMemesMatching() with a half typed word");
+        Meme meme = new Meme("Spongebob imagination", "source");
+        meme.addTag(new Tag("dank"));
+        new UpdateMemes(memesPersistenceStub).insertMeme(meme);
+
+        assertTrue(searchMemes.getMemesMatching("spong", SearchMemes.MatchMode.PREFIX, 10).contains(meme));
+        assertTrue(searchMemes.getMemesMatching("imag", SearchMemes.MatchMode.PREFIX, 10).contains(meme));
+        assertFalse(searchMemes.getMemesMatching("spong", SearchMemes.MatchMode.EXACT, 10).contains(meme));
+    }
+
+    @Test
+    public void testGetMemesMatching_typo() {
+        System.out.println("Testing getMemesMatching() with a misspelled word");
+        Meme meme = new Meme("Spongebob imagination", "source");
+        meme.addTag(new Tag("dank"));
+        new UpdateMemes(memesPersistenceStub).insertMeme(meme);
+
+        assertTrue(searchMemes.getMemesMatching("spnogebob", SearchMemes.MatchMode.FUZZY, 10).contains(meme));
+        assertFalse(searchMemes.getMemesMatching("spnogebob", SearchMemes.MatchMode.PREFIX, 10).contains(meme));
+    }
+
+    @Test
+    public void testGetMemesMatching_closestTypoFirst() {
+        System.out.println("Testing getMemesMatching() prefers the word with the fewest typos");
+        Meme twoTypos = new Meme("Spongeboy", "source");
+        twoTypos.addTag(new Tag("dank"));
+        Meme oneTypo = new Meme("Spongebob", "source");
+        oneTypo.addTag(new Tag("dank"));
+        UpdateMemes updateMemes = new UpdateMemes(memesPersistenceStub);
+        updateMemes.insertMeme(twoTypos);
+        updateMemes.insertMeme(oneTypo);
+
+        assertEquals(oneTypo, searchMemes.getMemesMatching("spongebxb", SearchMemes.MatchMode.FUZZY, 1).get(0));
+        assertTrue(searchMemes.getMemesMatching("spongebxb", SearchMemes.MatchMode.FUZZY, 10).contains(twoTypos));
+    }
+
+    @Test
+    public void testGetMemesMatching_exactFirst() {
+        System.out.println("Testing getMemesMatching() ranks whole word matches before partial ones");
+        Meme partial = new Meme("Catalog", "source");
+        partial.addTag(new Tag("dank"));
+        Meme whole = new Meme("Cat", "source");
+        whole.addTag(new Tag("dank"));
+        UpdateMemes updateMemes = new UpdateMemes(memesPersistenceStub);
+        updateMemes.insertMeme(partial);
+        updateMemes.insertMeme(whole);
+
+        List<Meme> found = searchMemes.getMemesMatching("cat", SearchMemes.MatchMode.PREFIX, 10);
+        assertEquals(whole, found.get(0));
+        assertTrue(found.contains(partial));
+    }
+
+    @Test
+    public void testGetMemesMatching_limit() {
+        System.out.println("Testing getMemesMatching() never returns more than the limit");
+        assertTrue(searchMemes.getMemesMatching(tagNames[0], SearchMemes.MatchMode.FUZZY, 1).size() <= 1);
+        assertEquals(0, searchMemes.getMemesMatching("   ", SearchMemes.MatchMode.FUZZY, 10).size());
+    }
+
+    /* Method: getTopMemesRelatedTo(String query, int k) */
+    @Test
+    public void testGetTopMemesRelatedTo_nameBeforeTag() {
+        System.out.println("Testing getTopMemesRelatedTo() ranks name matches above tag matches");
+        UpdateMemes updateMemes = new UpdateMemes(memesPersistenceStub);
+        Meme byTag = new Meme("Something else", "source");
+        byTag.addTag(new Tag("frog"));
+        Meme byName = new Meme("Frog on a log", "source");
+        byName.addTag(new Tag("dank"));
+        Meme byBoth = new Meme("Frog frog", "source");
+        byBoth.addTag(new Tag("frog"));
+        updateMemes.insertMeme(byTag);
+        updateMemes.insertMeme(byName);
+        updateMemes.insertMeme(byBoth);
+
+        List<Meme> found = searchMemes.getTopMemesRelatedTo("frog", 10);
+        assertEquals(3, found.size());
+        assertEquals(byBoth, found.get(0));
+        assertEquals(byName, found.get(1));
+        assertEquals(byTag, found.get(2));
+    }
+
+    @Test
+    public void testGetTopMemesRelatedTo_favouriteAffinity() {
+        System.out.println("Testing getTopMemesRelatedTo() breaks ties using favourite tags");
+        UpdateMemes updateMemes = new UpdateMemes(memesPersistenceStub);
+        Meme favourite = new Meme("Loved one", "source");
+        favourite.addTag(new Tag("wholesome"));
+        favourite.setFavourite(true);
+        Meme plain = new Meme("A toad", "source");
+        plain.addTag(new Tag("edgy"));
+        Meme similar = new Meme("B toad", "source");
+        similar.addTag(new Tag("wholesome"));
+        updateMemes.insertMeme(favourite);
+        updateMemes.insertMeme(plain);
+        updateMemes.insertMeme(similar);
+
+        List<Meme> found = searchMemes.getTopMemesRelatedTo("toad", 10);
+        assertEquals(similar, found.get(0));
+        assertEquals(plain, found.get(1));
+    }
+
+    @Test
+    public void testGetTopMemesRelatedTo_boundedByK() {
+        System.out.println("Testing getTopMemesRelatedTo() returns at most k memes");
+        assertTrue(searchMemes.getTopMemesRelatedTo(tagNames[1], 1).size() <= 1);
+        assertEquals(0, searchMemes.getTopMemesRelatedTo(tagNames[1], 0).size());
+        assertEquals(0, searchMemes.getTopMemesRelatedTo("testTag0", 5).size());
+    }
+
+    /* Method: getMemesByTagQuery(String query) */
+    @Test
+    public void testGetMemesByTagQuery_booleanOperators() {
+        System.out.println("Testing getMemesByTagQuery() with AND, OR, NOT and parentheses");
+        UpdateMemes updateMemes = new UpdateMemes(memesPersistenceStub);
+        Meme funnyCat = new Meme("funny cat", "source");
+        funnyCat.addTag(new Tag("funny"));
+        funnyCat.addTag(new Tag("cat"));
+        Meme schoolCat = new Meme("school cat", "source");
+        schoolCat.addTag(new Tag("funny"));
+        schoolCat.addTag(new Tag("cat"));
+        schoolCat.addTag(new Tag("school"));
+        Meme funnyDog = new Meme("funny dog", "source");
+        funnyDog.addTag(new Tag("funny"));
+        updateMemes.insertMeme(funnyCat);
+        updateMemes.insertMeme(schoolCat);
+        updateMemes.insertMeme(funnyDog);
+
+        List<Meme> found = searchMemes.getMemesByTagQuery("(funny AND cat) NOT school");
+        assertEquals(1, found.size());
+        assertEquals(funnyCat, found.get(0));
+
+        assertEquals(2, searchMemes.getMemesByTagQuery("funny cat").size());
+        assertEquals(3, searchMemes.getMemesByTagQuery("cat or FUNNY").size());
+        assertEquals(2, searchMemes.getMemesByTagQuery("funny not (cat and school)").size());
+        assertEquals(0, searchMemes.getMemesByTagQuery("nonexistent").size());
+
+        List<Meme> notFunny = searchMemes.getMemesByTagQuery("NOT funny");
+        assertEquals(accessMemes.getMemes().size() - 3, notFunny.size());
+        assertFalse(notFunny.contains(funnyDog));
+    }
+
+    @Test
+    public void testGetMemesByTagQuery_afterDelete() {
+        System.out.println("Testing getMemesByTagQuery() forgets deleted memes");
+        UpdateMemes updateMemes = new UpdateMemes(memesPersistenceStub);
+        Meme meme = new Meme("funny cat", "source");
+        meme.addTag(new Tag("funny"));
+        updateMemes.insertMeme(meme);
+        assertEquals(1, searchMemes.getMemesByTagQuery("funny").size());
+
+        updateMemes.deleteMeme(meme);
+        assertEquals(0, searchMemes.getMemesByTagQuery("funny").size());
+    }
+
+    @Test
+    public void testGetMemesByTagQuery_invalid() {
+        System.out.println("Testing getMemesByTagQuery() rejects malformed queries");
+        String[] invalid = {"", "(funny", "funny)", "funny AND", "OR funny", "()"};
+        for (String query : invalid) {
+            try {
+                searchMemes.getMemesByTagQuery(query);
+                fail("expected InvalidTagQueryException for: " + query);
+            } catch (InvalidTagQueryException e) {
+                // expected
+            }
+        }
+    }
+
     @After
     public void tearDown() {
         System.out.println("\nFinished tests.\n");
@@ -1,5 +1,6 @@
 package com.nitrogen.myme.tests.Business;
 
+import com.nitrogen.myme.business.AccessMemes;
 import com.nitrogen.myme.business.SortMemes;
 import com.nitrogen.myme.objects.Meme;
 import com.nitrogen.myme.objects.Tag;
@@ -54,6 +55,7 @@ public class SortMemesTest {
 
         memesPersistenceStub = mock(MemesPersistenceStub.class);
         when(memesPersistenceStub.getMemes()).thenReturn(memes);
+        when(memesPersistenceStub.scanMemes()).thenReturn(memes);
 
     }
 
@@ -123,6 +125,46 @@ public class SortMemesTest {
         assertTrue(memes.get(2).equals(meme1));
     }
 
+    @Test
+    public void testSortMemesByRelevance_favouritesFlipped() {
+        System.out.println("Testing sortByRelevance() follows favourites flipped after the first sort.");
+
+        List<Meme> catalog = new ArrayList<>();
+        Meme fav = new Meme("fav");
+        fav.addTag(tag1);
+        fav.setFavourite(true);
+        catalog.add(fav);
+        Meme meme1 = new Meme("meme1");
+        meme1.addTag(tag1);
+        catalog.add(meme1);
+        Meme meme2 = new Meme("meme2");
+        meme2.addTag(tag2);
+        catalog.add(meme2);
+        MemesPersistence persistence = mock(MemesPersistence.class);
+        when(persistence.getMemes()).thenReturn(catalog);
+        when(persistence.scanMemes()).thenReturn(catalog);
+        AccessMemes accessMemes = new AccessMemes(persistence);
+
+        List<Meme> memes = new ArrayList<>();
+        memes.add(meme2);
+        memes.add(meme1);
+        new SortMemes(memes, persistence).sortByRelevance();
+        assertEquals(meme1, memes.get(0));
+
+        // swap which tag the user likes
+        fav.setFavourite(false);
+        accessMemes.updatefav(fav);
+        meme2.setFavourite(true);
+        accessMemes.updatefav(meme2);
+        Meme meme3 = new Meme("meme3");
+        meme3.addTag(tag2);
+        memes.add(meme3);
+
+        new SortMemes(memes, persistence).sortByRelevance();
+        assertEquals(meme3, memes.get(0));
+        assertEquals(meme1, memes.get(1));
+        assertEquals(meme2, memes.get(2));
+    }
 
     @After
     public void tearDown() {
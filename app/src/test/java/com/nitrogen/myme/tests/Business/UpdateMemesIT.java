@@ -6,6 +6,7 @@ import com.nitrogen.myme.business.AccessMemes;
 import com.nitrogen.myme.business.UpdateMemes;
 import com.nitrogen.myme.objects.Meme;
 import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.ImageStore;
 import com.nitrogen.myme.persistence.MemesPersistence;
 import com.nitrogen.myme.persistence.TagsPersistence;
 import com.nitrogen.myme.persistence.stubs.MemesPersistenceStub;
@@ -96,6 +97,54 @@ public class UpdateMemesIT {
         assertEquals(0, accessMemes.getMemes().size());
     }
 
+    @Test
+    public void testDeleteMeme_persisted() {
+        // A deleted meme should still be gone after the database is reopened
+        System.out.println("Testing deleteMeme(), deleted memes are removed from the database");
+
+        Meme target = accessMemes.getMemes().get(0);
+        updateMemes.deleteMeme(target);
+
+        // reopen the database
+        Services.clean();
+        List<Meme> reloaded = new AccessMemes().getMemes();
+
+        assertEquals(initialSize - 1, reloaded.size());
+        assertFalse(reloaded.contains(target));
+    }
+
+    /* Method: deleteMemes(Collection<Meme> memes) */
+
+    @Test
+    public void testDeleteMemes_multipleMemes() {
+        // Delete many memes at once, including one that is not in the database
+        System.out.println("Testing deleteMemes(), deleting multiple memes at once");
+
+        final int NUM_MEMES = 50;
+
+        List<Meme> created = new ArrayList<>();
+        for(int i = 0 ; i < NUM_MEMES ; i++) {
+            created.add(createMeme("test_meme_"+i));
+        }
+        updateMemes.insertMemes(created);
+
+        List<Meme> targets = new ArrayList<>(created);
+        targets.add(accessMemes.getMemes().get(0));
+        targets.add(createMeme("nonexistent"));
+
+        assertEquals(NUM_MEMES + 1, updateMemes.deleteMemes(targets).size());
+        assertEquals(initialSize - 1, accessMemes.getMemes().size());
+        assertFalse(accessMemes.getMemes().contains(targets.get(NUM_MEMES)));
+
+        // reopen the database
+        Services.clean();
+        List<Meme> reloaded = new AccessMemes().getMemes();
+
+        assertEquals(initialSize - 1, reloaded.size());
+        assertFalse(reloaded.contains(created.get(0)));
+        assertFalse(reloaded.contains(targets.get(NUM_MEMES)));
+    }
+
     /* Method: insertMeme(Meme meme) */
 
     @Test
@@ -130,6 +179,86 @@ public class UpdateMemesIT {
         assertEquals(initialSize + NUM_MEMES, accessMemes.getMemes().size());
     }
 
+    @Test
+    public void testInsertMeme_storePath() {
+        // A picture saved in the app is kept under its checksum in the ImageStore, at a
+        // path as long as the one it gets on a device
+        System.out.println("Testing insertMeme(), a meme with a picture from the ImageStore");
+
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            key.append(Integer.toHexString(i % 16));
+        }
+        String path = "/data/user/0/com.nitrogen.myme/app_db/" + ImageStore.DIRECTORY + "/" + key + ".webp";
+        Meme created = createMeme("test_meme");
+        created.setImagePath(path);
+
+        assertTrue(updateMemes.insertMeme(created));
+
+        // reopen the database
+        Services.clean();
+        List<Meme> reloaded = new AccessMemes().getMemes();
+        assertEquals(path, reloaded.get(reloaded.indexOf(created)).getImagePath());
+    }
+
+    /* Method: insertMemes(Collection<Meme> memes) */
+
+    @Test
+    public void testInsertMemes_multipleMemes() {
+        // Insert multiple memes at once
+        System.out.println("Testing insertMemes(), inserting multiple memes into a non-empty database at once");
+
+        final int NUM_MEMES = 5;
+
+        List<Meme> created = new ArrayList<>();
+        for(int i = 0 ; i < NUM_MEMES ; i++) {
+            created.add(createMeme("test_meme_"+i));
+        }
+        assertEquals(created, updateMemes.insertMemes(created));
+        assertTrue(accessMemes.getMemes().containsAll(created));
+        assertEquals(initialSize + NUM_MEMES, accessMemes.getMemes().size());
+    }
+
+    @Test
+    public void testInsertMemes_duplicateMemes() {
+        // Insert memes that are already there and doubles of the same meme
+        System.out.println("Testing insertMemes(), skipping memes that are already in the database");
+
+        Meme existing = accessMemes.getMemes().get(0);
+        Meme created = createMeme("test_meme");
+        List<Meme> memes = new ArrayList<>();
+        memes.add(existing);
+        memes.add(created);
+        memes.add(created);
+
+        List<Meme> inserted = updateMemes.insertMemes(memes);
+        assertEquals(1, inserted.size());
+        assertEquals(created, inserted.get(0));
+        assertEquals(initialSize + 1, accessMemes.getMemes().size());
+    }
+
+    @Test
+    public void testInsertMemes_persisted() {
+        // Memes inserted at once should still be there after the database is reopened
+        System.out.println("Testing insertMemes(), memes and tags are saved to the database");
+
+        List<Meme> created = new ArrayList<>();
+        created.add(createMeme("test_meme_0"));
+        // memes without an image path are saved too
+        created.add(new Meme("test_meme_1"));
+        updateMemes.insertMemes(created);
+
+        // reopen the database
+        Services.clean();
+        List<Meme> reloaded = new AccessMemes().getMemes();
+
+        assertEquals(initialSize + 2, reloaded.size());
+        Meme saved = reloaded.get(reloaded.indexOf(created.get(0)));
+        assertEquals(1, saved.getTags().size());
+        assertEquals("test_tag", saved.getTags().get(0).getName());
+        assertTrue(reloaded.contains(created.get(1)));
+    }
+
     @After
     public void tearDown() {
         // delete file
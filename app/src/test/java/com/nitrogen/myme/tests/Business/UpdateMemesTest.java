@@ -5,6 +5,7 @@ import com.nitrogen.myme.business.AccessMemes;
 import com.nitrogen.myme.business.UpdateMemes;
 import com.nitrogen.myme.objects.Meme;
 import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.ImageStore;
 import com.nitrogen.myme.persistence.MemesPersistence;
 import com.nitrogen.myme.persistence.TagsPersistence;
 import com.nitrogen.myme.persistence.stubs.MemesPersistenceStub;
@@ -14,6 +15,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -92,6 +95,25 @@ public class UpdateMemesTest {
         assertEquals(0, accessMemes.getMemes().size());
     }
 
+    /* Method: deleteMemes(Collection<Meme> memes) */
+
+    @Test
+    public void testDeleteMemes_multipleMemes() {
+        // Delete several memes at once, including one that is not in the database
+        System.out.println("Testing deleteMemes(), deleting multiple memes at once");
+
+        List<Meme> targets = new ArrayList<>();
+        targets.add(accessMemes.getMemes().get(0));
+        targets.add(accessMemes.getMemes().get(1));
+        targets.add(createMeme("nonexistent"));
+
+        List<Meme> deleted = updateMemes.deleteMemes(targets);
+        assertEquals(2, deleted.size());
+        assertEquals(initialSize - 2, accessMemes.getMemes().size());
+        assertFalse(accessMemes.getMemes().contains(targets.get(0)));
+        assertFalse(accessMemes.getMemes().contains(targets.get(1)));
+    }
+
     /* Method: insertMeme(Meme meme) */
 
     @Test
@@ -126,6 +148,74 @@ public class UpdateMemesTest {
         assertEquals(initialSize + NUM_MEMES, accessMemes.getMemes().size());
     }
 
+    /* Method: insertMemes(Collection<Meme> memes) */
+
+    @Test
+    public void testInsertMemes_multipleMemes() {
+        // Insert multiple memes at once
+        System.out.println("Testing insertMemes(), inserting multiple memes into a non-empty database at once");
+
+        final int NUM_MEMES = 5;
+
+        List<Meme> created = new ArrayList<>();
+        for(int i = 0 ; i < NUM_MEMES ; i++) {
+            created.add(createMeme("test_meme_"+i));
+        }
+        assertEquals(created, updateMemes.insertMemes(created));
+        assertTrue(accessMemes.getMemes().containsAll(created));
+        assertEquals(initialSize + NUM_MEMES, accessMemes.getMemes().size());
+    }
+
+    @Test
+    public void testInsertMemes_duplicateMemes() {
+        // Insert memes that are already there and doubles of the same meme
+        System.out.println("Testing insertMemes(), skipping memes that are already in the database");
+
+        Meme existing = accessMemes.getMemes().get(0);
+        Meme created = createMeme("test_meme");
+        List<Meme> memes = new ArrayList<>();
+        memes.add(existing);
+        memes.add(created);
+        memes.add(created);
+
+        List<Meme> inserted = updateMemes.insertMemes(memes);
+        assertEquals(1, inserted.size());
+        assertEquals(created, inserted.get(0));
+        assertEquals(initialSize + 1, accessMemes.getMemes().size());
+    }
+
+    /* Method: insertMeme(Meme meme), deleteMeme(Meme meme) with an ImageStore */
+
+    @Test
+    public void testDeleteMeme_sharedPicture() throws IOException {
+        // Memes saved with the same picture share one file, which goes with the last of them
+        System.out.println("Testing insertMeme() and deleteMeme(), a picture is kept while a meme uses it");
+
+        File directory = File.createTempFile("images", "");
+        directory.delete();
+        // no grace period, and collected already so the picture isn't collected before its memes are in
+        ImageStore imageStore = new ImageStore(directory, 0);
+        MemesPersistence memes = new MemesPersistenceStub(new TagsPersistenceStub());
+        imageStore.collect(memes);
+        UpdateMemes storing = new UpdateMemes(memes, imageStore);
+        File picture = imageStore.put(new byte[] {1, 2, 3}, ".png");
+        Meme first = createMeme("test_meme_1");
+        Meme second = createMeme("test_meme_2");
+        first.setImagePath(imageStore.put(new byte[] {1, 2, 3}, ".png").getPath());
+        second.setImagePath(picture.getPath());
+
+        assertTrue(storing.insertMeme(first));
+        assertTrue(storing.insertMeme(second));
+        assertTrue(memes.usesImage(picture.getPath()));
+
+        storing.deleteMeme(first);
+        storing.deleteMeme(first);
+        assertTrue(picture.exists());
+        storing.deleteMeme(second);
+        assertFalse(picture.exists());
+        assertTrue(directory.delete());
+    }
+
     @After
     public void tearDown() {
         System.out.println("\nFinished tests.\n");
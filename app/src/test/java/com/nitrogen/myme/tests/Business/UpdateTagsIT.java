@@ -1,6 +1,7 @@
 package com.nitrogen.myme.tests.Business;
 
 import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.business.AccessMemes;
 import com.nitrogen.myme.business.AccessTags;
 import com.nitrogen.myme.business.UpdateTags;
 import com.nitrogen.myme.objects.Meme;
@@ -89,6 +90,23 @@ public class UpdateTagsIT {
     }
 
 
+    @Test
+    public void testDeleteTag_persisted() {
+        // A deleted tag should be gone from the database and from the memes that had it
+        System.out.println("Testing deleteTag(), deleted tags are removed from the database and from memes");
+
+        Tag target = accessTags.getTags().get(0);
+        updateTags.deleteTag(target);
+
+        // reopen the database
+        Services.clean();
+        assertEquals(initialSize - 1, new AccessTags().getTags().size());
+        assertFalse(new AccessTags().getTags().contains(target));
+        for (Meme meme : new AccessMemes().getMemes()) {
+            assertFalse(meme.getTags().contains(target));
+        }
+    }
+
     /* Method: insertTag(Tag tag) */
 
     @Test
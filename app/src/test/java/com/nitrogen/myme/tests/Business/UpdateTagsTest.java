@@ -1,6 +1,10 @@
 package com.nitrogen.myme.tests.Business;
 
 import com.nitrogen.myme.business.AccessTags;
+import com.nitrogen.myme.business.CoOccurrenceRecommender;
+import com.nitrogen.myme.business.RelevanceModel;
+import com.nitrogen.myme.business.SearchMemes;
+import com.nitrogen.myme.business.UpdateMemes;
 import com.nitrogen.myme.business.UpdateTags;
 import com.nitrogen.myme.objects.Meme;
 import com.nitrogen.myme.objects.Tag;
@@ -21,13 +25,14 @@ import static org.junit.Assert.assertTrue;
 public class UpdateTagsTest {
     private UpdateTags updateTags;
     private AccessTags accessTags;
+    private TagsPersistence tagsPersistenceStub;
     private int initialSize;
 
     @Before
     public void setUp() {
         System.out.println("Starting tests for UpdateTags.\n");
         // stub database
-        TagsPersistence tagsPersistenceStub = new TagsPersistenceStub();
+        tagsPersistenceStub = new TagsPersistenceStub();
 
         updateTags = new UpdateTags(tagsPersistenceStub);
         accessTags = new AccessTags(tagsPersistenceStub);
@@ -82,6 +87,35 @@ public class UpdateTagsTest {
     }
 
 
+    @Test
+    public void testDeleteTag_takenOffMemes() {
+        // The memes, the search index and the recommenders forget a deleted tag
+        System.out.println("Testing deleteTag(), the tag is taken off the memes already loaded");
+
+        MemesPersistence memesPersistenceStub = new MemesPersistenceStub(tagsPersistenceStub);
+        SearchMemes searchMemes = new SearchMemes(memesPersistenceStub);
+        Tag target = memesPersistenceStub.getMemes().get(0).getTags().get(0);
+        assertFalse(searchMemes.getMemesByTags(new String[]{target.getName()}).isEmpty());
+        CoOccurrenceRecommender recommender = CoOccurrenceRecommender.getInstance(memesPersistenceStub);
+        RelevanceModel relevanceModel = RelevanceModel.getInstance(memesPersistenceStub);
+        Meme favourite = new Meme("favourite with the tag", "source");
+        favourite.addTag(target);
+        favourite.setFavourite(true);
+        new UpdateMemes(memesPersistenceStub).insertMeme(favourite);
+        assertTrue(relevanceModel.getAffinity(favourite) > 0);
+
+        new UpdateTags(tagsPersistenceStub, memesPersistenceStub).deleteTag(target);
+
+        assertFalse(accessTags.getTags().contains(target));
+        for (Meme meme : memesPersistenceStub.getMemes()) {
+            assertFalse(meme.getTags().contains(target));
+        }
+        assertTrue(searchMemes.getMemesByTags(new String[]{target.getName()}).isEmpty());
+        assertTrue(searchMemes.getMemesByTagQuery(target.getName()).isEmpty());
+        assertEquals(0, relevanceModel.getAffinity(favourite));
+        assertEquals(0, recommender.score(favourite), 0);
+    }
+
     /* Method: insertTag(Tag tag) */
 
     @Test
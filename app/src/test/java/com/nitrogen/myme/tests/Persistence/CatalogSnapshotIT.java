@@ -0,0 +1,158 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.business.AccessMemes;
+import com.nitrogen.myme.business.AccessTags;
+import com.nitrogen.myme.business.UpdateMemes;
+import com.nitrogen.myme.business.UpdateTags;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.hsqldb.CatalogSnapshot;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CatalogSnapshotIT {
+    private File tempDB;
+    private File snapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for the catalog snapshot of MemesPersistenceHSQLDB.\n");
+
+        // build database
+        tempDB = TestUtils.copyDB();
+        snapshot = CatalogSnapshot.fileFor(Services.getConnectionProvider());
+    }
+
+    /* Method: MemesPersistenceHSQLDB(ConnectionProvider connections) */
+
+    @Test
+    public void testSnapshot_servesMemes() throws IOException {
+        // Once the memes have been loaded, the next start reads them from the snapshot
+        System.out.println("Testing the snapshot, memes are read from it on the next start");
+
+        List<Meme> loaded = new ArrayList<>(new AccessMemes().getMemes());
+        Services.clean();
+        assertTrue(snapshot.exists());
+        assertEquals(loaded, CatalogSnapshot.read(snapshot));
+
+        // a snapshot at the database's stamp is read instead of the database's memes
+        List<Meme> saved = new ArrayList<>(loaded);
+        saved.add(new Meme("only in the snapshot", "source"));
+        CatalogSnapshot.write(snapshot, CatalogSnapshot.stampOf(snapshot), saved);
+        List<Meme> fromSnapshot = new AccessMemes().getMemes();
+        assertEquals(saved, fromSnapshot);
+        for (int i = 0; i < loaded.size(); i++) {
+            assertEquals(loaded.get(i).getTags(), fromSnapshot.get(i).getTags());
+            assertEquals(loaded.get(i).getImagePath(), fromSnapshot.get(i).getImagePath());
+        }
+    }
+
+    @Test
+    public void testSnapshot_staleStamp() throws IOException {
+        // A snapshot left from before the database last changed is dropped, even though
+        // the change didn't delete it
+        System.out.println("Testing the snapshot, one from an older database is dropped");
+
+        new AccessMemes().getMemes();
+        Services.clean();
+        byte[] old = Files.readAllBytes(snapshot.toPath());
+        new UpdateMemes().insertMeme(new Meme("after the snapshot", "source"));
+        Services.clean();
+        Files.write(snapshot.toPath(), old);
+
+        assertTrue(new AccessMemes().getMemes().contains(new Meme("after the snapshot")));
+        Services.clean();
+        assertTrue(CatalogSnapshot.read(snapshot).contains(new Meme("after the snapshot")));
+    }
+
+    /* Method: insertMemes(), deleteMemes(), updateFav() */
+
+    @Test
+    public void testSnapshot_rewrittenAfterChanges() throws IOException {
+        // Changes made through the memes persistence are in the next snapshot
+        System.out.println("Testing the snapshot, it is written again after memes change");
+
+        AccessMemes accessMemes = new AccessMemes();
+        Meme deleted = accessMemes.getMemes().get(0);
+        Meme favourite = accessMemes.getMemes().get(1);
+        Meme inserted = new Meme("snapshot meme", "source");
+
+        new UpdateMemes().deleteMeme(deleted);
+        new UpdateMemes().insertMeme(inserted);
+        favourite.setFavourite(!favourite.isFavourite());
+        accessMemes.updatefav(favourite);
+        Services.clean();
+
+        List<Meme> read = CatalogSnapshot.read(snapshot);
+        assertFalse(read.contains(deleted));
+        assertTrue(read.contains(inserted));
+        assertEquals(favourite.isFavourite(), read.get(read.indexOf(favourite)).isFavourite());
+    }
+
+    /* Method: TagsPersistenceHSQLDB.deleteTag(Tag tag) */
+
+    @Test
+    public void testSnapshot_afterTagDelete() throws IOException {
+        // Deleting a tag takes it off the memes kept in memory too, so they are still
+        // the same as the database's and the snapshot written after has no trace of it
+        System.out.println("Testing the snapshot, deleting a tag takes it off the memes in it");
+
+        new AccessMemes().getMemes();
+        Tag tag = new AccessTags().getTags().get(0);
+        new UpdateTags().deleteTag(tag);
+        new UpdateMemes().insertMeme(new Meme("after the tag", "source"));
+        Services.clean();
+
+        assertTrue(snapshot.exists());
+        List<Meme> read = CatalogSnapshot.read(snapshot);
+        for (Meme meme : read) {
+            assertFalse(meme.getTags().contains(tag));
+        }
+        assertTrue(read.contains(new Meme("after the tag")));
+        assertEquals(read, new AccessMemes().getMemes());
+    }
+
+    @Test
+    public void testSnapshot_staleAfterTagDelete() throws IOException {
+        // A tag deleted without taking it off the memes kept in memory leaves them out
+        // of date, so the snapshot is dropped and the memes are read from the database
+        System.out.println("Testing the snapshot, deleting a tag behind the memes' back drops it");
+
+        new AccessMemes().getMemes();
+        Tag tag = new AccessTags().getTags().get(0);
+        Services.getTagsPersistence().deleteTag(tag);
+        new UpdateMemes().insertMeme(new Meme("after the tag", "source"));
+        Services.clean();
+
+        assertFalse(snapshot.exists());
+        for (Meme meme : new AccessMemes().getMemes()) {
+            assertFalse(meme.getTags().contains(tag));
+        }
+        assertTrue(new AccessMemes().getMemes().contains(new Meme("after the tag")));
+    }
+
+    @After
+    public void tearDown() {
+        // forget DB
+        Services.clean();
+        // delete files
+        tempDB.delete();
+        snapshot.delete();
+
+        System.out.println("\nFinished tests.\n");
+    }
+}
@@ -0,0 +1,119 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.hsqldb.CatalogSnapshot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CatalogSnapshotTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for CatalogSnapshot.\n");
+
+        file = File.createTempFile("catalog", ".snapshot");
+        file.delete();
+    }
+
+    /* Method: write(File file, List<Meme> memes), read(File file) */
+
+    @Test
+    public void testSnapshot_roundTrip() throws IOException {
+        // The memes read back have the same names, sources, thumbnails, tags and favourites, in order
+        System.out.println("Testing write() and read(), memes are read back as they were written");
+
+        List<Meme> memes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Meme meme = new Meme("meme " + i, i % 10 == 0 ? null : "source/" + i);
+            List<Tag> tags = new ArrayList<>();
+            for (int t = 0; t < i % 4; t++) {
+                tags.add(new Tag("tag " + (i + t) % 7));
+            }
+            meme.setTags(tags);
+            meme.setFavourite(i % 3 == 0);
+            meme.setThumbnailPath(i % 2 == 0 ? null : "thumbnails/" + i + ".jpg");
+            memes.add(meme);
+        }
+        memes.add(new Meme("ünïcödé ☃", "ñ/source"));
+
+        CatalogSnapshot.write(file, 42, memes);
+        List<Meme> read = CatalogSnapshot.read(file);
+
+        assertEquals(42, CatalogSnapshot.stampOf(file));
+        assertEquals(memes, read);
+        for (int i = 0; i < memes.size(); i++) {
+            assertEquals(memes.get(i).getImagePath(), read.get(i).getImagePath());
+            assertEquals(memes.get(i).hasThumbnail(), read.get(i).hasThumbnail());
+            assertEquals(memes.get(i).getThumbnailPath(), read.get(i).getThumbnailPath());
+            assertEquals(memes.get(i).getTags(), read.get(i).getTags());
+            assertEquals(memes.get(i).isFavourite(), read.get(i).isFavourite());
+        }
+        // memes with the same tag share one Tag
+        assertSame(read.get(2).getTags().get(1), read.get(3).getTags().get(0));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testSnapshot_empty() throws IOException {
+        // A catalog with no memes is a snapshot too
+        System.out.println("Testing write() and read(), an empty catalog");
+
+        CatalogSnapshot.write(file, 0, new ArrayList<Meme>());
+
+        assertEquals(0, CatalogSnapshot.read(file).size());
+    }
+
+    @Test
+    public void testRead_missing() throws IOException {
+        // There is nothing to read until a snapshot is written
+        System.out.println("Testing read(), no snapshot");
+
+        assertNull(CatalogSnapshot.read(file));
+        assertEquals(-1, CatalogSnapshot.stampOf(file));
+    }
+
+    @Test
+    public void testRead_damaged() throws IOException {
+        // A snapshot that was cut short isn't read
+        System.out.println("Testing read(), a damaged snapshot");
+
+        List<Meme> memes = new ArrayList<>();
+        memes.add(new Meme("meme", "source"));
+        CatalogSnapshot.write(file, 0, memes);
+        try (RandomAccessFile damaged = new RandomAccessFile(file, "rw")) {
+            damaged.setLength(damaged.length() - 6);
+        }
+
+        try {
+            CatalogSnapshot.read(file);
+            fail("Expected an IOException");
+        }
+        catch (final IOException e) {
+            // expected
+        }
+    }
+
+    @After
+    public void tearDown() {
+        // delete file
+        file.delete();
+
+        System.out.println("\nFinished tests.\n");
+    }
+}
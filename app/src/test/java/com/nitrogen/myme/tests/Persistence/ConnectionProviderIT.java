@@ -0,0 +1,86 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.application.Main;
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.business.UpdateMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionProviderIT {
+    private static final String[] EXTENSIONS = {".script", ".properties", ".log", ".data"};
+
+    private File tempDB;
+    private String crashedDB;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for ConnectionProvider.\n");
+
+        // build database
+        tempDB = TestUtils.copyDB();
+        crashedDB = Main.getDBPathName() + "-crashed";
+    }
+
+    /* Method: getConnection() */
+
+    @Test
+    public void testGetConnection_commitsSurviveACrash() throws IOException, SQLException {
+        // A change is on disk as soon as it is committed, not up to a write delay later
+        System.out.println("Testing getConnection(), a committed meme is still there after a crash");
+
+        Meme meme = new Meme("Saved just before the crash", "source");
+        meme.addTag(new Tag("dank"));
+        assertTrue(new UpdateMemes().insertMeme(meme));
+
+        // copy the files as they are while the database is still open, as if the app
+        // had been killed, and open the copy
+        for (String extension : EXTENSIONS) {
+            File file = new File(Main.getDBPathName() + extension);
+            if (file.exists()) {
+                Files.copy(file.toPath(), new File(crashedDB + extension).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        try (Connection c = DriverManager.getConnection("jdbc:hsqldb:file:" + crashedDB + ";shutdown=true", "SA", "")) {
+            PreparedStatement query = c.prepareStatement("SELECT COUNT(*) FROM MEME WHERE NAME = ?");
+            query.setString(1, meme.getName());
+            ResultSet rs = query.executeQuery();
+            rs.next();
+            assertEquals(1, rs.getInt(1));
+            rs.close();
+            query.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        // forget DB
+        Services.clean();
+        // delete files
+        tempDB.delete();
+        for (String extension : EXTENSIONS) {
+            new File(crashedDB + extension).delete();
+        }
+
+        System.out.println("\nFinished tests.\n");
+    }
+}
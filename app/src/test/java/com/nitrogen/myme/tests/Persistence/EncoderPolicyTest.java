@@ -0,0 +1,156 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.persistence.EncoderPolicy;
+import com.nitrogen.myme.persistence.EncoderPolicy.Format;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EncoderPolicyTest {
+    private int[] photo;
+    private int[] flat;
+
+    @Before
+    public void setUp() {
+        System.out.println("Starting tests for EncoderPolicy.\n");
+
+        Random random = new Random(7);
+        photo = new int[64 * 64];
+        flat = new int[64 * 64];
+        for (int i = 0; i < photo.length; i++) {
+            photo[i] = 0xFF000000 | random.nextInt(0x1000000);
+            // white with black text
+            flat[i] = random.nextInt(10) == 0 ? 0xFF000000 : 0xFFFFFFFF;
+        }
+    }
+
+    /* Method: choose(int[] pixels) */
+
+    @Test
+    public void testChoose_flat() {
+        // Flat pictures are kept lossless
+        System.out.println("Testing choose(), a flat picture is a PNG");
+
+        assertEquals(Format.PNG, new EncoderPolicy(0, true).choose(flat));
+        assertEquals(Format.PNG, new EncoderPolicy(0, false).choose(flat));
+    }
+
+    @Test
+    public void testChoose_photographic() {
+        // Photographs are lossy, WebP when it can be used
+        System.out.println("Testing choose(), a photograph is a WebP or a JPEG");
+
+        assertEquals(Format.WEBP, new EncoderPolicy(0, true).choose(photo));
+        assertEquals(Format.JPEG, new EncoderPolicy(0, false).choose(photo));
+    }
+
+    @Test
+    public void testChoose_alpha() {
+        // A JPEG would lose the see-through parts
+        System.out.println("Testing choose(), a see-through photograph isn't a JPEG");
+
+        photo[10] &= 0x80FFFFFF;
+
+        assertTrue(EncoderPolicy.hasAlpha(photo));
+        assertEquals(Format.WEBP, new EncoderPolicy(0, true).choose(photo));
+        assertEquals(Format.PNG, new EncoderPolicy(0, false).choose(photo));
+    }
+
+    /* Method: encode(Format format, QualityEncoder encoder) */
+
+    @Test
+    public void testEncode_fitsBudget() throws IOException {
+        // The highest quality that fits is found, without trying every quality
+        System.out.println("Testing encode(), the highest quality under the budget");
+
+        FakeEncoder encoder = new FakeEncoder();
+        EncoderPolicy.Encoded encoded = new EncoderPolicy(6300, true).encode(Format.WEBP, encoder);
+
+        assertEquals(Format.WEBP, encoded.getFormat());
+        assertEquals(63, encoded.getQuality());
+        assertEquals(6300, encoded.getBytes().length);
+        assertTrue(encoder.qualities.size() <= 8);
+    }
+
+    @Test
+    public void testEncode_underBudget() throws IOException {
+        // A picture small enough at MAX_QUALITY is encoded once
+        System.out.println("Testing encode(), a small picture is encoded once");
+
+        FakeEncoder encoder = new FakeEncoder();
+        EncoderPolicy.Encoded encoded = new EncoderPolicy(100000, true).encode(Format.JPEG, encoder);
+
+        assertEquals(EncoderPolicy.MAX_QUALITY, encoded.getQuality());
+        assertEquals(1, encoder.qualities.size());
+
+        encoded = new EncoderPolicy(0, true).encode(Format.JPEG, new FakeEncoder());
+        assertEquals(EncoderPolicy.MAX_QUALITY, encoded.getQuality());
+    }
+
+    @Test
+    public void testEncode_overBudget() throws IOException {
+        // When nothing fits, the smallest quality allowed is used
+        System.out.println("Testing encode(), a budget too small for any quality");
+
+        EncoderPolicy.Encoded encoded = new EncoderPolicy(10, true).encode(Format.WEBP, new FakeEncoder());
+
+        assertEquals(EncoderPolicy.MIN_QUALITY, encoded.getQuality());
+        assertEquals(EncoderPolicy.MIN_QUALITY * 100, encoded.getBytes().length);
+    }
+
+    @Test
+    public void testEncode_lossless() throws IOException {
+        // A PNG has no quality to search for
+        System.out.println("Testing encode(), a PNG is encoded once whatever the budget");
+
+        FakeEncoder encoder = new FakeEncoder();
+        EncoderPolicy.Encoded encoded = new EncoderPolicy(10, true).encode(Format.PNG, encoder);
+
+        assertEquals(Format.PNG, encoded.getFormat());
+        assertEquals(1, encoder.qualities.size());
+    }
+
+    /* Method: withExtension(String fileName, Format format), formatOf(String fileName) */
+
+    @Test
+    public void testExtension() {
+        System.out.println("Testing withExtension() and formatOf(), the format is kept in the file name");
+
+        assertEquals("meme.webp", EncoderPolicy.withExtension("meme.png", Format.WEBP));
+        assertEquals("meme.jpg", EncoderPolicy.withExtension("meme", Format.JPEG));
+        assertEquals("a.b.png", EncoderPolicy.withExtension("a.b.jpg", Format.PNG));
+        assertEquals(Format.WEBP, EncoderPolicy.formatOf("meme.webp"));
+        assertEquals(Format.JPEG, EncoderPolicy.formatOf("MEME.JPEG"));
+        assertNull(EncoderPolicy.formatOf("meme.gif"));
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("\nFinished tests.\n");
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    // encodes to 100 bytes a quality point
+    private static class FakeEncoder implements EncoderPolicy.QualityEncoder {
+        private final List<Integer> qualities = new ArrayList<>();
+
+        @Override
+        public byte[] encode(Format format, int quality) {
+            qualities.add(quality);
+            return new byte[quality * 100];
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.persistence.ImageStore;
+import com.nitrogen.myme.persistence.MemesPersistence;
+import com.nitrogen.myme.persistence.stubs.MemesPersistenceStub;
+import com.nitrogen.myme.persistence.stubs.TagsPersistenceStub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ImageStoreTest {
+    private File directory;
+    private ImageStore imageStore;
+    private MemesPersistence memes;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for ImageStore.\n");
+
+        directory = File.createTempFile("images", "");
+        directory.delete();
+        imageStore = new ImageStore(directory, 0);
+        memes = new MemesPersistenceStub(new TagsPersistenceStub());
+    }
+
+    /* Method: put(byte[] image, String extension) */
+
+    @Test
+    public void testPut_sameImage() throws IOException {
+        // The same picture saved twice is one file
+        System.out.println("Testing put(), the same picture is kept once");
+
+        File first = imageStore.put(image(1000, 1), ".png");
+        File second = imageStore.put(image(1000, 1), ".png");
+
+        assertEquals(first, second);
+        assertEquals(1000, first.length());
+        assertEquals(ImageStore.keyOf(image(1000, 1)) + ".png", first.getName());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void testPut_differentImages() throws IOException {
+        // Different pictures never share a name, however quickly they are saved
+        System.out.println("Testing put(), different pictures get different files");
+
+        File first = imageStore.put(image(1000, 1), ".webp");
+        File second = imageStore.put(image(1000, 2), ".webp");
+
+        assertNotEquals(first, second);
+        assertTrue(imageStore.holds(first.getPath()));
+        assertTrue(imageStore.holds(second.getPath()));
+        assertFalse(imageStore.holds(new File(directory.getParentFile(), first.getName()).getPath()));
+        assertNotEquals(imageStore.pendingFile(".webp"), imageStore.pendingFile(".webp"));
+    }
+
+    /* Method: release(String path, MemesPersistence memes) */
+
+    @Test
+    public void testRelease_lastMeme() throws IOException {
+        // A picture is deleted with the last meme using it
+        System.out.println("Testing release(), the picture goes with its last meme");
+
+        File image = imageStore.put(image(100, 1), ".png");
+        Meme first = new Meme("first", image.getPath());
+        Meme second = new Meme("second", image.getPath());
+        memes.insertMeme(first);
+        memes.insertMeme(second);
+
+        memes.deleteMeme(first);
+        imageStore.release(image.getPath(), memes);
+        assertTrue(image.exists());
+        memes.deleteMeme(second);
+        imageStore.release(image.getPath(), memes);
+        assertFalse(image.exists());
+    }
+
+    @Test
+    public void testRelease_notInStore() throws IOException {
+        // Only pictures in the store are ever deleted
+        System.out.println("Testing release(), a picture outside the store is left alone");
+
+        File image = File.createTempFile("picture", ".png");
+        try {
+            imageStore.release(image.getPath(), memes);
+            assertTrue(image.exists());
+        }
+        finally {
+            image.delete();
+        }
+    }
+
+    @Test
+    public void testRelease_recentlyPut() throws IOException {
+        // A picture just put may be waiting for its meme
+        System.out.println("Testing release(), a picture put in the grace period is kept");
+
+        ImageStore graceful = new ImageStore(directory, ImageStore.GRACE_MILLIS);
+        File image = graceful.put(image(100, 1), ".png");
+
+        graceful.release(image.getPath(), memes);
+        assertTrue(image.exists());
+        assertEquals(0, graceful.collect(memes));
+    }
+
+    /* Method: collect(MemesPersistence memes) */
+
+    @Test
+    public void testCollect() throws IOException {
+        // Pictures no meme uses and half-written files are cleared out
+        System.out.println("Testing collect(), unused pictures are deleted");
+
+        File used = imageStore.put(image(100, 1), ".png");
+        File unused = imageStore.put(image(100, 2), ".png");
+        File leftover = new File(directory, "pending-1.tmp");
+        new FileOutputStream(leftover).close();
+        memes.insertMeme(new Meme("used", used.getPath()));
+
+        assertFalse(imageStore.isCollected());
+        assertEquals(2, imageStore.collect(memes));
+        assertTrue(imageStore.isCollected());
+        assertTrue(used.exists());
+        assertFalse(unused.exists());
+        assertFalse(leftover.exists());
+    }
+
+    @After
+    public void tearDown() {
+        // delete files
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+
+        System.out.println("\nFinished tests.\n");
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static byte[] image(int size, int fill) {
+        byte[] image = new byte[size];
+        for (int i = 0; i < size; i++) {
+            image[i] = (byte) (i * fill);
+        }
+        return image;
+    }
+}
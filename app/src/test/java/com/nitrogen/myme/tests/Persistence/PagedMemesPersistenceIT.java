@@ -0,0 +1,344 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.application.Main;
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.business.AccessMemes;
+import com.nitrogen.myme.business.SearchMemes;
+import com.nitrogen.myme.business.UpdateMemes;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+import com.nitrogen.myme.persistence.hsqldb.MemesPersistenceHSQLDB;
+import com.nitrogen.myme.persistence.hsqldb.PagedMemesPersistenceHSQLDB;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PagedMemesPersistenceIT {
+    private File tempDB;
+    private List<Meme> inMemory;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for PagedMemesPersistenceHSQLDB.\n");
+
+        // build database
+        tempDB = TestUtils.copyDB();
+
+        // what the memes look like when the whole catalog is loaded
+        inMemory = new ArrayList<>(new AccessMemes().getMemes());
+        Services.clean();
+
+        Main.setLargeCatalog(true);
+    }
+
+    /* Method: getMemes() */
+
+    @Test
+    public void testGetMemes_sameAsInMemory() {
+        // The paged view holds the same memes, with the same tags, as the in-memory one
+        System.out.println("Testing getMemes(), the paged memes match the memes loaded into memory");
+
+        assertTrue(Services.getMemesPersistence() instanceof PagedMemesPersistenceHSQLDB);
+        List<Meme> paged = new AccessMemes().getMemes();
+
+        assertEquals(inMemory.size(), paged.size());
+        for (Meme meme : inMemory) {
+            Meme found = paged.get(paged.indexOf(meme));
+            assertEquals(meme.getImagePath(), found.getImagePath());
+            assertEquals(meme.isFavourite(), found.isFavourite());
+            assertEquals(meme.getTags(), found.getTags());
+        }
+        assertFalse(paged.contains(new Meme("nonexistent")));
+        assertEquals(-1, paged.indexOf(new Meme("nonexistent")));
+    }
+
+    @Test
+    public void testGetMemes_manyPages() {
+        // Memes are read in order across pages, and can be read out of order too
+        System.out.println("Testing getMemes(), reading memes across many pages");
+
+        final int NUM_MEMES = 2000;
+
+        List<Meme> created = new ArrayList<>();
+        for (int i = 0; i < NUM_MEMES; i++) {
+            Meme meme = new Meme("test_meme_" + i, "source");
+            List<Tag> tags = new ArrayList<>();
+            tags.add(new Tag("dank"));
+            meme.setTags(tags);
+            created.add(meme);
+        }
+        assertEquals(NUM_MEMES, new UpdateMemes().insertMemes(created).size());
+
+        List<Meme> paged = new AccessMemes().getMemes();
+        assertEquals(inMemory.size() + NUM_MEMES, paged.size());
+
+        int i = 0;
+        for (Meme meme : paged) {
+            if (i >= inMemory.size()) {
+                assertEquals(created.get(i - inMemory.size()), meme);
+                assertEquals(1, meme.getTags().size());
+            }
+            i++;
+        }
+        assertEquals(paged.size(), i);
+
+        for (int j = NUM_MEMES - 1; j >= 0; j -= 97) {
+            int index = paged.indexOf(created.get(j));
+            assertEquals(inMemory.size() + j, index);
+            assertEquals(created.get(j), paged.get(index));
+        }
+    }
+
+    @Test
+    public void testGetMemes_unreadable() throws SQLException {
+        // A page the database can't give back is an error, not an empty page
+        System.out.println("Testing getMemes(), a page that can't be read");
+
+        List<Meme> paged = new AccessMemes().getMemes();
+        assertTrue(paged.size() > 0);
+        synchronized (Services.getConnectionProvider()) {
+            Services.getConnectionProvider().prepare("ALTER TABLE meme RENAME TO meme_gone").executeUpdate();
+        }
+
+        try {
+            paged.get(0);
+            fail("Expected an IllegalStateException");
+        }
+        catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+    }
+
+    /* Method: getMemesByRelevance(int offset, int limit) */
+
+    @Test
+    public void testGetMemesByRelevance_sameAsInMemory() {
+        // The database ranks the pages the same way for the paged and in-memory catalogs,
+        // memes sharing the most tags with favourites first and favourites last
+        System.out.println("Testing getMemesByRelevance(), the memes are ranked by the database");
+
+        Meme favourite = inMemory.get(0);
+        favourite.setFavourite(true);
+        new AccessMemes().updatefav(favourite);
+
+        List<Meme> paged = new ArrayList<>();
+        for (int offset = 0; offset < inMemory.size(); offset += 5) {
+            paged.addAll(new AccessMemes().getMemesByRelevance(offset, 5));
+        }
+        assertEquals(inMemory.size(), paged.size());
+        assertEquals(favourite, paged.get(paged.size() - 1));
+        assertTrue(paged.get(paged.size() - 1).isFavourite());
+        assertEquals(favourite.getTags(), paged.get(paged.size() - 1).getTags());
+        for (int i = 1; i < paged.size() - 1; i++) {
+            assertTrue(sharedTags(paged.get(i - 1), favourite) >= sharedTags(paged.get(i), favourite));
+        }
+
+        MemesPersistence loaded = new MemesPersistenceHSQLDB(Services.getConnectionProvider());
+        assertEquals(paged, loaded.getMemesByRelevance(0, inMemory.size()));
+
+        // a meme inserted since is ranked too
+        new UpdateMemes().insertMeme(new Meme("ranked later", "source"));
+        assertTrue(new AccessMemes().getMemesByRelevance(0, inMemory.size() + 1).contains(new Meme("ranked later")));
+    }
+
+    /* Method: scanMemes() */
+
+    @Test
+    public void testScanMemes_manyPages() {
+        // A scan goes through every meme in order, the same as getMemes()
+        System.out.println("Testing scanMemes(), every meme is read once, in order");
+
+        final int NUM_MEMES = 600;
+
+        List<Meme> created = new ArrayList<>();
+        for (int i = 0; i < NUM_MEMES; i++) {
+            created.add(new Meme("test_meme_" + i, "source"));
+        }
+        new UpdateMemes().insertMemes(created);
+
+        List<Meme> scanned = new ArrayList<>();
+        for (Meme meme : Services.getMemesPersistence().scanMemes()) {
+            scanned.add(meme);
+        }
+        assertEquals(new ArrayList<>(new AccessMemes().getMemes()), scanned);
+        assertEquals(inMemory.size() + NUM_MEMES, scanned.size());
+    }
+
+    /* Method: SearchMemes over the paged memes */
+
+    @Test
+    public void testSearch_afterDeletes() {
+        // The search index keeps document numbers, not memes, and looks its hits up in
+        // the pages; deleting memes in between must not shift the hits onto other memes
+        System.out.println("Testing SearchMemes on paged memes, before and after deleting some");
+
+        final int NUM_MEMES = 600;
+
+        List<Meme> created = new ArrayList<>();
+        for (int i = 0; i < NUM_MEMES; i++) {
+            Meme meme = new Meme("paged search " + i, "source");
+            List<Tag> tags = new ArrayList<>();
+            tags.add(new Tag("dank"));
+            meme.setTags(tags);
+            created.add(meme);
+        }
+        new UpdateMemes().insertMemes(created);
+        SearchMemes searchMemes = new SearchMemes();
+
+        assertEquals(created, searchMemes.getMemesRelatedTo("paged"));
+
+        UpdateMemes updateMemes = new UpdateMemes();
+        updateMemes.deleteMeme(created.remove(300));
+        updateMemes.deleteMeme(created.remove(0));
+
+        List<Meme> found = searchMemes.getMemesRelatedTo("paged");
+        assertEquals(created, found);
+        assertEquals("paged search 1", found.get(0).getName());
+        assertEquals(1, found.get(0).getTags().size());
+        assertEquals(new Meme("paged search 42"), searchMemes.getTopMemesRelatedTo("42", 1).get(0));
+    }
+
+    /* Method: Services.isLargeCatalog() */
+
+    @Test
+    public void testLargeCatalog_bySize() throws SQLException {
+        // A catalog is paged once it has grown to the large catalog size, and stays paged
+        System.out.println("Testing Services.isLargeCatalog(), a catalog that grew large is paged");
+
+        Main.setLargeCatalog(false);
+        Main.setLargeCatalogSize(inMemory.size() + 1);
+        Services.getConnectionProvider().getConnection();
+        assertFalse(Services.isLargeCatalog());
+
+        new UpdateMemes().insertMeme(new Meme("one too many", "source"));
+        Services.clean();
+        Services.getConnectionProvider().getConnection();
+        assertTrue(Services.isLargeCatalog());
+
+        Services.clean();
+        Main.setLargeCatalogSize(Integer.MAX_VALUE);
+        assertTrue(Services.isLargeCatalog());
+        assertEquals(inMemory.size() + 1, new AccessMemes().getMemes().size());
+    }
+
+    /* Method: getMemes(int offset, int limit), getFavouriteMemes(int offset, int limit) */
+
+    @Test
+    public void testGetMemes_window() {
+        // A window of memes, or of favourites, is read straight from the database
+        System.out.println("Testing getMemes(offset, limit) and getFavouriteMemes(offset, limit)");
+
+        List<Meme> paged = new AccessMemes().getMemes();
+        assertEquals(paged.subList(5, 15), new AccessMemes().getMemes(5, 10));
+        assertEquals(paged.get(20).getTags(), new AccessMemes().getMemes(20, 1).get(0).getTags());
+        assertTrue(new AccessMemes().getMemes(paged.size(), 10).isEmpty());
+
+        List<Meme> favourites = new ArrayList<>();
+        for (int i = 3; i < paged.size(); i += 7) {
+            Meme meme = paged.get(i);
+            if (!meme.isFavourite()) {
+                meme.setFavourite(true);
+                new AccessMemes().updatefav(meme);
+            }
+        }
+        for (Meme meme : paged) {
+            if (meme.isFavourite()) {
+                favourites.add(meme);
+            }
+        }
+        assertEquals(favourites.subList(1, 4), Services.getMemesPersistence().getFavouriteMemes(1, 3));
+        assertTrue(Services.getMemesPersistence().getFavouriteMemes(favourites.size(), 3).isEmpty());
+    }
+
+    /* Method: deleteMemes(Collection<Meme> memes), updatefav(Meme meme) */
+
+    @Test
+    public void testChanges_persisted() {
+        // Deletes and favourites are saved, and show up in the pages read afterwards
+        System.out.println("Testing deleteMemes() and updatefav(), changes are saved to the database");
+
+        List<Meme> paged = new AccessMemes().getMemes();
+        Meme favourite = paged.get(paged.size() - 1);
+        List<Meme> targets = new ArrayList<>();
+        targets.add(paged.get(0));
+        targets.add(paged.get(1));
+
+        assertEquals(2, new UpdateMemes().deleteMemes(targets).size());
+        favourite.setFavourite(!favourite.isFavourite());
+        new AccessMemes().updatefav(favourite);
+
+        assertEquals(inMemory.size() - 2, paged.size());
+        assertFalse(paged.contains(targets.get(0)));
+        assertEquals(favourite.isFavourite(), paged.get(paged.indexOf(favourite)).isFavourite());
+
+        // reopen the database
+        Services.clean();
+        paged = new AccessMemes().getMemes();
+        assertEquals(inMemory.size() - 2, paged.size());
+        assertFalse(paged.contains(targets.get(1)));
+        assertEquals(favourite.isFavourite(), paged.get(paged.indexOf(favourite)).isFavourite());
+    }
+
+    /* Method: ConnectionProvider.getConnection() */
+
+    @Test
+    public void testStorage_cachedTables() throws SQLException {
+        // A large catalog keeps its tables on disk
+        System.out.println("Testing getConnection(), tables are converted to CACHED tables");
+
+        synchronized (Services.getConnectionProvider()) {
+            ResultSet rs = Services.getConnectionProvider().prepare("SELECT TABLE_NAME, HSQLDB_TYPE"
+                    + " FROM INFORMATION_SCHEMA.SYSTEM_TABLES WHERE TABLE_SCHEM = 'PUBLIC'").executeQuery();
+            int tables = 0;
+            while (rs.next()) {
+                assertEquals(rs.getString(1), "CACHED", rs.getString(2));
+                tables++;
+            }
+            rs.close();
+            assertTrue(tables >= 4);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Main.setLargeCatalog(false);
+        Main.setLargeCatalogSize(Main.LARGE_CATALOG_SIZE);
+        // forget DB
+        Services.clean();
+        // delete files
+        tempDB.delete();
+        new File(tempDB.getPath().replace(".script", ".data")).delete();
+
+        System.out.println("\nFinished tests.\n");
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    // with one favourite, a meme's affinity is the number of tags it shares with it
+    private static int sharedTags(Meme meme, Meme favourite) {
+        int shared = 0;
+        for (Tag tag : meme.getTags()) {
+            if (favourite.getTags().contains(tag)) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+}
@@ -0,0 +1,67 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.persistence.SampleSize;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SampleSizeTest {
+
+    @Before
+    public void setUp() {
+        System.out.println("Starting tests for SampleSize.\n");
+    }
+
+    /* Method: of(int width, int height, int targetWidth, int targetHeight) */
+
+    @Test
+    public void testOf_largeImage() {
+        // A 12MP photo shown on a 1080x1080 canvas is decoded at a quarter of its size
+        System.out.println("Testing of(), a photo much larger than the target");
+
+        assertEquals(2, SampleSize.of(4000, 3000, 1080, 1080));
+        assertEquals(8, SampleSize.of(4000, 3000, 256, 256));
+    }
+
+    @Test
+    public void testOf_coversTarget() {
+        // The image sampled down is never smaller than the target on either side
+        System.out.println("Testing of(), the sampled image still covers the target");
+
+        for (int width = 1; width < 3000; width += 97) {
+            for (int target = 1; target < 1000; target += 61) {
+                int sampleSize = SampleSize.of(width, width * 2, target, target);
+                assertEquals(0, sampleSize & (sampleSize - 1));
+                assert (width / sampleSize >= target || sampleSize == 1);
+                assert (width / (sampleSize * 2) < target);
+            }
+        }
+    }
+
+    @Test
+    public void testOf_fullSize() {
+        System.out.println("Testing of(), small images and no target are decoded at full size");
+
+        assertEquals(1, SampleSize.of(100, 100, 1080, 1080));
+        assertEquals(1, SampleSize.of(4000, 3000, 0, 0));
+    }
+
+    /* Method: scaled(int size, int sampleSize) */
+
+    @Test
+    public void testScaled() {
+        System.out.println("Testing scaled(), sizes are rounded up");
+
+        assertEquals(1000, SampleSize.scaled(4000, 4));
+        assertEquals(1001, SampleSize.scaled(4001, 4));
+        assertEquals(7, SampleSize.scaled(7, 1));
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("\nFinished tests.\n");
+    }
+}
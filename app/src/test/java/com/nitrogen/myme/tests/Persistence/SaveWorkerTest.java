@@ -0,0 +1,287 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.persistence.SaveWorker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SaveWorkerTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    private File directory;
+    private List<String[]> scans;
+    private SaveWorker saveWorker;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for SaveWorker.\n");
+
+        directory = File.createTempFile("saves", "");
+        directory.delete();
+        directory.mkdir();
+        scans = new ArrayList<>();
+        saveWorker = new SaveWorker(new SaveWorker.MediaScanner() {
+            @Override
+            public void scan(String[] paths) {
+                synchronized (scans) {
+                    scans.add(paths);
+                }
+            }
+        });
+    }
+
+    /* Method: save(File target, Encoder encoder, boolean scan) */
+
+    @Test
+    public void testSave() throws Exception {
+        System.out.println("Testing save(), the image is written in the background");
+        File target = new File(directory, "meme.png");
+
+        Future<File> saved = saveWorker.save(target, bytes(1000), false);
+
+        assertEquals(target, saved.get(10, TimeUnit.SECONDS));
+        assertEquals(1000, target.length());
+        assertFalse(new File(target.getPath() + ".tmp").exists());
+        assertFalse(saveWorker.isSaving(target));
+        assertTrue(scans.isEmpty());
+    }
+
+    @Test
+    public void testSave_returnsStraightAway() throws Exception {
+        // The caller doesn't wait for the encoding
+        System.out.println("Testing save(), a slow encode doesn't hold up the caller");
+        final CountDownLatch encoding = new CountDownLatch(1);
+        File target = new File(directory, "slow.png");
+
+        Future<File> saved = saveWorker.save(target, new SaveWorker.Encoder() {
+            @Override
+            public void encode(OutputStream out) throws IOException {
+                try {
+                    encoding.await();
+                }
+                catch (final InterruptedException e) {
+                    throw new IOException(e);
+                }
+                out.write(new byte[10]);
+            }
+        }, false);
+
+        assertFalse(saved.isDone());
+        assertTrue(saveWorker.isSaving(target));
+        assertFalse(target.exists());
+
+        encoding.countDown();
+        saved.get(10, TimeUnit.SECONDS);
+        assertTrue(target.exists());
+    }
+
+    @Test
+    public void testSave_failureKeepsOldFile() throws Exception {
+        // A save that fails part way leaves the old file alone
+        System.out.println("Testing save(), a failed encode doesn't replace the file");
+        File target = new File(directory, "meme.png");
+        saveWorker.save(target, bytes(100), false).get(10, TimeUnit.SECONDS);
+
+        Future<File> failed = saveWorker.save(target, new SaveWorker.Encoder() {
+            @Override
+            public void encode(OutputStream out) throws IOException {
+                out.write(new byte[50]);
+                throw new IOException("Unable to encode the image");
+            }
+        }, false);
+
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+            fail("Expected an ExecutionException");
+        }
+        catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(100, target.length());
+        assertFalse(new File(target.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testSave_scansTogether() throws Exception {
+        // Saves queued together are scanned together
+        System.out.println("Testing save(), saves that finish together share one scan");
+        final CountDownLatch blocked = new CountDownLatch(1);
+        File first = new File(directory, "first.png");
+
+        saveWorker.save(first, new SaveWorker.Encoder() {
+            @Override
+            public void encode(OutputStream out) throws IOException {
+                try {
+                    blocked.await();
+                }
+                catch (final InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }, true);
+        List<Future<File>> saves = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            saves.add(saveWorker.save(new File(directory, "meme" + i + ".png"), bytes(10), true));
+        }
+        saves.add(saveWorker.save(new File(directory, "private.png"), bytes(10), false));
+        blocked.countDown();
+        for (Future<File> save : saves) {
+            save.get(10, TimeUnit.SECONDS);
+        }
+        awaitScans();
+
+        synchronized (scans) {
+            int scanned = 0;
+            for (String[] paths : scans) {
+                scanned += paths.length;
+                assertFalse(Arrays.asList(paths).contains(new File(directory, "private.png").getPath()));
+            }
+            assertEquals(6, scanned);
+            assertTrue(scans.size() < 6);
+        }
+    }
+
+    /* Method: whenSaved(File target, Executor executor, OnSaved callback) */
+
+    @Test
+    public void testWhenSaved() throws Exception {
+        System.out.println("Testing whenSaved(), the callback runs once the file is there");
+        final CountDownLatch encoding = new CountDownLatch(1);
+        final CountDownLatch called = new CountDownLatch(1);
+        final boolean[] result = {false};
+        final File target = new File(directory, "meme.png");
+
+        saveWorker.save(target, new SaveWorker.Encoder() {
+            @Override
+            public void encode(OutputStream out) throws IOException {
+                try {
+                    encoding.await();
+                }
+                catch (final InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }, false);
+        saveWorker.whenSaved(target, DIRECT, new SaveWorker.OnSaved() {
+            @Override
+            public void onSaved(File file, boolean saved) {
+                result[0] = saved && file.exists();
+                called.countDown();
+            }
+        });
+        assertEquals(1, called.getCount());
+
+        encoding.countDown();
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+        assertTrue(result[0]);
+    }
+
+    @Test
+    public void testWhenSaved_notSaving() {
+        System.out.println("Testing whenSaved(), a file that isn't being saved is reported straight away");
+        final boolean[] result = {true};
+
+        saveWorker.whenSaved(new File(directory, "missing.png"), DIRECT, new SaveWorker.OnSaved() {
+            @Override
+            public void onSaved(File file, boolean saved) {
+                result[0] = saved;
+            }
+        });
+
+        assertFalse(result[0]);
+    }
+
+    /* Method: submit(File key, Callable<File> write) */
+
+    @Test
+    public void testSubmit_savedElsewhere() throws Exception {
+        // A save that picks its own file hands it to callbacks waiting on the key,
+        // before and after it is over
+        System.out.println("Testing submit(), callbacks get the file the image went to");
+        final File key = new File(directory, "pending.png");
+        final File image = new File(directory, "image.png");
+        final List<File> files = new ArrayList<>();
+        final CountDownLatch called = new CountDownLatch(2);
+        SaveWorker.OnSaved callback = new SaveWorker.OnSaved() {
+            @Override
+            public void onSaved(File file, boolean saved) {
+                if (saved) {
+                    synchronized (files) {
+                        files.add(file);
+                    }
+                }
+                called.countDown();
+            }
+        };
+
+        Future<File> saved = saveWorker.submit(key, new Callable<File>() {
+            @Override
+            public File call() throws IOException {
+                assertTrue(image.createNewFile());
+                return image;
+            }
+        });
+        saveWorker.whenSaved(key, DIRECT, callback);
+        assertEquals(image, saved.get(10, TimeUnit.SECONDS));
+        saveWorker.whenSaved(key, DIRECT, callback);
+
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(image, image), files);
+        assertFalse(key.exists());
+    }
+
+    @After
+    public void tearDown() {
+        // delete files
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+
+        System.out.println("\nFinished tests.\n");
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static SaveWorker.Encoder bytes(final int count) {
+        return new SaveWorker.Encoder() {
+            @Override
+            public void encode(OutputStream out) throws IOException {
+                out.write(new byte[count]);
+            }
+        };
+    }
+
+    // the scans run on the worker after the saves, so a save queued last is done after them
+    private void awaitScans() throws Exception {
+        File last = new File(directory, "last");
+        saveWorker.save(last, bytes(0), false).get(10, TimeUnit.SECONDS);
+        last.delete();
+    }
+}
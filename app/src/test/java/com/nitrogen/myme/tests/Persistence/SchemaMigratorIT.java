@@ -0,0 +1,277 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.application.Main;
+import com.nitrogen.myme.application.Services;
+import com.nitrogen.myme.business.AccessMemes;
+import com.nitrogen.myme.business.AccessTags;
+import com.nitrogen.myme.business.UpdateMemes;
+import com.nitrogen.myme.business.UpdateTags;
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.hsqldb.SchemaMigrator;
+import com.nitrogen.myme.tests.utils.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+public class SchemaMigratorIT {
+    private File tempDB;
+    private Map<String, Integer> tagCounts;
+    private int memeTags;
+
+    @Before
+    public void setUp() throws IOException, SQLException {
+        System.out.println("Starting tests for SchemaMigrator.\n");
+
+        // build database, still on the schema the app shipped with
+        tempDB = TestUtils.copyDB();
+
+        tagCounts = new HashMap<>();
+        memeTags = 0;
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            assertEquals(1, SchemaMigrator.getVersion(c));
+            ResultSet rs = st.executeQuery("SELECT name, COUNT(*) FROM MEMETAGS GROUP BY name");
+            while (rs.next()) {
+                tagCounts.put(rs.getString(1), rs.getInt(2));
+                memeTags += rs.getInt(2);
+            }
+            rs.close();
+            st.execute("SHUTDOWN");
+        }
+    }
+
+    /* Method: migrate(Connection c) */
+
+    @Test
+    public void testMigrate_upgradesInPlace() throws SQLException {
+        // Opening an old database upgrades it and keeps every meme's tags
+        System.out.println("Testing migrate(), upgrading a database made before the schema was versioned");
+
+        for (Meme meme : new AccessMemes().getMemes()) {
+            Integer count = tagCounts.get(meme.getName());
+            assertEquals(count != null ? (int) count : 0, meme.getTags().size());
+        }
+        assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.getVersion(Services.getConnectionProvider().getConnection()));
+        assertEquals(memeTags, countMemeTags());
+    }
+
+    @Test
+    public void testMigrate_alreadyUpToDate() throws SQLException {
+        // Opening an upgraded database again leaves it as it is
+        System.out.println("Testing migrate(), reopening a database that is already up to date");
+
+        int memes = new AccessMemes().getMemes().size();
+        Services.clean();
+
+        assertEquals(memes, new AccessMemes().getMemes().size());
+        assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.getVersion(Services.getConnectionProvider().getConnection()));
+        assertEquals(memeTags, countMemeTags());
+    }
+
+    @Test
+    public void testMigrate_resumesSwap() throws SQLException {
+        // An upgrade that stopped after dropping the old tables carries on from there
+        System.out.println("Testing migrate(), an upgrade stopped before the new tables were renamed");
+
+        failMigrationOn("ALTER TABLE MEME_V2 RENAME TO MEME");
+
+        assertUpgraded();
+    }
+
+    @Test
+    public void testMigrate_resumesPartialSwap() throws SQLException {
+        // Some of the tables may already be dropped or renamed when the upgrade stops
+        System.out.println("Testing migrate(), an upgrade stopped part way through the swap");
+
+        failMigrationOn("DROP TABLE MEME");
+        assertUpgradedSoFar("MEMETAGS_V2", "MEME", "TAG");
+        Services.clean();
+        failMigrationOn("ALTER TABLE TAG_V2 RENAME TO TAG");
+
+        assertUpgraded();
+    }
+
+    @Test
+    public void testMigrate_stepAlreadyDone() throws SQLException {
+        // Each step commits before the new version is recorded, so the app can stop in
+        // between; the step is then run again on a database that already has it
+        System.out.println("Testing migrate(), every step rerun after it was done but not recorded");
+
+        int memes = new AccessMemes().getMemes().size();
+        for (int version = 2; version < SchemaMigrator.CURRENT_VERSION; version++) {
+            Services.clean();
+            setVersion(version);
+
+            assertEquals(memes, new AccessMemes().getMemes().size());
+            assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.getVersion(Services.getConnectionProvider().getConnection()));
+        }
+        assertEquals(memeTags, countMemeTags());
+        assertEquals(1, countRows("CATALOG_STAMP"));
+    }
+
+    @Test
+    public void testMigrate_stampTableEmpty() throws SQLException {
+        // The stamp table may have been made without its row
+        System.out.println("Testing migrate(), an upgrade stopped between making the stamp table and filling it");
+
+        new AccessMemes().getMemes();
+        Services.clean();
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            st.execute("DELETE FROM CATALOG_STAMP");
+        }
+        setVersion(4);
+
+        new AccessMemes().getMemes();
+        assertEquals(1, countRows("CATALOG_STAMP"));
+        assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.getVersion(Services.getConnectionProvider().getConnection()));
+    }
+
+    @Test
+    public void testMigrate_versionTableEmpty() throws SQLException {
+        // SCHEMA_VERSION may have been made without its row, on a database still at version 1
+        System.out.println("Testing migrate(), an upgrade stopped between making SCHEMA_VERSION and filling it");
+
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            st.execute("CREATE MEMORY TABLE SCHEMA_VERSION(VERSION INTEGER NOT NULL)");
+        }
+
+        assertUpgraded();
+        assertEquals(1, countRows("SCHEMA_VERSION"));
+    }
+
+    @Test
+    public void testMigrate_deletesCascade() throws SQLException {
+        // Deleting a meme or a tag takes its rows in MEMETAGS with it
+        System.out.println("Testing migrate(), deleting memes and tags removes their tag assignments");
+
+        Meme meme = new AccessMemes().getMemes().get(0);
+        new UpdateMemes().deleteMeme(meme);
+        assertEquals(memeTags - meme.getTags().size(), countMemeTags());
+
+        Tag tag = new AccessTags().getTags().get(0);
+        new UpdateTags().deleteTag(tag);
+        Services.clean();
+        for (Meme reloaded : new AccessMemes().getMemes()) {
+            assertFalse(reloaded.getTags().contains(tag));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        // delete file
+        tempDB.delete();
+        // forget DB
+        Services.clean();
+
+        System.out.println("\nFinished tests.\n");
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    // runs the migrations on the database and has them fail at the given step
+    private static void failMigrationOn(final String step) throws SQLException {
+        try (Connection c = connect()) {
+            Connection failing = spy(c);
+            doAnswer(new Answer<Statement>() {
+                @Override
+                public Statement answer(InvocationOnMock invocation) throws Throwable {
+                    Statement st = spy((Statement) invocation.callRealMethod());
+                    doThrow(new SQLException("failed on purpose")).when(st).execute(step);
+                    return st;
+                }
+            }).when(failing).createStatement();
+
+            try {
+                SchemaMigrator.migrate(failing);
+                fail("The migration should have failed at " + step);
+            }
+            catch (SQLException e) {
+                assertEquals("failed on purpose", e.getMessage());
+            }
+            assertEquals(1, SchemaMigrator.getVersion(c));
+        }
+    }
+
+    // the tables the failed upgrade left, which must be there
+    private static void assertUpgradedSoFar(String... tables) throws SQLException {
+        try (Connection c = connect()) {
+            for (String table : tables) {
+                try (ResultSet rs = c.getMetaData().getTables(null, "PUBLIC", table, null)) {
+                    assertTrue(table, rs.next());
+                }
+            }
+        }
+    }
+
+    // the database opens, upgraded and with every meme's tags
+    private void assertUpgraded() throws SQLException {
+        for (Meme meme : new AccessMemes().getMemes()) {
+            Integer count = tagCounts.get(meme.getName());
+            assertEquals(count != null ? (int) count : 0, meme.getTags().size());
+        }
+        assertFalse(new AccessTags().getTags().isEmpty());
+        assertEquals(SchemaMigrator.CURRENT_VERSION, SchemaMigrator.getVersion(Services.getConnectionProvider().getConnection()));
+        assertEquals(memeTags, countMemeTags());
+    }
+
+    // records the version without undoing anything, as if the steps after it were
+    // done but the app stopped before recording them
+    private static void setVersion(int version) throws SQLException {
+        try (Connection c = connect(); Statement st = c.createStatement()) {
+            st.execute("UPDATE SCHEMA_VERSION SET VERSION = " + version);
+        }
+    }
+
+    private static int countRows(String table) throws SQLException {
+        int count;
+
+        synchronized (Services.getConnectionProvider()) {
+            ResultSet rs = Services.getConnectionProvider().prepare("SELECT COUNT(*) FROM " + table).executeQuery();
+            rs.next();
+            count = rs.getInt(1);
+            rs.close();
+        }
+
+        return count;
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection("jdbc:hsqldb:file:" + Main.getDBPathName() + ";shutdown=true", "SA", "");
+    }
+
+    private static int countMemeTags() throws SQLException {
+        int count;
+
+        synchronized (Services.getConnectionProvider()) {
+            ResultSet rs = Services.getConnectionProvider().prepare("SELECT COUNT(*) FROM MEMETAGS").executeQuery();
+            rs.next();
+            count = rs.getInt(1);
+            rs.close();
+        }
+
+        return count;
+    }
+}
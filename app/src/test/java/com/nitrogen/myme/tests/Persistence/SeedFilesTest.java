@@ -0,0 +1,153 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.persistence.Utils.SeedFiles;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SeedFilesTest {
+    private static final File SEED_DIRECTORY = new File("src/main/assets/db");
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for SeedFiles.\n");
+
+        directory = File.createTempFile("seed-test", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    /* Method: checksum(InputStream in) */
+
+    @Test
+    public void testManifest_matchesSeeds() throws IOException {
+        // Every seed shipped with the app has the checksum its manifest says it has
+        System.out.println("Testing the shipped manifest, each seed's checksum matches");
+
+        Properties manifest = SeedFiles.readManifest(new File(SEED_DIRECTORY, SeedFiles.MANIFEST));
+        assertNotNull(manifest.getProperty(SeedFiles.VERSION));
+        assertFalse(SeedFiles.seedNames(manifest).isEmpty());
+
+        for (String name : SeedFiles.seedNames(manifest)) {
+            String checksum = SeedFiles.checksum(new FileInputStream(new File(SEED_DIRECTORY, name)));
+            assertEquals(name + " changed, update " + SeedFiles.MANIFEST, manifest.getProperty(name), checksum);
+        }
+    }
+
+    /* Method: copy(InputStream in, File target, String expected) */
+
+    @Test
+    public void testCopy_stream() throws IOException {
+        // The bytes are copied as they are, and their checksum is returned
+        System.out.println("Testing copy(), a stream is copied byte for byte");
+
+        byte[] bytes = new byte[200 * 1024 + 17];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        File target = new File(directory, "copy.bin");
+
+        String checksum = SeedFiles.copy(new ByteArrayInputStream(bytes), target, null);
+
+        assertArrayEquals(bytes, read(target));
+        assertEquals(SeedFiles.checksum(new ByteArrayInputStream(bytes)), checksum);
+        assertEquals(checksum, SeedFiles.copy(new ByteArrayInputStream(bytes), target, checksum.toUpperCase()));
+        assertFalse(new File(directory, "copy.bin.tmp").exists());
+    }
+
+    @Test
+    public void testCopy_checksumMismatch() throws IOException {
+        // A copy that doesn't match the expected checksum leaves the target alone
+        System.out.println("Testing copy(), a copy with the wrong checksum is thrown away");
+
+        File target = new File(directory, "copy.bin");
+        SeedFiles.copy(new ByteArrayInputStream(new byte[]{1, 2, 3}), target, null);
+
+        try {
+            SeedFiles.copy(new ByteArrayInputStream(new byte[]{4, 5}), target, "0000");
+            fail("Expected an IOException");
+        }
+        catch (final IOException e) {
+            // expected
+        }
+
+        assertArrayEquals(new byte[]{1, 2, 3}, read(target));
+        assertFalse(new File(directory, "copy.bin.tmp").exists());
+    }
+
+    /* Method: copy(File source, File target) */
+
+    @Test
+    public void testCopy_file() throws IOException {
+        // A file copied through channels is the same as the original
+        System.out.println("Testing copy(), a file is copied through channels");
+
+        File source = new File(SEED_DIRECTORY, "Mymedb.script");
+        File target = new File(directory, "Mymedb.script");
+
+        SeedFiles.copy(source, target);
+
+        assertArrayEquals(read(source), read(target));
+    }
+
+    /* Method: writeManifest(Properties manifest, File file), readManifest(File file) */
+
+    @Test
+    public void testManifest_roundTrip() throws IOException {
+        // A saved manifest reads back the same, and a missing one reads as empty
+        System.out.println("Testing writeManifest() and readManifest()");
+
+        File file = new File(directory, SeedFiles.MANIFEST);
+        assertTrue(SeedFiles.readManifest(file).isEmpty());
+
+        Properties manifest = new Properties();
+        manifest.setProperty(SeedFiles.VERSION, "2");
+        manifest.setProperty("Mymedb.script", "abc123");
+        SeedFiles.writeManifest(manifest, file);
+
+        assertEquals(manifest, SeedFiles.readManifest(file));
+        assertEquals(1, SeedFiles.seedNames(manifest).size());
+    }
+
+    @After
+    public void tearDown() {
+        // delete files
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+
+        System.out.println("\nFinished tests.\n");
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < bytes.length) {
+                read += in.read(bytes, read, bytes.length - read);
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,151 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.objects.Meme;
+import com.nitrogen.myme.objects.Tag;
+import com.nitrogen.myme.persistence.MemesPersistence;
+import com.nitrogen.myme.persistence.Utils.SeedFiles;
+import com.nitrogen.myme.persistence.hsqldb.ConnectionProvider;
+import com.nitrogen.myme.persistence.hsqldb.PagedMemesPersistenceHSQLDB;
+import com.nitrogen.myme.persistence.hsqldb.SeedMerger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SeedMergerIT {
+    private static final File SEED = new File("src/main/assets/db/Mymedb.script");
+
+    private File directory;
+    private String previousPath;
+    private String seedPath;
+    private ConnectionProvider device;
+    private Meme deleted;
+
+    @Before
+    public void setUp() throws IOException, SQLException {
+        System.out.println("Starting tests for SeedMerger.\n");
+
+        directory = File.createTempFile("seed-merge", "");
+        directory.delete();
+        previousPath = copySeed("previous");
+        seedPath = copySeed("seed");
+        device = new ConnectionProvider(copySeed("device"));
+
+        // the updated seed adds a meme, a tag and a template
+        ConnectionProvider seed = new ConnectionProvider(seedPath);
+        MemesPersistence seedMemes = new PagedMemesPersistenceHSQLDB(seed);
+        seedMemes.insertMeme(meme("seeded meme", "seeded/source", "seeded tag"));
+        seedMemes.insertMeme(meme("made by both", "seeded/source", "dank"));
+        synchronized (seed) {
+            PreparedStatement template = seed.prepare("INSERT INTO templates VALUES(?, ?)");
+            template.setString(1, "seeded template");
+            template.setString(2, "seeded/template");
+            template.executeUpdate();
+        }
+        seed.close();
+
+        // meanwhile the user deleted a meme the first seed had, and made two of their own
+        MemesPersistence deviceMemes = new PagedMemesPersistenceHSQLDB(device);
+        deleted = deviceMemes.getMemes().get(0);
+        deviceMemes.deleteMeme(deleted);
+        deviceMemes.insertMeme(meme("user meme", "user/source", "mine"));
+        deviceMemes.insertMeme(meme("made by both", "user/source", "mine"));
+    }
+
+    /* Method: merge(String seedPath, String previousSeedPath, ConnectionProvider target) */
+
+    @Test
+    public void testMerge_addsNewSeedData() throws SQLException {
+        // What the seed added shows up on the device, and nothing the user did is undone
+        System.out.println("Testing merge(), the seed's additions are merged into the device database");
+
+        assertEquals(1, SeedMerger.merge(seedPath, previousPath, device));
+
+        List<Meme> memes = new PagedMemesPersistenceHSQLDB(device).getMemes();
+        Meme seeded = memes.get(memes.indexOf(new Meme("seeded meme")));
+        assertEquals("seeded/source", seeded.getImagePath());
+        assertEquals(1, seeded.getTags().size());
+        assertEquals(new Tag("seeded tag"), seeded.getTags().get(0));
+
+        assertFalse(memes.contains(deleted));
+        assertTrue(memes.contains(new Meme("user meme")));
+        assertEquals("user/source", memes.get(memes.indexOf(new Meme("made by both"))).getImagePath());
+
+        assertEquals(1, count("SELECT COUNT(*) FROM templates WHERE name = 'seeded template'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM tag WHERE tagname = 'seeded tag'"));
+    }
+
+    @Test
+    public void testMerge_again() throws SQLException {
+        // Merging the same seed twice adds nothing the second time
+        System.out.println("Testing merge(), merging a seed again changes nothing");
+
+        SeedMerger.merge(seedPath, previousPath, device);
+        int memes = count("SELECT COUNT(*) FROM meme");
+        int templates = count("SELECT COUNT(*) FROM templates");
+
+        assertEquals(0, SeedMerger.merge(seedPath, previousPath, device));
+        assertEquals(memes, count("SELECT COUNT(*) FROM meme"));
+        assertEquals(templates, count("SELECT COUNT(*) FROM templates"));
+    }
+
+    @After
+    public void tearDown() {
+        device.close();
+        // delete files
+        deleteAll(directory);
+
+        System.out.println("\nFinished tests.\n");
+    }
+
+    //**************************************************
+    // Helper Methods
+    //**************************************************
+
+    private String copySeed(String name) throws IOException {
+        File copyDirectory = new File(directory, name);
+        copyDirectory.mkdirs();
+        SeedFiles.copy(SEED, new File(copyDirectory, SEED.getName()));
+        return new File(copyDirectory, "Mymedb").getPath();
+    }
+
+    private int count(String sql) throws SQLException {
+        synchronized (device) {
+            ResultSet rs = device.prepare(sql).executeQuery();
+            rs.next();
+            int count = rs.getInt(1);
+            rs.close();
+            return count;
+        }
+    }
+
+    private static Meme meme(String name, String source, String tag) {
+        Meme meme = new Meme(name, source);
+        List<Tag> tags = new ArrayList<>();
+        tags.add(new Tag(tag));
+        meme.setTags(tags);
+        return meme;
+    }
+
+    private static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,134 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.persistence.SizeBucketedPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SizeBucketedPoolTest {
+    private List<byte[]> discarded;
+    private SizeBucketedPool<byte[]> pool;
+
+    @Before
+    public void setUp() {
+        System.out.println("Starting tests for SizeBucketedPool.\n");
+
+        discarded = new ArrayList<>();
+        pool = new SizeBucketedPool<byte[]>(1000) {
+            @Override
+            protected int sizeOf(byte[] item) {
+                return item.length;
+            }
+
+            @Override
+            protected boolean isReusable(byte[] item) {
+                // empty arrays stand in for recycled bitmaps
+                return item.length > 0;
+            }
+
+            @Override
+            protected void discard(byte[] item) {
+                discarded.add(item);
+            }
+        };
+    }
+
+    /* Method: put(T item), take(int bytes) */
+
+    @Test
+    public void testTake_bigEnough() {
+        // Only an object at least as big as asked for is handed out
+        System.out.println("Testing take(), the object is big enough");
+
+        byte[] small = new byte[100];
+        byte[] large = new byte[120];
+        pool.put(small);
+        pool.put(large);
+
+        assertSame(large, pool.take(110));
+        assertNull(pool.take(110));
+        assertSame(small, pool.take(100));
+        assertEquals(0, pool.getSize());
+    }
+
+    @Test
+    public void testTake_notMuchLarger() {
+        // A small request doesn't use up an object many times its size
+        System.out.println("Testing take(), much larger objects are left for larger requests");
+
+        byte[] huge = new byte[900];
+        pool.put(huge);
+
+        assertNull(pool.take(100));
+        assertSame(huge, pool.take(500));
+    }
+
+    @Test
+    public void testTake_empty() {
+        System.out.println("Testing take(), nothing in the pool");
+
+        assertNull(pool.take(1));
+    }
+
+    @Test
+    public void testPut_notReusable() {
+        System.out.println("Testing put(), objects that can't be reused are let go of");
+
+        byte[] recycled = new byte[0];
+        byte[] tooLarge = new byte[2000];
+        pool.put(recycled);
+        pool.put(tooLarge);
+
+        assertEquals(0, pool.getSize());
+        assertTrue(discarded.contains(recycled));
+        assertTrue(discarded.contains(tooLarge));
+    }
+
+    @Test
+    public void testPut_trimsLargestFirst() {
+        // Over the limit, the largest objects go first
+        System.out.println("Testing put(), the pool stays under its limit");
+
+        byte[] large = new byte[600];
+        pool.put(large);
+        for (int i = 0; i < 4; i++) {
+            pool.put(new byte[100]);
+        }
+        assertEquals(1000, pool.getSize());
+
+        pool.put(new byte[100]);
+
+        assertEquals(500, pool.getSize());
+        assertEquals(1, discarded.size());
+        assertSame(large, discarded.get(0));
+    }
+
+    /* Method: clear() */
+
+    @Test
+    public void testClear() {
+        System.out.println("Testing clear(), everything is let go of");
+
+        pool.put(new byte[100]);
+        pool.put(new byte[300]);
+        pool.clear();
+
+        assertEquals(0, pool.getSize());
+        assertEquals(2, discarded.size());
+        assertNull(pool.take(1));
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("\nFinished tests.\n");
+    }
+}
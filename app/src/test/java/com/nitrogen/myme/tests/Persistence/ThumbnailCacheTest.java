@@ -0,0 +1,138 @@
+package com.nitrogen.myme.tests.Persistence;
+
+import com.nitrogen.myme.persistence.ThumbnailCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThumbnailCacheTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("Starting tests for ThumbnailCache.\n");
+
+        directory = File.createTempFile("thumbnails", "");
+        directory.delete();
+    }
+
+    /* Method: keyOf(byte[] image) */
+
+    @Test
+    public void testKeyOf() throws IOException {
+        // Thumbnails are filed by the content of the image, not where it came from
+        System.out.println("Testing keyOf(), the same bytes give the same key");
+
+        assertEquals(ThumbnailCache.keyOf(new byte[]{1, 2, 3}), ThumbnailCache.keyOf(new byte[]{1, 2, 3}));
+        assertNotEquals(ThumbnailCache.keyOf(new byte[]{1, 2, 3}), ThumbnailCache.keyOf(new byte[]{1, 2, 4}));
+    }
+
+    /* Method: put(String key, byte[] thumbnail), get(String key) */
+
+    @Test
+    public void testPutGet() throws IOException {
+        System.out.println("Testing put() and get(), a thumbnail is found under its key");
+        ThumbnailCache cache = new ThumbnailCache(directory, 1000);
+
+        assertNull(cache.get("a"));
+        File saved = cache.put("a", new byte[100]);
+
+        assertEquals(saved, cache.get("a"));
+        assertEquals(100, saved.length());
+        assertEquals(100, cache.getSize());
+
+        // replacing it doesn't count it twice
+        cache.put("a", new byte[50]);
+        assertEquals(50, cache.getSize());
+    }
+
+    @Test
+    public void testGet_deleted() throws IOException {
+        System.out.println("Testing get(), a thumbnail deleted from the disk is gone");
+        ThumbnailCache cache = new ThumbnailCache(directory, 1000);
+
+        cache.put("a", new byte[100]).delete();
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testPut_evictsLeastRecentlyUsed() throws IOException {
+        // The directory stays under its size by deleting the thumbnails used longest ago
+        System.out.println("Testing put(), the least recently used thumbnails make room");
+        ThumbnailCache cache = new ThumbnailCache(directory, 300);
+
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[100]);
+        cache.put("c", new byte[100]);
+        // a was used more recently than b
+        assertNotNull(cache.get("a"));
+        cache.put("d", new byte[100]);
+
+        assertNull(cache.get("b"));
+        assertFalse(cache.fileFor("b").exists());
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(300, cache.getSize());
+    }
+
+    @Test
+    public void testPut_tooLarge() throws IOException {
+        System.out.println("Testing put(), a thumbnail larger than the cache is still kept");
+        ThumbnailCache cache = new ThumbnailCache(directory, 100);
+
+        cache.put("a", new byte[50]);
+        cache.put("b", new byte[500]);
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+    }
+
+    /* Method: ThumbnailCache(File directory, long maxBytes) */
+
+    @Test
+    public void testReopen() throws IOException {
+        // The thumbnails and their order are found again in the directory
+        System.out.println("Testing ThumbnailCache(), thumbnails on disk are picked up again");
+        ThumbnailCache cache = new ThumbnailCache(directory, 1000);
+        cache.put("old", new byte[100]);
+        cache.put("new", new byte[100]);
+        assertTrue(cache.fileFor("old").setLastModified(1000));
+        assertTrue(new File(directory, "leftover.jpg.tmp").createNewFile());
+
+        // reopened smaller, the older one doesn't fit
+        ThumbnailCache reopened = new ThumbnailCache(directory, 150);
+
+        assertNull(reopened.get("old"));
+        assertNotNull(reopened.get("new"));
+        assertEquals(100, reopened.getSize());
+        assertFalse(new File(directory, "leftover.jpg.tmp").exists());
+    }
+
+    @After
+    public void tearDown() {
+        // delete files
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+
+        System.out.println("\nFinished tests.\n");
+    }
+}